@@ -0,0 +1,24 @@
+-- 组织策略映射迁移脚本
+-- 策略可以分配到组织节点，对该组织的整个子树生效
+-- 覆盖一个部门只需要一行映射，不再为部门下的每台主机写一行 client_policy_mappings
+
+SET NAMES utf8mb4;
+
+-- =============================================================================
+-- 1. 组织策略映射表 (org_policy_mappings)
+-- =============================================================================
+CREATE TABLE IF NOT EXISTS `org_policy_mappings` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    `org_id` VARCHAR(100) NOT NULL COMMENT '组织ID',
+    `policy_id` BIGINT NOT NULL COMMENT '策略ID',
+    `assigned_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '分配时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_org_policy_org_id` (`org_id`) COMMENT '每个组织最多绑定一个策略',
+    KEY `idx_org_policy_policy_id` (`policy_id`),
+    CONSTRAINT `fk_org_policy_mapping_policy` FOREIGN KEY (`policy_id`) REFERENCES `policies` (`id`) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='组织策略映射表';
+
+-- =============================================================================
+-- 验证
+-- =============================================================================
+SELECT COUNT(*) AS org_policy_mappings FROM `org_policy_mappings`;
@@ -0,0 +1,27 @@
+-- 批量分配暂存表迁移脚本
+-- 批量分配策略时，请求体中的客户端ID分块写入暂存表，与现有关联的差异由数据库计算，
+-- 应用内存中只保留一个分块，不再需要把整个客户端集合加载到内存
+
+SET NAMES utf8mb4;
+
+-- =============================================================================
+-- 1. 暂存表
+-- =============================================================================
+-- 同一请求中的重复客户端ID直接写入，计算差异时去重；任务结束后按 job_id 删除，
+-- 节点在任务执行期间宕机留下的行由应用启动时按 staged_at 清理
+CREATE TABLE IF NOT EXISTS `policy_assignment_staging` (
+    `job_id` BIGINT NOT NULL COMMENT '批量分配任务ID',
+    `client_id` VARCHAR(255) NOT NULL COMMENT '请求中的客户端ID（可能重复）',
+    `staged_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '暂存时间',
+    KEY `idx_assignment_staging_job_client` (`job_id`, `client_id`),
+    KEY `idx_assignment_staging_staged_at` (`staged_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='批量分配暂存表';
+
+-- =============================================================================
+-- 2. 关联表按 (policy_id, client_id) 建索引
+-- =============================================================================
+-- 批量分配按客户端ID顺序分块读取策略的关联，复合索引避免每个分块都对策略的全部关联排序；
+-- policy_id 仍是索引前缀，外键约束可以继续使用该索引
+ALTER TABLE `client_policy_mappings`
+    DROP INDEX `idx_client_policy_policy_id`,
+    ADD INDEX `idx_client_policy_policy_id` (`policy_id`, `client_id`);
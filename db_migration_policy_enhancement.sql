@@ -17,6 +17,7 @@ CREATE TABLE `policies` (
     `version` VARCHAR(50) NOT NULL COMMENT '策略版本',
     `is_default` BOOLEAN NOT NULL DEFAULT FALSE COMMENT '是否为默认策略',
     `priority` INT NOT NULL DEFAULT 0 COMMENT '策略优先级，数值越大优先级越高',
+    `fingerprint` VARCHAR(64) NULL COMMENT '策略内容指纹（写入时计算）',
     `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`id`),
@@ -0,0 +1,25 @@
+-- 策略指纹迁移脚本
+-- 为 policies 表增加写入时计算的策略指纹列，已有数据由应用启动时回填
+-- 心跳检查直接比较该指纹，不再在每次心跳时计算哈希
+
+SET NAMES utf8mb4;
+
+-- =============================================================================
+-- 1. 增加指纹列
+-- =============================================================================
+ALTER TABLE `policies`
+    ADD COLUMN IF NOT EXISTS `fingerprint` VARCHAR(64) NULL COMMENT '策略内容指纹（写入时计算）' AFTER `priority`;
+
+-- =============================================================================
+-- 2. 回填已有策略的指纹
+-- =============================================================================
+-- 由应用启动时完成（PolicyAdminServiceImpl.backfillPolicyFingerprints），这里不做回填：
+-- 指纹必须与 PolicyFingerprint.compute 逐字节一致，客户端持有的指纹才不会全部失效，
+-- 而更新时间的文本形式来自 LocalDateTime.toString()（秒为0时省略秒），SQL 无法可靠复现；
+-- 回填时保留原来的 updated_at，避免 ON UPDATE CURRENT_TIMESTAMP 改变参与计算的字段。
+-- 回填完成前心跳会临时计算指纹，行为与升级前相同。
+
+-- =============================================================================
+-- 验证（应用启动后执行，应为0）
+-- =============================================================================
+SELECT COUNT(*) AS policies_without_fingerprint FROM `policies` WHERE `fingerprint` IS NULL;
@@ -36,6 +36,9 @@ CREATE INDEX IF NOT EXISTS idx_hosts_ip_org ON hosts (ip_address, organization_i
 -- 10. 离线检测专用索引：在线状态 + 最后在线时间
 CREATE INDEX IF NOT EXISTS idx_hosts_online_last_time ON hosts (online_status, last_online_time);
 
+-- 11. 更新时间索引：搜索索引水位线之后修改的主机（其他节点的修改）与候选主机一起读取
+CREATE INDEX IF NOT EXISTS idx_hosts_updated_at ON hosts (updated_at);
+
 -- ==============================================
 -- 策略表 (policies) 索引优化
 -- ==============================================
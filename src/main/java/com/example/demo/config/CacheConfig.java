@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RedissonClient;
 import org.redisson.spring.cache.RedissonSpringCacheManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -17,16 +18,24 @@ import java.util.Map;
 
 /**
  * 缓存配置类
- * 使用Redis作为主要缓存，通过动态缓存管理器实现降级
+ * 使用Redis作为主要缓存，通过动态缓存管理器实现降级；
+ * 高频读取的缓存在Redis前面加一层进程内L1缓存，节点之间通过Redisson主题广播失效消息
  */
 @Slf4j
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
+    // L1失效消息使用的Redisson主题
+    private static final String INVALIDATION_TOPIC = "cache:l1:invalidation";
+
     @Autowired(required = false)
     private RedissonClient redissonClient;
 
+    // 是否启用进程内L1缓存
+    @Value("${cache.l1.enabled:true}")
+    private boolean l1Enabled;
+
     /**
      * Redis缓存管理器（主要缓存管理器）
      */
@@ -37,18 +46,18 @@ public class CacheConfig {
         log.info("✅ 配置Redis缓存管理器作为主要缓存管理器");
         
         Map<String, org.redisson.spring.cache.CacheConfig> config = new HashMap<>();
-        
-        // 策略缓存配置 - 长期缓存，1小时过期
-        config.put("policies", new org.redisson.spring.cache.CacheConfig(
-                3600000,  // TTL: 1 hour in milliseconds
-                1800000   // Max idle time: 30 minutes in milliseconds
-        ));
+        // 进程内L1缓存配置（最大条目数、过期时间），未配置的缓存直接读写Redis
+        Map<String, TwoTierCacheManager.L1Config> l1Config = new HashMap<>();
         
         // 客户端策略关联缓存 - 中期缓存，30分钟过期
         config.put("clientPolicies", new org.redisson.spring.cache.CacheConfig(
                 1800000,  // TTL: 30 minutes in milliseconds
                 900000    // Max idle time: 15 minutes in milliseconds
         ));
+        l1Config.put("clientPolicies", new TwoTierCacheManager.L1Config(
+                50000,    // Max entries
+                30000     // L1 TTL: 30 seconds
+        ));
         
         // 心跳服务高频缓存 - 短期缓存，5分钟过期
         config.put("heartbeatCache", new org.redisson.spring.cache.CacheConfig(
@@ -73,6 +82,10 @@ public class CacheConfig {
                 1800000,  // TTL: 30 minutes in milliseconds
                 900000    // Max idle time: 15 minutes in milliseconds
         ));
+        l1Config.put("hosts", new TwoTierCacheManager.L1Config(
+                20000,    // Max entries
+                30000     // L1 TTL: 30 seconds
+        ));
         
         // 默认缓存配置 - 15分钟过期
         config.put("default", new org.redisson.spring.cache.CacheConfig(
@@ -81,6 +94,13 @@ public class CacheConfig {
         ));
 
         log.info("🚀 Redis缓存管理器创建成功，缓存配置项: {}", config.keySet());
-        return new RedissonSpringCacheManager(redissonClient, config);
+        RedissonSpringCacheManager redisCacheManager = new RedissonSpringCacheManager(redissonClient, config);
+        if (!l1Enabled) {
+            return redisCacheManager;
+        }
+
+        log.info("⚡ 启用进程内L1缓存: {}", l1Config.keySet());
+        return new TwoTierCacheManager(redisCacheManager, l1Config,
+                new CacheInvalidationBus.RedissonTopicBus(redissonClient, INVALIDATION_TOPIC));
     }
 }
\ No newline at end of file
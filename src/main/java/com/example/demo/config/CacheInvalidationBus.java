@@ -0,0 +1,92 @@
+package com.example.demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.codec.SerializationCodec;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 本地缓存（L1）失效消息总线
+ * 某个节点修改或清除缓存后广播失效消息，其他节点收到后丢弃自己 L1 中对应的条目。
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * 广播失效消息
+     */
+    void publish(Invalidation invalidation);
+
+    /**
+     * 订阅失效消息（包括本节点自己发出的消息，由订阅方按节点ID过滤）
+     */
+    void subscribe(Consumer<Invalidation> listener);
+
+    /**
+     * 缓存失效消息
+     */
+    final class Invalidation implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String nodeId;
+        private final String cacheName;
+        // 为 null 表示清空整个缓存
+        private final ArrayList<Object> keys;
+
+        public Invalidation(String nodeId, String cacheName, Collection<?> keys) {
+            this.nodeId = nodeId;
+            this.cacheName = cacheName;
+            this.keys = keys != null ? new ArrayList<>(keys) : null;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        public String getCacheName() {
+            return cacheName;
+        }
+
+        public List<Object> getKeys() {
+            return keys;
+        }
+
+        public boolean isClear() {
+            return keys == null;
+        }
+    }
+
+    /**
+     * 基于 Redisson 主题的实现
+     * 使用 Java 序列化编码，保证键的类型（Long/String）在各节点之间一致
+     */
+    @Slf4j
+    final class RedissonTopicBus implements CacheInvalidationBus {
+
+        private final RTopic topic;
+
+        public RedissonTopicBus(RedissonClient redissonClient, String topicName) {
+            this.topic = redissonClient.getTopic(topicName, new SerializationCodec());
+        }
+
+        @Override
+        public void publish(Invalidation invalidation) {
+            try {
+                topic.publishAsync(invalidation);
+            } catch (Exception e) {
+                log.warn("⚠️ 广播缓存失效消息失败: cache={}, error={}", invalidation.getCacheName(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void subscribe(Consumer<Invalidation> listener) {
+            topic.addListener(Invalidation.class, (channel, message) -> listener.accept(message));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.demo.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两级缓存：进程内有界 L1 + 远程 L2
+ * <p>
+ * 读取先查 L1，未命中再读 L2 并回填 L1；写入同时写 L2 和本地 L1。写入和清除通过 {@link CacheInvalidationBus}
+ * 通知其他节点丢弃各自的 L1：写入前不读取 L2 判断旧值，避免每次写入多一次 Redis 往返，
+ * 没有该键的节点收到失效消息只是一次本地 remove。
+ * <p>
+ * L1 是有界的 ConcurrentHashMap，条目在 ttlMs 后过期，过期时间是其他节点错过失效消息时数据不一致的上限。
+ * 超过 maxSize 时由一个线程按最近访问时间淘汰最旧的条目（近似LRU），读取不加锁。
+ * 读取 L2 前先在 L1 中放入该键的加载占位符，回填时只替换自己的占位符：读取期间该键被写入或失效时占位符已不在，
+ * 旧值不会被放回 L1，其他键的失效不影响回填。
+ */
+public class TwoTierCache implements Cache {
+
+    private final Cache l2;
+    private final int maxSize;
+    private final long ttlMs;
+    private final String nodeId;
+    private final CacheInvalidationBus bus;
+
+    private final ConcurrentHashMap<Object, Entry> l1 = new ConcurrentHashMap<>();
+    // 同一时间只有一个线程执行淘汰
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TwoTierCache(Cache l2, int maxSize, long ttlMs, String nodeId, CacheInvalidationBus bus) {
+        this.l2 = l2;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.nodeId = nodeId;
+        this.bus = bus;
+    }
+
+    @Override
+    public String getName() {
+        return l2.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l2.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper local = getLocal(key);
+        if (local != null) {
+            hits.increment();
+            return local;
+        }
+        misses.increment();
+
+        Entry loading = startLoading(key);
+        try {
+            ValueWrapper remote = l2.get(key);
+            if (remote != null) {
+                finishLoading(key, loading, remote);
+            }
+            return remote;
+        } finally {
+            cancelLoading(key, loading);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存值类型不匹配: 期望 " + type.getName() + "，实际 " + value.getClass().getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper local = getLocal(key);
+        if (local != null) {
+            hits.increment();
+            return (T) local.get();
+        }
+        misses.increment();
+
+        // 直接交给 L2 读取或加载，只访问一次 L2
+        Entry loading = startLoading(key);
+        try {
+            T value = l2.get(key, valueLoader);
+            finishLoading(key, loading, new SimpleValueWrapper(value));
+            return value;
+        } finally {
+            cancelLoading(key, loading);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        l2.put(key, value);
+        putLocal(key, new SimpleValueWrapper(value));
+        publish(Collections.singletonList(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = l2.putIfAbsent(key, value);
+        // 没有写入时 L2 中的值保持不变，本地缓存现有值即可
+        putLocal(key, existing != null ? existing : new SimpleValueWrapper(value));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        l2.evict(key);
+        invalidate(Collections.singletonList(key));
+    }
+
+    @Override
+    public void clear() {
+        l2.clear();
+        invalidate(null);
+    }
+
+    /**
+     * 丢弃本地 L1 中的条目并通知其他节点（L2 已由调用方直接修改时使用）
+     * @param keys 失效的键，为 null 表示整个缓存
+     */
+    public void invalidate(Collection<?> keys) {
+        invalidateLocal(keys);
+        publish(keys);
+    }
+
+    /**
+     * 只丢弃本地 L1 中的条目（收到其他节点的失效消息时使用）
+     * 同时移除正在读取 L2 的加载占位符，读取结果不会回填
+     * @param keys 失效的键，为 null 表示整个缓存
+     */
+    public void invalidateLocal(Collection<?> keys) {
+        if (keys == null) {
+            l1.clear();
+        } else {
+            for (Object key : keys) {
+                l1.remove(key);
+            }
+        }
+    }
+
+    public int getLocalSize() {
+        return l1.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void publish(Collection<?> keys) {
+        bus.publish(new CacheInvalidationBus.Invalidation(nodeId, getName(), keys));
+    }
+
+    private ValueWrapper getLocal(Object key) {
+        Entry entry = l1.get(key);
+        if (entry == null || entry.value == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            l1.remove(key, entry);
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.value;
+    }
+
+    private void putLocal(Object key, ValueWrapper value) {
+        l1.put(key, new Entry(value, System.currentTimeMillis() + ttlMs));
+        evictIfNeeded();
+    }
+
+    /**
+     * 放入该键的加载占位符；已有其他线程在加载时返回 null，本次读取结果不回填
+     */
+    private Entry startLoading(Object key) {
+        Entry loading = new Entry(null, 0L);
+        return l1.putIfAbsent(key, loading) == null ? loading : null;
+    }
+
+    private void finishLoading(Object key, Entry loading, ValueWrapper value) {
+        if (loading != null && l1.replace(key, loading, new Entry(value, System.currentTimeMillis() + ttlMs))) {
+            evictIfNeeded();
+        }
+    }
+
+    private void cancelLoading(Object key, Entry loading) {
+        if (loading != null) {
+            l1.remove(key, loading);
+        }
+    }
+
+    /**
+     * 超过 maxSize 时淘汰最久未访问的条目，一次淘汰到 maxSize 的90%，避免每次写入都扫描
+     */
+    private void evictIfNeeded() {
+        if (l1.size() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int excess = l1.size() - (maxSize - maxSize / 10);
+            if (excess <= 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            // 最大堆，保留最久未访问的 excess 个条目
+            PriorityQueue<Candidate> oldest = new PriorityQueue<>(excess + 1,
+                    (a, b) -> Long.compare(b.lastAccess, a.lastAccess));
+            for (Map.Entry<Object, Entry> mapEntry : l1.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                if (entry.value == null) {
+                    continue;
+                }
+                if (entry.expiresAt < now) {
+                    l1.remove(mapEntry.getKey(), entry);
+                    continue;
+                }
+                oldest.offer(new Candidate(mapEntry.getKey(), entry));
+                if (oldest.size() > excess) {
+                    oldest.poll();
+                }
+            }
+            for (Candidate candidate : oldest) {
+                l1.remove(candidate.key, candidate.entry);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * L1 条目；value 为 null 表示加载占位符
+     */
+    private static final class Entry {
+        private final ValueWrapper value;
+        private final long expiresAt;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(ValueWrapper value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Candidate {
+        private final Object key;
+        private final Entry entry;
+        // 淘汰期间条目仍可能被访问，排序使用快照
+        private final long lastAccess;
+
+        private Candidate(Object key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+}
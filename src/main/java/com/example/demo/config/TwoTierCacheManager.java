@@ -0,0 +1,121 @@
+package com.example.demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 两级缓存管理器
+ * 为配置了 L1 的缓存在 L2 缓存管理器（RedissonSpringCacheManager）前面加一层进程内缓存，
+ * 其他缓存直接使用 L2。各节点通过 {@link CacheInvalidationBus} 互相通知丢弃 L1 条目。
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager {
+
+    private final CacheManager l2CacheManager;
+    private final Map<String, L1Config> l1Configs;
+    private final CacheInvalidationBus bus;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public TwoTierCacheManager(CacheManager l2CacheManager, Map<String, L1Config> l1Configs, CacheInvalidationBus bus) {
+        this.l2CacheManager = l2CacheManager;
+        this.l1Configs = new HashMap<>(l1Configs);
+        this.bus = bus;
+        bus.subscribe(this::onInvalidation);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache l2 = l2CacheManager.getCache(name);
+        if (l2 == null) {
+            return null;
+        }
+        L1Config config = l1Configs.get(name);
+        Cache created = config != null
+                ? new TwoTierCache(l2, config.getMaxSize(), config.getTtlMs(), nodeId, bus)
+                : l2;
+        Cache existing = caches.putIfAbsent(name, created);
+        return existing != null ? existing : created;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return l2CacheManager.getCacheNames();
+    }
+
+    /**
+     * 通知所有节点丢弃指定缓存中的 L1 条目（直接修改了 L2 数据时使用，例如批量删除 Redis 字段）
+     * 缓存没有配置 L1 时不做任何事
+     * @param keys 失效的键，为 null 表示整个缓存
+     */
+    public void invalidate(String cacheName, Collection<?> keys) {
+        Cache cache = getCache(cacheName);
+        if (cache instanceof TwoTierCache) {
+            ((TwoTierCache) cache).invalidate(keys);
+        }
+    }
+
+    /**
+     * 获取各缓存的 L1 统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Cache> entry : caches.entrySet()) {
+            if (entry.getValue() instanceof TwoTierCache) {
+                TwoTierCache cache = (TwoTierCache) entry.getValue();
+                Map<String, Object> cacheStatistics = new HashMap<>();
+                cacheStatistics.put("size", cache.getLocalSize());
+                cacheStatistics.put("hits", cache.getHits());
+                cacheStatistics.put("misses", cache.getMisses());
+                statistics.put(entry.getKey(), cacheStatistics);
+            }
+        }
+        return statistics;
+    }
+
+    private void onInvalidation(CacheInvalidationBus.Invalidation invalidation) {
+        if (nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        Cache cache = caches.get(invalidation.getCacheName());
+        if (cache instanceof TwoTierCache) {
+            ((TwoTierCache) cache).invalidateLocal(invalidation.getKeys());
+            log.debug("🧹 收到缓存失效消息: cache={}, keys={}", invalidation.getCacheName(),
+                    invalidation.isClear() ? "ALL" : invalidation.getKeys().size());
+        }
+    }
+
+    /**
+     * 单个缓存的 L1 配置
+     */
+    public static class L1Config {
+        private final int maxSize;
+        private final long ttlMs;
+
+        public L1Config(int maxSize, long ttlMs) {
+            this.maxSize = maxSize;
+            this.ttlMs = ttlMs;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.DeletePolicyRequestDto;
+import com.example.demo.dto.PolicyAssignmentProgress;
 import com.example.demo.dto.PolicyDto;
 import com.example.demo.model.entity.Policy;
 import com.example.demo.service.PolicyAdminService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
 
 /**
  * 管理端控制器，用于策略的创建、更新、分配和删除。
@@ -31,16 +34,62 @@ public class AdminController {
 
     /**
      * 批量为多个客户端分配同一个策略。
-     * @param clientIdsList 客户端ID列表
+     * 请求体为客户端ID的JSON数组，服务端流式读取后提交异步任务，策略的关联集合被替换为该列表。
+     * @param clientIdsJson 客户端ID的JSON数组
      * @param policyId 策略ID
-     * @return 操作结果
+     * @return HTTP 202 和任务进度（包含任务ID）
      */
     @PostMapping("/clients/assign/{policyId}")
-    public String assignPolicyToClients(@RequestBody List<String> clientIdsList, @PathVariable Long policyId) {
-        policyAdminService.assignPolicyToClients(clientIdsList, policyId);
+    public ResponseEntity<PolicyAssignmentProgress> assignPolicyToClients(InputStream clientIdsJson, @PathVariable Long policyId) throws IOException {
+        return ResponseEntity.accepted().body(policyAdminService.submitAssignment(policyId, clientIdsJson));
+    }
+
+    /**
+     * 查询批量分配任务进度。
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @GetMapping("/clients/assign/jobs/{jobId}")
+    public ResponseEntity<PolicyAssignmentProgress> getAssignmentProgress(@PathVariable String jobId) {
+        PolicyAssignmentProgress progress = policyAdminService.getAssignmentProgress(jobId);
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progress);
+    }
+
+    /**
+     * 为组织分配策略，策略对该组织的整个子树生效。
+     * @param orgId 组织ID
+     * @param policyId 策略ID
+     * @return 操作结果
+     */
+    @PostMapping("/organization/{orgId}/assign/{policyId}")
+    public String assignPolicyToOrganization(@PathVariable String orgId, @PathVariable Long policyId) {
+        policyAdminService.assignPolicyToOrganization(orgId, policyId);
         return "OK";
     }
 
+    /**
+     * 移除组织的策略分配。
+     * @param orgId 组织ID
+     * @return 操作结果
+     */
+    @PostMapping("/organization/{orgId}/unassign")
+    public String unassignPolicyFromOrganization(@PathVariable String orgId) {
+        policyAdminService.unassignPolicyFromOrganization(orgId);
+        return "OK";
+    }
+
+    /**
+     * 获取所有组织直接绑定的策略。
+     * @return 组织ID -> 策略ID
+     */
+    @GetMapping("/organization/policies")
+    public Map<String, Long> getOrganizationPolicies() {
+        return policyAdminService.getOrganizationPolicies();
+    }
+
     @PostMapping("/policy")
     public Policy createOrUpdatePolicy(@RequestBody PolicyDto policyDto) {
         return policyAdminService.createOrUpdatePolicy(policyDto);
@@ -1,13 +1,22 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.BatchHeartbeatRequest;
+import com.example.demo.dto.BatchHeartbeatResponse;
 import com.example.demo.dto.HeartbeatRequest;
 import com.example.demo.dto.HeartbeatResponse;
 import com.example.demo.model.entity.Policy;
 import com.example.demo.service.HeartbeatService;
 import com.example.demo.service.impl.HostOnlineStatusMonitorService;
+import com.example.demo.service.impl.PolicyPushService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -16,10 +25,17 @@ public class HeartbeatController {
 
     private final HeartbeatService heartbeatService;
     private final HostOnlineStatusMonitorService monitorService;
+    private final PolicyPushService policyPushService;
 
-    public HeartbeatController(HeartbeatService heartbeatService, HostOnlineStatusMonitorService monitorService) {
+    // 单次批量心跳允许的最大心跳数量
+    @Value("${heartbeat.batch.max-size:5000}")
+    private int maxBatchSize;
+
+    public HeartbeatController(HeartbeatService heartbeatService, HostOnlineStatusMonitorService monitorService,
+                               PolicyPushService policyPushService) {
         this.heartbeatService = heartbeatService;
         this.monitorService = monitorService;
+        this.policyPushService = policyPushService;
     }
 
     @PostMapping("/heartbeat")
@@ -28,6 +44,21 @@ public class HeartbeatController {
         return heartbeatService.handleHeartbeat(request);
     }
     
+    /**
+     * 批量心跳接口（中继/网关代理汇总多个客户端的心跳后一次性上报）
+     * 在线状态和生效策略都通过批量查询解析，返回每个客户端的精简结果
+     */
+    @PostMapping("/heartbeats/batch")
+    public ResponseEntity<BatchHeartbeatResponse> handleHeartbeats(@RequestBody BatchHeartbeatRequest request) {
+        if (request == null || request.getHeartbeats() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.getHeartbeats().size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(heartbeatService.handleHeartbeats(request.getHeartbeats()));
+    }
+    
     /**
      * 兼容性接口：简单的策略检查（旧版本兼容）
      */
@@ -39,6 +70,24 @@ public class HeartbeatController {
         return heartbeatService.checkPolicies(clientId, currentPoliciesHash);
     }
 
+    /**
+     * 策略变更推送流（SSE）。
+     * 连接建立后立即推送一次当前生效策略，之后在策略分配、激活、状态变更、删除时实时推送，
+     * 事件名为 policy，数据格式与心跳响应相同；服务端定期发送注释行保活。
+     * Spring MVC 对 text/event-stream 的响应式返回值不设置异步超时，只有这个接口的连接不过期，
+     * 其他异步请求仍使用默认超时；连接的生命周期由 heartbeat.push.stream-max-lifetime-ms 控制。
+     * 
+     * @param clientId 客户端ID
+     * @return 策略事件流
+     */
+    @GetMapping(value = "/client/{clientId}/policy-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<HeartbeatResponse>>> streamClientPolicy(@PathVariable String clientId) {
+        if (clientId == null || clientId.trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(policyPushService.openStream(clientId));
+    }
+
     /**
      * 获取客户端当前生效的策略（新增）。
      * 该接口为客户端提供了查询最新策略的功能。
@@ -89,4 +138,15 @@ public class HeartbeatController {
         HostOnlineStatusMonitorService.HostOnlineStatistics statistics = monitorService.getOnlineStatistics();
         return ResponseEntity.ok(statistics);
     }
+
+    /**
+     * 获取心跳处理指标
+     * 包括按客户端单飞合并的命中率、心跳写回缓冲、超时时间轮、策略纪元和策略推送连接等统计
+     */
+    @GetMapping("/heartbeat/metrics")
+    public ResponseEntity<Map<String, Object>> getHeartbeatMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(heartbeatService.getHeartbeatMetrics());
+        metrics.put("policyPush", policyPushService.getStatistics());
+        return ResponseEntity.ok(metrics);
+    }
 }
@@ -2,16 +2,25 @@ package com.example.demo.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.HostCursorPage;
 import com.example.demo.dto.HostDto;
+import com.example.demo.dto.HostImportResult;
 import com.example.demo.dto.HostQueryDto;
 import com.example.demo.model.entity.Host;
 import com.example.demo.model.enums.AuthStatus;
 import com.example.demo.model.enums.OnlineStatus;
 import com.example.demo.service.HostService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -76,15 +85,65 @@ public class HostController {
 
     /**
      * 分页查询主机列表
+     * 请求中带 cursor 字段（第一页传空字符串）时使用游标分页，返回 {@link HostCursorPage}；否则按页码分页
      */
     @PostMapping("/search")
-    public ResponseEntity<ApiResponse<IPage<Host>>> searchHosts(@RequestBody HostQueryDto queryDto) {
+    public ResponseEntity<ApiResponse<Object>> searchHosts(@RequestBody HostQueryDto queryDto) {
         try {
+            if (queryDto != null && queryDto.getCursor() != null) {
+                HostCursorPage hosts = hostService.getHostsByCursor(queryDto);
+                return ResponseEntity.ok(ApiResponse.success(hosts));
+            }
             IPage<Host> hosts = hostService.getHostsByPage(queryDto);
             return ResponseEntity.ok(ApiResponse.success(hosts));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.errorWithType(400, e.getMessage()));
         } catch (Exception e) {
-            return ResponseEntity.status(500).body(ApiResponse.<IPage<Host>>errorWithType(500, "查询主机列表失败: " + e.getMessage()));
+            return ResponseEntity.status(500).body(ApiResponse.errorWithType(500, "查询主机列表失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 批量导入主机（CSV 或 NDJSON）
+     * 请求体流式解析，按MAC地址新建或更新主机，返回逐行的错误报告。
+     * 格式由 format 参数指定（csv/ndjson），未指定时根据 Content-Type 判断（text/csv 或 application/x-ndjson）
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ApiResponse<HostImportResult>> importHosts(
+            InputStream body,
+            @RequestParam(required = false) String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType) {
+        try {
+            HostImportResult result = hostService.importHosts(body, StringUtils.hasText(format) ? format : contentType);
+            return ResponseEntity.ok(ApiResponse.success(result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.<HostImportResult>errorWithType(400, e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(ApiResponse.<HostImportResult>errorWithType(500, "批量导入主机失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 导出主机（CSV 或 NDJSON）
+     * 查询条件与 /search 相同（以查询参数传递），结果按主机ID顺序边读边写入响应，不分页也不统计总数。
+     * CSV 的表头与批量导入的列名一致，导出的文件可以直接再导入
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportHosts(HostQueryDto queryDto, @RequestParam(defaultValue = "csv") String format) {
+        String exportFormat = format.trim().toLowerCase(Locale.ROOT);
+        MediaType contentType;
+        if ("csv".equals(exportFormat)) {
+            contentType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else if ("ndjson".equals(exportFormat)) {
+            contentType = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+        } else {
+            return ResponseEntity.badRequest().body(ApiResponse.errorWithType(400, "不支持的导出格式: " + format + "（支持 csv、ndjson）"));
         }
+        StreamingResponseBody body = out -> hostService.exportHosts(queryDto, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"hosts." + exportFormat + "\"")
+                .body(body);
     }
 
     /**
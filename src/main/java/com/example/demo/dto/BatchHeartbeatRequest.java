@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量心跳请求（中继/网关代理汇总多个客户端的心跳后一次性上报）
+ */
+@Data
+public class BatchHeartbeatRequest {
+    /**
+     * 中继代理标识（可选，仅用于日志）
+     */
+    private String relayId;
+
+    /**
+     * 各客户端的心跳，同一客户端出现多次时以最后一条为准
+     */
+    private List<HeartbeatRequest> heartbeats;
+}
@@ -0,0 +1,34 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量心跳响应
+ * 每个客户端的结果只包含 clientId 和必要字段，服务端时间戳在外层统一返回
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchHeartbeatResponse {
+    /**
+     * 服务端时间戳
+     */
+    private Long serverTimestamp;
+
+    /**
+     * 收到的心跳数量
+     */
+    private int received;
+
+    /**
+     * 有效处理的客户端数量（去重、去除无效请求后）
+     */
+    private int processed;
+
+    /**
+     * 各客户端的心跳结果
+     */
+    private List<HeartbeatResponse> results;
+}
@@ -24,6 +24,12 @@ public class HeartbeatRequest {
      */
     private Long lastPolicyUpdateTime;
 
+    /**
+     * 客户端最近一次从心跳响应中获得的策略纪元（可选）
+     * 与服务端当前纪元相同时说明期间没有任何策略变化，服务端直接返回 UP_TO_DATE
+     */
+    private Long policyEpoch;
+
     /**
      * 客户端版本信息（可选）
      */
@@ -9,6 +9,11 @@ import java.util.Map;
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL) // 重要: 序列化时不要包含null或空值的字段
 public class HeartbeatResponse {
+    /**
+     * 客户端ID（仅在批量心跳结果中填充）
+     */
+    private String clientId;
+
     /**
      * 是否需要更新策略
      */
@@ -26,8 +31,16 @@ public class HeartbeatResponse {
 
     /**
      * 当前生效的策略信息（新增）
+     * 心跳路径中为预序列化的JSON片段（RawValue），由Jackson原样写出
+     */
+    private Object effectivePolicy;
+
+    /**
+     * 策略字段级增量（updateType 为 POLICY_DELTA 时填充，此时不包含 effectivePolicy）
+     * 格式：{"baseFingerprint", "fingerprint", "changed": {字段: 新值}, "removed": [字段]}
+     * 客户端在持有的策略上应用增量后，用 fingerprint 校验结果
      */
-    private Map<String, Object> effectivePolicy;
+    private Object policyDelta;
 
     /**
      * 策略更新类型（新增）
@@ -35,6 +48,7 @@ public class HeartbeatResponse {
      * POLICY_UPDATED - 策略内容更新
      * POLICY_ACTIVATED - 策略激活状态变化
      * DEFAULT_POLICY - 使用默认策略
+     * POLICY_DELTA - 策略内容更新，只下发增量
      */
     private String updateType;
 
@@ -48,6 +62,16 @@ public class HeartbeatResponse {
      */
     private String message;
 
+    /**
+     * 服务端当前的策略纪元，客户端在下一次心跳中原样带回
+     */
+    private Long policyEpoch;
+
+    /**
+     * 服务端建议的下一次心跳间隔（毫秒），由当前负载和每个客户端固定的抖动决定
+     */
+    private Long nextHeartbeatMs;
+
     public HeartbeatResponse(boolean needsPolicyUpdate) {
         this.needsPolicyUpdate = needsPolicyUpdate;
         this.serverTimestamp = System.currentTimeMillis();
@@ -60,7 +84,7 @@ public class HeartbeatResponse {
         this.serverTimestamp = System.currentTimeMillis();
     }
 
-    public HeartbeatResponse(boolean needsPolicyUpdate, String updateType, Map<String, Object> effectivePolicy, String message) {
+    public HeartbeatResponse(boolean needsPolicyUpdate, String updateType, Object effectivePolicy, String message) {
         this.needsPolicyUpdate = needsPolicyUpdate;
         this.updateType = updateType;
         this.effectivePolicy = effectivePolicy;
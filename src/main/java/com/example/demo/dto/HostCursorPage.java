@@ -0,0 +1,39 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.entity.Host;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 主机游标分页结果
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HostCursorPage {
+    /**
+     * 本页主机
+     */
+    private List<Host> records;
+
+    /**
+     * 每页大小
+     */
+    private Integer size;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasMore;
+
+    /**
+     * 下一页的游标（没有下一页时为空），原样放入下一次请求的 cursor 字段
+     */
+    private String nextCursor;
+
+    /**
+     * 满足条件的主机总数（仅在请求 includeTotal=true 时返回）
+     */
+    private Long total;
+}
@@ -0,0 +1,90 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 主机批量导入结果
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HostImportResult {
+    /**
+     * 导入格式（csv/ndjson）
+     */
+    private String format;
+
+    /**
+     * 读取的数据行数（不包括CSV表头和空行）
+     */
+    private long total;
+
+    /**
+     * 新建的主机数量
+     */
+    private long inserted;
+
+    /**
+     * 按MAC地址匹配到并更新的主机数量
+     */
+    private long updated;
+
+    /**
+     * 按MAC地址匹配到、资料没有变化而未写入的主机数量
+     */
+    private long unchanged;
+
+    /**
+     * 失败的行数
+     */
+    private long failed;
+
+    /**
+     * 失败行的错误信息（最多返回 host.import.max-errors 条）
+     */
+    private List<RowError> errors = new ArrayList<>();
+
+    /**
+     * 错误信息是否因超过上限被截断
+     */
+    private boolean errorsTruncated;
+
+    /**
+     * 导入耗时（毫秒）
+     */
+    private long elapsedMs;
+
+    /**
+     * 一行数据的错误
+     */
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class RowError {
+        /**
+         * 数据在输入中的行号（从1开始，CSV包括表头行）
+         */
+        private long line;
+
+        /**
+         * 该行的MAC地址（无法解析时为空）
+         */
+        private String macAddress;
+
+        /**
+         * 错误信息
+         */
+        private String message;
+
+        public RowError() {
+        }
+
+        public RowError(long line, String macAddress, String message) {
+            this.line = line;
+            this.macAddress = macAddress;
+            this.message = message;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.example.demo.model.enums.HostStatus;
 import com.example.demo.model.enums.OnlineStatus;
 import com.example.demo.model.enums.TerminalType;
 import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
 
 import java.time.LocalDateTime;
 
@@ -53,21 +54,25 @@ public class HostQueryDto {
     /**
      * 创建时间开始
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private LocalDateTime createdAtStart;
 
     /**
      * 创建时间结束
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private LocalDateTime createdAtEnd;
 
     /**
      * 最后在线时间开始
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private LocalDateTime lastOnlineTimeStart;
 
     /**
      * 最后在线时间结束
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private LocalDateTime lastOnlineTimeEnd;
 
     /**
@@ -89,4 +94,16 @@ public class HostQueryDto {
      * 排序方向（ASC/DESC，默认DESC）
      */
     private String sortDirection = "DESC";
-}
\ No newline at end of file
+
+    /**
+     * 游标分页的继续令牌
+     * 为 null 时使用页码分页；为空字符串时按游标分页返回第一页，之后传入上一页返回的 nextCursor。
+     * 游标分页只支持按 createdAt、hostName、lastOnlineTime 排序，page 参数被忽略
+     */
+    private String cursor;
+
+    /**
+     * 游标分页时是否返回总数（需要额外执行一次 COUNT，默认不返回）
+     */
+    private Boolean includeTotal = false;
+}
@@ -0,0 +1,40 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 主机搜索索引把子串过滤解析出的候选主机
+ * 索引只反映本节点的修改和最近一次全量加载的结果，其他节点在 indexWatermark 之后创建或修改的主机可能不在候选列表中，
+ * 查询时需要同时包含 updated_at 不早于 indexWatermark 的主机，再用 LIKE 精确过滤。
+ * 列表为 null 表示该条件没有使用索引
+ */
+public final class HostSearchCandidates {
+
+    // 同时满足主机名称、IP/MAC地址条件的候选主机
+    private final List<Long> hostIds;
+
+    // 责任人字段满足条件的候选主机（按关联用户名称匹配的主机仍由数据库查询）
+    private final List<Long> responsibleIds;
+
+    // 索引可能遗漏其他节点修改的起始时间
+    private final LocalDateTime indexWatermark;
+
+    public HostSearchCandidates(List<Long> hostIds, List<Long> responsibleIds, LocalDateTime indexWatermark) {
+        this.hostIds = hostIds;
+        this.responsibleIds = responsibleIds;
+        this.indexWatermark = indexWatermark;
+    }
+
+    public List<Long> getHostIds() {
+        return hostIds;
+    }
+
+    public List<Long> getResponsibleIds() {
+        return responsibleIds;
+    }
+
+    public LocalDateTime getIndexWatermark() {
+        return indexWatermark;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.enums.AuthStatus;
+import com.example.demo.model.enums.HostStatus;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.model.enums.TerminalType;
+import lombok.Data;
+
+/**
+ * 按组织和状态分组的主机数量
+ */
+@Data
+public class HostStatusCount {
+    /**
+     * 组织架构ID
+     */
+    private String organizationId;
+
+    /**
+     * 终端类型
+     */
+    private TerminalType terminalType;
+
+    /**
+     * 主机状态
+     */
+    private HostStatus hostStatus;
+
+    /**
+     * 在线状态
+     */
+    private OnlineStatus onlineStatus;
+
+    /**
+     * 授权状态
+     */
+    private AuthStatus authStatus;
+
+    /**
+     * 主机数量
+     */
+    private Long hostCount;
+}
@@ -0,0 +1,76 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * 批量策略分配任务进度
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PolicyAssignmentProgress {
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 策略ID
+     */
+    private Long policyId;
+
+    /**
+     * 任务状态
+     * PENDING - 等待执行
+     * DIFFING - 正在与现有关联计算差异
+     * APPLYING - 正在分块写入
+     * COMPLETED - 已完成
+     * FAILED - 失败（已提交的分块不会回滚）
+     */
+    private String status;
+
+    /**
+     * 请求中的客户端数量（去重后）
+     */
+    private long requestedClients;
+
+    /**
+     * 保持不变的关联数量
+     */
+    private long retained;
+
+    /**
+     * 需要新增的关联数量
+     */
+    private long toInsert;
+
+    /**
+     * 需要删除的关联数量
+     */
+    private long toDelete;
+
+    /**
+     * 已新增的关联数量
+     */
+    private long inserted;
+
+    /**
+     * 已删除的关联数量
+     */
+    private long deleted;
+
+    /**
+     * 开始时间戳
+     */
+    private Long startedAt;
+
+    /**
+     * 结束时间戳
+     */
+    private Long finishedAt;
+
+    /**
+     * 失败原因
+     */
+    private String message;
+}
@@ -15,5 +15,6 @@ public class PolicyDto {
     private String status;
     private Boolean isDefault; // 是否为默认策略
     private Integer priority; // 优先级
+    private Boolean rollout; // 更新时是否分批发布，为空时使用 policy.rollout.default-enabled
     // DTO中通常不需要version, createdAt, updatedAt等由后端控制的字段
 }
@@ -3,7 +3,151 @@ package com.example.demo.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.demo.model.entity.ClientPolicyMapping;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface ClientPolicyMappingMapper extends BaseMapper<ClientPolicyMapping> {
+
+    /**
+     * 以流式游标逐行读取所有激活的策略映射（按激活时间升序，同一客户端后读到的为最近激活的一条）
+     * 结果不会整体加载到内存，由 handler 逐行处理
+     * @param handler 行处理器
+     */
+    void streamActiveMappings(ResultHandler<ClientPolicyMapping> handler);
+
+    /**
+     * 以流式游标逐行读取所有策略映射的 客户端ID/策略ID（包括未激活的，构建策略到客户端的反向索引使用）
+     * @param handler 行处理器
+     */
+    void streamAllMappings(ResultHandler<ClientPolicyMapping> handler);
+
+    /**
+     * 多行INSERT把批量分配请求中的客户端ID写入暂存表（允许重复，计算差异时去重）
+     * @param jobId 批量分配任务ID
+     * @param clientIds 客户端ID列表（调用方负责分块）
+     * @param stagedAt 暂存时间
+     * @return 插入行数
+     */
+    int insertStagedClientIds(@Param("jobId") Long jobId,
+                              @Param("clientIds") Collection<String> clientIds,
+                              @Param("stagedAt") LocalDateTime stagedAt);
+
+    /**
+     * 任务暂存的客户端数量（去重）
+     * @param jobId 批量分配任务ID
+     * @return 客户端数量
+     */
+    long countStagedClients(@Param("jobId") Long jobId);
+
+    /**
+     * 暂存的客户端中已经关联了策略的数量（这些关联保持不变）
+     * @param jobId 批量分配任务ID
+     * @param policyId 策略ID
+     * @return 客户端数量
+     */
+    long countRetainedClients(@Param("jobId") Long jobId, @Param("policyId") Long policyId);
+
+    /**
+     * 策略的关联中客户端不在暂存表中的数量（这些关联需要删除）
+     * @param policyId 策略ID
+     * @param jobId 批量分配任务ID
+     * @return 关联数量
+     */
+    long countUnstagedMappings(@Param("policyId") Long policyId, @Param("jobId") Long jobId);
+
+    /**
+     * 按客户端ID顺序读取下一块尚未关联策略的暂存客户端（需要新增的关联）
+     * @param jobId 批量分配任务ID
+     * @param policyId 策略ID
+     * @param afterClientId 上一块的最后一个客户端ID，第一块为 null
+     * @param limit 块大小
+     * @return 客户端ID列表（升序、去重）
+     */
+    List<String> selectStagedUnmapped(@Param("jobId") Long jobId,
+                                      @Param("policyId") Long policyId,
+                                      @Param("afterClientId") String afterClientId,
+                                      @Param("limit") int limit);
+
+    /**
+     * 按客户端ID顺序读取下一块客户端不在暂存表中的关联（需要删除的关联）
+     * @param policyId 策略ID
+     * @param jobId 批量分配任务ID
+     * @param afterClientId 上一块的最后一个客户端ID，第一块为 null
+     * @param limit 块大小
+     * @return 客户端ID列表（升序）
+     */
+    List<String> selectUnstagedMappings(@Param("policyId") Long policyId,
+                                        @Param("jobId") Long jobId,
+                                        @Param("afterClientId") String afterClientId,
+                                        @Param("limit") int limit);
+
+    /**
+     * 删除任务的全部暂存行
+     * @param jobId 批量分配任务ID
+     * @return 删除行数
+     */
+    int deleteStagedClientIds(@Param("jobId") Long jobId);
+
+    /**
+     * 删除早于指定时间的暂存行（节点在任务执行期间宕机留下的）
+     * @param threshold 时间阈值
+     * @return 删除行数
+     */
+    int deleteStagedBefore(@Param("threshold") LocalDateTime threshold);
+
+    /**
+     * 多行INSERT批量关联客户端与策略（新关联为非激活状态）
+     * @param policyId 策略ID
+     * @param clientIds 客户端ID列表（调用方负责分块）
+     * @param assignedAt 分配时间
+     * @return 插入行数
+     */
+    int batchInsertMappings(@Param("policyId") Long policyId,
+                            @Param("clientIds") Collection<String> clientIds,
+                            @Param("assignedAt") LocalDateTime assignedAt);
+
+    /**
+     * 批量删除客户端与策略的关联
+     * @param policyId 策略ID
+     * @param clientIds 客户端ID列表（调用方负责分块）
+     * @return 删除行数
+     */
+    int batchDeleteMappings(@Param("policyId") Long policyId,
+                            @Param("clientIds") Collection<String> clientIds);
+
+    /**
+     * 停用客户端的所有激活映射（单条UPDATE，与历史映射数量无关）
+     * @param clientId 客户端ID
+     * @return 被停用的行数
+     */
+    int deactivateAllForClient(@Param("clientId") String clientId);
+
+    /**
+     * 在一条UPDATE中激活客户端的指定策略并停用其他策略
+     * 只触及当前激活的映射和目标映射，调用方需先确认目标映射存在
+     * @param clientId 客户端ID
+     * @param policyId 要激活的策略ID
+     * @param activatedAt 激活时间
+     * @return 受影响行数
+     */
+    int activateExclusive(@Param("clientId") String clientId,
+                          @Param("policyId") Long policyId,
+                          @Param("activatedAt") LocalDateTime activatedAt);
+
+    /**
+     * 插入激活的映射，已存在时改为激活状态并更新激活时间（保留原分配时间）
+     * 依赖 (client_id, policy_id) 唯一索引，H2 和 MySQL/MariaDB 各有一个方言版本
+     * @param clientId 客户端ID
+     * @param policyId 策略ID
+     * @param now 分配/激活时间
+     * @return 受影响行数
+     */
+    int upsertActiveMapping(@Param("clientId") String clientId,
+                            @Param("policyId") Long policyId,
+                            @Param("now") LocalDateTime now);
 }
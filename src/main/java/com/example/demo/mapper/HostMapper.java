@@ -4,9 +4,17 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import com.example.demo.dto.HostStatusCount;
 import com.example.demo.model.entity.Host;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 主机注册管理 Mapper 接口
@@ -18,8 +26,121 @@ public interface HostMapper extends BaseMapper<Host> {
      * 分页查询主机列表（支持JOIN查询用户名）
      * @param page 分页参数
      * @param queryDto 查询条件
+     * @param search 搜索索引解析出的候选主机，为 null 时只使用 LIKE 过滤
      * @return 分页结果
      */
-    IPage<Host> selectHostsWithUserPage(@Param("page") Page<Host> page, @Param("query") HostQueryDto queryDto);
+    IPage<Host> selectHostsWithUserPage(@Param("page") Page<Host> page, @Param("query") HostQueryDto queryDto,
+                                        @Param("search") HostSearchCandidates search);
+
+    /**
+     * 游标（keyset）分页查询主机列表，按 (排序列, id) 排序
+     * @param queryDto 查询条件
+     * @param sortBy 排序字段（createdAt/hostName/lastOnlineTime）
+     * @param descending 是否倒序
+     * @param afterValue 上一页最后一行的排序值（可为 null）
+     * @param afterId 上一页最后一行的ID，为 null 表示第一页
+     * @param limit 读取行数
+     * @param search 搜索索引解析出的候选主机，为 null 时只使用 LIKE 过滤
+     * @return 主机列表
+     */
+    List<Host> selectHostsByCursor(@Param("query") HostQueryDto queryDto,
+                                   @Param("sortBy") String sortBy,
+                                   @Param("descending") boolean descending,
+                                   @Param("afterValue") Object afterValue,
+                                   @Param("afterId") Long afterId,
+                                   @Param("limit") int limit,
+                                   @Param("search") HostSearchCandidates search);
+
+    /**
+     * 统计满足查询条件的主机数量
+     * @param queryDto 查询条件
+     * @param search 搜索索引解析出的候选主机，为 null 时只使用 LIKE 过滤
+     * @return 主机数量
+     */
+    long countHosts(@Param("query") HostQueryDto queryDto, @Param("search") HostSearchCandidates search);
+
+    /**
+     * 以流式游标按主键顺序逐行读取满足查询条件的主机（主机导出使用）
+     * 结果不会整体加载到内存，由 handler 逐行处理；分页和排序参数被忽略
+     * @param queryDto 查询条件
+     * @param search 搜索索引解析出的候选主机，为 null 时只使用 LIKE 过滤
+     * @param handler 行处理器
+     */
+    void streamHosts(@Param("query") HostQueryDto queryDto, @Param("search") HostSearchCandidates search,
+                     ResultHandler<Host> handler);
+
+    /**
+     * 按 组织/终端类型/主机状态/在线状态/授权状态 分组统计主机数量
+     * @param organizationId 组织ID，为空时统计所有组织
+     * @return 每个分组的主机数量
+     */
+    List<HostStatusCount> countByStatus(@Param("organizationId") String organizationId);
+
+    /**
+     * 以流式游标逐行读取所有主机的子串搜索字段（ID/主机名称/IP地址/MAC地址/责任人）
+     * 结果不会整体加载到内存，由 handler 逐行处理
+     * @param handler 行处理器
+     */
+    void streamSearchFields(ResultHandler<Host> handler);
+
+    /**
+     * 批量更新主机最后在线时间（心跳写回缓冲使用）
+     * 单条UPDATE语句通过CASE为每台主机写入各自的时间
+     * @param lastSeen 主机ID -> 最后在线时间
+     * @param updatedAt 更新时间
+     * @return 受影响行数（不包括已不处于在线状态的主机）
+     */
+    int batchUpdateLastOnlineTime(@Param("lastSeen") Map<Long, LocalDateTime> lastSeen,
+                                  @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 查询 batchMarkOffline 实际标记为离线的主机
+     * @param hostIds 传给 batchMarkOffline 的主机ID列表
+     * @param updatedAt 传给 batchMarkOffline 的更新时间（需精确到秒，与数据库中保存的值相同）
+     * @return 由该次更新标记为离线的主机ID
+     */
+    List<Long> selectMarkedOffline(@Param("hostIds") Collection<Long> hostIds,
+                                   @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 批量将在线主机标记为离线（离线检测使用）
+     * @param hostIds 主机ID列表
+     * @param threshold 超时时间点，最后在线时间不早于该时间的主机（其他节点刚收到过心跳）不更新
+     * @param updatedAt 更新时间
+     * @return 实际从在线变为离线的行数
+     */
+    int batchMarkOffline(@Param("hostIds") Collection<Long> hostIds,
+                         @Param("threshold") LocalDateTime threshold,
+                         @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 以流式游标逐行读取所有主机的 MAC地址/组织ID（组织策略解析使用）
+     * 结果不会整体加载到内存，由 handler 逐行处理
+     * @param handler 行处理器
+     */
+    void streamClientOrganizations(ResultHandler<Host> handler);
+
+    /**
+     * 以流式游标逐行读取所有主机的 ID/MAC地址/IP地址/组织ID（批量导入校验唯一性使用）
+     * 结果不会整体加载到内存，由 handler 逐行处理
+     * @param handler 行处理器
+     */
+    void streamUniqueKeys(ResultHandler<Host> handler);
+
+    /**
+     * 多行INSERT批量创建主机（批量导入使用）
+     * @param hosts 主机列表（调用方负责分块，并填写ID、状态和时间）
+     * @return 插入行数
+     */
+    int batchInsertHosts(@Param("hosts") List<Host> hosts);
+
+    /**
+     * 批量更新已存在主机的资料（批量导入使用）
+     * 单条UPDATE语句通过CASE为每台主机写入各自的值，为空的可选字段保留原值
+     * @param hosts 主机列表（调用方负责分块）
+     * @param updatedAt 更新时间
+     * @return 受影响行数
+     */
+    int batchUpdateImportedHosts(@Param("hosts") List<Host> hosts, @Param("updatedAt") LocalDateTime updatedAt);
 
 }
\ No newline at end of file
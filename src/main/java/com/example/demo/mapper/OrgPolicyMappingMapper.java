@@ -0,0 +1,26 @@
+package com.example.demo.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.demo.model.entity.OrgPolicyMapping;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * 组织策略映射 Mapper 接口
+ */
+@Mapper
+public interface OrgPolicyMappingMapper extends BaseMapper<OrgPolicyMapping> {
+
+    /**
+     * 为组织绑定策略，组织已绑定其他策略时直接替换
+     * @param orgId 组织ID
+     * @param policyId 策略ID
+     * @param now 分配时间
+     * @return 受影响行数
+     */
+    int upsertOrgPolicy(@Param("orgId") String orgId,
+                        @Param("policyId") Long policyId,
+                        @Param("now") LocalDateTime now);
+}
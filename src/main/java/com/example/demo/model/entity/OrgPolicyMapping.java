@@ -0,0 +1,31 @@
+package com.example.demo.model.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 组织策略映射实体类
+ * 策略分配到组织节点后对该组织的整个子树生效
+ */
+@Data
+@TableName("org_policy_mappings")
+public class OrgPolicyMapping implements Serializable {
+    @TableId(type = IdType.AUTO)
+    @TableField("id")
+    private Long id; // 主键
+
+    @TableField("org_id")
+    private String orgId; // 组织ID
+
+    @TableField("policy_id")
+    private Long policyId; // 策略ID
+
+    @TableField("assigned_at")
+    private LocalDateTime assignedAt; // 分配时间
+}
@@ -38,6 +38,9 @@ public class Policy implements Serializable {
     @TableField("priority")
     private Integer priority; // 优先级，数值越大优先级越高
     
+    @TableField("fingerprint")
+    private String fingerprint; // 策略内容指纹，写入时计算，心跳直接比较
+    
     @TableField("created_at")
     private LocalDateTime createdAt;
     
@@ -1,9 +1,13 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.BatchHeartbeatResponse;
 import com.example.demo.dto.HeartbeatRequest;
 import com.example.demo.dto.HeartbeatResponse;
 import com.example.demo.model.entity.Policy;
 
+import java.util.List;
+import java.util.Map;
+
 public interface HeartbeatService {
     /**
      * 检查客户端策略，并返回相应的响应对象。
@@ -14,6 +18,18 @@ public interface HeartbeatService {
      * @return 一个 {@link HeartbeatResponse} 响应对象
      */
     HeartbeatResponse checkPolicies(String clientId, String clientPoliciesHash);
+
+    /**
+     * 检查客户端策略（携带策略纪元）。
+     * 客户端上报的纪元与服务端当前纪元相同时，说明期间没有任何影响该客户端的策略变化，
+     * 直接返回 UP_TO_DATE，不访问缓存和数据库。
+     *
+     * @param clientId 客户端的唯一标识
+     * @param clientPoliciesHash 客户端当前持有的策略聚合哈希
+     * @param clientPolicyEpoch 客户端最近一次获得的策略纪元，可以为null
+     * @return 一个 {@link HeartbeatResponse} 响应对象
+     */
+    HeartbeatResponse checkPolicies(String clientId, String clientPoliciesHash, Long clientPolicyEpoch);
     
     /**
      * 处理客户端心跳请求（新增）
@@ -24,6 +40,31 @@ public interface HeartbeatService {
      */
     HeartbeatResponse handleHeartbeat(HeartbeatRequest request);
 
+    /**
+     * 批量处理客户端心跳（中继/网关代理使用）。
+     * 在线状态和生效策略都通过按块的批量查询解析，返回每个客户端的精简结果。
+     *
+     * @param requests 心跳请求列表
+     * @return 批量心跳响应
+     */
+    BatchHeartbeatResponse handleHeartbeats(List<HeartbeatRequest> requests);
+
+    /**
+     * 构建包含完整生效策略的更新消息（策略推送使用）。
+     *
+     * @param clientId 客户端ID
+     * @param effectivePolicy 客户端当前生效的策略，可以为null
+     * @return 与心跳响应格式相同的策略更新消息
+     */
+    HeartbeatResponse buildPolicyUpdate(String clientId, Policy effectivePolicy);
+
+    /**
+     * 获取心跳处理指标（单飞合并命中率、写回缓冲、超时时间轮、策略纪元等）。
+     *
+     * @return 指标名称 -> 指标数据
+     */
+    Map<String, Object> getHeartbeatMetrics();
+
     /**
      * 获取客户端当前最新的生效策略（高并发缓存版本）。
      * 该方法会优先从缓存中获取策略，如果缓存中不存在则从数据库查询。
@@ -45,6 +86,7 @@ public interface HeartbeatService {
     /**
      * 预热客户端策略缓存（用于性能优化）。
      * 在策略发生变化时调用，提前计算并缓存结果。
+     * 在调用线程中同步执行，排队、去重和限流由 CachePrewarmScheduler 负责。
      *
      * @param clientId 客户端ID
      */
@@ -1,12 +1,17 @@
 package com.example.demo.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.example.demo.dto.HostCursorPage;
 import com.example.demo.dto.HostDto;
+import com.example.demo.dto.HostImportResult;
 import com.example.demo.dto.HostQueryDto;
 import com.example.demo.model.entity.Host;
 import com.example.demo.model.enums.AuthStatus;
 import com.example.demo.model.enums.OnlineStatus;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 
 /**
@@ -38,6 +43,14 @@ public interface HostService {
      */
     Host getHostByMacAddress(String macAddress);
 
+    /**
+     * 根据MAC地址批量获取主机信息（批量心跳使用，按块执行IN查询）
+     *
+     * @param macAddresses MAC地址集合
+     * @return 找到的主机列表
+     */
+    List<Host> getHostsByMacAddresses(java.util.Collection<String> macAddresses);
+
     /**
      * 根据IP地址和组织ID获取主机信息
      *
@@ -55,6 +68,36 @@ public interface HostService {
      */
     IPage<Host> getHostsByPage(HostQueryDto queryDto);
 
+    /**
+     * 游标分页查询主机信息
+     * 从游标位置继续读取，不计算偏移量，深翻页与第一页的代价相同
+     *
+     * @param queryDto 查询条件（cursor 为上一页返回的 nextCursor，空字符串表示第一页）
+     * @return 游标分页结果
+     */
+    HostCursorPage getHostsByCursor(HostQueryDto queryDto);
+
+    /**
+     * 批量导入主机（CSV 或 NDJSON）
+     * 输入流式解析，按MAC地址新建或更新主机，分批写入
+     *
+     * @param in 请求体（UTF-8）
+     * @param format 导入格式（csv/ndjson 或请求的 Content-Type）
+     * @return 导入结果和逐行错误报告
+     */
+    HostImportResult importHosts(InputStream in, String format) throws IOException;
+
+    /**
+     * 导出满足查询条件的主机（CSV 或 NDJSON）
+     * 通过数据库游标逐行读取并写入输出流，不在内存中保留结果集
+     *
+     * @param queryDto 查询条件（分页和排序参数被忽略，按主机ID顺序导出）
+     * @param format 导出格式（csv/ndjson）
+     * @param out 输出流
+     * @return 导出的主机数量
+     */
+    long exportHosts(HostQueryDto queryDto, String format, OutputStream out) throws IOException;
+
     /**
      * 根据组织ID获取主机列表
      *
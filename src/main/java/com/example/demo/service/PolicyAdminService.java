@@ -1,9 +1,14 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.PolicyAssignmentProgress;
 import com.example.demo.dto.PolicyDto;
 import com.example.demo.model.entity.Policy;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface PolicyAdminService {
 
@@ -30,11 +35,47 @@ public interface PolicyAdminService {
 
     /**
      * 为多个客户端分配同一个策略。
+     * 策略关联的客户端集合被替换为给定列表：只删除不在列表中的关联、新增列表中新出现的客户端，分块提交。
      * @param clientIdsList 客户端ID列表
      * @param policyId 策略ID (Long类型)
      */
     void assignPolicyToClients(List<String> clientIdsList, Long policyId);
 
+    /**
+     * 提交异步的批量分配任务，客户端列表从请求体（JSON字符串数组）流式读取。
+     * @param policyId 策略ID
+     * @param clientIdsJson 客户端ID的JSON数组
+     * @return 任务进度（包含任务ID）
+     */
+    PolicyAssignmentProgress submitAssignment(Long policyId, InputStream clientIdsJson) throws IOException;
+
+    /**
+     * 查询批量分配任务进度。
+     * @param jobId 任务ID
+     * @return 任务进度，任务不存在时返回null
+     */
+    PolicyAssignmentProgress getAssignmentProgress(String jobId);
+
+    /**
+     * 为组织分配策略，策略对该组织的整个子树生效。
+     * 组织已绑定其他策略时直接替换；子树中更近的组织或客户端自身激活的策略优先。
+     * @param orgId 组织ID
+     * @param policyId 策略ID
+     */
+    void assignPolicyToOrganization(String orgId, Long policyId);
+
+    /**
+     * 移除组织的策略分配。
+     * @param orgId 组织ID
+     */
+    void unassignPolicyFromOrganization(String orgId);
+
+    /**
+     * 获取所有组织直接绑定的策略。
+     * @return 组织ID -> 策略ID
+     */
+    Map<String, Long> getOrganizationPolicies();
+
     /**
      * 获取客户端关联的所有策略ID列表。
      * @param clientId 客户端ID
@@ -52,12 +93,20 @@ public interface PolicyAdminService {
 
     /**
      * 获取客户端当前生效的策略。
-     * 优先级：最新激活的非默认策略 > 默认策略
+     * 优先级：最新激活的非默认策略 > 所在组织子树的策略 > 默认策略
      * @param clientId 客户端ID
      * @return 生效的策略，如果不存在则返回null
      */
     Policy getEffectivePolicy(String clientId);
 
+    /**
+     * 批量获取客户端当前生效的策略（批量心跳使用）。
+     * 按块对客户端策略映射执行IN查询，没有激活策略的客户端使用默认策略。
+     * @param clientIds 客户端ID集合
+     * @return 客户端ID -> 生效策略，没有任何可用策略的客户端不在结果中
+     */
+    Map<String, Policy> getEffectivePolicies(Collection<String> clientIds);
+
     /**
      * 激活客户端的指定策略。
      * 将指定策略设为客户端的当前生效策略。
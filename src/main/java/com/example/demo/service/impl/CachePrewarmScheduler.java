@@ -0,0 +1,297 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 客户端缓存预热调度器
+ * 策略变更后的缓存预热统一提交到这里，由固定数量的工作线程按优先级、按令牌桶速率执行：
+ * <ul>
+ *   <li>去重：等待中的客户端再次提交不会重复入队，只会在优先级更高时提升优先级</li>
+ *   <li>优先级：单个客户端的分配/激活（HIGH）先于策略变更影响的批量客户端（LOW）</li>
+ *   <li>有界：等待中的客户端超过 prewarm.queue-capacity 时丢弃新提交并计数，预热只是优化，
+ *       未预热的客户端在下次心跳时按需加载</li>
+ * </ul>
+ * 需要先查询数据库才能得到客户端列表的批量预热，通过 {@link #scheduleAll(Supplier, Priority)}
+ * 在单独的加载线程中执行查询，不占用调用方线程。
+ */
+@Slf4j
+@Service
+public class CachePrewarmScheduler {
+
+    /**
+     * 预热优先级，数值越小越先执行
+     */
+    public enum Priority {
+        HIGH, LOW
+    }
+
+    @Autowired
+    private HeartbeatService heartbeatService;
+
+    // 预热工作线程数
+    @Value("${prewarm.workers:2}")
+    private int workers;
+
+    // 等待中的客户端数量上限
+    @Value("${prewarm.queue-capacity:100000}")
+    private int queueCapacity;
+
+    // 每秒最多预热的客户端数量，小于等于0表示不限流
+    @Value("${prewarm.rate-per-second:200}")
+    private double ratePerSecond;
+
+    // 令牌桶容量（允许的突发数量）
+    @Value("${prewarm.burst:50}")
+    private int burst;
+
+    // 等待执行的客户端列表加载任务数量上限
+    @Value("${prewarm.loader-queue-capacity:16}")
+    private int loaderQueueCapacity;
+
+    // 客户端ID -> 当前等待的优先级，队列中优先级不一致的任务是已被提升或已执行过的旧任务
+    private final Map<String, Priority> pending = new ConcurrentHashMap<>();
+    private final PriorityBlockingQueue<PrewarmTask> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder warmed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private TokenBucket tokenBucket;
+    private ThreadPoolExecutor workerPool;
+    private ThreadPoolExecutor loaderPool;
+
+    // 吞吐量采样
+    private volatile double warmedPerSecond;
+    private long lastSampleWarmed;
+    private long lastSampleNanos = System.nanoTime();
+
+    @PostConstruct
+    public void init() {
+        tokenBucket = new TokenBucket(ratePerSecond, burst);
+
+        workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreadFactory("cache-prewarm-worker"));
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::workLoop);
+        }
+
+        loaderPool = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(loaderQueueCapacity), daemonThreadFactory("cache-prewarm-loader"),
+                (task, executor) -> log.warn("⚠️ 预热加载任务积压已满，丢弃一次批量预热"));
+
+        log.info("🔥 缓存预热调度器已启动: 工作线程={}, 队列上限={}, 速率={}/s, 突发={}",
+                workers, queueCapacity, ratePerSecond > 0 ? ratePerSecond : "不限", burst);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (loaderPool != null) {
+            loaderPool.shutdownNow();
+        }
+        if (workerPool != null) {
+            workerPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 提交单个客户端的预热
+     * @return 是否入队（已在等待中或队列已满时返回 false）
+     */
+    public boolean schedule(String clientId, Priority priority) {
+        if (clientId == null || clientId.trim().isEmpty()) {
+            return false;
+        }
+        submitted.increment();
+
+        boolean[] enqueue = new boolean[1];
+        boolean[] full = new boolean[1];
+        pending.compute(clientId, (key, current) -> {
+            if (current == null) {
+                if (pending.size() >= queueCapacity) {
+                    full[0] = true;
+                    return null;
+                }
+                enqueue[0] = true;
+                return priority;
+            }
+            if (priority.compareTo(current) < 0) {
+                // 提升优先级，原任务出队时发现优先级不一致会被跳过
+                enqueue[0] = true;
+                return priority;
+            }
+            return current;
+        });
+
+        if (full[0]) {
+            dropped.increment();
+            return false;
+        }
+        if (!enqueue[0]) {
+            deduplicated.increment();
+            return false;
+        }
+        queue.offer(new PrewarmTask(clientId, priority, sequence.incrementAndGet()));
+        return true;
+    }
+
+    /**
+     * 批量提交客户端预热
+     * @return 入队的客户端数量
+     */
+    public int scheduleAll(Collection<String> clientIds, Priority priority) {
+        if (clientIds == null) {
+            return 0;
+        }
+        int accepted = 0;
+        for (String clientId : clientIds) {
+            if (schedule(clientId, priority)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * 在加载线程中获取客户端列表（例如查询数据库）后批量提交预热
+     */
+    public void scheduleAll(Supplier<? extends Collection<String>> clientIdsLoader, Priority priority) {
+        loaderPool.execute(() -> {
+            try {
+                scheduleAll(clientIdsLoader.get(), priority);
+            } catch (Exception e) {
+                log.warn("⚠️ 加载待预热客户端失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 取出并执行下一个预热任务
+     * @return 是否执行了预热（超时或跳过旧任务时返回 false）
+     */
+    boolean runNext(long timeout, TimeUnit unit) throws InterruptedException {
+        PrewarmTask task = queue.poll(timeout, unit);
+        if (task == null) {
+            return false;
+        }
+        // 只有与当前等待优先级一致的任务才执行，执行前移除以便执行期间的新提交重新入队
+        if (!pending.remove(task.clientId, task.priority)) {
+            return false;
+        }
+
+        tokenBucket.acquire();
+        try {
+            heartbeatService.preWarmClientPolicyCache(task.clientId);
+            warmed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            log.debug("⚠️ 预热客户端缓存失败: clientId={}, error={}", task.clientId, e.getMessage());
+        }
+        return true;
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                runNext(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("⚠️ 缓存预热工作线程异常: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定期采样预热吞吐量
+     */
+    @Scheduled(fixedDelayString = "${prewarm.sample-ms:5000}")
+    public synchronized void sample() {
+        long now = System.nanoTime();
+        long total = warmed.sum();
+        double elapsedSeconds = (now - lastSampleNanos) / 1_000_000_000.0;
+        if (elapsedSeconds > 0) {
+            warmedPerSecond = (total - lastSampleWarmed) / elapsedSeconds;
+        }
+        lastSampleWarmed = total;
+        lastSampleNanos = now;
+    }
+
+    /**
+     * 等待中的客户端数量
+     */
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * 获取预热调度器统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("queueDepth", pending.size());
+        statistics.put("submitted", submitted.sum());
+        statistics.put("deduplicated", deduplicated.sum());
+        statistics.put("dropped", dropped.sum());
+        statistics.put("warmed", warmed.sum());
+        statistics.put("failed", failed.sum());
+        statistics.put("warmedPerSecond", Math.round(warmedPerSecond * 10) / 10.0);
+        statistics.put("pendingLoads", loaderPool != null ? loaderPool.getQueue().size() : 0);
+        statistics.put("workers", workers);
+        statistics.put("ratePerSecond", ratePerSecond);
+        return statistics;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicLong counter = new AtomicLong();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * 队列中的预热任务，先按优先级、再按提交顺序排序
+     */
+    private static final class PrewarmTask implements Comparable<PrewarmTask> {
+        private final String clientId;
+        private final Priority priority;
+        private final long sequence;
+
+        private PrewarmTask(String clientId, Priority priority, long sequence) {
+            this.clientId = clientId;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(PrewarmTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.config.TwoTierCacheManager;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.model.entity.ClientPolicyMapping;
+import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.service.DynamicCacheService;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 客户端缓存反向索引
+ * 维护 策略ID -> 关联客户端集合 的反向索引，以及 客户端 -> 缓存键 的对应关系，
+ * 让每次策略变更只清除受影响客户端的缓存，而不是清空整个缓存。
+ * <p>
+ * 每个客户端的缓存分布在三层：
+ * <ul>
+ *   <li>Spring Cache clientPolicies（RedissonSpringCacheManager 的 RMapCache，字段为客户端ID）</li>
+ *   <li>Spring Cache clientEffectivePolicies（同上，历史版本写入，清除以免残留旧数据）</li>
+ *   <li>动态缓存 heartbeat:policy:&lt;clientId&gt; 和 heartbeat:hash:&lt;clientId&gt;（每个客户端一个键）</li>
+ * </ul>
+ * 一次清除的所有键在同一个 Redisson 批处理中发送。
+ * <p>
+ * 索引在启动时通过流式游标加载，之后由各写操作在事务提交后同步维护；定期全量重新加载修正其他实例上的修改。
+ * 加载期间本节点修改的关联在加载完成后重新查询，避免被游标读到的旧数据覆盖。
+ * 加载完成前按策略查询客户端会回退到数据库。
+ */
+@Slf4j
+@Service
+public class ClientCacheIndex {
+
+    // Spring Cache 中以客户端ID为键的缓存
+    private static final String[] CLIENT_SPRING_CACHES = {"clientPolicies", "clientEffectivePolicies"};
+
+    // 动态缓存中每个客户端的键前缀
+    private static final String[] CLIENT_KEY_PREFIXES = {
+            HeartbeatServiceImpl.POLICY_CACHE_PREFIX, HeartbeatServiceImpl.POLICY_HASH_CACHE_PREFIX};
+
+    // 单条 Redis 命令携带的键数量上限，避免超大命令阻塞 Redis
+    private static final int MAX_KEYS_PER_COMMAND = 1000;
+
+    @Autowired
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @Autowired(required = false)
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private CacheAvailabilityService cacheAvailabilityService;
+
+    @Autowired
+    private DynamicCacheService dynamicCacheService;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
+
+    // 策略ID -> 关联了该策略的客户端（包括未激活的关联）
+    private volatile Map<Long, Set<String>> clientsByPolicy = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile boolean loading;
+
+    // 加载期间关联发生变化的 策略ID -> 客户端，加载完成后重新查询
+    private final Map<Long, Set<String>> changedDuringLoad = new ConcurrentHashMap<>();
+
+    // 加载期间被删除的策略，加载完成后重新查询该策略的全部关联
+    private final Set<Long> policiesChangedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder evictedClients = new LongAdder();
+    private final LongAdder evictionBatches = new LongAdder();
+
+    /**
+     * 应用启动后加载反向索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * 定期全量重新加载，修正其他实例上的修改
+     */
+    @Scheduled(initialDelayString = "${policy.table.reload-interval-ms:600000}",
+               fixedDelayString = "${policy.table.reload-interval-ms:600000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 从数据库全量重新加载反向索引
+     */
+    public synchronized void reload() {
+        long startTime = System.currentTimeMillis();
+        loading = true;
+        try {
+            Map<Long, Set<String>> loaded = new ConcurrentHashMap<>();
+            clientPolicyMappingMapper.streamAllMappings(context -> {
+                ClientPolicyMapping mapping = context.getResultObject();
+                loaded.computeIfAbsent(mapping.getPolicyId(), id -> ConcurrentHashMap.newKeySet())
+                      .add(mapping.getClientId());
+            });
+            clientsByPolicy = loaded;
+
+            // 加载期间提交的修改作用在旧索引上，或被游标读到的旧数据覆盖，重新查询
+            while (!policiesChangedDuringLoad.isEmpty() || !changedDuringLoad.isEmpty()) {
+                for (Long policyId : new ArrayList<>(policiesChangedDuringLoad)) {
+                    policiesChangedDuringLoad.remove(policyId);
+                    refreshPolicy(policyId);
+                }
+                for (Long policyId : new ArrayList<>(changedDuringLoad.keySet())) {
+                    Set<String> clientIds = changedDuringLoad.remove(policyId);
+                    if (clientIds != null) {
+                        refreshMappings(policyId, clientIds);
+                    }
+                }
+            }
+            loading = false;
+
+            ready = true;
+            log.info("🗂️ 客户端缓存反向索引加载完成: 策略={}, 耗时={}ms",
+                    loaded.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            // 加载失败时修改已经作用在继续使用的索引上
+            changedDuringLoad.clear();
+            policiesChangedDuringLoad.clear();
+            log.error("❌ 加载客户端缓存反向索引失败，{}", ready ? "继续使用上一次加载的数据" : "将回退到数据库查询", e);
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * 获取关联了指定策略的客户端
+     */
+    public List<String> getClients(Long policyId) {
+        if (policyId == null) {
+            return Collections.emptyList();
+        }
+        if (!ready) {
+            return selectClients(policyId, null);
+        }
+        Set<String> clients = clientsByPolicy.get(policyId);
+        return clients != null ? new ArrayList<>(clients) : Collections.emptyList();
+    }
+
+    /**
+     * 客户端在动态缓存中独占的Redis键
+     * Spring Cache 中的数据是共享 RMapCache 里以客户端ID为字段的条目，不是独立的键
+     */
+    public List<String> getDynamicCacheKeys(String clientId) {
+        List<String> keys = new ArrayList<>(CLIENT_KEY_PREFIXES.length);
+        for (String prefix : CLIENT_KEY_PREFIXES) {
+            keys.add(prefix + clientId);
+        }
+        return keys;
+    }
+
+    /**
+     * 事务提交后记录客户端新增了与策略的关联
+     */
+    public void addMappingsAfterCommit(Long policyId, Collection<String> clientIds) {
+        if (policyId == null || clientIds == null || clientIds.isEmpty()) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(clientIds);
+        TransactionCallbacks.afterCommit(() -> {
+            clientsByPolicy.computeIfAbsent(policyId, id -> ConcurrentHashMap.newKeySet()).addAll(targets);
+            markChanged(policyId, targets);
+        });
+    }
+
+    /**
+     * 事务提交后移除客户端与策略的关联
+     */
+    public void removeMappingsAfterCommit(Long policyId, Collection<String> clientIds) {
+        if (policyId == null || clientIds == null || clientIds.isEmpty()) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(clientIds);
+        TransactionCallbacks.afterCommit(() -> {
+            Set<String> clients = clientsByPolicy.get(policyId);
+            if (clients != null) {
+                clients.removeAll(targets);
+            }
+            markChanged(policyId, targets);
+        });
+    }
+
+    /**
+     * 事务提交后移除策略的全部关联（策略被删除时使用）
+     */
+    public void removePolicyAfterCommit(Long policyId) {
+        if (policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            clientsByPolicy.remove(policyId);
+            if (loading) {
+                policiesChangedDuringLoad.add(policyId);
+            }
+        });
+    }
+
+    /**
+     * 事务提交后清除关联了指定策略的所有客户端（包括通过组织子树使用该策略的客户端）的缓存
+     * 客户端列表在调用时（事务提交前）确定，保证删除关联前的客户端也会被清除
+     */
+    public void evictPolicyClientsAfterCommit(Long policyId) {
+        List<String> clientIds = new ArrayList<>(getClients(policyId));
+        clientIds.addAll(orgPolicyResolver.getClientsByPolicy(policyId));
+        evictClientsAfterCommit(clientIds);
+    }
+
+    /**
+     * 事务提交后清除指定客户端在各层缓存中的数据
+     */
+    public void evictClientsAfterCommit(Collection<String> clientIds) {
+        if (clientIds == null || clientIds.isEmpty()) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(new LinkedHashSet<>(clientIds));
+        TransactionCallbacks.afterCommit(() -> evictClients(targets));
+    }
+
+    /**
+     * 在一个 Redisson 批处理中清除客户端在三层缓存中的数据
+     * Redis 不可用时动态缓存写在本地内存中，逐个清除
+     */
+    private void evictClients(List<String> clientIds) {
+        try {
+            if (redissonClient == null || !cacheAvailabilityService.isCacheAvailable()) {
+                for (String clientId : clientIds) {
+                    for (String key : getDynamicCacheKeys(clientId)) {
+                        dynamicCacheService.evict(key);
+                    }
+                }
+                return;
+            }
+
+            RBatch batch = redissonClient.createBatch();
+            for (int from = 0; from < clientIds.size(); from += MAX_KEYS_PER_COMMAND) {
+                List<String> chunk = clientIds.subList(from, Math.min(from + MAX_KEYS_PER_COMMAND, clientIds.size()));
+                String[] fields = chunk.toArray(new String[0]);
+                for (String cacheName : CLIENT_SPRING_CACHES) {
+                    batch.<String, Object>getMapCache(cacheName).fastRemoveAsync(fields);
+                }
+                List<String> keys = new ArrayList<>(chunk.size() * CLIENT_KEY_PREFIXES.length);
+                for (String clientId : chunk) {
+                    keys.addAll(getDynamicCacheKeys(clientId));
+                }
+                batch.getKeys().deleteAsync(keys.toArray(new String[0]));
+            }
+            batch.execute();
+
+            // 直接删除了 Redis 中的字段，还需要通知各节点丢弃进程内 L1 中的条目
+            if (cacheManager instanceof TwoTierCacheManager) {
+                for (int from = 0; from < clientIds.size(); from += MAX_KEYS_PER_COMMAND) {
+                    List<String> chunk = clientIds.subList(from, Math.min(from + MAX_KEYS_PER_COMMAND, clientIds.size()));
+                    for (String cacheName : CLIENT_SPRING_CACHES) {
+                        ((TwoTierCacheManager) cacheManager).invalidate(cacheName, chunk);
+                    }
+                }
+            }
+
+            evictionBatches.increment();
+            evictedClients.add(clientIds.size());
+            log.debug("🧹 已清除 {} 个客户端的策略缓存", clientIds.size());
+        } catch (Exception e) {
+            log.warn("⚠️ 清除客户端策略缓存失败: {} 个客户端, error={}", clientIds.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库重新查询策略的全部关联
+     */
+    private void refreshPolicy(Long policyId) {
+        List<String> clientIds = selectClients(policyId, null);
+        if (clientIds.isEmpty()) {
+            clientsByPolicy.remove(policyId);
+            return;
+        }
+        Set<String> clients = ConcurrentHashMap.newKeySet();
+        clients.addAll(clientIds);
+        clientsByPolicy.put(policyId, clients);
+    }
+
+    /**
+     * 从数据库重新查询指定客户端与策略的关联
+     */
+    private void refreshMappings(Long policyId, Set<String> clientIds) {
+        Set<String> mapped = new HashSet<>(selectClients(policyId, clientIds));
+        Set<String> clients = clientsByPolicy.computeIfAbsent(policyId, id -> ConcurrentHashMap.newKeySet());
+        clients.addAll(mapped);
+        for (String clientId : clientIds) {
+            if (!mapped.contains(clientId)) {
+                clients.remove(clientId);
+            }
+        }
+    }
+
+    /**
+     * 查询关联了策略的客户端，clientIds 不为 null 时只查询其中的客户端
+     */
+    private List<String> selectClients(Long policyId, Collection<String> clientIds) {
+        QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
+        mappingQuery.eq("policy_id", policyId).select("client_id");
+        if (clientIds != null) {
+            mappingQuery.in("client_id", clientIds);
+        }
+        return clientPolicyMappingMapper.selectList(mappingQuery)
+                .stream()
+                .map(ClientPolicyMapping::getClientId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 修改已作用于当前索引之后调用：加载期间的修改在加载完成后重新查询
+     */
+    private void markChanged(Long policyId, List<String> clientIds) {
+        if (!loading) {
+            return;
+        }
+        changedDuringLoad.compute(policyId, (id, clients) -> {
+            Set<String> merged = clients != null ? clients : new HashSet<>();
+            merged.addAll(clientIds);
+            return merged;
+        });
+    }
+
+    /**
+     * 获取反向索引统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        Map<Long, Set<String>> current = clientsByPolicy;
+        long mappings = 0;
+        for (Set<String> clients : current.values()) {
+            mappings += clients.size();
+        }
+        statistics.put("ready", ready);
+        statistics.put("policies", current.size());
+        statistics.put("mappings", mappings);
+        statistics.put("evictionBatches", evictionBatches.sum());
+        statistics.put("evictedClients", evictedClients.sum());
+        return statistics;
+    }
+}
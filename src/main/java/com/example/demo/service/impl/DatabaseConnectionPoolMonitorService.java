@@ -75,6 +75,29 @@ public class DatabaseConnectionPoolMonitorService {
         return status;
     }
 
+    /**
+     * 获取连接池压力（供心跳负载控制使用，开销很小，可以频繁调用）
+     * 0 表示空闲，1 表示所有连接都在使用；有线程等待连接时在 1 的基础上按等待数继续增加
+     */
+    public double getPoolPressure() {
+        try {
+            if (dataSource instanceof HikariDataSource) {
+                HikariDataSource hikariDataSource = (HikariDataSource) dataSource;
+                HikariPoolMXBean poolMXBean = hikariDataSource.getHikariPoolMXBean();
+                if (poolMXBean == null) {
+                    return 0.0;
+                }
+                int maxPoolSize = Math.max(1, hikariDataSource.getMaximumPoolSize());
+                int awaitingConnections = poolMXBean.getThreadsAwaitingConnection();
+                double usage = (double) poolMXBean.getActiveConnections() / maxPoolSize;
+                return awaitingConnections > 0 ? 1.0 + (double) awaitingConnections / maxPoolSize : usage;
+            }
+        } catch (Exception e) {
+            log.debug("⚠️ 读取连接池压力失败: {}", e.getMessage());
+        }
+        return 0.0;
+    }
+
     /**
      * 定时监控连接池状态（每分钟执行一次）
      */
@@ -0,0 +1,230 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.model.entity.ClientPolicyMapping;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存生效策略表
+ * 在进程内维护 客户端ID -> 激活策略ID 的映射，配合 {@link PolicyCatalog} 解析生效策略，心跳不再访问数据库和Redis。
+ * <p>
+ * 启动时通过流式游标一次性加载所有激活映射（不会把整个结果集读入内存），之后由 PolicyAdminServiceImpl
+ * 的每个写操作在事务提交后同步更新；定期全量重新加载作为对账（例如其他实例上发生的修改），
+ * 重新加载发现策略目录或激活映射有变化时推进全局纪元，让客户端重新检查策略。
+ * 加载完成前 {@link #isReady()} 为 false，调用方应回退到数据库查询。
+ * <p>
+ * 内存占用：每个客户端约 104 字节（17字符MAC地址形式的客户端ID，策略ID复用目录中的Long实例），
+ * 100万客户端约 100MB，测量方法见 heartbeat_api_documentation.md。
+ */
+@Slf4j
+@Service
+public class EffectivePolicyTable {
+
+    @Autowired
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @Autowired
+    private PolicyCatalog policyCatalog;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
+
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+
+    // 预估的客户端数量，用于一次性分配哈希表容量，避免加载过程中反复扩容
+    @Value("${policy.table.expected-clients:100000}")
+    private int expectedClients;
+
+    // 客户端ID -> 激活的策略ID（没有激活映射的客户端不在表中，使用默认策略）
+    private volatile Map<String, Long> activePolicies = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile boolean loading;
+
+    // 加载期间发生变化的客户端，加载完成后逐个重新查询
+    private final Set<String> changedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    private volatile long lastLoadDurationMs;
+
+    /**
+     * 应用启动后加载生效策略表
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * 定期全量重新加载，修正其他实例上的修改
+     */
+    @Scheduled(initialDelayString = "${policy.table.reload-interval-ms:600000}",
+               fixedDelayString = "${policy.table.reload-interval-ms:600000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 全量重新加载策略目录和激活映射
+     */
+    public synchronized void reload() {
+        long startTime = System.currentTimeMillis();
+        loading = true;
+        try {
+            boolean catalogChanged = policyCatalog.rebuild();
+            Map<String, Long> previous = activePolicies;
+
+            Map<String, Long> loaded = new ConcurrentHashMap<>(Math.max(16, Math.max(expectedClients, activePolicies.size()) * 4 / 3 + 1));
+            clientPolicyMappingMapper.streamActiveMappings(context -> {
+                ClientPolicyMapping mapping = context.getResultObject();
+                // 按激活时间升序读取，同一客户端后出现的映射覆盖之前的
+                loaded.put(mapping.getClientId(), canonicalPolicyId(mapping.getPolicyId()));
+            });
+            activePolicies = loaded;
+
+            // 加载期间提交的修改可能被游标读到的旧数据覆盖，逐个重新查询
+            while (!changedDuringLoad.isEmpty()) {
+                List<String> changed = new ArrayList<>(changedDuringLoad);
+                changedDuringLoad.removeAll(changed);
+                for (String clientId : changed) {
+                    refreshClient(clientId);
+                }
+            }
+            loading = false;
+
+            // 首次加载之前客户端还没有拿到过本节点的纪元，不需要推进
+            if (ready && (catalogChanged || !loaded.equals(previous))) {
+                log.info("🔢 重新加载发现策略变化（可能来自其他实例），推进全局策略纪元");
+                policyEpochTracker.bumpGlobal();
+            }
+
+            ready = true;
+            lastLoadDurationMs = System.currentTimeMillis() - startTime;
+            log.info("📋 内存生效策略表加载完成: 客户端={}, 策略={}, 耗时={}ms",
+                    loaded.size(), policyCatalog.size(), lastLoadDurationMs);
+        } catch (Exception e) {
+            log.error("❌ 加载内存生效策略表失败，{}", ready ? "继续使用上一次加载的数据" : "将回退到数据库查询", e);
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * 是否已完成加载
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 解析客户端当前生效的策略（与 PolicyAdminServiceImpl.getEffectivePolicy 规则一致）
+     * 激活的非默认策略处于启用状态时返回该策略，其次是客户端所在组织子树的策略，否则返回默认策略；没有默认策略时返回 null
+     */
+    public Policy resolve(String clientId) {
+        Long policyId = clientId != null ? activePolicies.get(clientId) : null;
+        if (policyId != null) {
+            Policy policy = policyCatalog.get(policyId);
+            if (policy != null && "enabled".equals(policy.getStatus()) && !Boolean.TRUE.equals(policy.getIsDefault())) {
+                return policy;
+            }
+        }
+        Policy orgPolicy = orgPolicyResolver.resolve(clientId);
+        if (orgPolicy != null) {
+            return orgPolicy;
+        }
+        return policyCatalog.getDefaultPolicy();
+    }
+
+    /**
+     * 事务提交后记录客户端激活了指定策略
+     */
+    public void setActivePolicyAfterCommit(String clientId, Long policyId) {
+        if (clientId == null || policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            activePolicies.put(clientId, canonicalPolicyId(policyId));
+            markChanged(clientId);
+        });
+    }
+
+    /**
+     * 事务提交后移除客户端与指定策略的激活关系（映射被删除时使用）
+     * 只移除当前激活的正是该策略的客户端
+     */
+    public void removeActivePolicyAfterCommit(Collection<String> clientIds, Long policyId) {
+        if (clientIds == null || clientIds.isEmpty() || policyId == null) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(clientIds);
+        TransactionCallbacks.afterCommit(() -> {
+            for (String clientId : targets) {
+                if (clientId != null && activePolicies.remove(clientId, policyId)) {
+                    markChanged(clientId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取生效策略表统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("ready", ready);
+        statistics.put("clients", activePolicies.size());
+        statistics.put("policies", policyCatalog.size());
+        statistics.put("hasDefaultPolicy", policyCatalog.getDefaultPolicy() != null);
+        statistics.put("lastLoadDurationMs", lastLoadDurationMs);
+        return statistics;
+    }
+
+    /**
+     * 从数据库重新读取单个客户端最近激活的策略
+     */
+    private void refreshClient(String clientId) {
+        QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
+        mappingQuery.select("policy_id")
+                    .eq("client_id", clientId)
+                    .eq("is_active", true)
+                    .orderByDesc("activated_at")
+                    .last("LIMIT 1");
+        ClientPolicyMapping mapping = clientPolicyMappingMapper.selectOne(mappingQuery);
+        if (mapping != null) {
+            activePolicies.put(clientId, canonicalPolicyId(mapping.getPolicyId()));
+        } else {
+            activePolicies.remove(clientId);
+        }
+    }
+
+    private void markChanged(String clientId) {
+        if (loading) {
+            changedDuringLoad.add(clientId);
+        }
+    }
+
+    /**
+     * 复用策略目录中的Long实例，避免每个客户端各持有一个装箱对象
+     */
+    private Long canonicalPolicyId(Long policyId) {
+        Policy policy = policyCatalog.get(policyId);
+        return policy != null ? policy.getId() : policyId;
+    }
+}
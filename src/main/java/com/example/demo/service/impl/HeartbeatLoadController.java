@@ -0,0 +1,209 @@
+package com.example.demo.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 心跳负载控制器
+ * 根据心跳请求速率、异步执行器队列积压和数据库连接池压力计算服务端建议的心跳间隔，
+ * 并为每个客户端叠加固定的抖动，让网络恢复或批量重启后步调一致的客户端逐渐错开。
+ * <p>
+ * 抖动由客户端ID确定性地计算：同一客户端每次拿到的偏移相同，不同客户端均匀分布在
+ * [-jitterRatio, +jitterRatio] 区间内，因此错开后的相位不会再次聚拢。
+ * <p>
+ * 同时记录最近实际下发的最长心跳间隔，离线检测据此放宽超时，而不是总按配置允许的上限放宽。
+ */
+@Slf4j
+@Service
+public class HeartbeatLoadController {
+
+    // 心跳间隔下限，避免抖动后间隔过短
+    private static final long MIN_INTERVAL_MS = 1000;
+
+    @Autowired
+    private DatabaseConnectionPoolMonitorService databaseConnectionPoolMonitorService;
+
+    // 正常负载下的心跳间隔
+    @Value("${heartbeat.interval.base-ms:60000}")
+    private long baseIntervalMs;
+
+    // 高负载时心跳间隔的上限
+    @Value("${heartbeat.interval.max-ms:600000}")
+    private long maxIntervalMs;
+
+    // 每个客户端的抖动比例（0.2 表示 ±20%）
+    @Value("${heartbeat.interval.jitter-ratio:0.2}")
+    private double jitterRatio;
+
+    // 单节点期望承受的心跳速率（次/秒），超过后按比例拉长间隔
+    @Value("${heartbeat.interval.target-rate:2000}")
+    private double targetRate;
+
+    // 异步执行器队列积压达到该值时视为满负载
+    @Value("${heartbeat.interval.queue-threshold:1000}")
+    private int queueThreshold;
+
+    // 连接池使用率达到该值时视为满负载
+    @Value("${heartbeat.interval.pool-threshold:0.7}")
+    private double poolThreshold;
+
+    // 被观察的执行器队列
+    private final List<BlockingQueue<?>> watchedQueues = new CopyOnWriteArrayList<>();
+
+    private final LongAdder heartbeats = new LongAdder();
+    private long lastSampleAt;
+
+    // 当前窗口和上一个窗口内下发的最长心跳间隔；窗口长度为可能下发的最长间隔，
+    // 因此上一个窗口内被告知间隔的客户端，到当前窗口结束时都已经到了下一次心跳的时间
+    private final AtomicLong issuedMaxMs = new AtomicLong();
+    private volatile long previousIssuedMaxMs;
+    private long issuedWindowStartedAt;
+
+    // 最近一次采样结果
+    private volatile double requestRate;
+    private volatile int queueDepth;
+    private volatile double poolPressure;
+    private volatile double loadFactor;
+    private volatile long currentIntervalMs;
+
+    @PostConstruct
+    public void init() {
+        currentIntervalMs = baseIntervalMs;
+        lastSampleAt = System.currentTimeMillis();
+        // 重启前的进程可能下发过直到上限的间隔，第一个窗口按上限处理
+        previousIssuedMaxMs = getMaxHeartbeatMs();
+        issuedWindowStartedAt = lastSampleAt;
+        log.info("🎚️ 心跳负载控制已启用: 基础间隔={}ms, 最大间隔={}ms, 抖动=±{}%",
+                baseIntervalMs, maxIntervalMs, Math.round(jitterRatio * 100));
+    }
+
+    /**
+     * 记录收到的心跳数量（批量心跳按客户端数计）
+     */
+    public void recordHeartbeats(int count) {
+        heartbeats.add(count);
+    }
+
+    /**
+     * 将执行器队列纳入负载计算
+     */
+    public void watchQueue(BlockingQueue<?> queue) {
+        if (queue != null) {
+            watchedQueues.add(queue);
+        }
+    }
+
+    /**
+     * 计算指定客户端下一次心跳的间隔（毫秒）
+     */
+    public long nextHeartbeatMs(String clientId) {
+        double offset = (jitterUnit(clientId) * 2 - 1) * jitterRatio;
+        long intervalMs = Math.max(MIN_INTERVAL_MS, Math.round(currentIntervalMs * (1 + offset)));
+        // 绝大多数调用不超过当前窗口的最大值，只读不写
+        if (intervalMs > issuedMaxMs.get()) {
+            issuedMaxMs.accumulateAndGet(intervalMs, Math::max);
+        }
+        return intervalMs;
+    }
+
+    /**
+     * 任何客户端可能被告知的最长心跳间隔（配置允许的上限）
+     */
+    public long getMaxHeartbeatMs() {
+        return Math.round(Math.max(maxIntervalMs, baseIntervalMs) * (1 + jitterRatio));
+    }
+
+    /**
+     * 仍可能有客户端在等待的最长心跳间隔：最近两个窗口内实际下发的最长间隔
+     */
+    public long getMaxIssuedHeartbeatMs() {
+        return Math.max(previousIssuedMaxMs, issuedMaxMs.get());
+    }
+
+    /**
+     * 定期采样负载并调整心跳间隔
+     * 负载升高时立即拉长间隔；负载回落时每次只缩短差值的四分之一，避免间隔来回振荡
+     */
+    @Scheduled(fixedDelayString = "${heartbeat.interval.sample-ms:1000}")
+    public void sample() {
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(1, now - lastSampleAt);
+        lastSampleAt = now;
+
+        if (now - issuedWindowStartedAt >= getMaxHeartbeatMs()) {
+            previousIssuedMaxMs = issuedMaxMs.getAndSet(0);
+            issuedWindowStartedAt = now;
+        }
+
+        double rate = heartbeats.sumThenReset() * 1000.0 / elapsed;
+        requestRate = requestRate == 0 ? rate : requestRate * 0.7 + rate * 0.3;
+
+        int depth = 0;
+        for (BlockingQueue<?> queue : watchedQueues) {
+            depth += queue.size();
+        }
+        queueDepth = depth;
+        poolPressure = databaseConnectionPoolMonitorService.getPoolPressure();
+
+        loadFactor = Math.max(requestRate / targetRate,
+                Math.max((double) queueDepth / queueThreshold, poolPressure / poolThreshold));
+
+        long upperBound = Math.max(maxIntervalMs, baseIntervalMs);
+        long targetIntervalMs = Math.min(upperBound, Math.round(baseIntervalMs * Math.max(1.0, loadFactor)));
+        long previousIntervalMs = currentIntervalMs;
+        if (targetIntervalMs >= previousIntervalMs) {
+            currentIntervalMs = targetIntervalMs;
+        } else {
+            currentIntervalMs = previousIntervalMs - (previousIntervalMs - targetIntervalMs + 3) / 4;
+        }
+
+        if (currentIntervalMs != previousIntervalMs && (currentIntervalMs > baseIntervalMs || previousIntervalMs > baseIntervalMs)) {
+            log.info("🎚️ 心跳间隔调整: {}ms -> {}ms (速率={}/s, 队列={}, 连接池压力={})",
+                    previousIntervalMs, currentIntervalMs, Math.round(requestRate), queueDepth,
+                    Math.round(poolPressure * 100) / 100.0);
+        }
+    }
+
+    /**
+     * 获取负载控制统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("requestRate", Math.round(requestRate * 100) / 100.0);
+        statistics.put("queueDepth", queueDepth);
+        statistics.put("poolPressure", Math.round(poolPressure * 100) / 100.0);
+        statistics.put("loadFactor", Math.round(loadFactor * 100) / 100.0);
+        statistics.put("intervalMs", currentIntervalMs);
+        statistics.put("maxIssuedIntervalMs", getMaxIssuedHeartbeatMs());
+        statistics.put("baseIntervalMs", baseIntervalMs);
+        statistics.put("jitterRatio", jitterRatio);
+        return statistics;
+    }
+
+    /**
+     * 将客户端ID映射为 [0, 1) 区间内的固定值
+     */
+    static double jitterUnit(String clientId) {
+        if (clientId == null) {
+            return 0.5;
+        }
+        // 对 String.hashCode 再做一次混合，使相近的ID（如连续的MAC地址）也能均匀分布
+        long h = clientId.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        return (h >>> 11) * 0x1.0p-53;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.demo.service.impl;
 
+import com.example.demo.config.TwoTierCacheManager;
+import com.example.demo.dto.BatchHeartbeatResponse;
 import com.example.demo.dto.HeartbeatRequest;
 import com.example.demo.dto.HeartbeatResponse;
 import com.example.demo.model.entity.Policy;
@@ -9,22 +11,31 @@ import com.example.demo.service.DynamicCacheService;
 import com.example.demo.service.HeartbeatService;
 import com.example.demo.service.HostService;
 import com.example.demo.service.PolicyAdminService;
+import com.example.demo.util.PolicyFingerprint;
+import com.example.demo.util.SingleFlight;
 import org.redisson.api.RMap;
 import org.redisson.api.RedissonClient;
+import com.fasterxml.jackson.databind.util.RawValue;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.security.MessageDigest;
-import java.nio.charset.StandardCharsets;
+import javax.annotation.PostConstruct;
+
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * 心跳服务实现类
@@ -49,9 +60,54 @@ public class HeartbeatServiceImpl implements HeartbeatService {
     @Autowired
     private HostService hostService;
     
+    @Autowired
+    private HostPresenceBuffer hostPresenceBuffer;
+
+    @Autowired
+    private HostOnlineStatusMonitorService hostOnlineStatusMonitorService;
+
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+
+    @Autowired
+    private HeartbeatLoadController heartbeatLoadController;
+
+    @Autowired
+    private PolicyResponseCache policyResponseCache;
+
+    @Autowired
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @Autowired
+    private CachePrewarmScheduler cachePrewarmScheduler;
+
+    @Autowired
+    private ClientCacheIndex clientCacheIndex;
+
+    @Autowired
+    private PolicyRolloutManager policyRolloutManager;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
+
+    @Autowired
+    private PolicyRevisionStore policyRevisionStore;
+
+    @Autowired
+    private HostSearchIndex hostSearchIndex;
+
+    @Autowired
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+    
     // 异步执行器，用于在线状态更新
-    private final Executor onlineStatusUpdateExecutor = Executors.newFixedThreadPool(
+    private final ThreadPoolExecutor onlineStatusUpdateExecutor = new ThreadPoolExecutor(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
             Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
             r -> {
                 Thread t = new Thread(r, "heartbeat-online-status-updater");
                 t.setDaemon(true); // 设置为守护线程
@@ -59,52 +115,70 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             }
     );
 
+    // 按客户端合并并发的策略查询和在线状态更新（客户端重试或重启时同一clientId的心跳可能并发到达）
+    // 策略查询按 客户端ID+纪元 合并：读到新纪元的心跳不会加入纪元推进之前开始的查询
+    private final SingleFlight<String, Policy> policyFlight = new SingleFlight<>();
+    private final SingleFlight<String, Void> presenceFlight = new SingleFlight<>();
+
     // 缓存配置常量
-    private static final String POLICY_CACHE_PREFIX = "heartbeat:policy:";
-    private static final String POLICY_HASH_CACHE_PREFIX = "heartbeat:hash:";
+    static final String POLICY_CACHE_PREFIX = "heartbeat:policy:";
+    static final String POLICY_HASH_CACHE_PREFIX = "heartbeat:hash:";
     private static final int CACHE_TTL_MINUTES = 30;
 
+    @PostConstruct
+    public void init() {
+        // 在线状态更新队列的积压作为心跳负载的输入之一
+        heartbeatLoadController.watchQueue(onlineStatusUpdateExecutor.getQueue());
+    }
+
     @Override
     public HeartbeatResponse checkPolicies(String clientId, String clientPoliciesHash) {
+        return checkPolicies(clientId, clientPoliciesHash, null);
+    }
+
+    @Override
+    public HeartbeatResponse checkPolicies(String clientId, String clientPoliciesHash, Long clientPolicyEpoch) {
+        return checkPolicies(clientId, clientPoliciesHash, clientPolicyEpoch, null);
+    }
+
+    /**
+     * 检查客户端策略
+     * @param clientPolicyVersion 客户端持有的策略版本号，提供时策略变化可以只下发增量
+     */
+    private HeartbeatResponse checkPolicies(String clientId, String clientPoliciesHash, Long clientPolicyEpoch,
+                                            String clientPolicyVersion) {
         // 参数验证
         if (!StringUtils.hasText(clientId)) {
             return new HeartbeatResponse(false, "INVALID_CLIENT", null, "客户端ID不能为空");
         }
 
         try {
-            // “心跳”逻辑：更新客户端在线状态
-            updateClientOnlineStatus(clientId);
+            // 服务端根据当前负载决定客户端下一次心跳的间隔，超时检测按该间隔放宽
+            heartbeatLoadController.recordHeartbeats(1);
+            long nextHeartbeatMs = heartbeatLoadController.nextHeartbeatMs(clientId);
             
-            // 获取客户端当前生效的策略
-            Policy effectivePolicy = getClientEffectivePolicy(clientId);
-            
-            if (effectivePolicy == null) {
-                // 没有生效策略，返回默认处理
-                return new HeartbeatResponse(false, "NO_POLICY", null, "客户端暂无分配策略");
-            }
-
-            // 计算当前策略的哈希值
-            String currentPolicyHash = calculatePolicyHash(effectivePolicy);
-            
-            // 比较哈希值，判断是否需要更新
-            boolean needsUpdate = !currentPolicyHash.equals(clientPoliciesHash);
+            // “心跳”逻辑：更新客户端在线状态
+            updateClientOnlineStatus(clientId, nextHeartbeatMs);
             
-            if (needsUpdate) {
-                // 需要更新，构建完整响应
-                Map<String, Object> policyData = convertPolicyToMap(effectivePolicy);
-                String updateType = determineUpdateType(clientPoliciesHash);
-                
-                HeartbeatResponse response = new HeartbeatResponse(true, updateType, policyData, "策略需要更新");
-                response.setLatestPoliciesHash(currentPolicyHash);
-                
-                log.info("🔄 客户端 {} 策略需要更新，类型: {}", clientId, updateType);
+            // 纪元快速路径：期间没有任何影响该客户端的策略变化，直接返回，不访问缓存和数据库
+            // 纪元必须在读取策略之前获取，读取期间发生的变化会推进纪元，下一次心跳自然会走完整检查
+            long currentEpoch = policyEpochTracker.currentEpoch(clientId);
+            if (policyEpochTracker.isUpToDate(clientId, clientPolicyEpoch, clientPoliciesHash)) {
+                log.trace("✅ 客户端 {} 策略纪元未变化: {}", clientId, currentEpoch);
+                HeartbeatResponse response = new HeartbeatResponse(false, "UP_TO_DATE", null, "策略已是最新");
+                response.setPolicyEpoch(currentEpoch);
+                response.setNextHeartbeatMs(nextHeartbeatMs);
                 return response;
-            } else {
-                // 不需要更新
-                log.debug("✅ 客户端 {} 策略已是最新", clientId);
-                return new HeartbeatResponse(false, "UP_TO_DATE", null, "策略已是最新");
             }
             
+            // 获取客户端当前生效的策略，同一客户端、同一纪元并发的心跳共享同一次查询
+            Policy effectivePolicy = policyFlight.execute(clientId + '@' + currentEpoch,
+                    () -> getClientEffectivePolicy(clientId));
+            HeartbeatResponse response = buildPolicyResponse(clientId, clientPoliciesHash, clientPolicyVersion,
+                    effectivePolicy, currentEpoch);
+            response.setNextHeartbeatMs(nextHeartbeatMs);
+            return response;
+            
         } catch (Exception e) {
             // 异常处理
             log.error("⚠️ 客户端 {} 心跳检查失败", clientId, e);
@@ -121,16 +195,15 @@ public class HeartbeatServiceImpl implements HeartbeatService {
 
         try {
             String clientId = request.getClientId();
-            log.info("💓 收到客户端 {} 的心跳信号，版本: {}", 
+            log.debug("💓 收到客户端 {} 的心跳信号，版本: {}", 
                     clientId, request.getClientVersion());
             
-            // “心跳”逻辑：更新客户端在线状态
-            updateClientOnlineStatus(clientId);
-            
-            // 检查策略是否需要更新
+            // 检查策略是否需要更新（checkPolicies 内部会更新客户端在线状态）
             HeartbeatResponse response = checkPolicies(
                     clientId, 
-                    request.getCurrentPoliciesHash()
+                    request.getCurrentPoliciesHash(),
+                    request.getPolicyEpoch(),
+                    request.getCurrentPolicyVersion()
             );
             
             // 在响应中添加心跳相关信息
@@ -145,12 +218,206 @@ public class HeartbeatServiceImpl implements HeartbeatService {
     }
 
     @Override
-    @Cacheable(value = "clientEffectivePolicies", key = "#clientId", condition = "@dynamicCacheService.isAvailable()")
+    public BatchHeartbeatResponse handleHeartbeats(List<HeartbeatRequest> requests) {
+        BatchHeartbeatResponse batchResponse = new BatchHeartbeatResponse();
+        batchResponse.setServerTimestamp(System.currentTimeMillis());
+        batchResponse.setReceived(requests != null ? requests.size() : 0);
+        batchResponse.setResults(new ArrayList<>());
+        if (requests == null || requests.isEmpty()) {
+            return batchResponse;
+        }
+
+        // 去除无效请求，同一客户端以最后一条心跳为准
+        Map<String, HeartbeatRequest> requestsByClient = new LinkedHashMap<>();
+        for (HeartbeatRequest request : requests) {
+            if (request != null && StringUtils.hasText(request.getClientId())) {
+                requestsByClient.put(request.getClientId(), request);
+            }
+        }
+        batchResponse.setProcessed(requestsByClient.size());
+        if (requestsByClient.isEmpty()) {
+            return batchResponse;
+        }
+
+        long startTime = System.currentTimeMillis();
+        
+        // 每个客户端各自的下一次心跳间隔（带各自的抖动）
+        heartbeatLoadController.recordHeartbeats(requestsByClient.size());
+        Map<String, Long> nextHeartbeatIntervals = new HashMap<>(requestsByClient.size() * 2);
+        for (String clientId : requestsByClient.keySet()) {
+            nextHeartbeatIntervals.put(clientId, heartbeatLoadController.nextHeartbeatMs(clientId));
+        }
+        
+        // “心跳”逻辑：批量更新客户端在线状态
+        updateClientsOnlineStatus(nextHeartbeatIntervals);
+
+        // 纪元未变化的客户端直接返回，其余客户端批量解析生效策略
+        Map<String, Long> currentEpochs = new HashMap<>(requestsByClient.size() * 2);
+        List<String> clientsToResolve = new ArrayList<>();
+        for (HeartbeatRequest request : requestsByClient.values()) {
+            String clientId = request.getClientId();
+            long currentEpoch = policyEpochTracker.currentEpoch(clientId);
+            currentEpochs.put(clientId, currentEpoch);
+            if (!policyEpochTracker.isUpToDate(clientId, request.getPolicyEpoch(), request.getCurrentPoliciesHash())) {
+                clientsToResolve.add(clientId);
+            }
+        }
+
+        Map<String, Policy> effectivePolicies;
+        try {
+            effectivePolicies = clientsToResolve.isEmpty()
+                    ? Collections.emptyMap()
+                    : policyAdminService.getEffectivePolicies(clientsToResolve);
+        } catch (Exception e) {
+            log.error("⚠️ 批量解析客户端策略失败: {} 个客户端", clientsToResolve.size(), e);
+            effectivePolicies = null;
+        }
+
+        Set<String> resolved = new HashSet<>(clientsToResolve);
+        for (HeartbeatRequest request : requestsByClient.values()) {
+            String clientId = request.getClientId();
+            long currentEpoch = currentEpochs.get(clientId);
+            HeartbeatResponse response;
+            if (!resolved.contains(clientId)) {
+                response = new HeartbeatResponse(false, "UP_TO_DATE", null, null);
+                response.setPolicyEpoch(currentEpoch);
+            } else if (effectivePolicies == null) {
+                response = new HeartbeatResponse(false, "ERROR", null, "检查策略时发生错误");
+            } else {
+                response = buildPolicyResponse(clientId, request.getCurrentPoliciesHash(),
+                        request.getCurrentPolicyVersion(), effectivePolicies.get(clientId), currentEpoch);
+                response.setMessage(null);
+            }
+            // 精简结果：时间戳统一在外层返回
+            response.setClientId(clientId);
+            response.setNextHeartbeatMs(nextHeartbeatIntervals.get(clientId));
+            response.setServerTimestamp(null);
+            batchResponse.getResults().add(response);
+        }
+
+        log.info("💓 批量心跳处理完成: 收到={}, 客户端={}, 解析策略={}, 耗时={}ms",
+                batchResponse.getReceived(), requestsByClient.size(), clientsToResolve.size(),
+                System.currentTimeMillis() - startTime);
+        return batchResponse;
+    }
+
+    @Override
+    public HeartbeatResponse buildPolicyUpdate(String clientId, Policy effectivePolicy) {
+        long currentEpoch = policyEpochTracker.currentEpoch(clientId);
+        HeartbeatResponse response = buildPolicyResponse(clientId, null, null, effectivePolicy, currentEpoch);
+        if (response.isNeedsPolicyUpdate()) {
+            response.setUpdateType("POLICY_UPDATED");
+            response.setMessage("策略已推送");
+        }
+        response.setClientId(clientId);
+        return response;
+    }
+
+    @Override
+    public Map<String, Object> getHeartbeatMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("policyLookup", singleFlightMetrics(policyFlight));
+        metrics.put("presenceUpdate", singleFlightMetrics(presenceFlight));
+        metrics.put("presenceBuffer", hostPresenceBuffer.getStatistics());
+        metrics.put("timingWheel", hostOnlineStatusMonitorService.getTimingWheelStatistics());
+        metrics.put("policyEpoch", policyEpochTracker.getStatistics());
+        metrics.put("load", heartbeatLoadController.getStatistics());
+        metrics.put("policyResponseCache", policyResponseCache.getStatistics());
+        metrics.put("policyDelta", policyRevisionStore.getStatistics());
+        metrics.put("effectivePolicyTable", effectivePolicyTable.getStatistics());
+        metrics.put("cachePrewarm", cachePrewarmScheduler.getStatistics());
+        metrics.put("clientCacheIndex", clientCacheIndex.getStatistics());
+        metrics.put("policyRollout", policyRolloutManager.getStatistics());
+        metrics.put("orgPolicy", orgPolicyResolver.getStatistics());
+        metrics.put("hostSearchIndex", hostSearchIndex.getStatistics());
+        metrics.put("hostCounters", hostStatisticsCounters.getStatistics());
+        if (cacheManager instanceof TwoTierCacheManager) {
+            metrics.put("nearCache", ((TwoTierCacheManager) cacheManager).getStatistics());
+        }
+        return metrics;
+    }
+
+    private Map<String, Object> singleFlightMetrics(SingleFlight<?, ?> singleFlight) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("executions", singleFlight.getExecutions());
+        metrics.put("coalesced", singleFlight.getCoalesced());
+        metrics.put("coalesceRate", singleFlight.getCoalesceRate());
+        metrics.put("inFlight", singleFlight.getInFlight());
+        return metrics;
+    }
+
+    /**
+     * 根据客户端持有的策略指纹和当前生效策略构建心跳响应
+     * 客户端提供了策略版本号、且本节点保留了客户端持有的版本时，只下发字段级增量
+     */
+    private HeartbeatResponse buildPolicyResponse(String clientId, String clientPoliciesHash, String clientPolicyVersion,
+                                                  Policy effectivePolicy, long currentEpoch) {
+        if (effectivePolicy == null) {
+            // 没有生效策略，返回默认处理
+            HeartbeatResponse response = new HeartbeatResponse(false, "NO_POLICY", null, "客户端暂无分配策略");
+            response.setPolicyEpoch(currentEpoch);
+            return response;
+        }
+
+        // 策略分批发布期间，尚未轮到的客户端继续拿到更新前的版本
+        effectivePolicy = policyRolloutManager.resolve(clientId, effectivePolicy);
+
+        // 策略指纹在写入时已计算好，这里直接比较
+        String currentPolicyHash = getPolicyFingerprint(effectivePolicy);
+        
+        // 比较指纹，判断是否需要更新
+        boolean needsUpdate = !currentPolicyHash.equals(clientPoliciesHash);
+
+        // 记录本次下发的纪元和指纹，客户端带着两者回来时才能走纪元快速路径
+        policyEpochTracker.recordIssued(clientId, currentEpoch, currentPolicyHash);
+        
+        if (needsUpdate) {
+            // 需要更新，构建完整响应（同一策略版本的JSON片段只序列化一次）
+            RawValue policyData = policyResponseCache.getEffectivePolicyJson(effectivePolicy, this::convertPolicyToMap);
+            String updateType = determineUpdateType(clientPoliciesHash);
+
+            // 客户端持有的版本仍保留时只下发增量
+            RawValue policyDelta = StringUtils.hasText(clientPolicyVersion)
+                    ? policyRevisionStore.getDelta(effectivePolicy, clientPoliciesHash, clientPolicyVersion,
+                            this::convertPolicyToMap, policyData)
+                    : null;
+            if (policyDelta != null) {
+                HeartbeatResponse response = new HeartbeatResponse(true, "POLICY_DELTA", null, "策略需要更新（增量）");
+                response.setPolicyDelta(policyDelta);
+                response.setLatestPoliciesHash(currentPolicyHash);
+                response.setPolicyEpoch(currentEpoch);
+                log.debug("🔄 客户端 {} 策略需要更新，下发增量", clientId);
+                return response;
+            }
+            policyRevisionStore.record(effectivePolicy, this::convertPolicyToMap);
+            
+            HeartbeatResponse response = new HeartbeatResponse(true, updateType, policyData, "策略需要更新");
+            response.setLatestPoliciesHash(currentPolicyHash);
+            response.setPolicyEpoch(currentEpoch);
+            
+            log.debug("🔄 客户端 {} 策略需要更新，类型: {}", clientId, updateType);
+            return response;
+        } else {
+            // 不需要更新，记录客户端持有的版本，策略变化后可以只下发增量
+            policyRevisionStore.record(effectivePolicy, this::convertPolicyToMap);
+            log.debug("✅ 客户端 {} 策略已是最新", clientId);
+            HeartbeatResponse response = new HeartbeatResponse(false, "UP_TO_DATE", null, "策略已是最新");
+            response.setPolicyEpoch(currentEpoch);
+            return response;
+        }
+    }
+
+    @Override
     public Policy getClientEffectivePolicy(String clientId) {
         if (!StringUtils.hasText(clientId)) {
             return null;
         }
 
+        // 内存生效策略表加载完成后直接在内存中解析，不访问缓存和数据库
+        if (effectivePolicyTable.isReady()) {
+            return effectivePolicyTable.resolve(clientId);
+        }
+
         try {
             // 使用动态缓存管理器获取缓存
             String cacheKey = POLICY_CACHE_PREFIX + clientId;
@@ -204,7 +471,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             // 缓存未命中，重新计算
             Policy policy = getClientEffectivePolicy(clientId);
             if (policy != null) {
-                String hash = calculatePolicyHash(policy);
+                String hash = getPolicyFingerprint(policy);
                 
                 // 缓存哈希值
                 dynamicCacheService.putString(hashCacheKey, "hash", hash, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
@@ -220,7 +487,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             log.warn("⚠️ 缓存哈希操作异常，重新计算: clientId={}, error={}", clientId, e.getMessage());
             // 异常时重新计算
             Policy policy = getClientEffectivePolicy(clientId);
-            return policy != null ? calculatePolicyHash(policy) : null;
+            return policy != null ? getPolicyFingerprint(policy) : null;
         }
     }
 
@@ -236,64 +503,45 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             return;
         }
 
-        // 异步预热缓存
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 预热策略缓存
-                Policy policy = policyAdminService.getEffectivePolicy(clientId);
-                if (policy != null) {
-                    // 缓存策略数据
-                    String cacheKey = POLICY_CACHE_PREFIX + clientId;
-                    Map<String, Object> policyData = convertPolicyToMap(policy);
-                    dynamicCacheService.putMap(cacheKey, policyData, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
-                    
-                    // 预热哈希缓存
-                    String hash = calculatePolicyHash(policy);
-                    String hashCacheKey = POLICY_HASH_CACHE_PREFIX + clientId;
-                    dynamicCacheService.putString(hashCacheKey, "hash", hash, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
-                    
-                    log.debug("🔥 客户端缓存预热完成({}): clientId={}, policyId={}", 
-                            dynamicCacheService.getCurrentMode(), clientId, policy.getId());
-                }
-                
-            } catch (Exception e) {
-                // 预热失败不影响主流程，只记录错误
-                log.warn("⚠️ 预热客户端缓存失败: clientId={}, error={}", clientId, e.getMessage());
+        // 在调用线程中同步预热，调度和限流由 CachePrewarmScheduler 负责
+        try {
+            // 预热策略缓存
+            Policy policy = policyAdminService.getEffectivePolicy(clientId);
+            if (policy != null) {
+                // 缓存策略数据
+                String cacheKey = POLICY_CACHE_PREFIX + clientId;
+                Map<String, Object> policyData = convertPolicyToMap(policy);
+                dynamicCacheService.putMap(cacheKey, policyData, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+
+                // 预热哈希缓存
+                String hash = getPolicyFingerprint(policy);
+                String hashCacheKey = POLICY_HASH_CACHE_PREFIX + clientId;
+                dynamicCacheService.putString(hashCacheKey, "hash", hash, CACHE_TTL_MINUTES, TimeUnit.MINUTES);
+
+                log.debug("🔥 客户端缓存预热完成({}): clientId={}, policyId={}",
+                        dynamicCacheService.getCurrentMode(), clientId, policy.getId());
             }
-        });
+
+        } catch (Exception e) {
+            // 预热失败不影响主流程，只记录错误
+            log.warn("⚠️ 预热客户端缓存失败: clientId={}, error={}", clientId, e.getMessage());
+        }
     }
 
     /**
-     * 计算策略的MD5哈希值
+     * 获取策略指纹
+     * 指纹在策略写入时计算并持久化；只有尚未回填指纹的历史数据才在这里临时计算
      */
-    private String calculatePolicyHash(Policy policy) {
+    private String getPolicyFingerprint(Policy policy) {
         if (policy == null) {
             return "";
         }
-
-        try {
-            StringBuilder hashInput = new StringBuilder();
-            hashInput.append(policy.getId()).append("|");
-            hashInput.append(policy.getName() != null ? policy.getName() : "").append("|");
-            hashInput.append(policy.getDescription() != null ? policy.getDescription() : "").append("|");
-            hashInput.append(policy.getStatus() != null ? policy.getStatus() : "").append("|");
-            hashInput.append(policy.getVersion() != null ? policy.getVersion() : "").append("|");
-            hashInput.append(policy.getPriority() != null ? policy.getPriority() : 0).append("|");
-            hashInput.append(policy.getUpdatedAt() != null ? policy.getUpdatedAt().toString() : "");
-
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(hashInput.toString().getBytes(StandardCharsets.UTF_8));
-            
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-            
-        } catch (Exception e) {
-            // 哈希计算失败时使用时间戳作为备用
-            return String.valueOf(System.currentTimeMillis());
+        String fingerprint = policy.getFingerprint();
+        if (StringUtils.hasText(fingerprint)) {
+            return fingerprint;
         }
+        log.debug("⚠️ 策略 {} 尚无指纹，临时计算", policy.getId());
+        return PolicyFingerprint.compute(policy);
     }
 
     /**
@@ -308,6 +556,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
         policyMap.put("version", policy.getVersion());
         policyMap.put("priority", policy.getPriority());
         policyMap.put("isDefault", policy.getIsDefault());
+        policyMap.put("fingerprint", policy.getFingerprint());
         policyMap.put("updatedAt", policy.getUpdatedAt() != null ? policy.getUpdatedAt().toString() : null);
         return policyMap;
     }
@@ -325,43 +574,41 @@ public class HeartbeatServiceImpl implements HeartbeatService {
 
 
     /**
-     * 异步更新客户端在线状态
-     * 通过客户端ID（通常为MAC地址）查找主机并更新在线状态
-     * 使用异步线程池执行，避免阻塞主线程，提高心跳接口响应性能
+     * 更新客户端在线状态
+     * 已确认在线的主机只在写回缓冲中记录心跳时间，不访问数据库；
+     * 其他情况（首次心跳、离线->在线）提交到异步线程池，通过客户端ID（通常为MAC地址）查找主机并更新在线状态
      * 
      * @param clientId 客户端ID（可能是MAC地址或其他唯一标识）
+     * @param heartbeatIntervalMs 告知客户端的下一次心跳间隔，用于计算超时时间
      */
-    private void updateClientOnlineStatus(String clientId) {
+    private void updateClientOnlineStatus(String clientId, long heartbeatIntervalMs) {
         if (!StringUtils.hasText(clientId)) {
             return;
         }
         
-        // 异步执行在线状态更新，不阻塞心跳主流程
-        CompletableFuture.runAsync(() -> {
+        // 快速路径：主机已确认在线，只记录最后在线时间，由写回缓冲批量刷新到数据库
+        Long knownHostId = hostPresenceBuffer.resolveHostId(clientId);
+        if (hostPresenceBuffer.touch(knownHostId)) {
+            hostOnlineStatusMonitorService.arm(knownHostId, heartbeatIntervalMs);
+            log.trace("💓 客户端 {} 心跳已写入缓冲，主机ID: {}", clientId, knownHostId);
+            return;
+        }
+        
+        // 慢速路径：异步执行在线状态更新，不阻塞心跳主流程
+        // 同一客户端已有进行中的更新任务时直接共享该任务，不重复提交
+        presenceFlight.executeAsync(clientId, () -> CompletableFuture.runAsync(() -> {
             try {
-                // 尝试通过不同方式查找主机
-                
-                // 方式1：尝试以clientId作为MAC地址查找
-                com.example.demo.model.entity.Host host = hostService.getHostByMacAddress(clientId);
-                
-                // 方式2：如果上面没找到，尝试以clientId作为主机ID查找
-                if (host == null) {
-                    try {
-                        Long hostId = Long.parseLong(clientId);
-                        host = hostService.getHostById(hostId);
-                    } catch (NumberFormatException e) {
-                        // clientId不是数字，忽略这个尝试
-                        log.trace("客户端ID {} 不是数字格式，跳过按ID查找", clientId);
-                    }
-                }
-                
-                // 方式3：如果还是没找到，可能需要其他逻辑（比如通过主机名查找）
-                // 这里可以根据实际业务需求扩展
+                com.example.demo.model.entity.Host host = knownHostId != null
+                        ? hostService.getHostById(knownHostId)
+                        : findHostByClientId(clientId);
                 
                 if (host != null) {
                     // 找到主机，更新在线状态
                     long startTime = System.currentTimeMillis();
                     hostService.updateOnlineStatus(host.getId(), OnlineStatus.ONLINE);
+                    hostPresenceBuffer.rememberClient(clientId, host.getId());
+                    hostPresenceBuffer.markOnline(host.getId());
+                    hostOnlineStatusMonitorService.arm(host.getId(), heartbeatIntervalMs);
                     long duration = System.currentTimeMillis() - startTime;
                     
                     log.debug("🟢 客户端 {} 在线状态已更新，主机ID: {}, 主机名: {}, 耗时: {}ms", 
@@ -380,7 +627,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
                 // 更新在线状态失败不影响主流程，只记录错误
                 log.warn("⚠️ 异步更新客户端 {} 在线状态失败", clientId, e);
             }
-        }, onlineStatusUpdateExecutor)
+        }, onlineStatusUpdateExecutor))
         .whenComplete((result, throwable) -> {
             if (throwable != null) {
                 log.error("⚠️ 客户端 {} 在线状态异步更新任务执行异常", clientId, throwable);
@@ -391,6 +638,79 @@ public class HeartbeatServiceImpl implements HeartbeatService {
         log.trace("📤 客户端 {} 在线状态更新任务已提交到异步线程池", clientId);
     }
 
+    /**
+     * 批量更新客户端在线状态（批量心跳使用）
+     * 已确认在线的主机直接写入缓冲；其余客户端在异步线程中按MAC地址批量查询主机，
+     * 只有真正处于离线状态的主机才逐个执行离线->在线切换
+     */
+    private void updateClientsOnlineStatus(Map<String, Long> heartbeatIntervals) {
+        List<String> unresolved = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : heartbeatIntervals.entrySet()) {
+            String clientId = entry.getKey();
+            Long knownHostId = hostPresenceBuffer.resolveHostId(clientId);
+            if (hostPresenceBuffer.touch(knownHostId)) {
+                hostOnlineStatusMonitorService.arm(knownHostId, entry.getValue());
+            } else {
+                unresolved.add(clientId);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+
+        CompletableFuture.runAsync(() -> {
+            Set<String> remaining = new HashSet<>(unresolved);
+            for (com.example.demo.model.entity.Host host : hostService.getHostsByMacAddresses(unresolved)) {
+                String clientId = host.getMacAddress();
+                if (!remaining.remove(clientId)) {
+                    continue;
+                }
+                try {
+                    if (host.getOnlineStatus() != OnlineStatus.ONLINE) {
+                        hostService.updateOnlineStatus(host.getId(), OnlineStatus.ONLINE);
+                    }
+                    hostPresenceBuffer.rememberClient(clientId, host.getId());
+                    hostPresenceBuffer.markOnline(host.getId());
+                    hostPresenceBuffer.touch(host.getId());
+                    hostOnlineStatusMonitorService.arm(host.getId(), heartbeatIntervals.get(clientId));
+                } catch (Exception e) {
+                    log.warn("⚠️ 批量更新客户端 {} 在线状态失败: {}", clientId, e.getMessage());
+                }
+            }
+            // 不是MAC地址的客户端ID（例如主机ID）走单个查找流程
+            remaining.forEach(clientId -> updateClientOnlineStatus(clientId, heartbeatIntervals.get(clientId)));
+        }, onlineStatusUpdateExecutor)
+        .whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                log.error("⚠️ 批量在线状态异步更新任务执行异常: {} 个客户端", unresolved.size(), throwable);
+            }
+        });
+    }
+
+    /**
+     * 通过客户端ID查找主机
+     * 先以clientId作为MAC地址查找，找不到时再尝试以clientId作为主机ID查找
+     */
+    private com.example.demo.model.entity.Host findHostByClientId(String clientId) {
+        // 方式1：尝试以clientId作为MAC地址查找
+        com.example.demo.model.entity.Host host = hostService.getHostByMacAddress(clientId);
+        
+        // 方式2：如果上面没找到，尝试以clientId作为主机ID查找
+        if (host == null) {
+            try {
+                Long hostId = Long.parseLong(clientId);
+                host = hostService.getHostById(hostId);
+            } catch (NumberFormatException e) {
+                // clientId不是数字，忽略这个尝试
+                log.trace("客户端ID {} 不是数字格式，跳过按ID查找", clientId);
+            }
+        }
+        
+        // 方式3：如果还是没找到，可能需要其他逻辑（比如通过主机名查找）
+        // 这里可以根据实际业务需求扩展
+        return host;
+    }
+
     /**
      * 从Map重构策略对象
      */
@@ -404,6 +724,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             policy.setVersion((String) policyData.get("version"));
             policy.setPriority((Integer) policyData.get("priority"));
             policy.setIsDefault((Boolean) policyData.get("isDefault"));
+            policy.setFingerprint((String) policyData.get("fingerprint"));
             
             String updatedAtStr = (String) policyData.get("updatedAt");
             if (StringUtils.hasText(updatedAtStr)) {
@@ -432,6 +753,7 @@ public class HeartbeatServiceImpl implements HeartbeatService {
             policy.setVersion((String) cachedPolicy.get("version"));
             policy.setPriority((Integer) cachedPolicy.get("priority"));
             policy.setIsDefault((Boolean) cachedPolicy.get("isDefault"));
+            policy.setFingerprint((String) cachedPolicy.get("fingerprint"));
             
             String updatedAtStr = (String) cachedPolicy.get("updatedAt");
             if (StringUtils.hasText(updatedAtStr)) {
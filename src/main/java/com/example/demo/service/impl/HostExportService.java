@@ -0,0 +1,160 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.util.CsvRecordWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 主机导出
+ * 通过流式游标（fetchSize 分批读取）逐行读取满足查询条件的主机，边读边写入输出流，
+ * 内存中只保留当前行和输出缓冲区，占用与导出的主机数量无关。
+ * <p>
+ * CSV 第一行为表头，列名与批量导入使用的列名一致，导出的文件可以直接再导入
+ * （防止公式执行加的单引号前缀在导入时去掉）；
+ * NDJSON 每行一个主机JSON对象，结构与主机查询接口返回的一致。
+ */
+@Slf4j
+@Service
+public class HostExportService {
+
+    // CSV表头（与批量导入的列名一致）
+    private static final String[] CSV_COLUMNS = {
+            "id", "host_name", "ip_address", "mac_address", "terminal_type", "host_status", "online_status",
+            "auth_status", "responsible_person", "user_id", "version", "operating_system", "organization_id",
+            "last_online_time", "auth_time", "remarks", "created_at", "updated_at"};
+
+    // 每写入多少行把缓冲区推送给客户端
+    private static final int FLUSH_INTERVAL_ROWS = 1000;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    @Autowired
+    private HostSearchIndex hostSearchIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * 导出满足查询条件的主机，按主键顺序写入输出流
+     * @param queryDto 查询条件（分页、排序和游标参数被忽略）
+     * @param format 导出格式：csv/ndjson
+     * @param out 输出流，由调用方关闭
+     * @return 导出的主机数量
+     * @throws IOException 写入输出流失败（通常是客户端断开连接），此时数据库查询已经停止
+     */
+    public long exportHosts(HostQueryDto queryDto, String format, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        HostQueryDto query = queryDto != null ? queryDto : new HostQueryDto();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+        RowWriter rowWriter = HostImportService.FORMAT_NDJSON.equals(format) ? new NdjsonRowWriter(writer) : new CsvRowWriter(writer);
+
+        long[] rows = new long[1];
+        // 子串过滤先通过搜索索引解析为候选主机
+        HostSearchCandidates search = hostSearchIndex.search(query);
+        IOException[] failure = new IOException[1];
+        hostMapper.streamHosts(query, search, context -> {
+            try {
+                rowWriter.write(context.getResultObject());
+                if (++rows[0] % FLUSH_INTERVAL_ROWS == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                // 客户端断开连接时停止读取，释放数据库游标
+                failure[0] = e;
+                context.stop();
+            }
+        });
+        if (failure[0] != null) {
+            log.warn("⚠️ 主机导出中断: 已写入={}, error={}", rows[0], failure[0].getMessage());
+            throw failure[0];
+        }
+        writer.flush();
+
+        log.info("📤 主机导出完成: 格式={}, 行数={}, 耗时={}ms", format, rows[0], System.currentTimeMillis() - startTime);
+        return rows[0];
+    }
+
+    /**
+     * 把一行主机写入输出缓冲区
+     */
+    private interface RowWriter {
+        void write(Host host) throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final CsvRecordWriter csv;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.csv = new CsvRecordWriter(writer);
+            csv.writeRecord(CSV_COLUMNS);
+        }
+
+        @Override
+        public void write(Host host) throws IOException {
+            csv.writeField(text(host.getId()));
+            csv.writeField(host.getHostName());
+            csv.writeField(host.getIpAddress());
+            csv.writeField(host.getMacAddress());
+            csv.writeField(text(host.getTerminalType()));
+            csv.writeField(text(host.getHostStatus()));
+            csv.writeField(text(host.getOnlineStatus()));
+            csv.writeField(text(host.getAuthStatus()));
+            csv.writeField(host.getResponsiblePerson());
+            csv.writeField(host.getUserId());
+            csv.writeField(host.getVersion());
+            csv.writeField(host.getOperatingSystem());
+            csv.writeField(host.getOrganizationId());
+            csv.writeField(text(host.getLastOnlineTime()));
+            csv.writeField(text(host.getAuthTime()));
+            csv.writeField(host.getRemarks());
+            csv.writeField(text(host.getCreatedAt()));
+            csv.writeField(text(host.getUpdatedAt()));
+            csv.endRecord();
+        }
+
+        private static String text(Object value) {
+            return Objects.toString(value, null);
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        // 每行写完不单独刷新，由导出按行数统一刷新
+        private final ObjectWriter hostWriter = objectMapper.writerFor(Host.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(Host host) throws IOException {
+            hostWriter.writeValue(generator, host);
+            generator.writeRaw('\n');
+            // 把生成器内部缓冲的内容交给底层 Writer，由 Writer 的缓冲区决定何时写出
+            generator.flush();
+        }
+    }
+}
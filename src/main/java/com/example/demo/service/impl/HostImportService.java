@@ -0,0 +1,645 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostDto;
+import com.example.demo.dto.HostImportResult;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.AuthStatus;
+import com.example.demo.model.enums.HostStatus;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.model.enums.TerminalType;
+import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.util.CsvRecordReader;
+import com.example.demo.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 主机批量导入
+ * 从请求体流式读取 CSV 或 NDJSON，按MAC地址新建或更新主机：
+ * <ol>
+ *   <li>以流式游标读取一遍所有主机的 MAC地址 和 (IP地址, 组织ID)，在内存中校验唯一性，
+ *       导入过程中不再逐行查询数据库</li>
+ *   <li>通过校验的行按 host.import.batch-size 分批，每批一个短事务：已存在的主机用一条CASE语句更新，
+ *       新主机用多行INSERT写入，ID按批从雪花算法生成器中预留</li>
+ *   <li>已存在且资料没有变化的主机不写入</li>
+ *   <li>某一批写入失败时逐行重试，把数据库错误归到具体的行</li>
+ * </ol>
+ * 每行的错误（缺少字段、格式错误、唯一性冲突、写入失败）记录在结果中，不影响其他行。
+ * 已提交的批次不会因为后续的错误回滚。
+ */
+@Slf4j
+@Service
+public class HostImportService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    // CSV表头必须包含的列（规范化后的列名）
+    private static final String[] REQUIRED_COLUMNS = {
+            "hostname", "ipaddress", "macaddress", "responsibleperson", "version", "operatingsystem", "organizationid"};
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Autowired
+    private HostSearchIndex hostSearchIndex;
+
+    @Autowired
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
+
+    @Autowired
+    private CacheAvailabilityService cacheAvailabilityService;
+
+    @Autowired(required = false)
+    private CacheManager cacheManager;
+
+    // 每个事务写入的主机数量
+    @Value("${host.import.batch-size:500}")
+    private int batchSize;
+
+    // 结果中返回的错误行数上限
+    @Value("${host.import.max-errors:1000}")
+    private int maxErrors;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 从输入流导入主机
+     * @param in 请求体（UTF-8）
+     * @param format 导入格式：csv/ndjson，也可以直接传入请求的 Content-Type
+     * @return 导入结果和逐行错误报告
+     * @throws IllegalArgumentException 无法确定格式或CSV表头不完整
+     */
+    public HostImportResult importHosts(InputStream in, String format) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String resolvedFormat = resolveFormat(format);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        RowSource source = FORMAT_CSV.equals(resolvedFormat) ? new CsvRowSource(reader) : new NdjsonRowSource(reader);
+
+        HostImportResult result = new HostImportResult();
+        result.setFormat(resolvedFormat);
+        UniqueKeys keys = loadUniqueKeys();
+        int limit = Math.max(1, batchSize);
+        List<ImportRow> batch = new ArrayList<>(limit);
+
+        ImportRow row;
+        while ((row = source.next()) != null) {
+            result.setTotal(result.getTotal() + 1);
+            String error = row.error != null ? row.error : accept(row, keys);
+            if (error != null) {
+                addError(result, row, error);
+                continue;
+            }
+            batch.add(row);
+            if (batch.size() >= limit) {
+                flush(batch, result);
+            }
+        }
+        flush(batch, result);
+
+        if (result.getInserted() + result.getUpdated() > 0) {
+            evictHostsCache();
+        }
+        result.setElapsedMs(System.currentTimeMillis() - startTime);
+        log.info("📥 主机批量导入完成: 格式={}, 行数={}, 新建={}, 更新={}, 未变化={}, 失败={}, 耗时={}ms",
+                resolvedFormat, result.getTotal(), result.getInserted(), result.getUpdated(),
+                result.getUnchanged(), result.getFailed(), result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * 把格式参数或 Content-Type 解析为 csv/ndjson
+     */
+    static String resolveFormat(String format) {
+        if (!StringUtils.hasText(format)) {
+            throw new IllegalArgumentException("无法确定导入格式，请指定 format=csv 或 format=ndjson");
+        }
+        String value = format.trim().toLowerCase(Locale.ROOT);
+        int parameters = value.indexOf(';');
+        if (parameters >= 0) {
+            value = value.substring(0, parameters).trim();
+        }
+        switch (value) {
+            case "csv":
+            case "text/csv":
+            case "application/csv":
+                return FORMAT_CSV;
+            case "ndjson":
+            case "jsonl":
+            case "application/x-ndjson":
+            case "application/ndjson":
+            case "application/jsonl":
+                return FORMAT_NDJSON;
+            default:
+                throw new IllegalArgumentException("不支持的导入格式: " + format + "，请使用 csv 或 ndjson");
+        }
+    }
+
+    /**
+     * 流式读取一遍所有主机的唯一键
+     */
+    private UniqueKeys loadUniqueKeys() {
+        UniqueKeys keys = new UniqueKeys();
+        hostMapper.streamUniqueKeys(context -> {
+            Host host = context.getResultObject();
+            String ipKey = ipKey(host.getIpAddress(), host.getOrganizationId());
+            keys.byMac.put(host.getMacAddress(), new ExistingHost(host.getId(), ipKey));
+            keys.byIpAddress.put(ipKey, host.getId());
+        });
+        return keys;
+    }
+
+    /**
+     * 校验一行数据并分配主机ID，通过后更新内存中的唯一键
+     * @return 错误信息，通过校验时返回 null
+     */
+    private String accept(ImportRow row, UniqueKeys keys) {
+        Host host = row.host;
+        String error = validate(host);
+        if (error != null) {
+            return error;
+        }
+        String macAddress = host.getMacAddress();
+        if (keys.imported.contains(macAddress)) {
+            return "MAC地址在导入文件中重复";
+        }
+        ExistingHost existing = keys.byMac.get(macAddress);
+        Long hostId = existing != null ? existing.id : null;
+        String ipKey = ipKey(host.getIpAddress(), host.getOrganizationId());
+        Long owner = keys.byIpAddress.get(ipKey);
+        if (owner != null && !owner.equals(hostId)) {
+            return "IP地址在该组织内已存在";
+        }
+
+        row.insert = existing == null;
+        host.setId(row.insert ? keys.nextId() : hostId);
+        keys.imported.add(macAddress);
+        if (existing != null && !existing.ipKey.equals(ipKey)) {
+            // 已存在的主机换了IP地址或组织，原来的 (IP地址, 组织ID) 可以被后面的行使用
+            keys.byIpAddress.remove(existing.ipKey, hostId);
+        }
+        keys.byIpAddress.put(ipKey, host.getId());
+        return null;
+    }
+
+    private String validate(Host host) {
+        String error = checkText(host.getHostName(), "主机名称", 255, true);
+        if (error == null) {
+            error = checkText(host.getIpAddress(), "IP地址", 45, true);
+        }
+        if (error == null) {
+            error = checkText(host.getMacAddress(), "MAC地址", 17, true);
+        }
+        if (error == null) {
+            error = checkText(host.getResponsiblePerson(), "责任人", 255, true);
+        }
+        if (error == null) {
+            error = checkText(host.getUserId(), "关联用户ID", 100, false);
+        }
+        if (error == null) {
+            error = checkText(host.getVersion(), "版本号", 50, true);
+        }
+        if (error == null) {
+            error = checkText(host.getOperatingSystem(), "操作系统", 255, true);
+        }
+        if (error == null) {
+            error = checkText(host.getOrganizationId(), "组织架构ID", 100, true);
+        }
+        return error;
+    }
+
+    private static String checkText(String value, String name, int maxLength, boolean required) {
+        if (value == null) {
+            return required ? name + "不能为空" : null;
+        }
+        return value.length() > maxLength ? name + "长度不能超过" + maxLength : null;
+    }
+
+    /**
+     * 写入一批数据，失败时逐行重试
+     */
+    private void flush(List<ImportRow> batch, HostImportResult result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            write(batch, result);
+        } catch (Exception e) {
+            log.warn("⚠️ 批量导入主机的一批数据写入失败，逐行重试: 行数={}, error={}", batch.size(), rootMessage(e));
+            for (ImportRow row : batch) {
+                try {
+                    write(Collections.singletonList(row), result);
+                } catch (Exception rowError) {
+                    addError(result, row, "写入失败: " + rootMessage(rowError));
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    /**
+     * 在一个事务中写入一批数据，提交后同步更新搜索索引、统计计数和组织策略解析
+     */
+    private void write(List<ImportRow> rows, HostImportResult result) {
+        List<Host> inserts = new ArrayList<>();
+        Map<Long, ImportRow> existing = new HashMap<>();
+        for (ImportRow row : rows) {
+            if (row.insert) {
+                inserts.add(row.host);
+            } else {
+                existing.put(row.host.getId(), row);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Host> updates = new ArrayList<>(existing.size());
+        List<ImportRow> missing = new ArrayList<>();
+
+        transactionTemplate.execute(status -> {
+            updates.clear();
+            missing.clear();
+            if (!existing.isEmpty()) {
+                // 读取更新前的主机：资料没有变化的行不写入，其余的用于调整统计计数
+                Map<Long, Host> previous = new HashMap<>();
+                for (Host host : hostMapper.selectBatchIds(new ArrayList<>(existing.keySet()))) {
+                    previous.put(host.getId(), host);
+                }
+                for (ImportRow row : existing.values()) {
+                    Host before = previous.get(row.host.getId());
+                    if (before == null) {
+                        missing.add(row);
+                    } else if (!isUnchanged(before, row.host)) {
+                        updates.add(row.host);
+                        hostStatisticsCounters.recordAfterCommit(before, updatedState(before, row.host));
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    hostMapper.batchUpdateImportedHosts(updates, now);
+                }
+            }
+            if (!inserts.isEmpty()) {
+                for (Host host : inserts) {
+                    if (host.getTerminalType() == null) {
+                        host.setTerminalType(TerminalType.PC);
+                    }
+                    host.setHostStatus(HostStatus.ACTIVE);
+                    host.setOnlineStatus(OnlineStatus.OFFLINE);
+                    host.setAuthStatus(AuthStatus.UNAUTHORIZED);
+                    host.setCreatedAt(now);
+                    host.setUpdatedAt(now);
+                }
+                hostMapper.batchInsertHosts(inserts);
+                for (Host host : inserts) {
+                    hostStatisticsCounters.recordAfterCommit(null, host);
+                }
+            }
+            List<Host> written = new ArrayList<>(inserts);
+            written.addAll(updates);
+            for (Host host : written) {
+                // 主机所在组织决定其组织子树策略（客户端ID为MAC地址）
+                orgPolicyResolver.updateClientOrganizationAfterCommit(host.getMacAddress(), host.getOrganizationId());
+                hostSearchIndex.indexHostAfterCommit(host);
+            }
+            return null;
+        });
+        result.setInserted(result.getInserted() + inserts.size());
+        result.setUpdated(result.getUpdated() + updates.size());
+        result.setUnchanged(result.getUnchanged() + existing.size() - updates.size() - missing.size());
+        for (ImportRow row : missing) {
+            addError(result, row, "主机在导入过程中已被删除");
+        }
+    }
+
+    /**
+     * 导入的资料与数据库中的主机是否一致（可选字段为空表示保留原值）
+     */
+    private static boolean isUnchanged(Host before, Host imported) {
+        return Objects.equals(before.getHostName(), imported.getHostName())
+                && Objects.equals(before.getIpAddress(), imported.getIpAddress())
+                && Objects.equals(before.getResponsiblePerson(), imported.getResponsiblePerson())
+                && Objects.equals(before.getVersion(), imported.getVersion())
+                && Objects.equals(before.getOperatingSystem(), imported.getOperatingSystem())
+                && Objects.equals(before.getOrganizationId(), imported.getOrganizationId())
+                && (imported.getTerminalType() == null || imported.getTerminalType() == before.getTerminalType())
+                && (imported.getUserId() == null || imported.getUserId().equals(before.getUserId()))
+                && (imported.getRemarks() == null || imported.getRemarks().equals(before.getRemarks()));
+    }
+
+    /**
+     * 更新后的统计状态：组织和终端类型来自导入的数据，其余状态不变
+     */
+    private static Host updatedState(Host before, Host imported) {
+        Host after = new Host();
+        after.setOrganizationId(imported.getOrganizationId());
+        after.setTerminalType(imported.getTerminalType() != null ? imported.getTerminalType() : before.getTerminalType());
+        after.setHostStatus(before.getHostStatus());
+        after.setOnlineStatus(before.getOnlineStatus());
+        after.setAuthStatus(before.getAuthStatus());
+        return after;
+    }
+
+    private void addError(HostImportResult result, ImportRow row, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            String macAddress = row.host != null ? row.host.getMacAddress() : null;
+            result.getErrors().add(new HostImportResult.RowError(row.line, macAddress, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private void evictHostsCache() {
+        try {
+            if (cacheAvailabilityService.isCacheAvailable() && cacheManager != null) {
+                Cache hostsCache = cacheManager.getCache("hosts");
+                if (hostsCache != null) {
+                    hostsCache.clear();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ 批量导入后清除主机缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private static String ipKey(String ipAddress, String organizationId) {
+        return ipAddress + '\n' + organizationId;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * 把导入的主机资料转换为实体，字符串去掉首尾空白，空字符串视为未填写
+     */
+    private static Host toHost(HostDto dto) {
+        Host host = new Host();
+        host.setHostName(clean(dto.getHostName()));
+        host.setIpAddress(clean(dto.getIpAddress()));
+        host.setMacAddress(clean(dto.getMacAddress()));
+        host.setTerminalType(dto.getTerminalType());
+        host.setResponsiblePerson(clean(dto.getResponsiblePerson()));
+        host.setUserId(clean(dto.getUserId()));
+        host.setVersion(clean(dto.getVersion()));
+        host.setOperatingSystem(clean(dto.getOperatingSystem()));
+        host.setOrganizationId(clean(dto.getOrganizationId()));
+        host.setRemarks(clean(dto.getRemarks()));
+        return host;
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * 规范化CSV列名：忽略大小写、下划线、连字符和空白，hostName/host_name/Host Name 都对应 hostname
+     */
+    private static String normalizeColumn(String column) {
+        StringBuilder normalized = new StringBuilder(column.length());
+        for (int i = 0; i < column.length(); i++) {
+            char c = column.charAt(i);
+            if (c != '_' && c != '-' && !Character.isWhitespace(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * 导入中的一行数据
+     */
+    private static final class ImportRow {
+        private final long line;
+        private final Host host;
+        private final String error;
+        private boolean insert;
+
+        private ImportRow(long line, Host host, String error) {
+            this.line = line;
+            this.host = host;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 导入过程中的唯一键：启动时从数据库读取，随着每一行通过校验更新
+     */
+    private final class UniqueKeys {
+        // MAC地址 -> 已存在的主机
+        private final Map<String, ExistingHost> byMac = new HashMap<>();
+        // (IP地址, 组织ID) -> 主机ID
+        private final Map<String, Long> byIpAddress = new HashMap<>();
+        // 导入文件中已出现的MAC地址
+        private final Set<String> imported = new HashSet<>();
+        // 预留的ID
+        private long[] reservedIds = new long[0];
+        private int nextReserved;
+
+        private long nextId() {
+            if (nextReserved == reservedIds.length) {
+                reservedIds = snowflakeIdGenerator.nextIds(Math.max(1, batchSize));
+                nextReserved = 0;
+            }
+            return reservedIds[nextReserved++];
+        }
+    }
+
+    private static final class ExistingHost {
+        private final Long id;
+        private final String ipKey;
+
+        private ExistingHost(Long id, String ipKey) {
+            this.id = id;
+            this.ipKey = ipKey;
+        }
+    }
+
+    /**
+     * 逐行产生导入数据，返回 null 表示输入结束
+     */
+    private interface RowSource {
+        ImportRow next() throws IOException;
+    }
+
+    /**
+     * CSV：第一行为表头，列名对应主机字段，不认识的列忽略
+     */
+    private static final class CsvRowSource implements RowSource {
+        private final CsvRecordReader reader;
+        private final String[] columns;
+        private boolean ended;
+
+        private CsvRowSource(BufferedReader in) throws IOException {
+            this.reader = new CsvRecordReader(in);
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV内容为空");
+            }
+            columns = new String[header.size()];
+            Set<String> present = new HashSet<>();
+            for (int i = 0; i < header.size(); i++) {
+                columns[i] = normalizeColumn(header.get(i));
+                present.add(columns[i]);
+            }
+            List<String> missing = new ArrayList<>();
+            for (String column : REQUIRED_COLUMNS) {
+                if (!present.contains(column)) {
+                    missing.add(column);
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("CSV表头缺少列: " + String.join(", ", missing));
+            }
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            List<String> values;
+            try {
+                values = reader.next();
+            } catch (IllegalArgumentException e) {
+                // CSV语法错误之后无法可靠地找到下一行的开始，停止读取
+                ended = true;
+                return new ImportRow(reader.getLineNumber(), null, e.getMessage() + "，停止读取后续内容");
+            }
+            if (values == null) {
+                return null;
+            }
+            long line = reader.getLineNumber();
+            if (values.size() != columns.length) {
+                return new ImportRow(line, null, "列数(" + values.size() + ")与表头(" + columns.length + ")不一致");
+            }
+            HostDto dto = new HostDto();
+            for (int i = 0; i < columns.length; i++) {
+                String value = values.get(i);
+                switch (columns[i]) {
+                    case "hostname":
+                        dto.setHostName(value);
+                        break;
+                    case "ipaddress":
+                        dto.setIpAddress(value);
+                        break;
+                    case "macaddress":
+                        dto.setMacAddress(value);
+                        break;
+                    case "terminaltype":
+                        String terminalType = clean(value);
+                        if (terminalType != null) {
+                            try {
+                                dto.setTerminalType(TerminalType.fromCode(terminalType.toUpperCase(Locale.ROOT)));
+                            } catch (IllegalArgumentException e) {
+                                Host host = new Host();
+                                host.setMacAddress(clean(dto.getMacAddress()));
+                                return new ImportRow(line, host, e.getMessage());
+                            }
+                        }
+                        break;
+                    case "responsibleperson":
+                        dto.setResponsiblePerson(value);
+                        break;
+                    case "userid":
+                        dto.setUserId(value);
+                        break;
+                    case "version":
+                        dto.setVersion(value);
+                        break;
+                    case "operatingsystem":
+                        dto.setOperatingSystem(value);
+                        break;
+                    case "organizationid":
+                        dto.setOrganizationId(value);
+                        break;
+                    case "remarks":
+                        dto.setRemarks(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return new ImportRow(line, toHost(dto), null);
+        }
+    }
+
+    /**
+     * NDJSON：每行一个主机JSON对象（字段与创建主机接口相同），空行忽略
+     */
+    private final class NdjsonRowSource implements RowSource {
+        private final BufferedReader reader;
+        private long lineNumber;
+
+        private NdjsonRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ImportRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    return new ImportRow(lineNumber, toHost(objectMapper.readValue(line, HostDto.class)), null);
+                } catch (JsonProcessingException e) {
+                    return new ImportRow(lineNumber, null, "JSON格式错误: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+}
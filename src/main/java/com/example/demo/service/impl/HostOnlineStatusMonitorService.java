@@ -5,20 +5,33 @@ import com.example.demo.mapper.HostMapper;
 import com.example.demo.model.entity.Host;
 import com.example.demo.model.enums.OnlineStatus;
 import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.util.HierarchicalTimingWheel;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 主机在线状态监控服务
- * 负责定时检查主机在线状态，将长时间无心跳的主机标记为离线
+ * 通过分层时间轮为每台主机维护心跳超时，超时后批量标记为离线；
+ * 定时扫描数据库只作为对账兜底
  */
 @Slf4j
 @Service
@@ -33,55 +46,201 @@ public class HostOnlineStatusMonitorService {
     @Autowired
     private CacheManager cacheManager;
     
+    @Autowired
+    private HostPresenceBuffer hostPresenceBuffer;
+    
+    @Autowired
+    private HeartbeatLoadController heartbeatLoadController;
+    
+    @Autowired
+    private HostStatisticsCounters hostStatisticsCounters;
+    
     // 心跳超时时间（分钟）
-    private static final int HEARTBEAT_TIMEOUT_MINUTES = 5;
+    @Value("${heartbeat.timeout.minutes:5}")
+    private int heartbeatTimeoutMinutes;
+    
+    // 允许连续错过的心跳次数：服务端下发的心跳间隔较长时，超时时间至少为 间隔 × 该值
+    @Value("${heartbeat.offline.missed-heartbeats:3}")
+    private int missedHeartbeats;
+    
+    // 时间轮每格的时长（毫秒），也是超时检测的精度
+    @Value("${heartbeat.offline.wheel.tick-ms:1000}")
+    private long wheelTickMs;
+    
+    // 时间轮每层的格数
+    @Value("${heartbeat.offline.wheel.size:64}")
+    private int wheelSize;
+    
+    // 每条离线批量UPDATE包含的主机数量
+    @Value("${heartbeat.offline.batch-size:500}")
+    private int offlineBatchSize;
+    
+    // 主机超时时间轮，所有访问都在 wheelLock 内进行
+    private HierarchicalTimingWheel<Long> timingWheel;
+    private final Object wheelLock = new Object();
+    
+    // 每台主机的最新超时截止时间（毫秒），心跳只更新这里，不直接操作时间轮
+    private final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+    
+    // 已经在时间轮中有定时任务的主机
+    private final Set<Long> armedHosts = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void init() {
+        timingWheel = new HierarchicalTimingWheel<>(wheelTickMs, wheelSize, System.currentTimeMillis());
+        log.info("⏱️ 主机超时时间轮已初始化: 超时={}分钟, 精度={}ms, 每层格数={}", 
+                heartbeatTimeoutMinutes, wheelTickMs, wheelSize);
+    }
     
     /**
-     * 定时检查主机在线状态
-     * 每2分钟执行一次，检查是否有主机超过5分钟没有心跳
+     * 应用启动后为所有在线主机装载超时定时器
+     * 服务重启期间主机无法上报心跳，因此统一给予一个完整的超时周期（按仍可能有客户端在等待的最长心跳间隔放宽）
      */
-    @Scheduled(fixedRate = 120000) // 每2分钟执行一次
-    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void armOnlineHosts() {
+        try {
+            QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
+            queryWrapper.select("id").eq("online_status", OnlineStatus.ONLINE);
+            List<Object> hostIds = hostMapper.selectObjs(queryWrapper);
+            
+            long heartbeatIntervalMs = heartbeatLoadController.getMaxIssuedHeartbeatMs();
+            for (Object hostId : hostIds) {
+                arm(((Number) hostId).longValue(), heartbeatIntervalMs);
+            }
+            log.info("⏱️ 已为 {} 个在线主机装载超时定时器", hostIds.size());
+        } catch (Exception e) {
+            log.error("❌ 装载在线主机超时定时器失败，将依赖定期对账检测离线主机", e);
+        }
+    }
+    
+    /**
+     * 主机收到心跳，按默认超时时间重新计算超时
+     */
+    public void arm(Long hostId) {
+        arm(hostId, 0L);
+    }
+    
+    /**
+     * 主机收到心跳，按服务端告知该主机的心跳间隔重新计算超时时间
+     * 只更新截止时间；主机不在时间轮中时才插入定时任务，到期时再按最新截止时间决定是否重新插入
+     * @param heartbeatIntervalMs 本次响应中告知客户端的下一次心跳间隔，0 表示未告知
+     */
+    public void arm(Long hostId, long heartbeatIntervalMs) {
+        if (hostId == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + Math.max(getTimeoutMs(), heartbeatIntervalMs * missedHeartbeats);
+        deadlines.put(hostId, deadline);
+        if (armedHosts.add(hostId)) {
+            synchronized (wheelLock) {
+                timingWheel.schedule(hostId, deadline);
+            }
+        }
+    }
+    
+    /**
+     * 取消主机的超时检测（主机已离线或被删除），时间轮中的定时任务到期时会被忽略
+     */
+    public void disarm(Long hostId) {
+        if (hostId != null) {
+            deadlines.remove(hostId);
+        }
+    }
+    
+    /**
+     * 推进时间轮，将真正超时的主机批量标记为离线
+     */
+    @Scheduled(fixedDelayString = "${heartbeat.offline.wheel.tick-ms:1000}")
+    public void advanceTimingWheel() {
+        long now = System.currentTimeMillis();
+        List<Long> fired;
+        synchronized (wheelLock) {
+            fired = timingWheel.advance(now);
+        }
+        if (fired.isEmpty()) {
+            return;
+        }
+        
+        List<Long> expiredHostIds = new ArrayList<>();
+        List<Long> rearm = new ArrayList<>();
+        for (Long hostId : fired) {
+            Long deadline = deadlines.get(hostId);
+            if (deadline != null && deadline > now) {
+                // 期间收到过心跳，按最新截止时间重新插入
+                rearm.add(hostId);
+                continue;
+            }
+            if (deadline != null && deadlines.remove(hostId, deadline)) {
+                expiredHostIds.add(hostId);
+            }
+            armedHosts.remove(hostId);
+            // 移除期间恰好收到心跳，重新装载
+            if (deadlines.containsKey(hostId) && armedHosts.add(hostId)) {
+                rearm.add(hostId);
+            }
+        }
+        
+        if (!rearm.isEmpty()) {
+            synchronized (wheelLock) {
+                for (Long hostId : rearm) {
+                    Long deadline = deadlines.get(hostId);
+                    timingWheel.schedule(hostId, deadline != null ? deadline : now);
+                }
+            }
+        }
+        
+        if (!expiredHostIds.isEmpty()) {
+            try {
+                // 主机各自的超时时间不小于默认超时，最后在线时间在默认超时之内说明其他节点刚收到过心跳
+                LocalDateTime threshold = LocalDateTime.now().minus(getTimeoutMs(), ChronoUnit.MILLIS);
+                int updated = markHostsOffline(expiredHostIds, threshold);
+                log.info("📴 时间轮检测到 {} 个主机心跳超时，已标记离线 {} 个", expiredHostIds.size(), updated);
+            } catch (Exception e) {
+                log.error("❌ 批量标记超时主机离线失败，将由定期对账处理: {} 个主机", expiredHostIds.size(), e);
+            }
+        }
+    }
+    
+    /**
+     * 定期对账检查主机在线状态
+     * 超时检测由时间轮实时完成，这里只作为兜底：处理时间轮遗漏的主机（例如其他实例上线的主机、服务重启期间的状态）
+     */
+    @Scheduled(fixedDelayString = "${heartbeat.offline.check.interval:600000}")
     public void checkOfflineHosts() {
         try {
-            log.debug("🔍 开始检查离线主机...");
+            log.debug("🔍 开始对账检查离线主机...");
+            
+            // 先写回缓冲中的心跳时间，避免把刚有心跳的主机误判为离线
+            hostPresenceBuffer.flush();
             
-            // 计算超时时间点
-            LocalDateTime timeoutThreshold = LocalDateTime.now().minusMinutes(HEARTBEAT_TIMEOUT_MINUTES);
+            // 计算超时时间点（按最近实际下发的最长心跳间隔放宽，避免把被要求降低心跳频率的主机误判为离线）
+            LocalDateTime timeoutThreshold = LocalDateTime.now().minus(getReconcileTimeoutMs(), ChronoUnit.MILLIS);
             
             // 查询当前标记为在线但最后在线时间超过阈值的主机
             QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
-            queryWrapper.eq("online_status", OnlineStatus.ONLINE)
+            queryWrapper.select("id")
+                       .eq("online_status", OnlineStatus.ONLINE)
                        .and(wrapper -> wrapper
                            .lt("last_online_time", timeoutThreshold)
                            .or()
                            .isNull("last_online_time")
                        );
             
-            List<Host> offlineHosts = hostMapper.selectList(queryWrapper);
-            
-            if (!offlineHosts.isEmpty()) {
-                log.info("📴 发现 {} 个离线主机，准备更新状态", offlineHosts.size());
-                
-                LocalDateTime now = LocalDateTime.now();
-                for (Host host : offlineHosts) {
-                    // 更新主机为离线状态
-                    Host updateHost = new Host();
-                    updateHost.setId(host.getId());
-                    updateHost.setOnlineStatus(OnlineStatus.OFFLINE);
-                    updateHost.setUpdatedAt(now);
-                    
-                    hostMapper.updateById(updateHost);
-                    
-                    // 清除相关缓存
-                    evictHostCache(host);
-                    
-                    log.info("📴 主机 {} (ID: {}) 已标记为离线，最后在线时间: {}", 
-                            host.getHostName(), host.getId(), 
-                            host.getLastOnlineTime() != null ? host.getLastOnlineTime() : "从未在线");
+            long now = System.currentTimeMillis();
+            List<Long> offlineHostIds = new ArrayList<>();
+            for (Object hostId : hostMapper.selectObjs(queryWrapper)) {
+                Long id = ((Number) hostId).longValue();
+                // 时间轮中仍在有效期内的主机以内存中的心跳为准
+                Long deadline = deadlines.get(id);
+                if (deadline == null || deadline <= now) {
+                    offlineHostIds.add(id);
                 }
-                
-                log.info("✅ 离线主机状态更新完成，共处理 {} 个主机", offlineHosts.size());
+            }
+            
+            if (!offlineHostIds.isEmpty()) {
+                log.info("📴 对账发现 {} 个离线主机，准备更新状态", offlineHostIds.size());
+                int updated = markHostsOffline(offlineHostIds, timeoutThreshold);
+                log.info("✅ 离线主机状态更新完成，共处理 {} 个主机", updated);
             } else {
                 log.debug("✅ 所有主机状态正常，无需更新");
             }
@@ -91,6 +250,99 @@ public class HostOnlineStatusMonitorService {
         }
     }
     
+    /**
+     * 批量将主机标记为离线
+     * 按块查询主机信息（用于清除缓存），每块使用一条UPDATE语句，只更新仍处于在线状态、且最后在线时间早于阈值的主机。
+     * 多节点部署时每个节点都会为所有在线主机装载定时器，心跳由其他节点接收的主机在本节点超时，
+     * 但其他节点会持续写回最后在线时间，阈值条件保证这些主机不会被误判为离线
+     * @param threshold 超时时间点
+     * @return 实际标记为离线的主机数量
+     */
+    private int markHostsOffline(List<Long> hostIds, LocalDateTime threshold) {
+        // 先写回超时主机缓冲中的最后在线时间
+        hostPresenceBuffer.flush();
+        
+        int updated = 0;
+        for (int from = 0; from < hostIds.size(); from += offlineBatchSize) {
+            List<Long> chunk = hostIds.subList(from, Math.min(from + offlineBatchSize, hostIds.size()));
+            
+            QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
+            queryWrapper.in("id", chunk)
+                       .eq("online_status", OnlineStatus.ONLINE)
+                       .and(wrapper -> wrapper
+                           .lt("last_online_time", threshold)
+                           .or()
+                           .isNull("last_online_time")
+                       );
+            List<Host> hosts = hostMapper.selectList(queryWrapper);
+            if (hosts.isEmpty()) {
+                continue;
+            }
+            
+            List<Long> onlineIds = new ArrayList<>(hosts.size());
+            for (Host host : hosts) {
+                onlineIds.add(host.getId());
+            }
+            // 精确到秒，与数据库中保存的 updated_at 相同，用于查询本次实际更新的行
+            LocalDateTime updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+            int changed = hostMapper.batchMarkOffline(onlineIds, threshold, updatedAt);
+            if (changed == 0) {
+                continue;
+            }
+            updated += changed;
+            
+            // 查询之后其他节点写回了心跳的主机没有被更新，仍然在线，计数器和定时器都不变
+            List<Host> markedHosts = hosts;
+            if (changed < onlineIds.size()) {
+                Set<Long> markedIds = new HashSet<>(hostMapper.selectMarkedOffline(onlineIds, updatedAt));
+                markedHosts = new ArrayList<>(markedIds.size());
+                for (Host host : hosts) {
+                    if (markedIds.contains(host.getId())) {
+                        markedHosts.add(host);
+                    }
+                }
+            }
+            hostStatisticsCounters.onlineStatusChangedAfterCommit(markedHosts, OnlineStatus.OFFLINE);
+            
+            for (Host host : markedHosts) {
+                hostPresenceBuffer.markOffline(host.getId());
+                disarm(host.getId());
+                
+                // 清除相关缓存
+                evictHostCache(host);
+                
+                log.debug("📴 主机 {} (ID: {}) 已标记为离线，最后在线时间: {}", 
+                        host.getHostName(), host.getId(), 
+                        host.getLastOnlineTime() != null ? host.getLastOnlineTime() : "从未在线");
+            }
+        }
+        return updated;
+    }
+    
+    /**
+     * 获取时间轮统计信息
+     */
+    public Map<String, Object> getTimingWheelStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("trackedHosts", deadlines.size());
+        statistics.put("armedHosts", armedHosts.size());
+        synchronized (wheelLock) {
+            statistics.put("pendingTimers", timingWheel.size());
+        }
+        statistics.put("timeoutMs", getTimeoutMs());
+        statistics.put("reconcileTimeoutMs", getReconcileTimeoutMs());
+        statistics.put("tickMs", wheelTickMs);
+        return statistics;
+    }
+    
+    private long getTimeoutMs() {
+        return TimeUnit.MINUTES.toMillis(heartbeatTimeoutMinutes);
+    }
+    
+    private long getReconcileTimeoutMs() {
+        return Math.max(getTimeoutMs(), heartbeatLoadController.getMaxIssuedHeartbeatMs() * missedHeartbeats);
+    }
+    
     /**
      * 清除主机相关的缓存
      */
@@ -124,23 +376,11 @@ public class HostOnlineStatusMonitorService {
     }
     
     /**
-     * 获取在线主机统计信息
+     * 获取在线主机统计信息（读取内存中的主机统计计数器）
      */
     public HostOnlineStatistics getOnlineStatistics() {
         try {
-            QueryWrapper<Host> onlineQuery = new QueryWrapper<>();
-            onlineQuery.eq("online_status", OnlineStatus.ONLINE);
-            long onlineCount = hostMapper.selectCount(onlineQuery);
-            
-            QueryWrapper<Host> offlineQuery = new QueryWrapper<>();
-            offlineQuery.eq("online_status", OnlineStatus.OFFLINE);
-            long offlineCount = hostMapper.selectCount(offlineQuery);
-            
-            QueryWrapper<Host> totalQuery = new QueryWrapper<>();
-            long totalCount = hostMapper.selectCount(totalQuery);
-            
-            return new HostOnlineStatistics(onlineCount, offlineCount, totalCount);
-            
+            return hostStatisticsCounters.getOnlineStatistics();
         } catch (Exception e) {
             log.error("❌ 获取主机在线统计失败", e);
             return new HostOnlineStatistics(0, 0, 0);
@@ -0,0 +1,230 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.OnlineStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 主机在线心跳写回缓冲（write-behind）
+ * 已确认在线的主机，心跳只在内存中记录最后一次心跳时间，
+ * 由定时任务按块合并为批量 UPDATE 写回数据库；只有真正的离线->在线切换才走完整的状态更新流程。
+ * <p>
+ * 已确认在线只是本节点的判断：主机可能被其他节点的离线检测标记为离线。
+ * 写回时发现主机已不处于在线状态，就取消该主机的确认，下一次心跳重新走离线->在线切换流程
+ */
+@Slf4j
+@Service
+public class HostPresenceBuffer {
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    // 每条批量UPDATE包含的主机数量
+    @Value("${heartbeat.presence.flush-chunk-size:500}")
+    private int flushChunkSize;
+
+    // 待写回的最后在线时间：hostId -> 最近一次心跳时间（毫秒），同一主机只保留最新值
+    private final Map<Long, Long> pendingLastSeen = new ConcurrentHashMap<>();
+
+    // 已确认在线的主机，这些主机的心跳只需记录时间
+    private final Set<Long> confirmedOnline = ConcurrentHashMap.newKeySet();
+
+    // 客户端ID -> 主机ID 的解析结果，避免每次心跳都按MAC地址查询主机
+    private final Map<String, Long> clientHostIds = new ConcurrentHashMap<>();
+
+    private final Object flushLock = new Object();
+
+    // 统计信息
+    private final LongAdder bufferedHeartbeats = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushBatches = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder reconfirmedHosts = new LongAdder();
+
+    /**
+     * 获取客户端ID已解析的主机ID
+     * @param clientId 客户端ID
+     * @return 主机ID，未解析过返回null
+     */
+    public Long resolveHostId(String clientId) {
+        return clientId != null ? clientHostIds.get(clientId) : null;
+    }
+
+    /**
+     * 记录客户端ID与主机ID的对应关系
+     */
+    public void rememberClient(String clientId, Long hostId) {
+        if (clientId != null && hostId != null) {
+            clientHostIds.put(clientId, hostId);
+        }
+    }
+
+    /**
+     * 心跳快速路径：主机已确认在线时，仅在内存中记录最后在线时间
+     * @param hostId 主机ID
+     * @return true-已记录；false-主机未确认在线，调用方需要走完整的状态更新流程
+     */
+    public boolean touch(Long hostId) {
+        if (hostId == null || !confirmedOnline.contains(hostId)) {
+            return false;
+        }
+        pendingLastSeen.merge(hostId, System.currentTimeMillis(), Math::max);
+        bufferedHeartbeats.increment();
+        return true;
+    }
+
+    /**
+     * 主机已通过完整流程更新为在线，后续心跳走快速路径
+     */
+    public void markOnline(Long hostId) {
+        if (hostId != null) {
+            confirmedOnline.add(hostId);
+        }
+    }
+
+    /**
+     * 主机被标记为离线，后续心跳需要重新走离线->在线切换流程
+     */
+    public void markOffline(Long hostId) {
+        if (hostId != null) {
+            confirmedOnline.remove(hostId);
+            pendingLastSeen.remove(hostId);
+        }
+    }
+
+    /**
+     * 主机被删除，清理该主机的所有缓冲数据
+     */
+    public void evictHost(Long hostId) {
+        if (hostId == null) {
+            return;
+        }
+        markOffline(hostId);
+        clientHostIds.values().removeIf(hostId::equals);
+    }
+
+    /**
+     * 将缓冲的最后在线时间批量写回数据库
+     * 每个块使用一条UPDATE语句，写入失败的数据重新放回缓冲，等待下一次写回
+     */
+    @Scheduled(fixedDelayString = "${heartbeat.presence.flush-interval-ms:3000}")
+    public void flush() {
+        synchronized (flushLock) {
+            if (pendingLastSeen.isEmpty()) {
+                return;
+            }
+
+            long startTime = System.currentTimeMillis();
+            int total = 0;
+            Map<Long, Long> chunk = new LinkedHashMap<>();
+            for (Long hostId : pendingLastSeen.keySet()) {
+                Long seenAt = pendingLastSeen.remove(hostId);
+                if (seenAt == null) {
+                    continue;
+                }
+                chunk.put(hostId, seenAt);
+                if (chunk.size() >= flushChunkSize) {
+                    total += writeChunk(chunk);
+                    chunk = new LinkedHashMap<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                total += writeChunk(chunk);
+            }
+
+            log.debug("💾 心跳写回完成: 主机数={}, 耗时={}ms", total, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * 应用关闭前写回所有缓冲数据
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.info("🛑 应用关闭，写回剩余心跳数据: {} 条", pendingLastSeen.size());
+        flush();
+    }
+
+    /**
+     * 获取缓冲统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("pendingHosts", pendingLastSeen.size());
+        statistics.put("confirmedOnlineHosts", confirmedOnline.size());
+        statistics.put("resolvedClients", clientHostIds.size());
+        statistics.put("bufferedHeartbeats", bufferedHeartbeats.sum());
+        statistics.put("flushedRows", flushedRows.sum());
+        statistics.put("flushBatches", flushBatches.sum());
+        statistics.put("flushFailures", flushFailures.sum());
+        statistics.put("reconfirmedHosts", reconfirmedHosts.sum());
+        return statistics;
+    }
+
+    private int writeChunk(Map<Long, Long> chunk) {
+        Map<Long, LocalDateTime> lastSeen = new LinkedHashMap<>(chunk.size() * 2);
+        for (Map.Entry<Long, Long> entry : chunk.entrySet()) {
+            lastSeen.put(entry.getKey(), toLocalDateTime(entry.getValue()));
+        }
+
+        try {
+            int updated = hostMapper.batchUpdateLastOnlineTime(lastSeen, LocalDateTime.now());
+            if (updated < chunk.size()) {
+                dropNoLongerOnline(chunk.keySet());
+            }
+            flushedRows.add(chunk.size());
+            flushBatches.increment();
+            return chunk.size();
+        } catch (Exception e) {
+            // 写回失败，放回缓冲等待下次写回（保留较新的时间）
+            flushFailures.increment();
+            chunk.forEach((hostId, seenAt) -> pendingLastSeen.merge(hostId, seenAt, Math::max));
+            log.warn("⚠️ 心跳批量写回失败，{} 条数据将在下次重试: {}", chunk.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 部分主机没有被写回（已被标记为离线或已删除），取消这些主机的在线确认
+     */
+    private void dropNoLongerOnline(Set<Long> hostIds) {
+        QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id").in("id", hostIds).eq("online_status", OnlineStatus.ONLINE);
+        Set<Long> stillOnline = new HashSet<>();
+        for (Object hostId : hostMapper.selectObjs(queryWrapper)) {
+            stillOnline.add(((Number) hostId).longValue());
+        }
+        int dropped = 0;
+        for (Long hostId : hostIds) {
+            if (!stillOnline.contains(hostId) && confirmedOnline.remove(hostId)) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            reconfirmedHosts.add(dropped);
+            log.info("🔁 {} 个主机已不处于在线状态（可能被其他节点标记为离线），下一次心跳重新确认", dropped);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 主机子串搜索索引
+ * 对主机名称、IP地址、MAC地址、责任人建立进程内三元组（trigram）倒排索引，
+ * 把 LIKE '%x%' 查询条件先解析为候选主机ID集合，数据库只需按主键读取候选行再用 LIKE 精确过滤，避免全表扫描。
+ * <p>
+ * 索引对大小写不敏感，包含本节点的所有修改，但其他节点的修改要到下一次全量加载才能看到。因此候选集合只对加载时已存在的数据
+ * 是超集：查询时还要包含 updated_at 不早于索引水位线（加载开始时间减去余量）的主机，两者合起来才是真实结果的超集，
+ * 查询结果与不使用索引时一致。以下情况不使用索引，回退到 LIKE 查询：
+ * <ul>
+ *   <li>查询词（去掉首尾空格后）少于3个字符，或包含 LIKE 通配符 % _</li>
+ *   <li>候选主机超过 host.search-index.max-candidates（查询词区分度太低，IN 列表反而更慢）</li>
+ *   <li>索引尚未加载完成</li>
+ * </ul>
+ * 每台主机分配一个递增的文档号，倒排表是按文档号递增的 int 数组，新增主机只需追加；
+ * 删除或修改主机时旧文档号标记为已删除，定期全量重新加载时压缩，同时修正其他实例上的修改；
+ * 加载期间本节点修改的主机在加载完成后重新读取，避免被游标读到的旧数据覆盖。
+ */
+@Slf4j
+@Service
+public class HostSearchIndex {
+
+    // 索引的字段
+    static final int FIELD_HOST_NAME = 0;
+    static final int FIELD_IP_ADDRESS = 1;
+    static final int FIELD_MAC_ADDRESS = 2;
+    static final int FIELD_RESPONSIBLE_PERSON = 3;
+
+    private static final int GRAM_LENGTH = 3;
+
+    // 索引水位线比加载开始时间提前的余量，覆盖其他节点加载时尚未提交的事务和节点间的时钟偏差
+    private static final long WATERMARK_MARGIN_SECONDS = 60;
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    // 是否启用子串搜索索引
+    @Value("${host.search-index.enabled:true}")
+    private boolean enabled;
+
+    // 候选主机数量上限，超过时不使用索引
+    @Value("${host.search-index.max-candidates:5000}")
+    private int maxCandidates;
+
+    private volatile Segment segment = new Segment(null);
+    private volatile boolean ready;
+    private volatile boolean loading;
+
+    // 加载期间本节点修改或删除的主机，加载完成后逐个重新读取
+    private final Set<Long> changedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    // 查询持有读锁，增删主机持有写锁
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder narrowed = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    /**
+     * 应用启动后加载索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * 定期全量重新加载，压缩已删除的文档并修正其他实例上的修改
+     */
+    @Scheduled(initialDelayString = "${host.search-index.reload-interval-ms:600000}",
+               fixedDelayString = "${host.search-index.reload-interval-ms:600000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 从数据库全量重新加载索引
+     */
+    public synchronized void reload() {
+        if (!enabled) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        loading = true;
+        try {
+            // 游标开始读取之前确定水位线，之后其他节点的修改由查询按 updated_at 补充
+            Segment loaded = new Segment(LocalDateTime.now().minusSeconds(WATERMARK_MARGIN_SECONDS));
+            hostMapper.streamSearchFields(context -> loaded.add(context.getResultObject()));
+            lock.writeLock().lock();
+            try {
+                segment = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // 加载期间提交的修改可能被游标读到的旧数据覆盖，逐个重新读取
+            while (!changedDuringLoad.isEmpty()) {
+                List<Long> changed = new ArrayList<>(changedDuringLoad);
+                changedDuringLoad.removeAll(changed);
+                refreshHosts(changed);
+            }
+            ready = true;
+            log.info("🔎 主机搜索索引加载完成: 主机={}, 三元组={}, 耗时={}ms",
+                    loaded.docs.size(), loaded.postings.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            // 加载失败时修改已经作用在继续使用的索引上
+            changedDuringLoad.clear();
+            log.error("❌ 加载主机搜索索引失败，{}", ready ? "继续使用上一次加载的数据" : "将回退到 LIKE 查询", e);
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * 事务提交后把主机写入索引（创建或修改主机时使用）
+     * 修改时传入的主机可能只包含部分字段，此时从数据库重新读取
+     */
+    public void indexHostAfterCommit(Host host) {
+        if (!enabled || host == null || host.getId() == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            Host indexed = host;
+            if (host.getHostName() == null || host.getIpAddress() == null
+                    || host.getMacAddress() == null || host.getResponsiblePerson() == null) {
+                indexed = hostMapper.selectById(host.getId());
+            }
+            lock.writeLock().lock();
+            try {
+                if (indexed != null) {
+                    segment.add(indexed);
+                } else {
+                    segment.remove(host.getId());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            markChanged(host.getId());
+        });
+    }
+
+    /**
+     * 事务提交后从索引中移除主机
+     */
+    public void removeHostsAfterCommit(Collection<Long> hostIds) {
+        if (!enabled || hostIds == null || hostIds.isEmpty()) {
+            return;
+        }
+        List<Long> targets = new ArrayList<>(hostIds);
+        TransactionCallbacks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                targets.forEach(segment::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            targets.forEach(this::markChanged);
+        });
+    }
+
+    /**
+     * 把查询条件中的子串过滤解析为候选主机
+     * @return 候选主机；没有可以使用索引的条件时返回 null
+     */
+    public HostSearchCandidates search(HostQueryDto query) {
+        if (!enabled || !ready || query == null) {
+            return null;
+        }
+        String hostName = searchTerm(query.getHostName());
+        String ipOrMacAddress = searchTerm(query.getIpOrMacAddress());
+        String responsiblePerson = searchTerm(query.getResponsiblePerson());
+        if (hostName == null && ipOrMacAddress == null && responsiblePerson == null) {
+            return null;
+        }
+
+        long startTime = System.nanoTime();
+        searches.increment();
+        List<Long> hostIds = null;
+        List<Long> responsibleIds = null;
+        LocalDateTime watermark;
+        lock.readLock().lock();
+        try {
+            Segment current = segment;
+            watermark = current.watermark;
+            int[] docs = null;
+            if (hostName != null) {
+                docs = current.match(FIELD_HOST_NAME, hostName);
+            }
+            if (ipOrMacAddress != null) {
+                int[] addressDocs = union(current.match(FIELD_IP_ADDRESS, ipOrMacAddress),
+                                          current.match(FIELD_MAC_ADDRESS, ipOrMacAddress));
+                docs = docs != null ? intersect(docs, addressDocs) : addressDocs;
+            }
+            if (docs != null) {
+                hostIds = current.toHostIds(docs, maxCandidates);
+            }
+            if (responsiblePerson != null) {
+                responsibleIds = current.toHostIds(current.match(FIELD_RESPONSIBLE_PERSON, responsiblePerson), maxCandidates);
+            }
+        } finally {
+            lock.readLock().unlock();
+            searchNanos.add(System.nanoTime() - startTime);
+        }
+
+        if (hostIds == null && responsibleIds == null) {
+            return null;
+        }
+        narrowed.increment();
+        if (hostIds != null && hostIds.isEmpty()) {
+            emptyResults.increment();
+        }
+        return new HostSearchCandidates(hostIds, responsibleIds, watermark);
+    }
+
+    /**
+     * 获取索引统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        long searchCount = searches.sum();
+        lock.readLock().lock();
+        try {
+            statistics.put("hosts", segment.docs.size());
+            statistics.put("deletedDocs", segment.deleted.cardinality());
+            statistics.put("trigrams", segment.postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        statistics.put("enabled", enabled);
+        statistics.put("ready", ready);
+        statistics.put("searches", searchCount);
+        statistics.put("narrowed", narrowed.sum());
+        statistics.put("emptyResults", emptyResults.sum());
+        statistics.put("avgSearchMicros", searchCount > 0 ? searchNanos.sum() / 1000.0 / searchCount : 0.0);
+        return statistics;
+    }
+
+    /**
+     * 从数据库重新读取主机并写入索引，已删除的主机从索引中移除
+     */
+    private void refreshHosts(List<Long> hostIds) {
+        List<Host> hosts = hostMapper.selectBatchIds(hostIds);
+        Set<Long> missing = new HashSet<>(hostIds);
+        lock.writeLock().lock();
+        try {
+            for (Host host : hosts) {
+                segment.add(host);
+                missing.remove(host.getId());
+            }
+            missing.forEach(segment::remove);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 修改已作用于当前索引之后调用：加载期间的修改在加载完成后重新读取
+     */
+    private void markChanged(Long hostId) {
+        if (loading) {
+            changedDuringLoad.add(hostId);
+        }
+    }
+
+    /**
+     * 可以使用索引的查询词（小写），不能使用时返回 null
+     */
+    private static String searchTerm(String value) {
+        if (!StringUtils.hasText(value)) {
+            return null;
+        }
+        String term = value.trim();
+        if (term.length() < GRAM_LENGTH || term.indexOf('%') >= 0 || term.indexOf('_') >= 0) {
+            return null;
+        }
+        return term.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 字段值中的所有三元组，键为 字段(高16位) + 三个字符
+     */
+    private static Set<Long> grams(int field, String value) {
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+            keys.add(((long) field << 48) | ((long) value.charAt(i) << 32)
+                    | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+        }
+        return keys;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 一份完整的倒排索引
+     */
+    private static final class Segment {
+        // 三元组 -> 包含该三元组的文档号（递增）
+        private final Map<Long, Postings> postings = new HashMap<>();
+        // 主机ID -> 文档号
+        private final Map<Long, Integer> docs = new HashMap<>();
+        // 文档号 -> 主机ID
+        private long[] hostIds = new long[1024];
+        private final BitSet deleted = new BitSet();
+        private int nextDoc;
+        // 该索引可能遗漏其他节点修改的起始时间
+        private final LocalDateTime watermark;
+
+        private Segment(LocalDateTime watermark) {
+            this.watermark = watermark;
+        }
+
+        private void add(Host host) {
+            if (host == null || host.getId() == null) {
+                return;
+            }
+            remove(host.getId());
+            int doc = nextDoc++;
+            if (doc == hostIds.length) {
+                hostIds = Arrays.copyOf(hostIds, hostIds.length * 2);
+            }
+            hostIds[doc] = host.getId();
+            docs.put(host.getId(), doc);
+            addField(FIELD_HOST_NAME, host.getHostName(), doc);
+            addField(FIELD_IP_ADDRESS, host.getIpAddress(), doc);
+            addField(FIELD_MAC_ADDRESS, host.getMacAddress(), doc);
+            addField(FIELD_RESPONSIBLE_PERSON, host.getResponsiblePerson(), doc);
+        }
+
+        private void addField(int field, String value, int doc) {
+            if (value == null) {
+                return;
+            }
+            for (Long key : grams(field, value.toLowerCase(Locale.ROOT))) {
+                postings.computeIfAbsent(key, k -> new Postings()).add(doc);
+            }
+        }
+
+        private void remove(Long hostId) {
+            Integer doc = docs.remove(hostId);
+            if (doc != null) {
+                deleted.set(doc);
+            }
+        }
+
+        /**
+         * 包含查询词所有三元组的文档号（递增，可能包含已删除的文档）
+         */
+        private int[] match(int field, String term) {
+            List<Postings> lists = new ArrayList<>();
+            for (Long key : grams(field, term)) {
+                Postings list = postings.get(key);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            // 从最短的倒排表开始，其余倒排表二分查找
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            Postings shortest = lists.get(0);
+            int[] result = new int[shortest.size];
+            int n = 0;
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                boolean matched = true;
+                for (int k = 1; k < lists.size() && matched; k++) {
+                    Postings other = lists.get(k);
+                    matched = Arrays.binarySearch(other.docs, 0, other.size, doc) >= 0;
+                }
+                if (matched) {
+                    result[n++] = doc;
+                }
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        /**
+         * 文档号转换为主机ID，跳过已删除的文档
+         * @return 主机ID；超过上限时返回 null
+         */
+        private List<Long> toHostIds(int[] matched, int limit) {
+            List<Long> result = new ArrayList<>(Math.min(matched.length, limit));
+            for (int doc : matched) {
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                if (result.size() >= limit) {
+                    return null;
+                }
+                result.add(hostIds[doc]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 一个三元组的倒排表
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        private void add(int doc) {
+            // 同一文档只记录一次，文档号递增追加保证有序
+            if (size > 0 && docs[size - 1] == doc) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.example.demo.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.example.demo.dto.HostCursorPage;
 import com.example.demo.dto.HostDto;
+import com.example.demo.dto.HostImportResult;
 import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
 import com.example.demo.mapper.HostMapper;
 import com.example.demo.model.entity.Host;
 import com.example.demo.model.enums.AuthStatus;
@@ -12,6 +15,7 @@ import com.example.demo.model.enums.HostStatus;
 import com.example.demo.model.enums.OnlineStatus;
 import com.example.demo.service.HostService;
 import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.util.KeysetCursor;
 import com.example.demo.util.SnowflakeIdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,12 +28,20 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -37,18 +49,49 @@ import java.util.stream.Collectors;
 @Service
 public class HostServiceImpl implements HostService {
 
+    // 批量查询时每条IN语句包含的参数数量
+    private static final int IN_QUERY_CHUNK_SIZE = 500;
+
+    // 游标分页支持的排序字段（排序列有索引，游标值可以还原为原类型）
+    private static final Set<String> CURSOR_SORT_FIELDS =
+            new HashSet<>(Arrays.asList("createdAt", "hostName", "lastOnlineTime"));
+
+    // 游标分页每页最多返回的主机数量
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+
     private final HostMapper hostMapper;
     private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final HostSearchIndex hostSearchIndex;
     
     @Autowired
     private CacheAvailabilityService cacheAvailabilityService;
     
     @Autowired
     private CacheManager cacheManager;
+    
+    @Autowired
+    private HostPresenceBuffer hostPresenceBuffer;
+    
+    @Autowired
+    private HostOnlineStatusMonitorService hostOnlineStatusMonitorService;
+    
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
 
-    public HostServiceImpl(HostMapper hostMapper, SnowflakeIdGenerator snowflakeIdGenerator) {
+    @Autowired
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Autowired
+    private HostImportService hostImportService;
+
+    @Autowired
+    private HostExportService hostExportService;
+
+    public HostServiceImpl(HostMapper hostMapper, SnowflakeIdGenerator snowflakeIdGenerator,
+                           HostSearchIndex hostSearchIndex) {
         this.hostMapper = hostMapper;
         this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.hostSearchIndex = hostSearchIndex;
     }
 
     @Override
@@ -86,8 +129,10 @@ public class HostServiceImpl implements HostService {
         LocalDateTime now = LocalDateTime.now();
 
         boolean isUpdate = host.getId() != null;
+        Host previous = null;
         if (isUpdate) {
-            // 更新操作
+            // 更新操作（记录更新前的状态用于调整统计计数）
+            previous = hostMapper.selectById(host.getId());
             host.setUpdatedAt(now);
             hostMapper.updateById(host);
         } else {
@@ -101,6 +146,18 @@ public class HostServiceImpl implements HostService {
             hostMapper.insert(host);
         }
 
+        // 更新时只写入了非空字段，重新读取完整的状态（未指定终端类型时数据库使用默认值）
+        Host current = hostMapper.selectById(host.getId());
+        // 主机所在组织决定其组织子树策略（客户端ID为MAC地址），MAC地址修改后旧的客户端ID不再属于任何组织
+        if (previous != null && current != null && !Objects.equals(previous.getMacAddress(), current.getMacAddress())) {
+            orgPolicyResolver.removeClientsAfterCommit(Collections.singletonList(previous.getMacAddress()));
+        }
+        if (current != null) {
+            orgPolicyResolver.updateClientOrganizationAfterCommit(current.getMacAddress(), current.getOrganizationId());
+        }
+        hostSearchIndex.indexHostAfterCommit(host);
+        hostStatisticsCounters.recordAfterCommit(previous, current);
+
         Host result = host;
         boolean finalCacheAvailable = cacheAvailabilityService.isCacheAvailable();
         log.info("✅ 主机创建或更新完成，ID: {}, 缓存操作: {} ({})", 
@@ -130,6 +187,26 @@ public class HostServiceImpl implements HostService {
         return hostMapper.selectOne(queryWrapper);
     }
 
+    @Override
+    public List<Host> getHostsByMacAddresses(Collection<String> macAddresses) {
+        if (macAddresses == null || macAddresses.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> distinctMacs = macAddresses.stream()
+                .filter(StringUtils::hasText)
+                .distinct()
+                .collect(Collectors.toList());
+
+        List<Host> hosts = new ArrayList<>(distinctMacs.size());
+        for (int from = 0; from < distinctMacs.size(); from += IN_QUERY_CHUNK_SIZE) {
+            List<String> chunk = distinctMacs.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, distinctMacs.size()));
+            QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
+            queryWrapper.in("mac_address", chunk);
+            hosts.addAll(hostMapper.selectList(queryWrapper));
+        }
+        return hosts;
+    }
+
     @Override
     @Cacheable(value = "hosts", key = "'ip_org:' + #ipAddress + ':' + #organizationId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public Host getHostByIpAndOrganization(String ipAddress, String organizationId) {
@@ -148,14 +225,27 @@ public class HostServiceImpl implements HostService {
         }
 
         Page<Host> page = new Page<>(queryDto.getPage(), queryDto.getSize());
+
+        // 子串过滤先通过搜索索引解析为候选主机
+        HostSearchCandidates search = hostSearchIndex.search(queryDto);
         
         // 如果查询条件中包含责任人搜索，使用JOIN查询
         if (StringUtils.hasText(queryDto.getResponsiblePerson())) {
-            return hostMapper.selectHostsWithUserPage(page, queryDto);
+            return hostMapper.selectHostsWithUserPage(page, queryDto, search);
         }
         
         // 否则使用原有的查询方式
         QueryWrapper<Host> queryWrapper = buildQueryWrapper(queryDto);
+        if (search != null && search.getHostIds() != null) {
+            // 水位线之后修改的主机可能不在索引中，同样交给 LIKE 过滤
+            List<Long> hostIds = search.getHostIds();
+            queryWrapper.and(w -> {
+                w.ge("updated_at", search.getIndexWatermark());
+                if (!hostIds.isEmpty()) {
+                    w.or().in("id", hostIds);
+                }
+            });
+        }
 
         // 排序
         if (StringUtils.hasText(queryDto.getSortBy())) {
@@ -171,6 +261,62 @@ public class HostServiceImpl implements HostService {
         return hostMapper.selectPage(page, queryWrapper);
     }
 
+    @Override
+    public HostCursorPage getHostsByCursor(HostQueryDto queryDto) {
+        if (queryDto == null) {
+            queryDto = new HostQueryDto();
+        }
+
+        String sortBy = StringUtils.hasText(queryDto.getSortBy()) ? queryDto.getSortBy() : "createdAt";
+        if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("游标分页只支持按 " + CURSOR_SORT_FIELDS + " 排序: " + sortBy);
+        }
+        boolean descending = !"ASC".equalsIgnoreCase(queryDto.getSortDirection());
+        int size = Math.min(MAX_CURSOR_PAGE_SIZE, Math.max(1, queryDto.getSize() != null ? queryDto.getSize() : 10));
+
+        Object afterValue = null;
+        Long afterId = null;
+        if (StringUtils.hasText(queryDto.getCursor())) {
+            KeysetCursor cursor = KeysetCursor.decode(queryDto.getCursor());
+            if (!sortBy.equals(cursor.getSortBy()) || descending != cursor.isDescending()) {
+                throw new IllegalArgumentException("分页游标与当前排序条件不一致，请从第一页重新查询");
+            }
+            afterValue = parseCursorValue(sortBy, cursor.getValue());
+            afterId = cursor.getId();
+        }
+
+        HostCursorPage result = new HostCursorPage();
+        result.setSize(size);
+
+        // 子串过滤先通过搜索索引解析为候选主机
+        HostSearchCandidates search = hostSearchIndex.search(queryDto);
+
+        // 多读一行判断是否还有下一页
+        List<Host> rows = hostMapper.selectHostsByCursor(queryDto, sortBy, descending, afterValue, afterId, size + 1, search);
+        boolean hasMore = rows.size() > size;
+        List<Host> records = hasMore ? new ArrayList<>(rows.subList(0, size)) : rows;
+        result.setRecords(records);
+        result.setHasMore(hasMore);
+        if (hasMore) {
+            Host last = records.get(records.size() - 1);
+            result.setNextCursor(new KeysetCursor(sortBy, descending, cursorValueOf(last, sortBy), last.getId()).encode());
+        }
+        if (Boolean.TRUE.equals(queryDto.getIncludeTotal())) {
+            result.setTotal(hostMapper.countHosts(queryDto, search));
+        }
+        return result;
+    }
+
+    @Override
+    public HostImportResult importHosts(InputStream in, String format) throws IOException {
+        return hostImportService.importHosts(in, format);
+    }
+
+    @Override
+    public long exportHosts(HostQueryDto queryDto, String format, OutputStream out) throws IOException {
+        return hostExportService.exportHosts(queryDto, format, out);
+    }
+
     @Override
     @Cacheable(value = "hosts", key = "'org:' + #organizationId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public List<Host> getHostsByOrganization(String organizationId) {
@@ -222,6 +368,13 @@ public class HostServiceImpl implements HostService {
         }
 
         hostMapper.updateById(host);
+        hostStatisticsCounters.onlineStatusChangedAfterCommit(Collections.singletonList(existingHost), onlineStatus);
+        
+        // 主机离线后，后续心跳需要重新走离线->在线切换流程
+        if (onlineStatus == OnlineStatus.OFFLINE) {
+            hostPresenceBuffer.markOffline(hostId);
+            hostOnlineStatusMonitorService.disarm(hostId);
+        }
         
         // 清除组织级别的缓存
         evictOrganizationHostsCache(existingHost.getOrganizationId());
@@ -254,6 +407,7 @@ public class HostServiceImpl implements HostService {
         }
 
         hostMapper.updateById(host);
+        hostStatisticsCounters.authStatusChangedAfterCommit(Collections.singletonList(existingHost), authStatus);
         
         // 清除组织级别的缓存
         evictOrganizationHostsCache(existingHost.getOrganizationId());
@@ -266,11 +420,13 @@ public class HostServiceImpl implements HostService {
             return;
         }
 
+        // 批量获取主机信息，用于调整统计计数和清除缓存
+        List<Host> existingHosts = hostMapper.selectBatchIds(hostIds);
+        hostStatisticsCounters.authStatusChangedAfterCommit(existingHosts, authStatus);
+
         // 获取受影响的组织ID集合
         Set<String> affectedOrganizations = new HashSet<>();
         if (cacheAvailabilityService.isCacheAvailable()) {
-            // 批量获取主机信息，用于后续清除缓存
-            List<Host> existingHosts = hostMapper.selectBatchIds(hostIds);
             affectedOrganizations = existingHosts.stream()
                     .map(Host::getOrganizationId)
                     .filter(StringUtils::hasText)
@@ -312,7 +468,15 @@ public class HostServiceImpl implements HostService {
         if (hostId == null) {
             return;
         }
+        Host existingHost = hostMapper.selectById(hostId);
         hostMapper.deleteById(hostId);
+        hostStatisticsCounters.recordAfterCommit(existingHost, null);
+        hostPresenceBuffer.evictHost(hostId);
+        hostOnlineStatusMonitorService.disarm(hostId);
+        hostSearchIndex.removeHostsAfterCommit(Collections.singletonList(hostId));
+        if (existingHost != null) {
+            orgPolicyResolver.removeClientsAfterCommit(Collections.singletonList(existingHost.getMacAddress()));
+        }
     }
 
     @Override
@@ -322,54 +486,20 @@ public class HostServiceImpl implements HostService {
         if (hostIds == null || hostIds.isEmpty()) {
             return;
         }
+        List<Host> existingHosts = hostMapper.selectBatchIds(hostIds);
         hostMapper.deleteBatchIds(hostIds);
+        existingHosts.forEach(host -> hostStatisticsCounters.recordAfterCommit(host, null));
+        hostIds.forEach(hostPresenceBuffer::evictHost);
+        hostIds.forEach(hostOnlineStatusMonitorService::disarm);
+        hostSearchIndex.removeHostsAfterCommit(hostIds);
+        orgPolicyResolver.removeClientsAfterCommit(existingHosts.stream()
+                .map(Host::getMacAddress)
+                .collect(Collectors.toList()));
     }
 
     @Override
     public Map<String, Object> getHostStatistics(String organizationId) {
-        QueryWrapper<Host> queryWrapper = new QueryWrapper<>();
-        if (StringUtils.hasText(organizationId)) {
-            queryWrapper.eq("organization_id", organizationId);
-        }
-
-        List<Host> hosts = hostMapper.selectList(queryWrapper);
-
-        Map<String, Object> statistics = new HashMap<>();
-        statistics.put("totalCount", hosts.size());
-
-        // 按终端类型统计
-        Map<String, Long> terminalTypeStats = hosts.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        host -> host.getTerminalType().getDescription(),
-                        java.util.stream.Collectors.counting()
-                ));
-        statistics.put("terminalTypeStats", terminalTypeStats);
-
-        // 按主机状态统计
-        Map<String, Long> hostStatusStats = hosts.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        host -> host.getHostStatus().getDescription(),
-                        java.util.stream.Collectors.counting()
-                ));
-        statistics.put("hostStatusStats", hostStatusStats);
-
-        // 按在线状态统计
-        Map<String, Long> onlineStatusStats = hosts.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        host -> host.getOnlineStatus().getDescription(),
-                        java.util.stream.Collectors.counting()
-                ));
-        statistics.put("onlineStatusStats", onlineStatusStats);
-
-        // 按授权状态统计
-        Map<String, Long> authStatusStats = hosts.stream()
-                .collect(java.util.stream.Collectors.groupingBy(
-                        host -> host.getAuthStatus().getDescription(),
-                        java.util.stream.Collectors.counting()
-                ));
-        statistics.put("authStatusStats", authStatusStats);
-
-        return statistics;
+        return hostStatisticsCounters.getHostStatistics(organizationId);
     }
 
     @Override
@@ -456,6 +586,34 @@ public class HostServiceImpl implements HostService {
         return queryWrapper;
     }
 
+    /**
+     * 主机在游标排序字段上的值
+     */
+    private String cursorValueOf(Host host, String sortBy) {
+        switch (sortBy) {
+            case "hostName":
+                return host.getHostName();
+            case "lastOnlineTime":
+                return host.getLastOnlineTime() != null ? host.getLastOnlineTime().toString() : null;
+            default:
+                return host.getCreatedAt() != null ? host.getCreatedAt().toString() : null;
+        }
+    }
+
+    /**
+     * 把游标中的排序值还原为排序列的类型
+     */
+    private Object parseCursorValue(String sortBy, String value) {
+        if (value == null || "hostName".equals(sortBy)) {
+            return value;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
     /**
      * DTO转实体
      */
@@ -0,0 +1,358 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostStatusCount;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.AuthStatus;
+import com.example.demo.model.enums.HostStatus;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.model.enums.TerminalType;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 主机统计计数器
+ * 在内存中按组织维护 终端类型/主机状态/在线状态/授权状态 四个维度的主机数量，
+ * 主机统计和在线统计接口直接读取计数器，不再加载主机列表或执行 COUNT 查询。
+ * <p>
+ * 计数器由 HostServiceImpl 的各写操作和离线检测在事务提交后按 修改前/修改后 的状态增减；
+ * 启动时和定期通过一条 GROUP BY 查询全量对账，修正其他实例上的修改和并发造成的偏差。
+ * 首次对账完成前统计接口直接执行 GROUP BY 查询。
+ */
+@Slf4j
+@Service
+public class HostStatisticsCounters {
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    // 组织ID -> 该组织的计数器，对账时整体替换
+    private volatile Map<String, OrgCounters> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    private final LongAdder reconciliations = new LongAdder();
+    private volatile long lastReconcileAt;
+    private volatile long lastDrift;
+
+    /**
+     * 应用启动后加载计数器
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reconcile();
+    }
+
+    /**
+     * 定期与数据库对账
+     */
+    @Scheduled(initialDelayString = "${host.statistics.reconcile-interval-ms:300000}",
+               fixedDelayString = "${host.statistics.reconcile-interval-ms:300000}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * 通过 GROUP BY 查询重建计数器，并记录与内存计数的偏差
+     */
+    public synchronized void reconcile() {
+        long startTime = System.currentTimeMillis();
+        try {
+            Map<String, OrgCounters> loaded = aggregate(hostMapper.countByStatus(null));
+            if (ready) {
+                lastDrift = drift(counters, loaded);
+                if (lastDrift > 0) {
+                    log.warn("⚠️ 主机统计计数器与数据库存在偏差（计数差值合计 {}），已修正", lastDrift);
+                }
+            }
+            counters = loaded;
+            ready = true;
+            lastReconcileAt = System.currentTimeMillis();
+            reconciliations.increment();
+            log.info("📊 主机统计计数器对账完成: 组织={}, 耗时={}ms", loaded.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("❌ 主机统计计数器对账失败，{}", ready ? "继续使用内存计数" : "统计接口将直接查询数据库", e);
+        }
+    }
+
+    /**
+     * 事务提交后按主机修改前后的状态调整计数
+     * @param before 修改前的主机，新建主机时为 null
+     * @param after 修改后的主机，删除主机时为 null
+     */
+    public void recordAfterCommit(Host before, Host after) {
+        State from = State.of(before);
+        State to = State.of(after);
+        if (!Objects.equals(from, to)) {
+            record(from, to);
+        }
+    }
+
+    /**
+     * 事务提交后记录主机在线状态的变化
+     */
+    public void onlineStatusChangedAfterCommit(Collection<Host> hosts, OnlineStatus onlineStatus) {
+        for (Host host : hosts) {
+            State from = State.of(host);
+            if (from != null && from.onlineStatus != onlineStatus) {
+                record(from, new State(from.organizationId, from.terminalType, from.hostStatus, onlineStatus, from.authStatus));
+            }
+        }
+    }
+
+    /**
+     * 事务提交后记录主机授权状态的变化
+     */
+    public void authStatusChangedAfterCommit(Collection<Host> hosts, AuthStatus authStatus) {
+        for (Host host : hosts) {
+            State from = State.of(host);
+            if (from != null && from.authStatus != authStatus) {
+                record(from, new State(from.organizationId, from.terminalType, from.hostStatus, from.onlineStatus, authStatus));
+            }
+        }
+    }
+
+    /**
+     * 获取主机统计（组织为空时统计所有组织）
+     * 返回结构与原先按主机列表分组的结果一致，各维度只包含数量大于0的值
+     */
+    public Map<String, Object> getHostStatistics(String organizationId) {
+        OrgCounters total = new OrgCounters();
+        if (ready) {
+            if (StringUtils.hasText(organizationId)) {
+                OrgCounters org = counters.get(organizationId);
+                if (org != null) {
+                    total.add(org);
+                }
+            } else {
+                counters.values().forEach(total::add);
+            }
+        } else {
+            aggregate(hostMapper.countByStatus(organizationId)).values().forEach(total::add);
+        }
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("totalCount", total.total.get());
+        statistics.put("terminalTypeStats", describe(TerminalType.values(), total.terminalTypes));
+        statistics.put("hostStatusStats", describe(HostStatus.values(), total.hostStatuses));
+        statistics.put("onlineStatusStats", describe(OnlineStatus.values(), total.onlineStatuses));
+        statistics.put("authStatusStats", describe(AuthStatus.values(), total.authStatuses));
+        return statistics;
+    }
+
+    /**
+     * 所有组织的在线/离线主机数量
+     */
+    public HostOnlineStatusMonitorService.HostOnlineStatistics getOnlineStatistics() {
+        OrgCounters total = new OrgCounters();
+        if (ready) {
+            counters.values().forEach(total::add);
+        } else {
+            aggregate(hostMapper.countByStatus(null)).values().forEach(total::add);
+        }
+        return new HostOnlineStatusMonitorService.HostOnlineStatistics(
+                total.onlineStatuses.get(OnlineStatus.ONLINE.ordinal()),
+                total.onlineStatuses.get(OnlineStatus.OFFLINE.ordinal()),
+                total.total.get());
+    }
+
+    /**
+     * 获取计数器统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("ready", ready);
+        statistics.put("organizations", counters.size());
+        statistics.put("reconciliations", reconciliations.sum());
+        statistics.put("lastReconcileAt", lastReconcileAt);
+        statistics.put("lastDrift", lastDrift);
+        return statistics;
+    }
+
+    private void record(State from, State to) {
+        TransactionCallbacks.afterCommit(() -> {
+            apply(from, -1);
+            apply(to, 1);
+        });
+    }
+
+    private void apply(State state, int delta) {
+        if (state == null) {
+            return;
+        }
+        counters.computeIfAbsent(state.organizationId, id -> new OrgCounters()).add(state, delta);
+    }
+
+    private static Map<String, OrgCounters> aggregate(List<HostStatusCount> rows) {
+        Map<String, OrgCounters> result = new ConcurrentHashMap<>();
+        for (HostStatusCount row : rows) {
+            State state = new State(row.getOrganizationId() != null ? row.getOrganizationId() : "",
+                    row.getTerminalType(), row.getHostStatus(), row.getOnlineStatus(), row.getAuthStatus());
+            result.computeIfAbsent(state.organizationId, id -> new OrgCounters())
+                  .add(state, row.getHostCount() != null ? row.getHostCount() : 0);
+        }
+        return result;
+    }
+
+    /**
+     * 两份计数器的差异：各组织在 主机总数和各状态计数 上的差值绝对值之和
+     */
+    private static long drift(Map<String, OrgCounters> current, Map<String, OrgCounters> loaded) {
+        OrgCounters empty = new OrgCounters();
+        long drift = 0;
+        for (Map.Entry<String, OrgCounters> entry : loaded.entrySet()) {
+            drift += entry.getValue().difference(current.getOrDefault(entry.getKey(), empty));
+        }
+        for (Map.Entry<String, OrgCounters> entry : current.entrySet()) {
+            if (!loaded.containsKey(entry.getKey())) {
+                drift += entry.getValue().difference(empty);
+            }
+        }
+        return drift;
+    }
+
+    private static Map<String, Long> describe(Enum<?>[] values, AtomicLongArray counts) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                result.put(description(values[i]), count);
+            }
+        }
+        return result;
+    }
+
+    private static String description(Enum<?> value) {
+        if (value instanceof TerminalType) {
+            return ((TerminalType) value).getDescription();
+        }
+        if (value instanceof HostStatus) {
+            return ((HostStatus) value).getDescription();
+        }
+        if (value instanceof OnlineStatus) {
+            return ((OnlineStatus) value).getDescription();
+        }
+        if (value instanceof AuthStatus) {
+            return ((AuthStatus) value).getDescription();
+        }
+        return value.name();
+    }
+
+    /**
+     * 一个组织的计数器
+     */
+    private static final class OrgCounters {
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLongArray terminalTypes = new AtomicLongArray(TerminalType.values().length);
+        private final AtomicLongArray hostStatuses = new AtomicLongArray(HostStatus.values().length);
+        private final AtomicLongArray onlineStatuses = new AtomicLongArray(OnlineStatus.values().length);
+        private final AtomicLongArray authStatuses = new AtomicLongArray(AuthStatus.values().length);
+
+        private void add(State state, long delta) {
+            total.addAndGet(delta);
+            add(terminalTypes, state.terminalType, delta);
+            add(hostStatuses, state.hostStatus, delta);
+            add(onlineStatuses, state.onlineStatus, delta);
+            add(authStatuses, state.authStatus, delta);
+        }
+
+        private void add(OrgCounters other) {
+            total.addAndGet(other.total.get());
+            addAll(terminalTypes, other.terminalTypes);
+            addAll(hostStatuses, other.hostStatuses);
+            addAll(onlineStatuses, other.onlineStatuses);
+            addAll(authStatuses, other.authStatuses);
+        }
+
+        private long difference(OrgCounters other) {
+            return Math.abs(total.get() - other.total.get())
+                    + difference(terminalTypes, other.terminalTypes)
+                    + difference(hostStatuses, other.hostStatuses)
+                    + difference(onlineStatuses, other.onlineStatuses)
+                    + difference(authStatuses, other.authStatuses);
+        }
+
+        private static long difference(AtomicLongArray counts, AtomicLongArray other) {
+            long difference = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                difference += Math.abs(counts.get(i) - other.get(i));
+            }
+            return difference;
+        }
+
+        private static void add(AtomicLongArray counts, Enum<?> value, long delta) {
+            if (value != null) {
+                counts.addAndGet(value.ordinal(), delta);
+            }
+        }
+
+        private static void addAll(AtomicLongArray counts, AtomicLongArray other) {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.addAndGet(i, other.get(i));
+            }
+        }
+    }
+
+    /**
+     * 主机在计数器中的位置（组织 + 四个状态维度）
+     */
+    private static final class State {
+        private final String organizationId;
+        private final TerminalType terminalType;
+        private final HostStatus hostStatus;
+        private final OnlineStatus onlineStatus;
+        private final AuthStatus authStatus;
+
+        private State(String organizationId, TerminalType terminalType, HostStatus hostStatus,
+                      OnlineStatus onlineStatus, AuthStatus authStatus) {
+            this.organizationId = organizationId;
+            this.terminalType = terminalType;
+            this.hostStatus = hostStatus;
+            this.onlineStatus = onlineStatus;
+            this.authStatus = authStatus;
+        }
+
+        private static State of(Host host) {
+            if (host == null) {
+                return null;
+            }
+            return new State(host.getOrganizationId() != null ? host.getOrganizationId() : "",
+                    host.getTerminalType(), host.getHostStatus(), host.getOnlineStatus(), host.getAuthStatus());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State other = (State) o;
+            return Objects.equals(organizationId, other.organizationId) && terminalType == other.terminalType
+                    && hostStatus == other.hostStatus && onlineStatus == other.onlineStatus && authStatus == other.authStatus;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(organizationId, terminalType, hostStatus, onlineStatus, authStatus);
+        }
+    }
+}
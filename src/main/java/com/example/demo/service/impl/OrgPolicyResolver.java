@@ -0,0 +1,505 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.mapper.OrgPolicyMappingMapper;
+import com.example.demo.mapper.OrganizationMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.entity.OrgPolicyMapping;
+import com.example.demo.model.entity.Organization;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 组织策略解析
+ * 策略可以分配到组织节点，对该组织的整个子树生效：解析时从客户端所在组织沿祖先链向上，
+ * 第一个绑定了启用策略的组织决定客户端的策略。覆盖一个部门只需要一行 org_policy_mappings。
+ * <p>
+ * 在内存中维护三张表：
+ * <ul>
+ *   <li>组织ID -> 祖先链（自身在前，依次向上到根），启动时和每次组织架构同步后预先计算</li>
+ *   <li>组织ID -> 直接绑定的策略ID，由 PolicyAdminServiceImpl 的写操作在事务提交后同步维护</li>
+ *   <li>客户端ID（主机MAC地址） -> 组织ID，启动时通过流式游标加载，主机创建/修改/删除时同步维护</li>
+ * </ul>
+ * 解析一次只是几次哈希查找，不访问数据库。定期全量重新加载修正其他实例上的修改，发现变化时推进全局纪元；
+ * 加载期间本节点修改的组织策略和客户端所在组织在加载完成后重新查询，避免被加载时读到的旧数据覆盖。
+ * 优先级：客户端自身激活的策略 > 组织子树策略 > 默认策略。
+ */
+@Slf4j
+@Service
+public class OrgPolicyResolver {
+
+    // 根级别组织的上级组织ID
+    private static final String ROOT_PARENT_ID = "0";
+
+    // 祖先链的最大长度，超过时视为数据异常（例如父子关系成环）并截断
+    private static final int MAX_DEPTH = 64;
+
+    @Autowired
+    private OrganizationMapper organizationMapper;
+
+    @Autowired
+    private OrgPolicyMappingMapper orgPolicyMappingMapper;
+
+    @Autowired
+    private HostMapper hostMapper;
+
+    @Autowired
+    private PolicyCatalog policyCatalog;
+
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+
+    // 组织ID -> 祖先链（自身在前），整体替换
+    private volatile Map<String, String[]> ancestors = Collections.emptyMap();
+
+    // 组织ID -> 直接绑定的策略ID
+    private volatile Map<String, Long> orgPolicies = new ConcurrentHashMap<>();
+
+    // 客户端ID（主机MAC地址） -> 组织ID
+    private volatile Map<String, String> clientOrganizations = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private volatile boolean loading;
+    private volatile int maxDepth;
+
+    // 加载期间绑定策略发生变化的组织，加载完成后重新查询
+    private final Set<String> orgsChangedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    // 加载期间所在组织发生变化的客户端，加载完成后重新查询
+    private final Set<String> clientsChangedDuringLoad = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 应用启动后加载组织层级、组织策略和客户端所在组织
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * 定期全量重新加载，修正其他实例上的修改
+     */
+    @Scheduled(initialDelayString = "${policy.table.reload-interval-ms:600000}",
+               fixedDelayString = "${policy.table.reload-interval-ms:600000}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * 从数据库全量重新加载
+     */
+    public synchronized void reload() {
+        long startTime = System.currentTimeMillis();
+        loading = true;
+        try {
+            boolean hierarchyChanged = rebuildHierarchy();
+            Map<String, Long> previousPolicies = orgPolicies;
+            Map<String, String> previousClients = clientOrganizations;
+
+            Map<String, Long> loadedPolicies = new ConcurrentHashMap<>();
+            for (OrgPolicyMapping mapping : orgPolicyMappingMapper.selectList(null)) {
+                loadedPolicies.put(canonicalOrgId(mapping.getOrgId()), mapping.getPolicyId());
+            }
+
+            Map<String, String> loadedClients = new ConcurrentHashMap<>(Math.max(16, clientOrganizations.size() * 4 / 3 + 1));
+            hostMapper.streamClientOrganizations(context -> {
+                Host host = context.getResultObject();
+                if (host.getMacAddress() != null && host.getOrganizationId() != null) {
+                    loadedClients.put(host.getMacAddress(), canonicalOrgId(host.getOrganizationId()));
+                }
+            });
+
+            orgPolicies = loadedPolicies;
+            clientOrganizations = loadedClients;
+
+            // 加载期间提交的修改作用在旧数据上，或被加载时读到的旧数据覆盖，逐个重新查询
+            while (!orgsChangedDuringLoad.isEmpty() || !clientsChangedDuringLoad.isEmpty()) {
+                List<String> changedOrgs = new ArrayList<>(orgsChangedDuringLoad);
+                orgsChangedDuringLoad.removeAll(changedOrgs);
+                changedOrgs.forEach(this::refreshOrgPolicy);
+                List<String> changedClients = new ArrayList<>(clientsChangedDuringLoad);
+                clientsChangedDuringLoad.removeAll(changedClients);
+                changedClients.forEach(this::refreshClientOrganization);
+            }
+            loading = false;
+
+            // 与加载前的数据比较：本节点的修改两边都已包含，只有其他实例的修改会被视为变化
+            boolean changed = hierarchyChanged
+                    || !loadedPolicies.equals(previousPolicies)
+                    || !loadedClients.equals(previousClients);
+            // 首次加载之前客户端还没有拿到过本节点的纪元；没有组织策略时层级和归属变化不影响任何客户端
+            if (ready && changed && !loadedPolicies.isEmpty()) {
+                log.info("🔢 重新加载发现组织策略变化（可能来自其他实例），推进全局策略纪元");
+                policyEpochTracker.bumpGlobal();
+            }
+            ready = true;
+            log.info("🏢 组织策略解析加载完成: 组织={}, 组织策略={}, 客户端={}, 耗时={}ms",
+                    ancestors.size(), loadedPolicies.size(), loadedClients.size(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            // 加载失败时修改已经作用在继续使用的数据上
+            orgsChangedDuringLoad.clear();
+            clientsChangedDuringLoad.clear();
+            log.error("❌ 加载组织策略解析数据失败，{}", ready ? "继续使用上一次加载的数据" : "暂不应用组织策略", e);
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * 重新计算所有组织的祖先链
+     * @return 祖先链是否与之前不同
+     */
+    public synchronized boolean rebuildHierarchy() {
+        Map<String, String> parents = new HashMap<>();
+        for (Organization organization : organizationMapper.selectList(null)) {
+            parents.put(organization.getId(), organization.getParentId());
+        }
+
+        Map<String, String[]> chains = new HashMap<>(Math.max(16, parents.size() * 4 / 3 + 1));
+        int deepest = 0;
+        for (String orgId : parents.keySet()) {
+            String[] chain = buildChain(orgId, parents, chains);
+            deepest = Math.max(deepest, chain.length);
+        }
+        Map<String, String[]> previous = ancestors;
+        ancestors = chains;
+        maxDepth = deepest;
+        log.info("🏢 组织祖先链已重建: 组织={}, 最大深度={}", chains.size(), deepest);
+        return !sameChains(previous, chains);
+    }
+
+    /**
+     * 组织架构同步后重建祖先链（在同步事务提交后执行）
+     * 层级变化会改变子树中客户端的组织策略，存在组织策略时推进全局纪元
+     */
+    public void rebuildHierarchyAfterCommit() {
+        TransactionCallbacks.afterCommit(() -> {
+            try {
+                rebuildHierarchy();
+            } catch (Exception e) {
+                log.warn("⚠️ 重建组织祖先链失败，继续使用旧数据: {}", e.getMessage());
+            }
+        });
+        if (!orgPolicies.isEmpty()) {
+            policyEpochTracker.bumpGlobalAfterCommit();
+        }
+    }
+
+    /**
+     * 是否已完成加载
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 沿客户端所在组织的祖先链解析组织策略
+     * @return 最近的绑定了启用的非默认策略的组织的策略；客户端不属于任何组织或链上没有可用策略时返回 null
+     */
+    public Policy resolve(String clientId) {
+        if (!ready || clientId == null || orgPolicies.isEmpty()) {
+            return null;
+        }
+        String orgId = clientOrganizations.get(clientId);
+        if (orgId == null) {
+            return null;
+        }
+        for (String ancestor : chainOf(orgId)) {
+            Long policyId = orgPolicies.get(ancestor);
+            if (policyId != null) {
+                Policy policy = policyCatalog.get(policyId);
+                if (policy != null && "enabled".equals(policy.getStatus()) && !Boolean.TRUE.equals(policy.getIsDefault())) {
+                    return policy;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 组织直接绑定的策略
+     * @return 组织ID -> 策略ID
+     */
+    public Map<String, Long> getOrgPolicies() {
+        return new HashMap<>(orgPolicies);
+    }
+
+    /**
+     * 事务提交后记录组织绑定了指定策略
+     */
+    public void setOrgPolicyAfterCommit(String orgId, Long policyId) {
+        if (orgId == null || policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            orgPolicies.put(canonicalOrgId(orgId), policyId);
+            markOrgChanged(orgId);
+        });
+    }
+
+    /**
+     * 事务提交后移除组织绑定的策略
+     */
+    public void removeOrgPolicyAfterCommit(String orgId) {
+        if (orgId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            orgPolicies.remove(orgId);
+            markOrgChanged(orgId);
+        });
+    }
+
+    /**
+     * 事务提交后移除所有组织与指定策略的绑定（策略被删除时使用）
+     */
+    public void removePolicyAfterCommit(Long policyId) {
+        if (policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            List<String> unbound = new ArrayList<>();
+            orgPolicies.forEach((orgId, boundPolicyId) -> {
+                if (policyId.equals(boundPolicyId)) {
+                    unbound.add(orgId);
+                }
+            });
+            unbound.forEach(orgPolicies::remove);
+            unbound.forEach(this::markOrgChanged);
+        });
+    }
+
+    /**
+     * 主机创建或修改后更新客户端所在组织（在事务提交后生效）
+     * 组织发生变化时推进该客户端的纪元，使其重新获取策略
+     */
+    public void updateClientOrganizationAfterCommit(String clientId, String orgId) {
+        if (!StringUtils.hasText(clientId) || !StringUtils.hasText(orgId)) {
+            return;
+        }
+        if (Objects.equals(clientOrganizations.get(clientId), orgId)) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            clientOrganizations.put(clientId, canonicalOrgId(orgId));
+            markClientChanged(clientId);
+        });
+        policyEpochTracker.bumpClientAfterCommit(clientId);
+    }
+
+    /**
+     * 主机删除或MAC地址修改后移除客户端所在组织（在事务提交后生效）
+     * 推进这些客户端的纪元，仍在使用旧客户端ID的客户端重新获取策略时不再命中组织策略
+     */
+    public void removeClientsAfterCommit(Collection<String> clientIds) {
+        if (clientIds == null) {
+            return;
+        }
+        List<String> removed = clientIds.stream()
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toList());
+        if (removed.isEmpty()) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            for (String clientId : removed) {
+                clientOrganizations.remove(clientId);
+                markClientChanged(clientId);
+            }
+        });
+        policyEpochTracker.bumpClientsAfterCommit(removed);
+    }
+
+    /**
+     * 获取组织子树（包括组织自身）中的所有客户端
+     */
+    public List<String> getClientsInSubtree(String orgId) {
+        if (orgId == null) {
+            return Collections.emptyList();
+        }
+        return getClientsInSubtrees(Collections.singleton(orgId));
+    }
+
+    /**
+     * 获取通过组织子树使用指定策略的所有客户端（不考虑更近的组织或客户端自身的策略覆盖）
+     */
+    public List<String> getClientsByPolicy(Long policyId) {
+        if (policyId == null || orgPolicies.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> boundOrgs = new HashSet<>();
+        orgPolicies.forEach((orgId, boundPolicyId) -> {
+            if (policyId.equals(boundPolicyId)) {
+                boundOrgs.add(orgId);
+            }
+        });
+        return getClientsInSubtrees(boundOrgs);
+    }
+
+    /**
+     * 获取组织策略解析统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("ready", ready);
+        statistics.put("organizations", ancestors.size());
+        statistics.put("maxDepth", maxDepth);
+        statistics.put("orgPolicies", orgPolicies.size());
+        statistics.put("clients", clientOrganizations.size());
+        return statistics;
+    }
+
+    /**
+     * 从数据库重新查询组织直接绑定的策略
+     */
+    private void refreshOrgPolicy(String orgId) {
+        QueryWrapper<OrgPolicyMapping> mappingQuery = new QueryWrapper<>();
+        mappingQuery.eq("org_id", orgId).last("LIMIT 1");
+        OrgPolicyMapping mapping = orgPolicyMappingMapper.selectOne(mappingQuery);
+        if (mapping != null) {
+            orgPolicies.put(canonicalOrgId(orgId), mapping.getPolicyId());
+        } else {
+            orgPolicies.remove(orgId);
+        }
+    }
+
+    /**
+     * 从数据库重新查询客户端所在组织
+     */
+    private void refreshClientOrganization(String clientId) {
+        QueryWrapper<Host> hostQuery = new QueryWrapper<>();
+        hostQuery.select("mac_address", "organization_id").eq("mac_address", clientId);
+        Host host = hostMapper.selectOne(hostQuery);
+        if (host != null && host.getOrganizationId() != null) {
+            clientOrganizations.put(clientId, canonicalOrgId(host.getOrganizationId()));
+        } else {
+            clientOrganizations.remove(clientId);
+        }
+    }
+
+    /**
+     * 修改已作用于当前数据之后调用：加载期间的修改在加载完成后重新查询
+     */
+    private void markOrgChanged(String orgId) {
+        if (loading) {
+            orgsChangedDuringLoad.add(orgId);
+        }
+    }
+
+    private void markClientChanged(String clientId) {
+        if (loading) {
+            clientsChangedDuringLoad.add(clientId);
+        }
+    }
+
+    /**
+     * 子树查询需要扫描所有客户端，只在管理操作中使用
+     */
+    private List<String> getClientsInSubtrees(Set<String> orgIds) {
+        if (orgIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // 同一组织的客户端共享祖先链，按组织缓存判断结果
+        Map<String, Boolean> inSubtree = new HashMap<>();
+        List<String> clients = new ArrayList<>();
+        clientOrganizations.forEach((clientId, orgId) -> {
+            boolean matched = inSubtree.computeIfAbsent(orgId, id -> {
+                for (String ancestor : chainOf(id)) {
+                    if (orgIds.contains(ancestor)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+            if (matched) {
+                clients.add(clientId);
+            }
+        });
+        return clients;
+    }
+
+    private String[] chainOf(String orgId) {
+        String[] chain = ancestors.get(orgId);
+        // 组织架构中不存在的组织（例如同步后已删除）只匹配自身
+        return chain != null ? chain : new String[]{orgId};
+    }
+
+    private String[] buildChain(String orgId, Map<String, String> parents, Map<String, String[]> chains) {
+        String[] cached = chains.get(orgId);
+        if (cached != null) {
+            return cached;
+        }
+        // 向上走到根或已计算过的祖先，再把剩余的链拼接上
+        List<String> path = new ArrayList<>();
+        String current = orgId;
+        String[] suffix = new String[0];
+        while (current != null && !ROOT_PARENT_ID.equals(current) && parents.containsKey(current)) {
+            String[] known = chains.get(current);
+            if (known != null) {
+                suffix = known;
+                break;
+            }
+            if (path.size() >= MAX_DEPTH || path.contains(current)) {
+                log.warn("⚠️ 组织 {} 的层级超过 {} 层或存在循环，祖先链已截断", orgId, MAX_DEPTH);
+                break;
+            }
+            path.add(current);
+            current = parents.get(current);
+        }
+
+        String[] chain = new String[path.size() + suffix.length];
+        for (int i = 0; i < path.size(); i++) {
+            chain[i] = path.get(i);
+        }
+        System.arraycopy(suffix, 0, chain, path.size(), suffix.length);
+        chains.put(orgId, chain);
+        // 路径上的每个组织的祖先链都是该链的后缀
+        for (int i = 1; i < path.size(); i++) {
+            String[] tail = new String[chain.length - i];
+            System.arraycopy(chain, i, tail, 0, tail.length);
+            chains.putIfAbsent(path.get(i), tail);
+        }
+        return chain;
+    }
+
+    private static boolean sameChains(Map<String, String[]> previous, Map<String, String[]> current) {
+        if (previous.size() != current.size()) {
+            return false;
+        }
+        for (Map.Entry<String, String[]> entry : current.entrySet()) {
+            if (!Arrays.equals(previous.get(entry.getKey()), entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 复用祖先链中的组织ID实例，避免每个客户端各持有一份相同的字符串
+     */
+    private String canonicalOrgId(String orgId) {
+        String[] chain = ancestors.get(orgId);
+        return chain != null && chain.length > 0 ? chain[0] : orgId;
+    }
+}
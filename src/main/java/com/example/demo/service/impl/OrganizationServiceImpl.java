@@ -23,9 +23,11 @@ import java.util.stream.Collectors;
 public class OrganizationServiceImpl implements OrganizationService {
     
     private final OrganizationMapper organizationMapper;
+    private final OrgPolicyResolver orgPolicyResolver;
     
-    public OrganizationServiceImpl(OrganizationMapper organizationMapper) {
+    public OrganizationServiceImpl(OrganizationMapper organizationMapper, OrgPolicyResolver orgPolicyResolver) {
         this.organizationMapper = organizationMapper;
+        this.orgPolicyResolver = orgPolicyResolver;
     }
     
     @Override
@@ -81,6 +83,9 @@ public class OrganizationServiceImpl implements OrganizationService {
                 organizationMapper.insert(org);
             }
             
+            // 5. 事务提交后重建组织祖先链，组织子树策略按新的层级解析
+            orgPolicyResolver.rebuildHierarchyAfterCommit();
+            
             log.info("✅ 组织架构同步完成，成功插入 {} 条记录", organizations.size());
             return true;
             
@@ -1,46 +1,56 @@
 package com.example.demo.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.dto.PolicyAssignmentProgress;
 import com.example.demo.dto.PolicyDto;
 import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.mapper.OrgPolicyMappingMapper;
+import com.example.demo.mapper.OrganizationMapper;
 import com.example.demo.mapper.PolicyMapper;
 import com.example.demo.model.entity.ClientPolicyMapping;
+import com.example.demo.model.entity.OrgPolicyMapping;
 import com.example.demo.model.entity.Policy;
 import com.example.demo.service.HeartbeatService;
 import com.example.demo.service.PolicyAdminService;
+import com.example.demo.util.PolicyFingerprint;
 import com.example.demo.util.SnowflakeIdGenerator;
-import org.redisson.api.RBatch;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
 import org.redisson.api.RMap;
 import org.redisson.api.RSet;
 import com.example.demo.service.CacheAvailabilityService;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class PolicyAdminServiceImpl implements PolicyAdminService {
 
+    // 批量查询时每条IN语句包含的参数数量
+    private static final int IN_QUERY_CHUNK_SIZE = 500;
+
     @Autowired
     private PolicyMapper policyMapper;
     
     @Autowired
     private ClientPolicyMappingMapper clientPolicyMappingMapper;
     
-    @Autowired
-    private RedissonClient redissonClient;
-    
     @Autowired
     private SnowflakeIdGenerator snowflakeIdGenerator;
     
@@ -49,11 +59,49 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
     
     @Autowired
     private CacheAvailabilityService cacheAvailabilityService;
+    
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+    
+    @Autowired
+    private PolicyPushService policyPushService;
+    
+    @Autowired
+    private PolicyResponseCache policyResponseCache;
+    
+    @Autowired
+    private PolicyRevisionStore policyRevisionStore;
+    
+    @Autowired
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @Autowired
+    private CachePrewarmScheduler cachePrewarmScheduler;
+
+    @Autowired
+    private ClientCacheIndex clientCacheIndex;
+
+    @Autowired
+    private PolicyRolloutManager policyRolloutManager;
+    
+    @Autowired
+    private PolicyCatalog policyCatalog;
+    
+    @Autowired
+    private PolicyAssignmentEngine policyAssignmentEngine;
+
+    @Autowired
+    private OrgPolicyMappingMapper orgPolicyMappingMapper;
+
+    @Autowired
+    private OrganizationMapper organizationMapper;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
 
 
     @Override
     @Transactional
-    @CachePut(value = "policies", key = "#result.id", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public Policy createOrUpdatePolicy(PolicyDto policyDto) {
         if (policyDto == null) {
             throw new IllegalArgumentException("策略数据不能为null");
@@ -64,39 +112,63 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
 
         // 检查是否为更新操作且目标是默认策略
         boolean isUpdate = policy.getId() != null;
+        Policy existingPolicy = null;
         if (isUpdate) {
-            Policy existingPolicy = policyMapper.selectById(policy.getId());
+            existingPolicy = policyMapper.selectById(policy.getId());
             if (existingPolicy != null && Boolean.TRUE.equals(existingPolicy.getIsDefault())) {
                 throw new IllegalArgumentException("默认策略不可修改");
             }
             policy.setUpdatedAt(LocalDateTime.now());
+            policy.setFingerprint(PolicyFingerprint.compute(policy));
             policyMapper.updateById(policy);
         } else {
             // 新创建策略
             policy.setId(snowflakeIdGenerator.nextId());
             policy.setCreatedAt(LocalDateTime.now());
             policy.setUpdatedAt(LocalDateTime.now());
+            policy.setFingerprint(PolicyFingerprint.compute(policy));
             policyMapper.insert(policy);
         }
 
+        // 提交后的回调按注册顺序执行：分批发布状态、策略目录和缓存都更新完之后才推进纪元，
+        // 否则两者之间到达的心跳会拿到新纪元和旧策略，之后一直走纪元快速路径。
+        // 分批发布必须在目录重建之前开始，否则期间到达的心跳会拿到全量暴露的新版本
+        boolean rollout = isUpdate && policyRolloutManager.isRolloutRequested(policyDto.getRollout());
+        if (isUpdate) {
+            if (rollout) {
+                // 分批发布：新版本按波次暴露给客户端，不做全量推送
+                policyRolloutManager.startAfterCommit(existingPolicy);
+            } else {
+                policyRolloutManager.cancelAfterCommit(policy.getId());
+            }
+        }
+        policyCatalog.rebuildAfterCommit();
+        if (isUpdate) {
+            policyResponseCache.evictAfterCommit(policy.getId());
+            clientCacheIndex.evictPolicyClientsAfterCommit(policy.getId());
+        }
+        policyEpochTracker.bumpGlobalAfterCommit();
+        if (isUpdate && !rollout) {
+            policyPushService.publishPolicyAfterCommit(policy.getId());
+        }
+
         // 策略创建/更新后，异步预热相关客户端缓存
-        preWarmAffectedClients(policy.getId(), isUpdate);
+        preWarmAffectedClients(policy.getId());
 
         return policy;
     }
 
     @Override
-    @Cacheable(value = "policies", key = "#policyId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public Policy getPolicyById(Long policyId) {
         if (policyId == null) {
             return null;
         }
-        return policyMapper.selectById(policyId);
+        // 策略目录在每次策略写入提交后重建，直接读取内存快照
+        return policyCatalog.get(policyId);
     }
 
     @Override
     @Transactional
-    @CacheEvict(value = "clientPolicies", key = "#clientId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public void assignPolicyToClient(String clientId, Long policyId) {
         if (clientId == null || policyId == null) {
             return;
@@ -108,96 +180,101 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
             throw new IllegalArgumentException("策略不存在: " + policyId);
         }
 
-        // 2. 检查是否已存在关联
-        QueryWrapper<ClientPolicyMapping> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("client_id", clientId).eq("policy_id", policyId);
-        ClientPolicyMapping existingMapping = clientPolicyMappingMapper.selectOne(queryWrapper);
-        
-        LocalDateTime now = LocalDateTime.now();
-        
-        if (existingMapping != null) {
-            // 已存在关联，更新激活状态
-            deactivateAllClientPolicies(clientId);
-            existingMapping.setIsActive(true);
-            existingMapping.setActivatedAt(now);
-            clientPolicyMappingMapper.updateById(existingMapping);
-        } else {
-            // 不存在关联，创建新的
-            deactivateAllClientPolicies(clientId);
-            
-            ClientPolicyMapping mapping = new ClientPolicyMapping();
-            mapping.setClientId(clientId);
-            mapping.setPolicyId(policyId);
-            mapping.setAssignedAt(now);
-            mapping.setActivatedAt(now);
-            mapping.setIsActive(true);
-            clientPolicyMappingMapper.insert(mapping);
-        }
+        // 2. 停用客户端的所有策略，再插入或激活该关联（语句数量与客户端的历史关联数量无关）
+        clientPolicyMappingMapper.deactivateAllForClient(clientId);
+        clientPolicyMappingMapper.upsertActiveMapping(clientId, policyId, LocalDateTime.now());
+
+        // 生效策略表和缓存先更新，最后推进纪元
+        effectivePolicyTable.setActivePolicyAfterCommit(clientId, policyId);
+        clientCacheIndex.addMappingsAfterCommit(policyId, Collections.singletonList(clientId));
+        clientCacheIndex.evictClientsAfterCommit(Collections.singletonList(clientId));
+        policyEpochTracker.bumpClientAfterCommit(clientId);
+        policyPushService.publishAfterCommit(clientId);
 
         // 策略分配后，异步预热客户端缓存
         preWarmClientCache(clientId);
     }
 
     @Override
-    @Transactional
     public void assignPolicyToClients(List<String> clientIdsList, Long policyId) {
         if (clientIdsList == null || policyId == null) {
             return;
         }
+        // 差异计算和分块写入由批量分配引擎完成，每块一个短事务
+        policyAssignmentEngine.assign(policyId, clientIdsList);
+    }
+
+    @Override
+    public PolicyAssignmentProgress submitAssignment(Long policyId, InputStream clientIdsJson) throws IOException {
+        return policyAssignmentEngine.submit(policyId, clientIdsJson);
+    }
+
+    @Override
+    public PolicyAssignmentProgress getAssignmentProgress(String jobId) {
+        return policyAssignmentEngine.getProgress(jobId);
+    }
+
+    @Override
+    @Transactional
+    public void assignPolicyToOrganization(String orgId, Long policyId) {
+        if (!StringUtils.hasText(orgId) || policyId == null) {
+            return;
+        }
 
-        // 1. 验证策略是否存在
+        // 1. 检查策略和组织是否存在
         Policy policy = policyMapper.selectById(policyId);
         if (policy == null) {
             throw new IllegalArgumentException("策略不存在: " + policyId);
         }
+        if (Boolean.TRUE.equals(policy.getIsDefault())) {
+            throw new IllegalArgumentException("默认策略对所有客户端生效，无需分配到组织");
+        }
+        if (organizationMapper.selectById(orgId) == null) {
+            throw new IllegalArgumentException("组织不存在: " + orgId);
+        }
 
-        // 2. 首先获取该策略当前关联的所有客户端ID（用于后续缓存清理）
-        QueryWrapper<ClientPolicyMapping> queryForOldClients = new QueryWrapper<>();
-        queryForOldClients.eq("policy_id", policyId).select("client_id");
-        List<String> oldClientIds = clientPolicyMappingMapper.selectList(queryForOldClients)
-                .stream()
-                .map(ClientPolicyMapping::getClientId)
-                .distinct()
-                .collect(Collectors.toList());
+        // 2. 组织已绑定其他策略时直接替换，整个子树只需要这一行映射
+        orgPolicyMappingMapper.upsertOrgPolicy(orgId, policyId, LocalDateTime.now());
 
-        // 3. 清空该策略关联的所有客户端ID
-        QueryWrapper<ClientPolicyMapping> deleteWrapper = new QueryWrapper<>();
-        deleteWrapper.eq("policy_id", policyId);
-        clientPolicyMappingMapper.delete(deleteWrapper);
-
-        // 4. 全量关联新的客户端ID列表
-        LocalDateTime now = LocalDateTime.now();
-        for (String clientId : clientIdsList) {
-            if (clientId != null && !clientId.trim().isEmpty()) {
-                ClientPolicyMapping mapping = new ClientPolicyMapping();
-                mapping.setClientId(clientId);
-                mapping.setPolicyId(policyId);
-                mapping.setAssignedAt(now);
-                mapping.setIsActive(false); // 初始状态为非激活
-                clientPolicyMappingMapper.insert(mapping);
-            }
+        orgPolicyResolver.setOrgPolicyAfterCommit(orgId, policyId);
+        notifyOrganizationClients(orgId);
+        log.info("🏢 策略 {} 已分配到组织 {}", policyId, orgId);
+    }
+
+    @Override
+    @Transactional
+    public void unassignPolicyFromOrganization(String orgId) {
+        if (!StringUtils.hasText(orgId)) {
+            return;
+        }
+        int deletedRows = orgPolicyMappingMapper.delete(new QueryWrapper<OrgPolicyMapping>().eq("org_id", orgId));
+        if (deletedRows == 0) {
+            return;
         }
 
-        // 5. 清理缓存：包括旧客户端和新客户端
-        List<String> allAffectedClientIds = new ArrayList<>();
-        allAffectedClientIds.addAll(oldClientIds);
-        allAffectedClientIds.addAll(clientIdsList);
-        // 去重
-        allAffectedClientIds = allAffectedClientIds.stream()
-                .filter(id -> id != null && !id.trim().isEmpty())
-                .distinct()
-                .collect(Collectors.toList());
+        orgPolicyResolver.removeOrgPolicyAfterCommit(orgId);
+        notifyOrganizationClients(orgId);
+        log.info("🏢 组织 {} 的策略分配已移除", orgId);
+    }
 
-        if (!allAffectedClientIds.isEmpty()) {
-            evictClientPoliciesCache(allAffectedClientIds);
-            // 异步预热所有受影响的客户端缓存
-            preWarmClientsCaches(allAffectedClientIds);
-        }
+    @Override
+    public Map<String, Long> getOrganizationPolicies() {
+        return orgPolicyResolver.getOrgPolicies();
+    }
+
+    /**
+     * 组织的策略绑定变化后，子树中所有客户端的生效策略都可能变化
+     * 推进全局纪元（子树可能包含大量客户端，不逐个记录客户端纪元），清理并推送这些客户端
+     */
+    private void notifyOrganizationClients(String orgId) {
+        List<String> affectedClientIds = orgPolicyResolver.getClientsInSubtree(orgId);
+        clientCacheIndex.evictClientsAfterCommit(affectedClientIds);
+        policyEpochTracker.bumpGlobalAfterCommit();
+        policyPushService.publishAfterCommit(affectedClientIds);
     }
 
     @Override
     @Transactional
-    @CacheEvict(value = "policies", key = "#policyId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public void deletePolicy(Long policyId) {
         if (policyId == null) {
             return;
@@ -211,20 +288,31 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
                 .map(ClientPolicyMapping::getClientId)
                 .collect(Collectors.toList());
 
+        // 通过组织子树使用该策略的客户端
+        List<String> orgClientIds = orgPolicyResolver.getClientsByPolicy(policyId);
+
         // 2. 在数据库中删除关联和策略本身
         clientPolicyMappingMapper.delete(new QueryWrapper<ClientPolicyMapping>().eq("policy_id", policyId));
+        orgPolicyMappingMapper.delete(new QueryWrapper<OrgPolicyMapping>().eq("policy_id", policyId));
         int deletedRows = policyMapper.deleteById(policyId);
 
         // 如果数据库中没有这个策略，就没必要清理缓存了
         if (deletedRows == 0) {
             return;
         }
-
-        // 3. 清理所有影响客户端的缓存
-        // @CacheEvict注解已经清除了策略缓存，policies::#{policyId}
-        if (!affectedClientIds.isEmpty()) {
-            evictClientPoliciesCache(affectedClientIds);
-        }
+        // 3. 事务提交后先更新内存状态、清理所有受影响客户端的缓存，最后推进纪元并推送
+        policyRolloutManager.cancelAfterCommit(policyId);
+        effectivePolicyTable.removeActivePolicyAfterCommit(affectedClientIds, policyId);
+        policyCatalog.rebuildAfterCommit();
+        policyResponseCache.evictAfterCommit(policyId);
+        policyRevisionStore.removeAfterCommit(policyId);
+        orgPolicyResolver.removePolicyAfterCommit(policyId);
+        clientCacheIndex.evictClientsAfterCommit(affectedClientIds);
+        clientCacheIndex.evictClientsAfterCommit(orgClientIds);
+        clientCacheIndex.removePolicyAfterCommit(policyId);
+        policyEpochTracker.bumpGlobalAfterCommit();
+        policyPushService.publishAfterCommit(affectedClientIds);
+        policyPushService.publishAfterCommit(orgClientIds);
     }
 
     @Override
@@ -244,7 +332,6 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
 
     @Override
     @Transactional
-    @CachePut(value = "policies", key = "#result.id", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public Policy createDefaultPolicy(PolicyDto policyDto) {
         if (policyDto == null) {
             throw new IllegalArgumentException("策略数据不能为null");
@@ -265,14 +352,20 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
         policy.setVersion(String.valueOf(System.currentTimeMillis()));
         policy.setCreatedAt(LocalDateTime.now());
         policy.setUpdatedAt(LocalDateTime.now());
+        policy.setFingerprint(PolicyFingerprint.compute(policy));
 
         policyMapper.insert(policy);
+        policyCatalog.rebuildAfterCommit();
+        policyEpochTracker.bumpGlobalAfterCommit();
         return policy;
     }
 
     @Override
-    @Cacheable(value = "clientPolicies", key = "'effective:' + #clientId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public Policy getEffectivePolicy(String clientId) {
+        // 内存生效策略表加载完成后直接在内存中解析，不访问数据库
+        if (effectivePolicyTable.isReady()) {
+            return effectivePolicyTable.resolve(clientId);
+        }
         if (clientId == null) {
             return getDefaultPolicy();
         }
@@ -286,19 +379,75 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
         
         ClientPolicyMapping activeMapping = clientPolicyMappingMapper.selectOne(mappingQuery);
         if (activeMapping != null) {
-            Policy policy = policyMapper.selectById(activeMapping.getPolicyId());
+            Policy policy = policyCatalog.get(activeMapping.getPolicyId());
             if (policy != null && "enabled".equals(policy.getStatus()) && !Boolean.TRUE.equals(policy.getIsDefault())) {
                 return policy;
             }
         }
 
-        // 2. 如果没有激活的非默认策略，返回默认策略
+        // 2. 其次是客户端所在组织子树的策略
+        Policy orgPolicy = orgPolicyResolver.resolve(clientId);
+        if (orgPolicy != null) {
+            return orgPolicy;
+        }
+
+        // 3. 如果没有激活的非默认策略，返回默认策略
         return getDefaultPolicy();
     }
 
+    @Override
+    public Map<String, Policy> getEffectivePolicies(Collection<String> clientIds) {
+        Map<String, Policy> effectivePolicies = new HashMap<>();
+        if (clientIds == null || clientIds.isEmpty()) {
+            return effectivePolicies;
+        }
+        List<String> distinctClientIds = clientIds.stream()
+                .filter(StringUtils::hasText)
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (effectivePolicyTable.isReady()) {
+            for (String clientId : distinctClientIds) {
+                Policy policy = effectivePolicyTable.resolve(clientId);
+                if (policy != null) {
+                    effectivePolicies.put(clientId, policy);
+                }
+            }
+            return effectivePolicies;
+        }
+
+        // 1. 按块查询客户端激活的策略映射，同一客户端取最近激活的一条（与getEffectivePolicy一致）
+        Map<String, Long> activePolicyIds = new HashMap<>();
+        for (int from = 0; from < distinctClientIds.size(); from += IN_QUERY_CHUNK_SIZE) {
+            List<String> chunk = distinctClientIds.subList(from, Math.min(from + IN_QUERY_CHUNK_SIZE, distinctClientIds.size()));
+            QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
+            mappingQuery.select("client_id", "policy_id")
+                        .in("client_id", chunk)
+                        .eq("is_active", true)
+                        .orderByDesc("activated_at");
+            for (ClientPolicyMapping mapping : clientPolicyMappingMapper.selectList(mappingQuery)) {
+                activePolicyIds.putIfAbsent(mapping.getClientId(), mapping.getPolicyId());
+            }
+        }
+
+        // 2. 从策略目录中取出策略，没有激活的非默认策略的客户端依次使用组织子树策略、默认策略
+        Policy defaultPolicy = getDefaultPolicy();
+        for (String clientId : distinctClientIds) {
+            Long policyId = activePolicyIds.get(clientId);
+            Policy policy = policyCatalog.get(policyId);
+            if (policy == null || !"enabled".equals(policy.getStatus()) || Boolean.TRUE.equals(policy.getIsDefault())) {
+                Policy orgPolicy = orgPolicyResolver.resolve(clientId);
+                policy = orgPolicy != null ? orgPolicy : defaultPolicy;
+            }
+            if (policy != null) {
+                effectivePolicies.put(clientId, policy);
+            }
+        }
+        return effectivePolicies;
+    }
+
     @Override
     @Transactional
-    @CacheEvict(value = "clientPolicies", allEntries = true, condition = "@cacheAvailabilityService.isCacheAvailable()")
     public void activatePolicy(String clientId, Long policyId) {
         if (clientId == null || policyId == null) {
             return;
@@ -313,18 +462,17 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
         // 2. 检查客户端是否已关联该策略
         QueryWrapper<ClientPolicyMapping> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("client_id", clientId).eq("policy_id", policyId);
-        ClientPolicyMapping mapping = clientPolicyMappingMapper.selectOne(queryWrapper);
-        
-        if (mapping == null) {
+        if (clientPolicyMappingMapper.selectCount(queryWrapper) == 0) {
             throw new IllegalArgumentException("客户端未关联该策略");
         }
 
-        // 3. 停用所有其他策略，激活指定策略
-        deactivateAllClientPolicies(clientId);
-        
-        mapping.setIsActive(true);
-        mapping.setActivatedAt(LocalDateTime.now());
-        clientPolicyMappingMapper.updateById(mapping);
+        // 3. 一条UPDATE中激活指定策略并停用其他策略
+        clientPolicyMappingMapper.activateExclusive(clientId, policyId, LocalDateTime.now());
+        effectivePolicyTable.setActivePolicyAfterCommit(clientId, policyId);
+        // 只清除该客户端的缓存，其他客户端不受影响；缓存清理后才推进纪元
+        clientCacheIndex.evictClientsAfterCommit(Collections.singletonList(clientId));
+        policyEpochTracker.bumpClientAfterCommit(clientId);
+        policyPushService.publishAfterCommit(clientId);
         
         // 策略激活后，异步预热客户端缓存
         preWarmClientCache(clientId);
@@ -332,7 +480,6 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "policies", key = "#policyId", condition = "@cacheAvailabilityService.isCacheAvailable()")
     public void updatePolicyStatus(Long policyId, String status) {
         if (policyId == null || status == null) {
             throw new IllegalArgumentException("策略ID和状态不能为null");
@@ -354,78 +501,76 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
             throw new IllegalArgumentException("默认策略不可修改状态");
         }
 
-        // 更新策略状态
+        // 更新策略状态，同时更新版本和指纹，使客户端在下次心跳时感知变化
+        existingPolicy.setStatus(status);
+        existingPolicy.setVersion(String.valueOf(System.currentTimeMillis()));
+        existingPolicy.setUpdatedAt(LocalDateTime.now());
+
         Policy policy = new Policy();
         policy.setId(policyId);
         policy.setStatus(status);
-        policy.setUpdatedAt(LocalDateTime.now());
+        policy.setVersion(existingPolicy.getVersion());
+        policy.setUpdatedAt(existingPolicy.getUpdatedAt());
+        policy.setFingerprint(PolicyFingerprint.compute(existingPolicy));
         policyMapper.updateById(policy);
-
-        // 如果策略被禁用，需要清理所有客户端的相关缓存
-        if ("disabled".equals(status)) {
-            // 查找所有使用该策略的客户端
-            QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
-            mappingQuery.eq("policy_id", policyId).select("client_id");
-            List<String> affectedClientIds = clientPolicyMappingMapper.selectList(mappingQuery)
-                    .stream()
-                    .map(ClientPolicyMapping::getClientId)
-                    .distinct()
-                    .collect(Collectors.toList());
-
-            if (!affectedClientIds.isEmpty()) {
-                evictClientPoliciesCache(affectedClientIds);
-                // 异步预热受影响的客户端缓存
-                preWarmClientsCaches(affectedClientIds);
-            }
+        policyRolloutManager.cancelAfterCommit(policyId);
+        policyCatalog.rebuildAfterCommit();
+        policyResponseCache.evictAfterCommit(policyId);
+
+        // 启用和禁用都会改变关联客户端（包括通过组织子树使用该策略的客户端）的生效策略，只清理这些客户端的缓存
+        clientCacheIndex.evictPolicyClientsAfterCommit(policyId);
+        policyEpochTracker.bumpGlobalAfterCommit();
+        policyPushService.publishPolicyAfterCommit(policyId);
+        List<String> affectedClientIds = clientCacheIndex.getClients(policyId);
+        if (!affectedClientIds.isEmpty()) {
+            // 异步预热受影响的客户端缓存
+            preWarmClientsCaches(affectedClientIds);
         }
     }
 
     /**
-     * 停用客户端的所有策略
+     * 应用启动后为指纹为空的策略补算指纹（新增指纹列之前写入的历史数据）
+     * 指纹与升级前心跳临时计算的结果一致，客户端持有的指纹仍然有效；
+     * 更新时显式写回原来的更新时间，避免 ON UPDATE CURRENT_TIMESTAMP 改变参与指纹计算的字段
      */
-    private void deactivateAllClientPolicies(String clientId) {
-        if (clientId == null) {
-            return;
-        }
-        
-        QueryWrapper<ClientPolicyMapping> updateWrapper = new QueryWrapper<>();
-        updateWrapper.eq("client_id", clientId).eq("is_active", true);
-        
-        List<ClientPolicyMapping> activeMappings = clientPolicyMappingMapper.selectList(updateWrapper);
-        for (ClientPolicyMapping mapping : activeMappings) {
-            mapping.setIsActive(false);
-            clientPolicyMappingMapper.updateById(mapping);
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPolicyFingerprints() {
+        try {
+            QueryWrapper<Policy> queryWrapper = new QueryWrapper<>();
+            queryWrapper.isNull("fingerprint");
+            List<Policy> policies = policyMapper.selectList(queryWrapper);
+            if (policies.isEmpty()) {
+                return;
+            }
+
+            for (Policy policy : policies) {
+                Policy update = new Policy();
+                update.setId(policy.getId());
+                update.setFingerprint(PolicyFingerprint.compute(policy));
+                update.setUpdatedAt(policy.getUpdatedAt());
+                policyMapper.updateById(update);
+            }
+            policyCatalog.rebuild();
+            log.info("🔑 已为 {} 条历史策略补算指纹", policies.size());
+        } catch (Exception e) {
+            log.warn("⚠️ 补算策略指纹失败，心跳将临时计算指纹: {}", e.getMessage());
         }
     }
 
     /**
-     * 获取默认策略
+     * 获取默认策略（策略目录中已解析好的启用的默认策略）
      */
-    @Cacheable(value = "policies", key = "'default'", condition = "@cacheAvailabilityService.isCacheAvailable()")
     private Policy getDefaultPolicy() {
-        QueryWrapper<Policy> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("is_default", true).eq("status", "enabled");
-        return policyMapper.selectOne(queryWrapper);
+        return policyCatalog.getDefaultPolicy();
     }
 
     /**
      * 异步预热单个客户端缓存
-     * 根据项目规范，在策略变更后主动预热相关客户端缓存
+     * 根据项目规范，在策略变更后主动预热相关客户端缓存；单个客户端的变更优先于批量预热
      */
     private void preWarmClientCache(String clientId) {
-        if (clientId == null || clientId.trim().isEmpty()) {
-            return;
-        }
-        
-        // 使用单独的线程进行异步预热，不影响主业务流程
-        new Thread(() -> {
-            try {
-                heartbeatService.preWarmClientPolicyCache(clientId);
-            } catch (Exception e) {
-                // 预热失败不影响主业务，只记录日志
-                // 在生产环境中应该使用日志框架记录
-            }
-        }, "policy-cache-prewarmer-" + clientId).start();
+        // 事务提交后再入队，避免预热读到提交前的旧数据
+        TransactionCallbacks.afterCommit(() -> cachePrewarmScheduler.schedule(clientId, CachePrewarmScheduler.Priority.HIGH));
     }
 
     /**
@@ -433,80 +578,21 @@ public class PolicyAdminServiceImpl implements PolicyAdminService {
      * 根据项目规范，在策略变更后主动预热相关客户端缓存
      */
     private void preWarmClientsCaches(List<String> clientIds) {
-        if (clientIds == null || clientIds.isEmpty()) {
-            return;
-        }
-        
-        // 使用单独的线程进行异步批量预热
-        new Thread(() -> {
-            for (String clientId : clientIds) {
-                try {
-                    heartbeatService.preWarmClientPolicyCache(clientId);
-                    // 适当的间隔避免瞬时压力
-                    Thread.sleep(10);
-                } catch (Exception e) {
-                    // 预热失败不影响主业务，继续处理下一个
-                }
-            }
-        }, "policy-cache-batch-prewarmer").start();
+        TransactionCallbacks.afterCommit(() -> cachePrewarmScheduler.scheduleAll(clientIds, CachePrewarmScheduler.Priority.LOW));
     }
 
     /**
      * 预热受策略影响的所有客户端缓存
-     * 根据项目规范，在策略变更后主动预热相关客户端缓存
+     * 根据项目规范，在策略变更后主动预热相关客户端缓存；客户端列表在预热调度器的加载线程中获取
      */
-    private void preWarmAffectedClients(Long policyId, boolean isUpdate) {
+    private void preWarmAffectedClients(Long policyId) {
         if (policyId == null) {
             return;
         }
-        
-        // 异步查找并预热受影响的客户端
-        new Thread(() -> {
-            try {
-                // 查找所有使用该策略的客户端
-                QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
-                mappingQuery.eq("policy_id", policyId).select("client_id");
-                List<String> affectedClientIds = clientPolicyMappingMapper.selectList(mappingQuery)
-                        .stream()
-                        .map(ClientPolicyMapping::getClientId)
-                        .distinct()
-                        .collect(Collectors.toList());
-                
-                if (!affectedClientIds.isEmpty()) {
-                    // 预热所有受影响的客户端
-                    for (String clientId : affectedClientIds) {
-                        try {
-                            heartbeatService.preWarmClientPolicyCache(clientId);
-                            // 适当间隔避免瞬时压力
-                            Thread.sleep(5);
-                        } catch (Exception e) {
-                            // 单个客户端预热失败不影响其他客户端
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // 预热失败不影响主业务流程
-            }
-        }, "policy-affected-clients-prewarmer-" + policyId).start();
-    }
 
-    /**
-     * 清除多个客户端的策略缓存
-     * @param clientIds 客户端ID列表
-     */
-    @CacheEvict(value = "clientPolicies", allEntries = false)
-    private void evictClientPoliciesCache(List<String> clientIds) {
-        // 这里使用编程式的缓存清除，因为@CacheEvict不支持动态key列表
-        if (clientIds != null && !clientIds.isEmpty()) {
-            // 使用RBatch进行批量清除
-            RBatch batch = redissonClient.createBatch();
-            for (String clientId : clientIds) {
-                // 清除Spring Cache管理的缓存key
-                String cacheKey = "clientPolicies::" + clientId;
-                batch.getBucket(cacheKey).deleteAsync();
-            }
-            batch.execute();
-        }
+        // 通过反向索引查找所有使用该策略的客户端
+        TransactionCallbacks.afterCommit(() -> cachePrewarmScheduler.scheduleAll(
+                () -> clientCacheIndex.getClients(policyId), CachePrewarmScheduler.Priority.LOW));
     }
 
     private Policy convertDtoToEntity(PolicyDto dto) {
@@ -0,0 +1,379 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.PolicyAssignmentProgress;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量策略分配引擎
+ * 把"策略关联的客户端集合替换为新集合"拆成暂存、差异计算和分块写入三步：
+ * <ol>
+ *   <li>请求中的客户端ID逐个读取，按 policy.assign.chunk-size 分块写入暂存表，内存中只保留一个分块</li>
+ *   <li>由数据库计算暂存集合与策略现有关联的差异，两边都有的关联保持不变（包括激活状态）</li>
+ *   <li>按客户端ID顺序逐块读取需要删除和新增的客户端，每块一个短事务，使用多行DELETE/INSERT写入，
+ *       提交后同步更新内存生效策略表、缓存反向索引、策略纪元、推送和Redis缓存</li>
+ * </ol>
+ * 同步和异步任务都在同一个线程中串行执行，进度通过任务ID查询；失败时已提交的分块不会回滚，重新提交同一请求即可从当前状态继续。
+ */
+@Slf4j
+@Service
+public class PolicyAssignmentEngine {
+
+    // 保留的已结束任务数量
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    // 暂存行超过该时长仍未删除，说明所属节点在任务执行期间宕机
+    private static final long STALE_STAGING_HOURS = 24;
+
+    @Autowired
+    private PolicyMapper policyMapper;
+
+    @Autowired
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Autowired
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+
+    @Autowired
+    private PolicyPushService policyPushService;
+
+    @Autowired
+    private ClientCacheIndex clientCacheIndex;
+
+    // 每个事务写入的关联数量，同时也是暂存和读取差异的块大小
+    @Value("${policy.assign.chunk-size:1000}")
+    private int chunkSize;
+
+    // 单次请求允许的最大客户端数量
+    @Value("${policy.assign.max-clients:1000000}")
+    private int maxClients;
+
+    private TransactionTemplate transactionTemplate;
+
+    // 任务ID -> 任务（按提交顺序）
+    private final Map<String, AssignmentJob> jobs = new LinkedHashMap<>();
+
+    // 同步和异步的分配任务都在这里串行执行，避免同一策略的多个任务交错写入
+    private final ExecutorService assignmentExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "policy-assignment");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        try {
+            int removed = clientPolicyMappingMapper.deleteStagedBefore(LocalDateTime.now().minusHours(STALE_STAGING_HOURS));
+            if (removed > 0) {
+                log.info("🧹 清理过期的批量分配暂存行: {} 行", removed);
+            }
+        } catch (RuntimeException e) {
+            log.warn("⚠️ 清理过期的批量分配暂存行失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        assignmentExecutor.shutdownNow();
+    }
+
+    /**
+     * 从请求体（JSON字符串数组）流式读取客户端列表，提交异步分配任务
+     * 请求体逐个元素解析并分块写入暂存表，不会反序列化为完整的集合
+     */
+    public PolicyAssignmentProgress submit(Long policyId, InputStream clientIdsJson) throws IOException {
+        AssignmentJob job = createJob(policyId);
+        try {
+            stageClientIds(job, clientIdsJson);
+        } catch (IOException | RuntimeException e) {
+            discardStaged(job);
+            throw e;
+        }
+        enqueue(job);
+        return job.toProgress();
+    }
+
+    /**
+     * 同步执行分配：与异步任务在同一个线程中排队执行，调用线程等待任务结束，失败时抛出任务的异常
+     */
+    public PolicyAssignmentProgress assign(Long policyId, Collection<String> clientIds) {
+        AssignmentJob job = createJob(policyId);
+        try {
+            StagingChunk chunk = new StagingChunk(job);
+            for (String clientId : clientIds) {
+                chunk.add(clientId);
+            }
+            chunk.finish();
+        } catch (RuntimeException e) {
+            discardStaged(job);
+            throw e;
+        }
+
+        Future<?> future = enqueue(job);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待批量分配任务时被中断: " + job.jobId, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批量分配任务异常结束: " + job.jobId, e.getCause());
+        }
+        if (job.failure != null) {
+            throw job.failure;
+        }
+        return job.toProgress();
+    }
+
+    /**
+     * 查询任务进度，任务不存在时返回 null
+     */
+    public PolicyAssignmentProgress getProgress(String jobId) {
+        AssignmentJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        return job != null ? job.toProgress() : null;
+    }
+
+    private AssignmentJob createJob(Long policyId) {
+        if (policyId == null) {
+            throw new IllegalArgumentException("策略ID不能为null");
+        }
+        if (policyMapper.selectById(policyId) == null) {
+            throw new IllegalArgumentException("策略不存在: " + policyId);
+        }
+        return new AssignmentJob(snowflakeIdGenerator.nextId(), policyId);
+    }
+
+    /**
+     * 登记任务并放入执行队列（客户端已全部暂存）
+     */
+    private Future<?> enqueue(AssignmentJob job) {
+        synchronized (jobs) {
+            jobs.put(job.jobId, job);
+            // 只保留最近的已结束任务
+            if (jobs.size() > MAX_FINISHED_JOBS) {
+                jobs.values().removeIf(existing -> existing.finishedAt != null && jobs.size() > MAX_FINISHED_JOBS);
+            }
+        }
+        return assignmentExecutor.submit(() -> run(job));
+    }
+
+    private void stageClientIds(AssignmentJob job, InputStream in) throws IOException {
+        StagingChunk chunk = new StagingChunk(job);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("请求体必须是客户端ID的JSON数组");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IllegalArgumentException("请求体JSON数组不完整");
+                }
+                if (token == JsonToken.VALUE_STRING) {
+                    chunk.add(parser.getText());
+                } else if (token != JsonToken.VALUE_NULL) {
+                    throw new IllegalArgumentException("客户端ID必须是字符串");
+                }
+            }
+        }
+        chunk.finish();
+    }
+
+    private void discardStaged(AssignmentJob job) {
+        try {
+            clientPolicyMappingMapper.deleteStagedClientIds(job.id);
+        } catch (RuntimeException e) {
+            // 留下的暂存行在下次启动时清理
+            log.warn("⚠️ 删除批量分配暂存行失败: jobId={}, error={}", job.jobId, e.getMessage());
+        }
+    }
+
+    private void run(AssignmentJob job) {
+        job.startedAt = System.currentTimeMillis();
+        try {
+            // 1. 由数据库计算暂存集合与现有关联的差异
+            job.status = "DIFFING";
+            job.retained = clientPolicyMappingMapper.countRetainedClients(job.id, job.policyId);
+            job.toInsert = job.requestedClients - job.retained;
+            job.toDelete = clientPolicyMappingMapper.countUnstagedMappings(job.policyId, job.id);
+
+            // 2. 按客户端ID顺序逐块读取差异并写入，每块一个事务
+            job.status = "APPLYING";
+            String after = null;
+            while (true) {
+                List<String> chunk = clientPolicyMappingMapper.selectUnstagedMappings(job.policyId, job.id, after, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                Integer deleted = transactionTemplate.execute(status -> {
+                    int rows = clientPolicyMappingMapper.batchDeleteMappings(job.policyId, chunk);
+                    // 被删除的关联可能是客户端当前激活的策略，生效策略随之变化
+                    effectivePolicyTable.removeActivePolicyAfterCommit(chunk, job.policyId);
+                    clientCacheIndex.removeMappingsAfterCommit(job.policyId, chunk);
+                    clientCacheIndex.evictClientsAfterCommit(chunk);
+                    policyEpochTracker.bumpClientsAfterCommit(chunk);
+                    policyPushService.publishAfterCommit(chunk);
+                    return rows;
+                });
+                job.deleted += deleted != null ? deleted : 0;
+                after = chunk.get(chunk.size() - 1);
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            after = null;
+            while (true) {
+                List<String> chunk = clientPolicyMappingMapper.selectStagedUnmapped(job.id, job.policyId, after, chunkSize);
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                Integer inserted = transactionTemplate.execute(status -> {
+                    // 新关联为非激活状态，不影响生效策略，只需清除客户端的关联缓存
+                    int rows = clientPolicyMappingMapper.batchInsertMappings(job.policyId, chunk, now);
+                    clientCacheIndex.addMappingsAfterCommit(job.policyId, chunk);
+                    clientCacheIndex.evictClientsAfterCommit(chunk);
+                    return rows;
+                });
+                job.inserted += inserted != null ? inserted : 0;
+                after = chunk.get(chunk.size() - 1);
+            }
+
+            job.status = "COMPLETED";
+            log.info("📋 批量分配策略完成: policyId={}, 请求={}, 保持={}, 新增={}, 删除={}, 耗时={}ms",
+                    job.policyId, job.requestedClients, job.retained, job.inserted, job.deleted,
+                    System.currentTimeMillis() - job.startedAt);
+        } catch (RuntimeException e) {
+            // 只记录在任务上，同步调用由 assign 抛出，异步任务通过进度查询
+            job.failure = e;
+            job.message = e.getMessage();
+            job.status = "FAILED";
+            log.error("❌ 批量分配策略失败: policyId={}, 已新增={}, 已删除={}",
+                    job.policyId, job.inserted, job.deleted, e);
+        } finally {
+            discardStaged(job);
+            job.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 正在暂存的一块客户端ID，写满 chunkSize 后以一条多行INSERT写入暂存表
+     */
+    private final class StagingChunk {
+        private final AssignmentJob job;
+        private final LocalDateTime stagedAt = LocalDateTime.now();
+        private final Set<String> clientIds = new LinkedHashSet<>();
+        private long received;
+
+        private StagingChunk(AssignmentJob job) {
+            this.job = job;
+        }
+
+        private void add(String clientId) {
+            if (clientId == null || clientId.trim().isEmpty()) {
+                return;
+            }
+            // 按收到的数量限制（包括重复的ID），不需要在内存中去重
+            if (++received > maxClients) {
+                throw new IllegalArgumentException("单次分配的客户端数量不能超过 " + maxClients);
+            }
+            clientIds.add(clientId);
+            if (clientIds.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        private void finish() {
+            flush();
+            job.requestedClients = clientPolicyMappingMapper.countStagedClients(job.id);
+        }
+
+        private void flush() {
+            if (!clientIds.isEmpty()) {
+                clientPolicyMappingMapper.insertStagedClientIds(job.id, clientIds, stagedAt);
+                clientIds.clear();
+            }
+        }
+    }
+
+    /**
+     * 一个批量分配任务，暂存完成后只由执行线程修改，其他线程读取进度
+     */
+    private static final class AssignmentJob {
+        private final long id;
+        private final String jobId;
+        private final Long policyId;
+        private volatile long requestedClients;
+        private volatile String status = "PENDING";
+        private volatile long retained;
+        private volatile long toInsert;
+        private volatile long toDelete;
+        private volatile long inserted;
+        private volatile long deleted;
+        private volatile Long startedAt;
+        private volatile Long finishedAt;
+        private volatile String message;
+        private volatile RuntimeException failure;
+
+        private AssignmentJob(long id, Long policyId) {
+            this.id = id;
+            this.jobId = String.valueOf(id);
+            this.policyId = policyId;
+        }
+
+        private PolicyAssignmentProgress toProgress() {
+            PolicyAssignmentProgress progress = new PolicyAssignmentProgress();
+            progress.setJobId(jobId);
+            progress.setPolicyId(policyId);
+            progress.setStatus(status);
+            progress.setRequestedClients(requestedClients);
+            progress.setRetained(retained);
+            progress.setToInsert(toInsert);
+            progress.setToDelete(toDelete);
+            progress.setInserted(inserted);
+            progress.setDeleted(deleted);
+            progress.setStartedAt(startedAt);
+            progress.setFinishedAt(finishedAt);
+            progress.setMessage(message);
+            return progress;
+        }
+    }
+}
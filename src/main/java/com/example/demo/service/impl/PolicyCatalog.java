@@ -0,0 +1,139 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 策略目录
+ * policies 表数据量很小，但每次解析生效策略都要读取。这里在内存中保存全部策略和已解析好的默认策略的
+ * 不可变快照，读取时只做一次 volatile 读和一次哈希查找，无锁、不分配对象；
+ * 每次策略写入在事务提交后从数据库重建快照并整体替换。
+ * <p>
+ * 快照中的 Policy 对象由所有读者共享，调用方不得修改。
+ */
+@Slf4j
+@Service
+public class PolicyCatalog {
+
+    @Autowired
+    private PolicyMapper policyMapper;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * 应用启动后加载策略目录
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("❌ 加载策略目录失败，将在首次访问时重试", e);
+        }
+    }
+
+    /**
+     * 按ID获取策略
+     */
+    public Policy get(Long policyId) {
+        return policyId != null ? current().policies.get(policyId) : null;
+    }
+
+    /**
+     * 获取启用的默认策略，没有时返回 null
+     */
+    public Policy getDefaultPolicy() {
+        return current().defaultPolicy;
+    }
+
+    /**
+     * 策略数量
+     */
+    public int size() {
+        return current().policies.size();
+    }
+
+    /**
+     * 事务提交后重建策略目录（策略创建、更新、状态变更、删除时使用）
+     */
+    public void rebuildAfterCommit() {
+        TransactionCallbacks.afterCommit(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("⚠️ 重建策略目录失败，继续使用旧快照: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 从数据库重建策略目录并原子替换
+     * 重建过程串行执行，保证后开始的重建（读到更新的数据）总是最后替换
+     * @return 策略内容、状态或默认策略是否与上一个快照不同
+     */
+    public synchronized boolean rebuild() {
+        Map<Long, Policy> policies = new HashMap<>();
+        Policy defaultPolicy = null;
+        for (Policy policy : policyMapper.selectList(null)) {
+            policies.put(policy.getId(), policy);
+            if (Boolean.TRUE.equals(policy.getIsDefault()) && "enabled".equals(policy.getStatus())) {
+                defaultPolicy = policy;
+            }
+        }
+        Snapshot previous = snapshot.getAndSet(new Snapshot(Collections.unmodifiableMap(policies), defaultPolicy));
+        log.debug("📚 策略目录已重建: 策略={}, 默认策略={}", policies.size(),
+                defaultPolicy != null ? defaultPolicy.getId() : null);
+        return previous == null || !sameContent(previous.policies, policies);
+    }
+
+    private static boolean sameContent(Map<Long, Policy> previous, Map<Long, Policy> current) {
+        if (previous.size() != current.size()) {
+            return false;
+        }
+        for (Policy policy : current.values()) {
+            Policy old = previous.get(policy.getId());
+            if (old == null
+                    || !Objects.equals(old.getFingerprint(), policy.getFingerprint())
+                    || !Objects.equals(old.getUpdatedAt(), policy.getUpdatedAt())
+                    || !Objects.equals(old.getStatus(), policy.getStatus())
+                    || !Objects.equals(old.getIsDefault(), policy.getIsDefault())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            rebuild();
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+    /**
+     * 不可变的策略目录快照
+     */
+    private static final class Snapshot {
+        private final Map<Long, Policy> policies;
+        private final Policy defaultPolicy;
+
+        private Snapshot(Map<Long, Policy> policies, Policy defaultPolicy) {
+            this.policies = policies;
+            this.defaultPolicy = defaultPolicy;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 策略纪元（epoch）跟踪器
+ * 全局纪元：任何策略内容变化（创建、更新、状态变更、删除）都会推进，可能影响所有客户端；
+ * 客户端纪元：策略分配、激活等只影响单个客户端的变化只推进该客户端的纪元。
+ * 两者取自同一个单调递增序列，客户端当前纪元 = max(全局纪元, 客户端纪元)。
+ * 序列以启动时间为初值，服务重启后的纪元一定大于重启前下发给客户端的纪元，客户端会自动做一次完整检查。
+ * 纪元只在事务提交后推进，保证拿到新纪元的心跳一定能读到新数据。
+ * <p>
+ * 纪元只在本节点内有效：其他节点上的修改由定期全量重新加载发现，重新加载发现变化时通过 {@link #bumpGlobal()} 推进全局纪元。
+ * 快速路径除了比较纪元，还要求客户端上报的指纹正是本节点在该纪元下发的指纹（{@link #recordIssued}），
+ * 客户端没有应用下发的策略、或纪元由其他节点下发时都会走完整检查。
+ */
+@Slf4j
+@Service
+public class PolicyEpochTracker {
+
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis());
+
+    private final AtomicLong globalEpoch = new AtomicLong(sequence.get());
+
+    // 客户端 -> 该客户端最近一次分配/激活变化的纪元
+    private final Map<String, Long> clientEpochs = new ConcurrentHashMap<>();
+
+    // 客户端 -> 最近一次下发给该客户端的纪元和策略指纹，全局纪元推进时清除过期的记录
+    private final Map<String, Issued> issued = new ConcurrentHashMap<>();
+
+    /**
+     * 获取客户端当前的策略纪元
+     */
+    public long currentEpoch(String clientId) {
+        long global = globalEpoch.get();
+        Long clientEpoch = clientId != null ? clientEpochs.get(clientId) : null;
+        return clientEpoch != null && clientEpoch > global ? clientEpoch : global;
+    }
+
+    /**
+     * 客户端上报的纪元和指纹是否仍是最新：期间没有任何影响该客户端的策略变化，
+     * 并且客户端持有的正是本节点在该纪元下发的策略
+     */
+    public boolean isUpToDate(String clientId, Long clientEpoch, String clientPoliciesHash) {
+        if (clientId == null || clientEpoch == null || clientPoliciesHash == null
+                || clientEpoch != currentEpoch(clientId)) {
+            return false;
+        }
+        Issued last = issued.get(clientId);
+        return last != null && last.epoch == clientEpoch && last.fingerprint.equals(clientPoliciesHash);
+    }
+
+    /**
+     * 记录下发给客户端的纪元和策略指纹
+     * 读取策略期间纪元已被推进时不记录，客户端下一次心跳走完整检查
+     */
+    public void recordIssued(String clientId, long epoch, String fingerprint) {
+        if (clientId == null || fingerprint == null || epoch != currentEpoch(clientId)) {
+            return;
+        }
+        issued.merge(clientId, new Issued(epoch, fingerprint),
+                (previous, latest) -> latest.epoch >= previous.epoch ? latest : previous);
+    }
+
+    /**
+     * 策略内容发生变化，在事务提交后推进全局纪元
+     */
+    public void bumpGlobalAfterCommit() {
+        TransactionCallbacks.afterCommit(this::bumpGlobal);
+    }
+
+    /**
+     * 立即推进全局纪元（定期重新加载发现其他节点上的修改时使用）
+     */
+    public void bumpGlobal() {
+        long epoch = sequence.incrementAndGet();
+        long global = globalEpoch.accumulateAndGet(epoch, Math::max);
+        // 不大于全局纪元的客户端纪元已经没有意义，更早纪元下发的指纹也不会再被快速路径使用
+        clientEpochs.values().removeIf(clientEpoch -> clientEpoch <= global);
+        issued.values().removeIf(last -> last.epoch < global);
+        log.debug("🔢 全局策略纪元推进: {}", global);
+    }
+
+    /**
+     * 客户端的策略分配发生变化，在事务提交后推进该客户端的纪元
+     */
+    public void bumpClientAfterCommit(String clientId) {
+        if (clientId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> clientEpochs.put(clientId, sequence.incrementAndGet()));
+    }
+
+    /**
+     * 一批客户端的策略分配发生变化，在事务提交后统一推进到同一个新纪元
+     */
+    public void bumpClientsAfterCommit(Collection<String> clientIds) {
+        if (clientIds == null || clientIds.isEmpty()) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            long epoch = sequence.incrementAndGet();
+            for (String clientId : clientIds) {
+                if (clientId != null) {
+                    clientEpochs.put(clientId, epoch);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取纪元统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("globalEpoch", globalEpoch.get());
+        statistics.put("trackedClients", clientEpochs.size());
+        statistics.put("issuedClients", issued.size());
+        return statistics;
+    }
+
+    /**
+     * 下发给客户端的纪元和策略指纹
+     */
+    private static final class Issued {
+        private final long epoch;
+        private final String fingerprint;
+
+        private Issued(long epoch, String fingerprint) {
+            this.epoch = epoch;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.model.entity.ClientPolicyMapping;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.service.PolicyAdminService;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 策略变更推送服务（SSE）
+ * 客户端通过 /api/v1/client/{clientId}/policy-stream 建立长连接，策略分配、激活、状态变更、删除等操作
+ * 在事务提交后立即把新的生效策略推送给在线连接的客户端，客户端可以大幅拉长心跳间隔。
+ * <p>
+ * 为了支撑单节点数万条空闲连接：每条连接只在注册表中保存一个 FluxSink 和建立时间，
+ * 不为每条连接创建定时器；保活和过期关闭由一个共享的定时任务统一完成。
+ */
+@Slf4j
+@Service
+public class PolicyPushService {
+
+    private static final String EVENT_POLICY = "policy";
+
+    @Autowired
+    private PolicyAdminService policyAdminService;
+
+    @Autowired
+    private HeartbeatService heartbeatService;
+
+    @Autowired
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @Autowired
+    private OrgPolicyResolver orgPolicyResolver;
+
+    // 单条连接的最长存活时间，到期后服务端主动关闭，客户端重连（EventSource会自动重连）
+    @Value("${heartbeat.push.stream-max-lifetime-ms:1800000}")
+    private long streamMaxLifetimeMs;
+
+    // 客户端ID -> 该客户端的推送连接（同一客户端通常只有一条），列表写时复制，发布后不再修改
+    private final Map<String, List<PolicyStream>> streams = new ConcurrentHashMap<>();
+
+    // 推送任务执行器：解析生效策略并写出事件，不阻塞管理端请求
+    private final ExecutorService pushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "policy-push");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 统计信息
+    private final LongAdder openedStreams = new LongAdder();
+    private final LongAdder pushedEvents = new LongAdder();
+    private final LongAdder failedPushes = new LongAdder();
+
+    /**
+     * 为客户端打开一条策略推送流
+     * 建立连接后立即推送一次当前生效策略，客户端据此完成初次同步
+     */
+    public Flux<ServerSentEvent<HeartbeatResponse>> openStream(String clientId) {
+        return Flux.create(sink -> {
+            PolicyStream stream = new PolicyStream(sink, System.currentTimeMillis());
+            streams.compute(clientId, (key, list) -> {
+                List<PolicyStream> updated = list == null ? new ArrayList<>(1) : new ArrayList<>(list);
+                updated.add(stream);
+                return updated;
+            });
+            sink.onDispose(() -> removeStream(clientId, stream));
+            openedStreams.increment();
+            log.debug("📡 客户端 {} 建立策略推送连接，当前连接客户端数: {}", clientId, streams.size());
+
+            pushExecutor.execute(() -> pushCurrentPolicy(clientId,
+                    () -> heartbeatService.getClientEffectivePolicy(clientId), Collections.singletonList(stream)));
+        }, FluxSink.OverflowStrategy.LATEST); // 客户端写出缓慢时只保留最新事件
+    }
+
+    /**
+     * 事务提交后向指定客户端推送最新生效策略（只处理当前有推送连接的客户端）
+     */
+    public void publishAfterCommit(String clientId) {
+        if (clientId != null) {
+            publishAfterCommit(Collections.singletonList(clientId));
+        }
+    }
+
+    /**
+     * 事务提交后向一批客户端推送最新生效策略（只处理当前有推送连接的客户端）
+     */
+    public void publishAfterCommit(Collection<String> clientIds) {
+        if (clientIds == null || clientIds.isEmpty() || streams.isEmpty()) {
+            return;
+        }
+        List<String> targets = new ArrayList<>(clientIds);
+        TransactionCallbacks.afterCommit(() -> pushExecutor.execute(() -> publish(targets)));
+    }
+
+    /**
+     * 事务提交后向使用指定策略的所有在线客户端推送最新生效策略（策略内容或状态变化时使用）
+     */
+    public void publishPolicyAfterCommit(Long policyId) {
+        if (policyId == null || streams.isEmpty()) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> pushExecutor.execute(() -> {
+            QueryWrapper<ClientPolicyMapping> mappingQuery = new QueryWrapper<>();
+            mappingQuery.eq("policy_id", policyId).select("client_id");
+            List<String> clientIds = new ArrayList<>();
+            for (ClientPolicyMapping mapping : clientPolicyMappingMapper.selectList(mappingQuery)) {
+                clientIds.add(mapping.getClientId());
+            }
+            // 通过组织子树使用该策略的客户端
+            clientIds.addAll(orgPolicyResolver.getClientsByPolicy(policyId));
+            publish(clientIds);
+        }));
+    }
+
+    /**
+     * 共享的保活任务：向所有连接发送SSE注释行，同时关闭超过最长存活时间的连接
+     * 写出失败的连接会被Reactor取消并从注册表移除
+     */
+    @Scheduled(fixedDelayString = "${heartbeat.push.keepalive-interval-ms:30000}")
+    public void keepAlive() {
+        if (streams.isEmpty()) {
+            return;
+        }
+        long expireBefore = System.currentTimeMillis() - streamMaxLifetimeMs;
+        ServerSentEvent<HeartbeatResponse> keepAlive = ServerSentEvent.<HeartbeatResponse>builder()
+                .comment("keepalive")
+                .build();
+        streams.forEach((clientId, clientStreams) -> {
+            for (PolicyStream stream : clientStreams) {
+                if (stream.openedAt < expireBefore) {
+                    stream.sink.complete();
+                } else {
+                    stream.sink.next(keepAlive);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取推送统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        int connections = 0;
+        for (List<PolicyStream> clientStreams : streams.values()) {
+            connections += clientStreams.size();
+        }
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("connectedClients", streams.size());
+        statistics.put("openConnections", connections);
+        statistics.put("openedStreams", openedStreams.sum());
+        statistics.put("pushedEvents", pushedEvents.sum());
+        statistics.put("failedPushes", failedPushes.sum());
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streams.values().forEach(clientStreams -> clientStreams.forEach(stream -> stream.sink.complete()));
+        pushExecutor.shutdown();
+    }
+
+    private void publish(List<String> clientIds) {
+        List<String> connected = new ArrayList<>();
+        for (String clientId : clientIds) {
+            if (streams.containsKey(clientId)) {
+                connected.add(clientId);
+            }
+        }
+        if (connected.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, Policy> effectivePolicies = policyAdminService.getEffectivePolicies(connected);
+            for (String clientId : connected) {
+                List<PolicyStream> clientStreams = streams.get(clientId);
+                if (clientStreams != null) {
+                    pushCurrentPolicy(clientId, () -> effectivePolicies.get(clientId), clientStreams);
+                }
+            }
+            log.debug("📡 策略变更已推送给 {} 个在线客户端", connected.size());
+        } catch (Exception e) {
+            failedPushes.add(connected.size());
+            log.warn("⚠️ 推送策略变更失败: {} 个客户端, error={}", connected.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 解析生效策略并写出事件，解析或写出失败只计数，不影响推送线程和其他连接
+     */
+    private void pushCurrentPolicy(String clientId, Supplier<Policy> effectivePolicy, List<PolicyStream> targets) {
+        try {
+            HeartbeatResponse response = heartbeatService.buildPolicyUpdate(clientId, effectivePolicy.get());
+            ServerSentEvent<HeartbeatResponse> event = ServerSentEvent.<HeartbeatResponse>builder()
+                    .event(EVENT_POLICY)
+                    .data(response)
+                    .build();
+            for (PolicyStream stream : targets) {
+                stream.sink.next(event);
+                pushedEvents.increment();
+            }
+        } catch (Exception e) {
+            failedPushes.increment();
+            log.warn("⚠️ 推送客户端 {} 策略失败: {}", clientId, e.getMessage());
+        }
+    }
+
+    private void removeStream(String clientId, PolicyStream stream) {
+        streams.computeIfPresent(clientId, (key, list) -> {
+            List<PolicyStream> updated = new ArrayList<>(list);
+            updated.remove(stream);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    /**
+     * 一条推送连接：只保存写出端和建立时间
+     */
+    private static final class PolicyStream {
+        private final FluxSink<ServerSentEvent<HeartbeatResponse>> sink;
+        private final long openedAt;
+
+        private PolicyStream(FluxSink<ServerSentEvent<HeartbeatResponse>> sink, long openedAt) {
+            this.sink = sink;
+            this.openedAt = openedAt;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.PolicyFingerprint;
+import com.example.demo.util.TransactionCallbacks;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 预序列化的策略响应片段缓存
+ * 心跳响应中的 effectivePolicy 对同一策略版本的所有客户端都完全相同，这里按策略ID缓存
+ * 已经编码好的JSON片段（UTF-8字节由 {@link SerializedString} 缓存），序列化响应时直接写出，
+ * 不再为每个客户端构建Map并重新序列化。
+ * <p>
+ * 每个策略保留最近的两个版本，条目带有生成时的策略指纹：两个版本的指纹都不一致时重建，并淘汰较旧的版本。
+ * 保留两个版本是为了分批发布期间新旧版本同时下发时不会反复重建；
+ * 策略修改、状态变更、删除时在事务提交后主动移除。
+ */
+@Slf4j
+@Service
+public class PolicyResponseCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 策略ID -> 预序列化片段
+    private final Map<Long, CachedPolicyJson> entries = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 获取策略的预序列化JSON片段，可以直接作为响应字段的值交给Jackson写出
+     * @param encoder 缓存未命中时把策略转换为响应结构
+     */
+    public RawValue getEffectivePolicyJson(Policy policy, Function<Policy, Map<String, Object>> encoder) {
+        if (policy.getId() == null) {
+            return encode(policy, encoder);
+        }
+
+        String fingerprint = StringUtils.hasText(policy.getFingerprint())
+                ? policy.getFingerprint()
+                : PolicyFingerprint.compute(policy);
+        CachedPolicyJson cached = entries.get(policy.getId());
+        for (CachedPolicyJson version = cached; version != null; version = version.previous) {
+            if (version.fingerprint.equals(fingerprint)) {
+                hits.increment();
+                return version.json;
+            }
+        }
+
+        misses.increment();
+        RawValue json = encode(policy, encoder);
+        // 新版本在前，原来的最新版本保留为上一个版本
+        CachedPolicyJson previous = cached != null ? new CachedPolicyJson(cached.fingerprint, cached.json, null) : null;
+        entries.put(policy.getId(), new CachedPolicyJson(fingerprint, json, previous));
+        log.debug("📦 策略 {} 响应片段已缓存，指纹: {}", policy.getId(), fingerprint);
+        return json;
+    }
+
+    /**
+     * 事务提交后移除策略的预序列化片段
+     */
+    public void evictAfterCommit(Long policyId) {
+        if (policyId != null) {
+            TransactionCallbacks.afterCommit(() -> entries.remove(policyId));
+        }
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("entries", entries.size());
+        statistics.put("hits", hitCount);
+        statistics.put("misses", missCount);
+        statistics.put("hitRate", total > 0 ? (double) hitCount / total : 0.0);
+        return statistics;
+    }
+
+    private RawValue encode(Policy policy, Function<Policy, Map<String, Object>> encoder) {
+        try {
+            return new RawValue(new SerializedString(objectMapper.writeValueAsString(encoder.apply(policy))));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化策略失败: " + policy.getId(), e);
+        }
+    }
+
+    /**
+     * 一个策略版本的预序列化片段
+     */
+    private static final class CachedPolicyJson {
+        private final String fingerprint;
+        private final RawValue json;
+        // 上一个版本，最多保留一个
+        private final CachedPolicyJson previous;
+
+        private CachedPolicyJson(String fingerprint, RawValue json, CachedPolicyJson previous) {
+            this.fingerprint = fingerprint;
+            this.json = json;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.PolicyFingerprint;
+import com.example.demo.util.TransactionCallbacks;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 策略历史版本与增量下发
+ * 每个策略在内存中保留最近几个版本的响应结构（按策略指纹区分）。客户端心跳带回的策略指纹和
+ * currentPolicyVersion 能对应到某个保留的版本时，只下发字段级增量：
+ * <pre>
+ * {"baseFingerprint": "...", "fingerprint": "...", "changed": {"priority": 20, ...}, "removed": ["..."]}
+ * </pre>
+ * 客户端在持有的策略上应用 changed/removed 即得到最新版本，并用 fingerprint 校验。
+ * 找不到基础版本、客户端版本号与基础版本不一致、或增量不比完整策略小时回退到完整下发。
+ * <p>
+ * 同一对 (基础版本, 目标版本) 的增量只计算和序列化一次。历史版本只保存在本节点内存中，
+ * 在下发完整策略和客户端确认策略已是最新时记录，客户端持有的版本因此通常已经保留在本节点；
+ * 每个策略保留最近记录的几个版本，策略删除后随之丢弃。
+ */
+@Slf4j
+@Service
+public class PolicyRevisionStore {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // 是否启用增量下发
+    @Value("${heartbeat.delta.enabled:true}")
+    private boolean enabled;
+
+    // 每个策略保留的版本数量
+    @Value("${heartbeat.delta.max-revisions:4}")
+    private int maxRevisions;
+
+    // 策略ID -> 该策略的历史版本
+    private final Map<Long, Revisions> revisions = new ConcurrentHashMap<>();
+
+    // 统计信息
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder unknownBase = new LongAdder();
+    private final LongAdder notSmaller = new LongAdder();
+    private final LongAdder fullBytes = new LongAdder();
+    private final LongAdder deltaBytes = new LongAdder();
+
+    /**
+     * 记录策略的一个版本，已记录过的版本只做一次哈希查找
+     * @param encoder 首次记录时把策略转换为响应结构
+     */
+    public void record(Policy policy, Function<Policy, Map<String, Object>> encoder) {
+        if (!enabled || policy == null || policy.getId() == null) {
+            return;
+        }
+        revisionsOf(policy.getId()).record(fingerprintOf(policy), policy.getVersion(), () -> encoder.apply(policy));
+    }
+
+    /**
+     * 事务提交后丢弃策略的全部历史版本（策略被删除时使用）
+     */
+    public void removeAfterCommit(Long policyId) {
+        if (policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> revisions.remove(policyId));
+    }
+
+    /**
+     * 获取从客户端持有的版本到目标版本的增量
+     * @param target 应下发的策略版本
+     * @param baseFingerprint 客户端持有的策略指纹
+     * @param baseVersion 客户端持有的策略版本号，为空时只按指纹匹配
+     * @param fullJson 目标版本的完整JSON片段，用于比较大小
+     * @return 增量JSON片段；无法或不值得下发增量时返回 null
+     */
+    public RawValue getDelta(Policy target, String baseFingerprint, String baseVersion,
+                             Function<Policy, Map<String, Object>> encoder, RawValue fullJson) {
+        if (!enabled || target == null || target.getId() == null || !StringUtils.hasText(baseFingerprint)) {
+            return null;
+        }
+        String targetFingerprint = fingerprintOf(target);
+        if (baseFingerprint.equals(targetFingerprint)) {
+            return null;
+        }
+        requests.increment();
+
+        Revisions policyRevisions = revisionsOf(target.getId());
+        policyRevisions.record(targetFingerprint, target.getVersion(), () -> encoder.apply(target));
+        Delta delta = policyRevisions.delta(baseFingerprint, baseVersion, targetFingerprint, fullJson);
+
+        int fullSize = sizeOf(fullJson);
+        fullBytes.add(fullSize);
+        if (delta == null) {
+            unknownBase.increment();
+            deltaBytes.add(fullSize);
+            return null;
+        }
+        if (delta.json == null) {
+            notSmaller.increment();
+            deltaBytes.add(fullSize);
+            return null;
+        }
+        hits.increment();
+        deltaBytes.add(delta.size);
+        return delta.json;
+    }
+
+    /**
+     * 获取增量下发统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long requestCount = requests.sum();
+        long hitCount = hits.sum();
+        long full = fullBytes.sum();
+        long sent = deltaBytes.sum();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("policies", revisions.size());
+        statistics.put("requests", requestCount);
+        statistics.put("hits", hitCount);
+        statistics.put("unknownBase", unknownBase.sum());
+        statistics.put("notSmaller", notSmaller.sum());
+        statistics.put("hitRate", requestCount > 0 ? (double) hitCount / requestCount : 0.0);
+        statistics.put("fullBytes", full);
+        statistics.put("sentBytes", sent);
+        statistics.put("bytesSaved", full - sent);
+        return statistics;
+    }
+
+    private Revisions revisionsOf(Long policyId) {
+        return revisions.computeIfAbsent(policyId, id -> new Revisions(maxRevisions));
+    }
+
+    private String fingerprintOf(Policy policy) {
+        return StringUtils.hasText(policy.getFingerprint()) ? policy.getFingerprint() : PolicyFingerprint.compute(policy);
+    }
+
+    private Delta encodeDelta(String baseFingerprint, Map<String, Object> base,
+                              String targetFingerprint, Map<String, Object> target, RawValue fullJson) {
+        Map<String, Object> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : target.entrySet()) {
+            if (!base.containsKey(entry.getKey()) || !Objects.equals(base.get(entry.getKey()), entry.getValue())) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String key : base.keySet()) {
+            if (!target.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("baseFingerprint", baseFingerprint);
+        delta.put("fingerprint", targetFingerprint);
+        delta.put("changed", changed);
+        if (!removed.isEmpty()) {
+            delta.put("removed", removed);
+        }
+        try {
+            SerializedString json = new SerializedString(objectMapper.writeValueAsString(delta));
+            int size = json.asUnquotedUTF8().length;
+            // 增量不比完整策略小时没有意义
+            return size < sizeOf(fullJson) ? new Delta(new RawValue(json), size) : Delta.NOT_SMALLER;
+        } catch (JsonProcessingException e) {
+            log.warn("⚠️ 序列化策略增量失败: {} -> {}, error={}", baseFingerprint, targetFingerprint, e.getMessage());
+            return Delta.NOT_SMALLER;
+        }
+    }
+
+    private static int sizeOf(RawValue json) {
+        Object raw = json != null ? json.rawValue() : null;
+        if (raw instanceof SerializableString) {
+            return ((SerializableString) raw).asUnquotedUTF8().length;
+        }
+        return raw != null ? raw.toString().length() : 0;
+    }
+
+    /**
+     * 一个策略的历史版本和已计算的增量
+     */
+    private final class Revisions {
+        // 策略指纹 -> 版本，按记录顺序淘汰最早的版本
+        private final Map<String, Revision> byFingerprint;
+        // "基础指纹>目标指纹" -> 增量
+        private final Map<String, Delta> deltas;
+        // 已记录的指纹快照，只在记录新版本时替换；记录已知版本（每次确认策略已是最新的心跳）不加锁
+        private volatile Set<String> recorded = Collections.emptySet();
+
+        private Revisions(int capacity) {
+            int limit = Math.max(1, capacity);
+            this.byFingerprint = new LinkedHashMap<String, Revision>(16, 0.75f) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Revision> eldest) {
+                    return size() > limit;
+                }
+            };
+            this.deltas = new LinkedHashMap<String, Delta>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Delta> eldest) {
+                    return size() > limit * limit;
+                }
+            };
+        }
+
+        private void record(String fingerprint, String version, Supplier<Map<String, Object>> content) {
+            if (recorded.contains(fingerprint)) {
+                return;
+            }
+            synchronized (this) {
+                if (!byFingerprint.containsKey(fingerprint)) {
+                    byFingerprint.put(fingerprint, new Revision(version, content.get()));
+                    recorded = new HashSet<>(byFingerprint.keySet());
+                }
+            }
+        }
+
+        /**
+         * @return 增量；基础版本未知时返回 null
+         */
+        private synchronized Delta delta(String baseFingerprint, String baseVersion, String targetFingerprint, RawValue fullJson) {
+            Revision base = byFingerprint.get(baseFingerprint);
+            Revision target = byFingerprint.get(targetFingerprint);
+            if (base == null || target == null) {
+                return null;
+            }
+            // 客户端声明的版本号与保留的版本不一致时，不能确定客户端持有的内容
+            if (StringUtils.hasText(baseVersion) && !baseVersion.equals(base.version)) {
+                return null;
+            }
+            String key = baseFingerprint + ">" + targetFingerprint;
+            Delta delta = deltas.get(key);
+            if (delta == null) {
+                delta = encodeDelta(baseFingerprint, base.content, targetFingerprint, target.content, fullJson);
+                deltas.put(key, delta);
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * 一个策略版本的响应结构
+     */
+    private static final class Revision {
+        private final String version;
+        private final Map<String, Object> content;
+
+        private Revision(String version, Map<String, Object> content) {
+            this.version = version;
+            this.content = content;
+        }
+    }
+
+    /**
+     * 两个版本之间的增量，json 为 null 表示增量不比完整策略小
+     */
+    private static final class Delta {
+        private static final Delta NOT_SMALLER = new Delta(null, 0);
+
+        private final RawValue json;
+        private final int size;
+
+        private Delta(RawValue json, int size) {
+            this.json = json;
+            this.size = size;
+        }
+    }
+}
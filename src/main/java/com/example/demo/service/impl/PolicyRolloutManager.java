@@ -0,0 +1,220 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.PolicyFingerprint;
+import com.example.demo.util.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 策略分批发布
+ * 策略更新时如果开启分批发布，新版本按客户端哈希分波次暴露：每个客户端根据 (客户端ID, 策略ID) 的哈希
+ * 落在固定的桶中，桶号小于当前波次比例的客户端拿到新版本，其余客户端继续拿到更新前的版本（指纹不变，不会下载）。
+ * 波次按 policy.rollout.waves 和 policy.rollout.wave-interval-ms 推进，每推进一个波次只有新加入的客户端下载策略，
+ * 把一次更新引起的下载和数据库/缓存负载分摊到整个发布周期。
+ * <p>
+ * 每次推进波次都会推进全局策略纪元，否则已经拿到新纪元的客户端会一直走纪元快速路径，看不到新波次。
+ * 分批发布不做SSE推送（推送会把完整策略发给所有在线客户端），客户端在下一次心跳时按波次获取。
+ * 分批发布期间再次更新同一策略，未暴露的客户端仍保持最初的旧版本，波次从头开始；策略被禁用或删除时立即结束。
+ * 发布开始和结束都必须在策略目录重建和纪元推进之前注册（见 PolicyAdminServiceImpl），
+ * 否则两者之间到达的心跳会拿到全量暴露的新版本，下一个波次推进纪元后未轮到的客户端又会退回旧版本。
+ * <p>
+ * 发布状态只保存在处理更新请求的节点内存中，重启后未完成的发布直接全量生效。
+ * 多节点部署时其他节点没有发布状态，由这些节点处理的心跳直接拿到新版本，分批发布只对本节点的流量生效；
+ * 需要严格分批时应让心跳固定路由到同一节点（例如按客户端ID做一致性哈希），或关闭分批发布。
+ */
+@Slf4j
+@Service
+public class PolicyRolloutManager {
+
+    // 桶的数量（万分之一精度）
+    private static final int BUCKETS = 10000;
+
+    @Autowired
+    private PolicyEpochTracker policyEpochTracker;
+
+    // 各波次暴露的客户端比例（百分比，递增，最后一个应为100）
+    @Value("${policy.rollout.waves:1,10,50,100}")
+    private String wavesConfig;
+
+    // 相邻波次的间隔
+    @Value("${policy.rollout.wave-interval-ms:60000}")
+    private long waveIntervalMs;
+
+    // 未在请求中指定时，策略更新是否默认分批发布
+    @Value("${policy.rollout.default-enabled:false}")
+    private boolean defaultEnabled;
+
+    private int[] waveBuckets;
+
+    // 策略ID -> 进行中的发布
+    private final Map<Long, Rollout> rollouts = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        List<Integer> buckets = new ArrayList<>();
+        for (String part : wavesConfig.split(",")) {
+            if (StringUtils.hasText(part)) {
+                double percent = Double.parseDouble(part.trim());
+                buckets.add((int) Math.round(Math.min(100, Math.max(0, percent)) * BUCKETS / 100));
+            }
+        }
+        if (buckets.isEmpty() || buckets.get(buckets.size() - 1) < BUCKETS) {
+            buckets.add(BUCKETS);
+        }
+        waveBuckets = buckets.stream().mapToInt(Integer::intValue).toArray();
+        log.info("🌊 策略分批发布配置: 波次={}, 间隔={}ms, 默认开启={}", wavesConfig, waveIntervalMs, defaultEnabled);
+    }
+
+    /**
+     * 本次更新是否分批发布
+     * @param requested 请求中指定的值，为 null 时使用默认配置
+     */
+    public boolean isRolloutRequested(Boolean requested) {
+        return requested != null ? requested : defaultEnabled;
+    }
+
+    /**
+     * 事务提交后开始分批发布
+     * @param previous 更新前的策略（未暴露新版本的客户端继续使用）
+     */
+    public void startAfterCommit(Policy previous) {
+        if (previous == null || previous.getId() == null || !"enabled".equals(previous.getStatus())) {
+            return;
+        }
+        if (!StringUtils.hasText(previous.getFingerprint())) {
+            previous.setFingerprint(PolicyFingerprint.compute(previous));
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            long now = System.currentTimeMillis();
+            rollouts.compute(previous.getId(), (policyId, existing) ->
+                    // 仍在发布中时，未暴露的客户端持有的是最初的旧版本
+                    new Rollout(existing != null ? existing.previous : previous, now));
+            log.info("🌊 策略 {} 开始分批发布: 波次={}, 间隔={}ms", previous.getId(), wavesConfig, waveIntervalMs);
+        });
+    }
+
+    /**
+     * 事务提交后结束分批发布，新版本立即对所有客户端生效（策略禁用、删除或不分批的更新时使用）
+     */
+    public void cancelAfterCommit(Long policyId) {
+        if (policyId == null) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            if (rollouts.remove(policyId) != null) {
+                log.info("🌊 策略 {} 分批发布已结束，新版本全量生效", policyId);
+            }
+        });
+    }
+
+    /**
+     * 根据客户端所在的波次返回应下发的策略版本
+     * @param current 客户端当前生效的策略（最新版本）
+     */
+    public Policy resolve(String clientId, Policy current) {
+        if (current == null || current.getId() == null || rollouts.isEmpty()) {
+            return current;
+        }
+        Rollout rollout = rollouts.get(current.getId());
+        if (rollout == null) {
+            return current;
+        }
+        return bucket(clientId, current.getId()) < exposedBuckets(rollout, System.currentTimeMillis())
+                ? current
+                : rollout.previous;
+    }
+
+    /**
+     * 定期推进波次：进入新波次时推进全局纪元，最后一个波次完成后结束发布
+     */
+    @Scheduled(fixedDelayString = "${policy.rollout.tick-ms:5000}")
+    public void advance() {
+        long now = System.currentTimeMillis();
+        rollouts.forEach((policyId, rollout) -> {
+            int wave = currentWave(rollout, now);
+            if (wave == rollout.announcedWave) {
+                return;
+            }
+            rollout.announcedWave = wave;
+            policyEpochTracker.bumpGlobalAfterCommit();
+            log.info("🌊 策略 {} 进入第 {} 波，暴露比例 {}%", policyId, wave + 1, waveBuckets[wave] * 100.0 / BUCKETS);
+            if (waveBuckets[wave] >= BUCKETS) {
+                rollouts.remove(policyId, rollout);
+                log.info("🌊 策略 {} 分批发布完成", policyId);
+            }
+        });
+    }
+
+    /**
+     * 获取进行中的发布状态
+     */
+    public Map<String, Object> getStatistics() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> active = new LinkedHashMap<>();
+        rollouts.forEach((policyId, rollout) -> {
+            Map<String, Object> state = new HashMap<>();
+            state.put("wave", currentWave(rollout, now) + 1);
+            state.put("exposedPercent", exposedBuckets(rollout, now) * 100.0 / BUCKETS);
+            state.put("previousFingerprint", rollout.previous.getFingerprint());
+            state.put("startedAt", rollout.startedAt);
+            active.put(String.valueOf(policyId), state);
+        });
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("activeRollouts", active);
+        statistics.put("waves", wavesConfig);
+        statistics.put("waveIntervalMs", waveIntervalMs);
+        return statistics;
+    }
+
+    private int currentWave(Rollout rollout, long now) {
+        long elapsed = Math.max(0, now - rollout.startedAt);
+        long wave = waveIntervalMs > 0 ? elapsed / waveIntervalMs : waveBuckets.length - 1;
+        return (int) Math.min(wave, waveBuckets.length - 1);
+    }
+
+    private int exposedBuckets(Rollout rollout, long now) {
+        return waveBuckets[currentWave(rollout, now)];
+    }
+
+    /**
+     * 客户端在某个策略发布中的固定桶号 [0, BUCKETS)
+     * 混入策略ID，使不同策略的首批客户端互不相同
+     */
+    static int bucket(String clientId, Long policyId) {
+        long h = (clientId != null ? clientId.hashCode() : 0) * 0x9E3779B97F4A7C15L + (policyId != null ? policyId : 0L);
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= (h >>> 33);
+        return (int) Math.floorMod(h, (long) BUCKETS);
+    }
+
+    /**
+     * 一次进行中的发布
+     */
+    private static final class Rollout {
+        private final Policy previous;
+        private final long startedAt;
+        // 已经通知过客户端的波次
+        private volatile int announcedWave;
+
+        private Rollout(Policy previous, long startedAt) {
+            this.previous = previous;
+            this.startedAt = startedAt;
+        }
+    }
+}
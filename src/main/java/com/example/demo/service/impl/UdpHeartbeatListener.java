@@ -0,0 +1,167 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.util.HeartbeatFrameCodec;
+import com.example.demo.util.HeartbeatFrameCodec.HeartbeatFrame;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UDP心跳监听器（可选，heartbeat.udp.enabled=true 时启用）
+ * 面向嵌入式设备：每个心跳只是一个紧凑的二进制数据报（格式见 {@link HeartbeatFrameCodec}），
+ * 与HTTP心跳走同一套在线状态和策略检查逻辑，回复一个17字节的"已是最新/已变化"数据报。
+ * 接收、发送缓冲区和解码对象都由接收线程复用，稳定运行时收发路径不分配缓冲区。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "heartbeat.udp.enabled", havingValue = "true")
+public class UdpHeartbeatListener {
+
+    private final HeartbeatService heartbeatService;
+    private final String bindAddress;
+    private final int port;
+
+    private DatagramChannel channel;
+    private Thread receiverThread;
+    private volatile boolean running;
+
+    // 接收线程独占的复用对象
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(HeartbeatFrameCodec.MAX_REQUEST_SIZE);
+    private final ByteBuffer replyBuffer = ByteBuffer.allocate(HeartbeatFrameCodec.REPLY_SIZE);
+    private final HeartbeatFrame frame = new HeartbeatFrame();
+
+    // 统计信息
+    private final LongAdder receivedFrames = new LongAdder();
+    private final LongAdder invalidFrames = new LongAdder();
+    private final LongAdder failedFrames = new LongAdder();
+
+    public UdpHeartbeatListener(HeartbeatService heartbeatService,
+                                @Value("${heartbeat.udp.bind-address:0.0.0.0}") String bindAddress,
+                                @Value("${heartbeat.udp.port:9099}") int port) {
+        this.heartbeatService = heartbeatService;
+        this.bindAddress = bindAddress;
+        this.port = port;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+
+        receiverThread = new Thread(this::receiveLoop, "udp-heartbeat-listener");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+        log.info("📡 UDP心跳监听已启动: {}", channel.getLocalAddress());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (receiverThread != null) {
+                receiverThread.join(1000);
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ 关闭UDP心跳监听失败: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("🛑 UDP心跳监听已停止");
+    }
+
+    /**
+     * 实际监听的端口（配置为0时由系统分配）
+     */
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 获取UDP心跳统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("receivedFrames", receivedFrames.sum());
+        statistics.put("invalidFrames", invalidFrames.sum());
+        statistics.put("failedFrames", failedFrames.sum());
+        return statistics;
+    }
+
+    private void receiveLoop() {
+        while (running) {
+            try {
+                receiveBuffer.clear();
+                SocketAddress sender = channel.receive(receiveBuffer);
+                if (sender == null) {
+                    continue;
+                }
+                receiveBuffer.flip();
+                receivedFrames.increment();
+                handleFrame(sender);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (Exception e) {
+                failedFrames.increment();
+                log.warn("⚠️ 处理UDP心跳失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void handleFrame(SocketAddress sender) throws IOException {
+        if (!HeartbeatFrameCodec.decodeRequest(receiveBuffer, frame)) {
+            // 无效帧直接丢弃，不回复
+            invalidFrames.increment();
+            return;
+        }
+
+        long clientEpoch = frame.getPolicyEpoch();
+        HeartbeatResponse response = heartbeatService.checkPolicies(
+                frame.getClientId(),
+                frame.getFingerprint(),
+                clientEpoch != 0 ? clientEpoch : null);
+
+        HeartbeatFrameCodec.encodeReply(replyBuffer, frame.getSequence(), toStatus(response),
+                response.getPolicyEpoch() != null ? response.getPolicyEpoch() : 0L);
+        channel.send(replyBuffer, sender);
+
+        log.trace("💓 UDP心跳: clientId={}, version={}, updateType={}",
+                frame.getClientId(), frame.getClientVersion(), response.getUpdateType());
+    }
+
+    private static byte toStatus(HeartbeatResponse response) {
+        if (response.isNeedsPolicyUpdate()) {
+            return HeartbeatFrameCodec.STATUS_CHANGED;
+        }
+        String updateType = response.getUpdateType();
+        if ("UP_TO_DATE".equals(updateType)) {
+            return HeartbeatFrameCodec.STATUS_UP_TO_DATE;
+        }
+        if ("NO_POLICY".equals(updateType)) {
+            return HeartbeatFrameCodec.STATUS_NO_POLICY;
+        }
+        return HeartbeatFrameCodec.STATUS_ERROR;
+    }
+}
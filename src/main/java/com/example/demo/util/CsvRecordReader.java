@@ -0,0 +1,160 @@
+package com.example.demo.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式 CSV 记录读取器（RFC 4180）。
+ * <p>
+ * 每次读取一条记录，不会把整个输入加载到内存。支持双引号包裹的字段、字段内的 "" 转义、
+ * 字段内的逗号和换行，以及 \n / \r\n 两种换行符；忽略开头的 UTF-8 BOM 和完全空白的行。
+ * <p>
+ * 去掉 {@link CsvRecordWriter} 为防止公式执行加在公式字符（=、+、-、@）前的一个单引号。
+ */
+public final class CsvRecordReader implements Closeable {
+
+    private static final int BOM = '\uFEFF';
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private boolean started;
+    // 最近读取的记录起始行号（从1开始，包含被跳过的空行）
+    private long lineNumber;
+    private long nextLineNumber = 1;
+
+    public CsvRecordReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 读取下一条记录
+     * @return 字段列表；输入结束时返回 null
+     * @throws IllegalArgumentException 引号未闭合或引号后出现多余字符
+     */
+    public List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                consumeLineEnd(c);
+                continue;
+            }
+            unread();
+            lineNumber = nextLineNumber;
+            return readRecord();
+        }
+    }
+
+    /**
+     * 最近一次 next() 返回的记录在输入中的起始行号
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    private static String unguard(String field) {
+        return field.startsWith("'") && CsvRecordWriter.isFormulaLike(field, 1) ? field.substring(1) : field;
+    }
+
+    private List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        while (true) {
+            int c = read();
+            if (c == '"' && field.length() == 0) {
+                readQuoted(field);
+                c = read();
+                if (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                    throw new IllegalArgumentException("第 " + lineNumber + " 行: 引号字段后存在多余字符");
+                }
+            }
+            if (c == ',') {
+                fields.add(unguard(field.toString()));
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                fields.add(unguard(field.toString()));
+                if (c != -1) {
+                    consumeLineEnd(c);
+                }
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private void readQuoted(StringBuilder field) throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IllegalArgumentException("第 " + lineNumber + " 行: 引号未闭合");
+            }
+            if (c == '"') {
+                if (peek() != '"') {
+                    return;
+                }
+                read();
+            } else if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                nextLineNumber++;
+            }
+            field.append((char) c);
+        }
+    }
+
+    private void consumeLineEnd(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            read();
+        }
+        nextLineNumber++;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private void unread() {
+        position--;
+    }
+
+    private boolean fill() throws IOException {
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        if (!started) {
+            started = true;
+            if (buffer[0] == BOM) {
+                position = 1;
+                return position < limit || fill();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
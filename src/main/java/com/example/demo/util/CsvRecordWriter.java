@@ -0,0 +1,109 @@
+package com.example.demo.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式 CSV 记录写入器（RFC 4180），与 {@link CsvRecordReader} 对应。
+ * <p>
+ * 包含逗号、双引号或换行的字段用双引号包裹，字段内的双引号写为 ""；null 写为空字段。
+ * 记录以 \r\n 结尾。
+ * <p>
+ * 以 =、+、-、@ 开头的字段会被电子表格当作公式执行（CSV 注入），写入时在前面加单引号，
+ * 使其按文本显示。本身以若干单引号加这些字符开头的字段同样多加一个单引号，
+ * {@link CsvRecordReader} 读取时去掉一个，导出的文件再导入时字段值不变。
+ */
+public final class CsvRecordWriter implements Flushable, Closeable {
+
+    private final Writer writer;
+    private boolean firstField = true;
+
+    public CsvRecordWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * 写入一条记录
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (String field : fields) {
+            writeField(field);
+        }
+        endRecord();
+    }
+
+    /**
+     * 写入当前记录的下一个字段
+     */
+    public void writeField(String field) throws IOException {
+        if (!firstField) {
+            writer.write(',');
+        }
+        firstField = false;
+        if (field == null || field.isEmpty()) {
+            return;
+        }
+        if (isFormulaLike(field, 0)) {
+            field = "'" + field;
+        }
+        if (!needsQuotes(field)) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        int quote;
+        while ((quote = field.indexOf('"', start)) >= 0) {
+            writer.write(field, start, quote - start + 1);
+            writer.write('"');
+            start = quote + 1;
+        }
+        writer.write(field, start, field.length() - start);
+        writer.write('"');
+    }
+
+    /**
+     * 结束当前记录
+     */
+    public void endRecord() throws IOException {
+        writer.write("\r\n");
+        firstField = true;
+    }
+
+    /**
+     * 从 from 开始跳过单引号后，第一个字符是否为公式字符
+     */
+    static boolean isFormulaLike(String field, int from) {
+        int i = from;
+        while (i < field.length() && field.charAt(i) == '\'') {
+            i++;
+        }
+        if (i == field.length()) {
+            return false;
+        }
+        char first = field.charAt(i);
+        return first == '=' || first == '+' || first == '-' || first == '@';
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UDP心跳帧编解码（嵌入式设备使用的紧凑二进制格式，网络字节序）。
+ * <pre>
+ * 请求帧：
+ *   magic        2字节  0x4842 ("HB")
+ *   version      1字节  当前为 1
+ *   type         1字节  0x01 心跳
+ *   sequence     4字节  客户端序号，响应原样返回，用于匹配请求
+ *   policyEpoch  8字节  客户端最近一次获得的策略纪元，没有时为 0
+ *   clientId     1字节长度 + UTF-8（最多64字节）
+ *   fingerprint  1字节长度 + ASCII（最多64字节，没有时长度为0）
+ *   clientVersion 1字节长度 + UTF-8（最多32字节，可以为0）
+ *
+ * 响应帧（固定17字节）：
+ *   magic        2字节  0x4842
+ *   version      1字节  1
+ *   type         1字节  0x81 心跳响应
+ *   sequence     4字节  对应请求的序号
+ *   status       1字节  见 STATUS_* 常量
+ *   policyEpoch  8字节  服务端当前策略纪元
+ * </pre>
+ * 状态为 {@link #STATUS_CHANGED} 时，客户端通过 HTTP 接口获取最新策略。
+ */
+public final class HeartbeatFrameCodec {
+
+    public static final short MAGIC = 0x4842;
+    public static final byte VERSION = 1;
+    public static final byte TYPE_HEARTBEAT = 0x01;
+    public static final byte TYPE_HEARTBEAT_REPLY = (byte) 0x81;
+
+    public static final byte STATUS_UP_TO_DATE = 0;
+    public static final byte STATUS_CHANGED = 1;
+    public static final byte STATUS_NO_POLICY = 2;
+    public static final byte STATUS_ERROR = 3;
+
+    public static final int MAX_CLIENT_ID_BYTES = 64;
+    public static final int MAX_FINGERPRINT_BYTES = 64;
+    public static final int MAX_CLIENT_VERSION_BYTES = 32;
+
+    /** 请求帧最大长度，接收缓冲区按此分配即可 */
+    public static final int MAX_REQUEST_SIZE = 16 + 3 + MAX_CLIENT_ID_BYTES + MAX_FINGERPRINT_BYTES + MAX_CLIENT_VERSION_BYTES;
+
+    /** 响应帧长度 */
+    public static final int REPLY_SIZE = 17;
+
+    private HeartbeatFrameCodec() {
+    }
+
+    /**
+     * 解码后的心跳帧，接收线程复用同一个实例
+     */
+    public static final class HeartbeatFrame {
+        private int sequence;
+        private long policyEpoch;
+        private String clientId;
+        private String fingerprint;
+        private String clientVersion;
+
+        public int getSequence() { return sequence; }
+        public long getPolicyEpoch() { return policyEpoch; }
+        public String getClientId() { return clientId; }
+        public String getFingerprint() { return fingerprint; }
+        public String getClientVersion() { return clientVersion; }
+    }
+
+    /**
+     * 从缓冲区解码心跳请求帧（缓冲区处于读模式）
+     * @return true-解码成功；false-帧格式无效
+     */
+    public static boolean decodeRequest(ByteBuffer buffer, HeartbeatFrame frame) {
+        if (buffer.remaining() < 19 || buffer.getShort() != MAGIC
+                || buffer.get() != VERSION || buffer.get() != TYPE_HEARTBEAT) {
+            return false;
+        }
+        frame.sequence = buffer.getInt();
+        frame.policyEpoch = buffer.getLong();
+        frame.clientId = readString(buffer, MAX_CLIENT_ID_BYTES);
+        frame.fingerprint = readString(buffer, MAX_FINGERPRINT_BYTES);
+        frame.clientVersion = readString(buffer, MAX_CLIENT_VERSION_BYTES);
+        return frame.clientId != null && !frame.clientId.isEmpty()
+                && frame.fingerprint != null && frame.clientVersion != null;
+    }
+
+    /**
+     * 编码心跳请求帧（供客户端和测试使用），写入后缓冲区处于读模式
+     */
+    public static void encodeRequest(ByteBuffer buffer, int sequence, long policyEpoch,
+                                     String clientId, String fingerprint, String clientVersion) {
+        buffer.clear();
+        buffer.putShort(MAGIC).put(VERSION).put(TYPE_HEARTBEAT);
+        buffer.putInt(sequence);
+        buffer.putLong(policyEpoch);
+        writeString(buffer, clientId, MAX_CLIENT_ID_BYTES);
+        writeString(buffer, fingerprint, MAX_FINGERPRINT_BYTES);
+        writeString(buffer, clientVersion, MAX_CLIENT_VERSION_BYTES);
+        buffer.flip();
+    }
+
+    /**
+     * 编码心跳响应帧，写入后缓冲区处于读模式
+     */
+    public static void encodeReply(ByteBuffer buffer, int sequence, byte status, long policyEpoch) {
+        buffer.clear();
+        buffer.putShort(MAGIC).put(VERSION).put(TYPE_HEARTBEAT_REPLY);
+        buffer.putInt(sequence);
+        buffer.put(status);
+        buffer.putLong(policyEpoch);
+        buffer.flip();
+    }
+
+    private static String readString(ByteBuffer buffer, int maxBytes) {
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+        int length = buffer.get() & 0xff;
+        if (length > maxBytes || length > buffer.remaining()) {
+            return null;
+        }
+        if (length == 0) {
+            return "";
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static void writeString(ByteBuffer buffer, String value, int maxBytes) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        if (bytes.length > maxBytes) {
+            throw new IllegalArgumentException("字段长度超过 " + maxBytes + " 字节");
+        }
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分层时间轮 (Hierarchical Timing Wheel)。
+ * <p>
+ * 第0层每格为 tickMs，每一层的一格等于下一层的一整圈；超出当前所有层范围的到期时间会自动新增一层。
+ * 推进时间时，高层格子到期会降级重新放入低层，第0层格子到期即为超时。
+ * 插入和推进一格的代价都是 O(1)（与元素总数无关），适合为大量主机维护各自的超时时间。
+ * <p>
+ * 本类不是线程安全的，调用方需要自行同步。
+ *
+ * @param <K> 定时任务的键类型
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Level<K>> levels = new ArrayList<>();
+
+    // 已推进到的时间（tickMs 的整数倍），第0层当前格子覆盖 [currentTime, currentTime + tickMs)
+    private long currentTime;
+
+    // 插入时已经到期的元素，在下一次推进时返回
+    private List<Entry<K>> overdue = new ArrayList<>();
+
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs must be positive");
+        }
+        if (wheelSize < 2) {
+            throw new IllegalArgumentException("wheelSize must be at least 2");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.levels.add(new Level<>(tickMs, wheelSize));
+    }
+
+    /**
+     * 添加一个在 deadlineMs 到期的定时任务
+     * 同一个键可以被添加多次，每次添加都会在各自的到期时间返回一次
+     */
+    public void schedule(K key, long deadlineMs) {
+        add(new Entry<>(key, deadlineMs));
+        size++;
+    }
+
+    /**
+     * 推进时间到 nowMs，返回所有到期时间早于推进后时间的键
+     */
+    public List<K> advance(long nowMs) {
+        List<K> expired = new ArrayList<>();
+        if (!overdue.isEmpty()) {
+            List<Entry<K>> pending = overdue;
+            overdue = new ArrayList<>();
+            for (Entry<K> entry : pending) {
+                expired.add(entry.key);
+            }
+        }
+
+        while (currentTime + tickMs <= nowMs) {
+            // 如果已经没有任何任务，直接跳到目标时间
+            if (size == expired.size()) {
+                currentTime = nowMs - (nowMs % tickMs);
+                break;
+            }
+
+            currentTime += tickMs;
+
+            // 第0层刚刚走过的格子全部到期
+            List<Entry<K>> bucket = levels.get(0).drain(currentTime - tickMs);
+            for (Entry<K> entry : bucket) {
+                expired.add(entry.key);
+            }
+
+            // 高层格子从高到低依次降级，使降到中间层当前格子的任务在本轮继续降级
+            for (int i = levels.size() - 1; i >= 1; i--) {
+                Level<K> level = levels.get(i);
+                if (currentTime % level.tickMs == 0) {
+                    for (Entry<K> entry : level.drain(currentTime)) {
+                        add(entry);
+                    }
+                }
+            }
+        }
+
+        size -= expired.size();
+        return expired;
+    }
+
+    /**
+     * 当前时间轮中尚未到期的任务数
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    private void add(Entry<K> entry) {
+        if (entry.deadlineMs < currentTime) {
+            overdue.add(entry);
+            return;
+        }
+
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                Level<K> upper = levels.get(i - 1);
+                levels.add(new Level<>(upper.tickMs * wheelSize, wheelSize));
+            }
+            Level<K> level = levels.get(i);
+            long levelStart = currentTime - (currentTime % level.tickMs);
+            if (entry.deadlineMs < levelStart + level.intervalMs) {
+                level.put(entry);
+                return;
+            }
+        }
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long deadlineMs;
+
+        private Entry(K key, long deadlineMs) {
+            this.key = key;
+            this.deadlineMs = deadlineMs;
+        }
+    }
+
+    private static final class Level<K> {
+        private final long tickMs;
+        private final long intervalMs;
+        private final List<List<Entry<K>>> buckets;
+
+        private Level(long tickMs, int wheelSize) {
+            this.tickMs = tickMs;
+            this.intervalMs = tickMs * wheelSize;
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayList<>());
+            }
+        }
+
+        private void put(Entry<K> entry) {
+            buckets.get(indexOf(entry.deadlineMs)).add(entry);
+        }
+
+        private List<Entry<K>> drain(long slotTime) {
+            int index = indexOf(slotTime);
+            List<Entry<K>> bucket = buckets.get(index);
+            if (bucket.isEmpty()) {
+                return bucket;
+            }
+            buckets.set(index, new ArrayList<>());
+            return bucket;
+        }
+
+        private int indexOf(long timeMs) {
+            return (int) ((timeMs / tickMs) % buckets.size());
+        }
+    }
+}
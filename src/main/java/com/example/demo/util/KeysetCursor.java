@@ -0,0 +1,82 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 游标（keyset）分页的继续令牌。
+ * <p>
+ * 令牌记录上一页最后一行的排序字段、排序方向、排序值和ID，编码为 URL 安全的 Base64 字符串，
+ * 对客户端不透明。排序值以字符串保存，由调用方按排序字段转换回原类型。
+ */
+public final class KeysetCursor {
+
+    private static final String VERSION = "v1";
+    private static final char SEPARATOR = '|';
+    // 排序值为 NULL 时的标记（Base64 字母表之外的字符）
+    private static final String NULL_VALUE = "~";
+
+    private final String sortBy;
+    private final boolean descending;
+    private final String value;
+    private final long id;
+
+    public KeysetCursor(String sortBy, boolean descending, String value, long id) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.value = value;
+        this.id = id;
+    }
+
+    public String getSortBy() {
+        return sortBy;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * 上一页最后一行的排序值，为 null 表示该行的排序列为 NULL
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * 编码为令牌
+     */
+    public String encode() {
+        String encodedValue = value != null
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8))
+                : NULL_VALUE;
+        String raw = VERSION + SEPARATOR + sortBy + SEPARATOR + (descending ? "DESC" : "ASC")
+                + SEPARATOR + encodedValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析令牌
+     * @throws IllegalArgumentException 令牌格式不正确
+     */
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length != 5 || !VERSION.equals(parts[0])) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            String value = NULL_VALUE.equals(parts[3])
+                    ? null
+                    : new String(Base64.getUrlDecoder().decode(parts[3]), StandardCharsets.UTF_8);
+            return new KeysetCursor(parts[1], "DESC".equals(parts[2]), value, Long.parseLong(parts[4]));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException 和 Base64 解码错误都是 IllegalArgumentException
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.util;
+
+import com.example.demo.model.entity.Policy;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 策略指纹计算工具。
+ * <p>
+ * 指纹在策略写入（创建、更新、状态变更）时计算一次并随策略持久化，
+ * 心跳检查只比较客户端上报的指纹与策略中保存的指纹，不再重复计算哈希。
+ */
+public final class PolicyFingerprint {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private PolicyFingerprint() {
+    }
+
+    /**
+     * 计算策略内容的MD5指纹
+     * 参与计算的字段：ID、名称、描述、状态、版本、优先级、更新时间
+     */
+    public static String compute(Policy policy) {
+        if (policy == null) {
+            return "";
+        }
+
+        StringBuilder input = new StringBuilder(128);
+        input.append(policy.getId()).append('|');
+        input.append(policy.getName() != null ? policy.getName() : "").append('|');
+        input.append(policy.getDescription() != null ? policy.getDescription() : "").append('|');
+        input.append(policy.getStatus() != null ? policy.getStatus() : "").append('|');
+        input.append(policy.getVersion() != null ? policy.getVersion() : "").append('|');
+        input.append(policy.getPriority() != null ? policy.getPriority() : 0).append('|');
+        input.append(policy.getUpdatedAt() != null ? policy.getUpdatedAt().toString() : "");
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            return toHex(md.digest(input.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 algorithm not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 单飞（single-flight）合并器。
+ * <p>
+ * 同一个键上并发发起的相同计算只真正执行一次，其余调用方等待并共享同一个结果；
+ * 计算结束后立即移除，后续调用会重新计算（不做缓存）。
+ *
+ * @param <K> 键类型
+ * @param <V> 结果类型
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * 同步执行：同一个键上已有进行中的计算时等待其结果，否则由当前线程执行
+     * 计算抛出的运行时异常和错误会原样抛给所有等待者，等待者不会因为计算异常而永久阻塞
+     */
+    public V execute(K key, Supplier<V> supplier) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+            }
+        }
+
+        executions.increment();
+        try {
+            V value = supplier.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步执行：同一个键上已有进行中的异步任务时直接返回该任务，否则提交新任务
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> supplier) {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        CompletableFuture<V> placeholder = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, placeholder);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        executions.increment();
+        try {
+            supplier.get().whenComplete((value, throwable) -> {
+                inFlight.remove(key, placeholder);
+                if (throwable != null) {
+                    placeholder.completeExceptionally(throwable);
+                } else {
+                    placeholder.complete(value);
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.remove(key, placeholder);
+            placeholder.completeExceptionally(e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+        return placeholder;
+    }
+
+    /**
+     * 实际执行的次数
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * 被合并（共享了其他调用结果）的次数
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * 合并命中率 = 被合并次数 / 总调用次数
+     */
+    public double getCoalesceRate() {
+        long hits = coalesced.sum();
+        long total = hits + executions.sum();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    /**
+     * 当前进行中的计算数量
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -46,6 +46,23 @@ public class SnowflakeIdGenerator {
     }
 
     public synchronized long nextId() {
+        return generate();
+    }
+
+    /**
+     * 一次预留一段连续生成的ID（批量导入使用），整段只获取一次锁
+     * @param count 需要的ID数量
+     * @return 按生成顺序排列的ID
+     */
+    public synchronized long[] nextIds(int count) {
+        long[] ids = new long[Math.max(0, count)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generate();
+        }
+        return ids;
+    }
+
+    private long generate() {
         long timestamp = timeGen();
 
         if (timestamp < lastTimestamp) {
@@ -0,0 +1,71 @@
+package com.example.demo.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器。
+ * <p>
+ * 令牌按固定速率持续补充，桶中最多积累 capacity 个令牌，允许短时突发；
+ * 速率小于等于 0 表示不限流。
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数，小于等于 0 表示不限流
+     * @param capacity 桶容量（允许的突发数量），至少为 1
+     */
+    public TokenBucket(double ratePerSecond, double capacity) {
+        this.ratePerNano = ratePerSecond > 0 ? ratePerSecond / TimeUnit.SECONDS.toNanos(1) : 0;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 尝试立即取得一个令牌
+     */
+    public synchronized boolean tryAcquire() {
+        if (ratePerNano == 0) {
+            return true;
+        }
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取得一个令牌，没有令牌时等待到下一个令牌补充
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                if (ratePerNano == 0) {
+                    return;
+                }
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(1, waitNanos));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * ratePerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -42,6 +42,7 @@ CREATE INDEX idx_hosts_organization_id ON hosts (organization_id);
 CREATE INDEX idx_hosts_responsible_person ON hosts (responsible_person);
 CREATE INDEX idx_hosts_user_id ON hosts (user_id);
 CREATE INDEX idx_hosts_created_at ON hosts (created_at);
+CREATE INDEX idx_hosts_updated_at ON hosts (updated_at);
 CREATE INDEX idx_hosts_last_online_time ON hosts (last_online_time);
 
 -- 添加约束检查
@@ -69,6 +70,7 @@ CREATE TABLE policies (
     version VARCHAR(50) NOT NULL COMMENT '版本号',
     is_default BOOLEAN NOT NULL DEFAULT FALSE COMMENT '是否为默认策略',
     priority INTEGER NOT NULL DEFAULT 0 COMMENT '优先级，数值越大优先级越高',
+    fingerprint VARCHAR(64) NULL COMMENT '策略内容指纹（写入时计算）',
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (id)
@@ -100,8 +102,9 @@ CREATE TABLE client_policy_mappings (
 );
 
 -- 创建索引
+CREATE UNIQUE INDEX uk_client_policy ON client_policy_mappings (client_id, policy_id);
 CREATE INDEX idx_client_policy_client_id ON client_policy_mappings (client_id);
-CREATE INDEX idx_client_policy_policy_id ON client_policy_mappings (policy_id);
+CREATE INDEX idx_client_policy_policy_id ON client_policy_mappings (policy_id, client_id);
 CREATE INDEX idx_client_policy_is_active ON client_policy_mappings (is_active);
 CREATE INDEX idx_client_policy_assigned_at ON client_policy_mappings (assigned_at);
 
@@ -130,6 +133,25 @@ CREATE INDEX idx_organizations_leaf ON organizations (leaf);
 ALTER TABLE organizations ADD CONSTRAINT chk_org_leaf 
     CHECK (leaf IN (0, 1));
 
+-- =============================================================================
+-- 4.1 组织策略映射表 (org_policy_mappings)
+-- =============================================================================
+-- 策略分配到组织节点后对整个子树生效，每个组织最多绑定一个策略
+DROP TABLE IF EXISTS org_policy_mappings;
+CREATE TABLE org_policy_mappings (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    org_id VARCHAR(100) NOT NULL COMMENT '组织ID',
+    policy_id BIGINT NOT NULL COMMENT '策略ID',
+    assigned_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '分配时间',
+    PRIMARY KEY (id)
+);
+
+CREATE UNIQUE INDEX uk_org_policy_org_id ON org_policy_mappings (org_id);
+CREATE INDEX idx_org_policy_policy_id ON org_policy_mappings (policy_id);
+
+ALTER TABLE org_policy_mappings ADD CONSTRAINT fk_org_policy_policy_id 
+    FOREIGN KEY (policy_id) REFERENCES policies(id) ON DELETE CASCADE;
+
 -- 为主机表添加外键约束（可选）
 -- ALTER TABLE hosts ADD CONSTRAINT fk_hosts_organization_id 
 --     FOREIGN KEY (organization_id) REFERENCES organizations(id);
@@ -154,4 +176,17 @@ CREATE INDEX idx_users_m_level ON users (m_level);
 
 -- 添加约束检查
 ALTER TABLE users ADD CONSTRAINT chk_user_m_level 
-    CHECK (m_level >= 0 AND m_level <= 99);
\ No newline at end of file
+    CHECK (m_level >= 0 AND m_level <= 99);
+-- =============================================================================
+-- 6. 批量分配暂存表 (policy_assignment_staging)
+-- =============================================================================
+DROP TABLE IF EXISTS policy_assignment_staging;
+CREATE TABLE policy_assignment_staging (
+    job_id BIGINT NOT NULL COMMENT '批量分配任务ID',
+    client_id VARCHAR(255) NOT NULL COMMENT '请求中的客户端ID（可能重复）',
+    staged_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '暂存时间'
+);
+
+-- 创建索引
+CREATE INDEX idx_assignment_staging_job_client ON policy_assignment_staging (job_id, client_id);
+CREATE INDEX idx_assignment_staging_staged_at ON policy_assignment_staging (staged_at);
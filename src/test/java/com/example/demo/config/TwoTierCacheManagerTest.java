@@ -0,0 +1,216 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 ConcurrentMapCacheManager 代替 Redis 作为共享的 L2，进程内消息总线代替 Redisson 主题
+ */
+class TwoTierCacheManagerTest {
+
+    private ConcurrentMapCacheManager sharedL2;
+    private InMemoryBus bus;
+    private TwoTierCacheManager nodeA;
+    private TwoTierCacheManager nodeB;
+
+    @BeforeEach
+    void setUp() {
+        sharedL2 = new ConcurrentMapCacheManager("policies", "hosts", "default");
+        bus = new InMemoryBus();
+        Map<String, TwoTierCacheManager.L1Config> l1 = Collections.singletonMap("policies",
+                new TwoTierCacheManager.L1Config(2, 60000));
+        nodeA = new TwoTierCacheManager(sharedL2, l1, bus);
+        nodeB = new TwoTierCacheManager(sharedL2, l1, bus);
+    }
+
+    @Test
+    void get_ShouldServeFromL1UntilInvalidatedByAnotherNode() {
+        Cache cacheA = nodeA.getCache("policies");
+        Cache cacheB = nodeB.getCache("policies");
+        cacheA.put(1L, "v1");
+
+        assertEquals("v1", cacheB.get(1L, String.class));
+        // 直接修改 L2，节点B仍从 L1 读取
+        sharedL2.getCache("policies").put(1L, "v2");
+        assertEquals("v1", cacheB.get(1L, String.class));
+        assertEquals(1, ((TwoTierCache) cacheB).getHits());
+
+        // 节点A写入后广播失效，节点B丢弃 L1 重新读取 L2
+        cacheA.put(1L, "v3");
+        assertEquals("v3", cacheB.get(1L, String.class));
+
+        cacheA.evict(1L);
+        assertNull(cacheB.get(1L));
+
+        cacheA.put(2L, "x");
+        assertEquals("x", cacheB.get(2L, String.class));
+        cacheA.clear();
+        assertNull(cacheB.get(2L));
+    }
+
+    @Test
+    void put_ShouldWriteThroughToL1AndPublishInvalidation() {
+        TwoTierCache cacheA = (TwoTierCache) nodeA.getCache("policies");
+        Cache cacheB = nodeB.getCache("policies");
+
+        // 写入 L1，通知其他节点丢弃旧值
+        cacheA.put(1L, "v1");
+        assertEquals("v1", cacheA.get(1L, String.class));
+        assertEquals(1, cacheA.getHits());
+        assertEquals(1, bus.published.size());
+
+        // 未命中后的回填不广播
+        assertEquals("v1", cacheB.get(1L, String.class));
+        assertEquals(1, bus.published.size());
+
+        cacheA.put(1L, "v2");
+        assertEquals(2, bus.published.size());
+        assertEquals("v2", cacheA.get(1L, String.class));
+        assertEquals(2, cacheA.getHits());
+        assertEquals("v2", cacheB.get(1L, String.class));
+    }
+
+    @Test
+    void put_ShouldNotReadL2() {
+        AtomicInteger reads = new AtomicInteger();
+        ConcurrentMapCache l2 = new ConcurrentMapCache("policies") {
+            @Override
+            public ValueWrapper get(Object key) {
+                reads.incrementAndGet();
+                return super.get(key);
+            }
+        };
+        TwoTierCache cache = new TwoTierCache(l2, 10, 60000, "node-a", bus);
+
+        cache.put(1L, "v1");
+        cache.put(1L, "v2");
+
+        assertEquals(0, reads.get());
+        assertEquals("v2", cache.get(1L, String.class));
+    }
+
+    @Test
+    void getWithLoader_ShouldAccessL2OnceOnMissAndFillL1() {
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger loaderReads = new AtomicInteger();
+        ConcurrentMapCache l2 = new ConcurrentMapCache("policies") {
+            @Override
+            public ValueWrapper get(Object key) {
+                reads.incrementAndGet();
+                return super.get(key);
+            }
+
+            @Override
+            public <T> T get(Object key, Callable<T> valueLoader) {
+                loaderReads.incrementAndGet();
+                return super.get(key, valueLoader);
+            }
+        };
+        TwoTierCache cache = new TwoTierCache(l2, 10, 60000, "node-a", bus);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("v1", cache.get(1L, () -> "v" + loads.incrementAndGet()));
+        assertEquals("v1", cache.get(1L, () -> "v" + loads.incrementAndGet()));
+
+        assertEquals(0, reads.get());
+        assertEquals(1, loaderReads.get());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(0, bus.published.size());
+    }
+
+    @Test
+    void get_ShouldNotFillStaleValueWhenKeyInvalidatedDuringL2Read() {
+        AtomicReference<Runnable> duringRead = new AtomicReference<>();
+        ConcurrentMapCache l2 = new ConcurrentMapCache("policies") {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper value = super.get(key);
+                Runnable action = duringRead.getAndSet(null);
+                if (action != null) {
+                    action.run();
+                }
+                return value;
+            }
+        };
+        TwoTierCache cache = new TwoTierCache(l2, 10, 60000, "node-a", bus);
+        l2.put(1L, "old");
+        l2.put(2L, "x");
+
+        // 读取键1期间其他节点更新了键1：本次读到旧值，但旧值不回填 L1
+        duringRead.set(() -> {
+            l2.put(1L, "new");
+            cache.invalidateLocal(Collections.singletonList(1L));
+        });
+        assertEquals("old", cache.get(1L, String.class));
+        assertEquals("new", cache.get(1L, String.class));
+        assertEquals(0, cache.getHits());
+
+        // 其他键的失效不影响本键回填
+        duringRead.set(() -> cache.invalidateLocal(Collections.singletonList(3L)));
+        assertEquals("x", cache.get(2L, String.class));
+        assertEquals("x", cache.get(2L, String.class));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void invalidate_ShouldDropL1AfterDirectL2Modification() {
+        Cache cacheB = nodeB.getCache("policies");
+        sharedL2.getCache("policies").put("client-1", "old");
+        assertEquals("old", cacheB.get("client-1", String.class));
+
+        sharedL2.getCache("policies").evict("client-1");
+        nodeA.invalidate("policies", Collections.singletonList("client-1"));
+        assertNull(cacheB.get("client-1"));
+    }
+
+    @Test
+    void l1_ShouldBeBoundedAndOnlyWrapConfiguredCaches() {
+        TwoTierCache cache = (TwoTierCache) nodeA.getCache("policies");
+        cache.get(1L, () -> "a");
+        cache.get(2L, () -> "b");
+        // 访问键1后，最久未访问的是键2
+        assertEquals("a", cache.get(1L, String.class));
+        cache.get(3L, () -> "c");
+        assertEquals(2, cache.getLocalSize());
+        assertEquals(1, cache.getHits());
+        assertEquals("a", cache.get(1L, String.class));
+        assertEquals(2, cache.getHits());
+        assertEquals("b", cache.get(2L, String.class));
+        assertEquals(2, cache.getHits());
+
+        assertFalse(nodeA.getCache("hosts") instanceof TwoTierCache);
+        assertSame(sharedL2.getCache("hosts"), nodeA.getCache("hosts"));
+    }
+
+    private static class InMemoryBus implements CacheInvalidationBus {
+        private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+        private final List<Invalidation> published = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(Invalidation invalidation) {
+            published.add(invalidation);
+            listeners.forEach(listener -> listener.accept(invalidation));
+        }
+
+        @Override
+        public void subscribe(Consumer<Invalidation> listener) {
+            listeners.add(listener);
+        }
+    }
+}
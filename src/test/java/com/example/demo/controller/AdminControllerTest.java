@@ -1,5 +1,6 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.PolicyAssignmentProgress;
 import com.example.demo.service.PolicyAdminService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -98,4 +103,35 @@ class AdminControllerTest {
         assertTrue(response.getBody().contains("策略ID和状态不能为null"));
         verify(policyAdminService).updatePolicyStatus(policyId, "enabled");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAssignPolicyToClients_ReturnsAcceptedJob() throws Exception {
+        // Given
+        Long policyId = 1L;
+        InputStream body = new ByteArrayInputStream("[\"client-001\",\"client-002\"]".getBytes(StandardCharsets.UTF_8));
+        PolicyAssignmentProgress progress = new PolicyAssignmentProgress();
+        progress.setJobId("job-1");
+        progress.setStatus("PENDING");
+        when(policyAdminService.submitAssignment(policyId, body)).thenReturn(progress);
+
+        // When
+        ResponseEntity<PolicyAssignmentProgress> response = adminController.assignPolicyToClients(body, policyId);
+
+        // Then
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        assertEquals("job-1", response.getBody().getJobId());
+        verify(policyAdminService).submitAssignment(policyId, body);
+    }
+
+    @Test
+    void testGetAssignmentProgress_NotFound() {
+        // Given
+        when(policyAdminService.getAssignmentProgress("missing")).thenReturn(null);
+
+        // When
+        ResponseEntity<PolicyAssignmentProgress> response = adminController.getAssignmentProgress("missing");
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+}
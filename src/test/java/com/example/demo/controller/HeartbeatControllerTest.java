@@ -0,0 +1,52 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.service.impl.HostOnlineStatusMonitorService;
+import com.example.demo.service.impl.PolicyPushService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Flux;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@ExtendWith(MockitoExtension.class)
+class HeartbeatControllerTest {
+
+    @Mock
+    private HeartbeatService heartbeatService;
+
+    @Mock
+    private HostOnlineStatusMonitorService monitorService;
+
+    @Mock
+    private PolicyPushService policyPushService;
+
+    @InjectMocks
+    private HeartbeatController heartbeatController;
+
+    @Test
+    void streamClientPolicy_ShouldNotApplyAsyncRequestTimeout() throws Exception {
+        when(policyPushService.openStream("client-1")).thenReturn(Flux.never());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(heartbeatController)
+                .setAsyncRequestTimeout(30000L)
+                .build();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/client/client-1/policy-stream")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // 推送流不受全局异步超时限制，由 PolicyPushService 按最长存活时间关闭
+        assertEquals(-1L, result.getRequest().getAsyncContext().getTimeout());
+    }
+}
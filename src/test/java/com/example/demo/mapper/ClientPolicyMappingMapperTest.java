@@ -0,0 +1,83 @@
+package com.example.demo.mapper;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ClientPolicyMappingMapper.xml 的方言语句：databaseId="h2" 在 H2 上执行，
+ * databaseId="mysql" 在 H2 的 MySQL 兼容模式上执行
+ */
+class ClientPolicyMappingMapperTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+
+    private TestDatabase database;
+    private ClientPolicyMappingMapper mapper;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"h2", "mysql"})
+    void upsertActiveMapping_ShouldInsertThenReactivateKeepingAssignedAt(String dialect) throws Exception {
+        open(dialect);
+
+        mapper.upsertActiveMapping("client-1", 1L, T0);
+        database.jdbc().update("UPDATE client_policy_mappings SET is_active = FALSE");
+        mapper.upsertActiveMapping("client-1", 1L, T0.plusHours(1));
+
+        assertEquals(1, count("client-1"));
+        Map<String, Object> row = row("client-1", 1L);
+        assertEquals(Boolean.TRUE, row.get("IS_ACTIVE"));
+        assertEquals(Timestamp.valueOf(T0), row.get("ASSIGNED_AT"));
+        assertEquals(Timestamp.valueOf(T0.plusHours(1)), row.get("ACTIVATED_AT"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"h2", "mysql"})
+    void activateExclusive_ShouldActivateTargetAndDeactivateOthers(String dialect) throws Exception {
+        open(dialect);
+        insertMapping("client-1", 1L, T0, true);
+        insertMapping("client-1", 2L, T0, false);
+        insertMapping("client-1", 3L, T0, false);
+        insertMapping("client-2", 1L, T0, true);
+
+        int updated = mapper.activateExclusive("client-1", 2L, T0.plusHours(1));
+
+        // 只触及当前激活的映射和目标映射
+        assertEquals(2, updated);
+        assertEquals(Boolean.FALSE, row("client-1", 1L).get("IS_ACTIVE"));
+        assertEquals(Timestamp.valueOf(T0), row("client-1", 1L).get("ACTIVATED_AT"));
+        assertEquals(Boolean.TRUE, row("client-1", 2L).get("IS_ACTIVE"));
+        assertEquals(Timestamp.valueOf(T0.plusHours(1)), row("client-1", 2L).get("ACTIVATED_AT"));
+        assertEquals(Boolean.FALSE, row("client-1", 3L).get("IS_ACTIVE"));
+        assertEquals(Boolean.TRUE, row("client-2", 1L).get("IS_ACTIVE"));
+    }
+
+    private void open(String dialect) throws Exception {
+        database = "mysql".equals(dialect) ? TestDatabase.mysqlMode() : TestDatabase.h2();
+        mapper = database.mapper(ClientPolicyMappingMapper.class);
+        for (long policyId = 1; policyId <= 3; policyId++) {
+            database.jdbc().update("INSERT INTO policies (id, name, status, version, is_default, priority) "
+                    + "VALUES (?, ?, 'enabled', '1.0', FALSE, 0)", policyId, "policy-" + policyId);
+        }
+    }
+
+    private void insertMapping(String clientId, long policyId, LocalDateTime activatedAt, boolean active) {
+        database.jdbc().update("INSERT INTO client_policy_mappings (client_id, policy_id, assigned_at, activated_at, is_active) "
+                + "VALUES (?, ?, ?, ?, ?)", clientId, policyId, Timestamp.valueOf(activatedAt), Timestamp.valueOf(activatedAt), active);
+    }
+
+    private int count(String clientId) {
+        return database.jdbc().queryForObject(
+                "SELECT COUNT(*) FROM client_policy_mappings WHERE client_id = ?", Integer.class, clientId);
+    }
+
+    private Map<String, Object> row(String clientId, long policyId) {
+        return database.jdbc().queryForMap("SELECT is_active, assigned_at, activated_at FROM client_policy_mappings "
+                + "WHERE client_id = ? AND policy_id = ?", clientId, policyId);
+    }
+}
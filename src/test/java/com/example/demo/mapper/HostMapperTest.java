@@ -0,0 +1,72 @@
+package com.example.demo.mapper;
+
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HostMapper.xml 中自定义语句在 H2 上的行为
+ */
+class HostMapperTest {
+
+    private TestDatabase database;
+    private HostMapper hostMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        hostMapper = database.mapper(HostMapper.class);
+    }
+
+    @Test
+    void batchMarkOffline_ShouldSkipHostsSeenAfterThreshold() {
+        LocalDateTime now = LocalDateTime.now();
+        database.insertHost(1L, "ONLINE", now.minusMinutes(10));
+        database.insertHost(2L, "ONLINE", now.minusSeconds(5));
+        database.insertHost(3L, "ONLINE", null);
+        database.insertHost(4L, "OFFLINE", now.minusMinutes(10));
+
+        int updated = hostMapper.batchMarkOffline(Arrays.asList(1L, 2L, 3L, 4L), now.minusMinutes(5), now);
+
+        assertEquals(2, updated);
+        assertEquals("OFFLINE", database.onlineStatus(1L));
+        // 其他节点刚写回过心跳的主机保持在线
+        assertEquals("ONLINE", database.onlineStatus(2L));
+        assertEquals("OFFLINE", database.onlineStatus(3L));
+    }
+
+    @Test
+    void countHosts_ShouldIncludeHostsUpdatedAfterIndexWatermark() {
+        LocalDateTime watermark = LocalDateTime.now().minusMinutes(1);
+        database.insertHost(1L, "ONLINE", null);
+        database.insertHost(2L, "ONLINE", null);
+        database.insertHost(3L, "ONLINE", null);
+        database.insertHost(4L, "ONLINE", null);
+        setUpdatedAt(1L, watermark.minusHours(1));
+        setUpdatedAt(3L, watermark.minusHours(1));
+        setUpdatedAt(4L, watermark.minusHours(1));
+        database.jdbc().update("UPDATE hosts SET responsible_person = '李四' WHERE id = 2");
+        HostQueryDto query = new HostQueryDto();
+        query.setHostName("host-");
+
+        // 主机1是索引候选；主机2在水位线之后修改（例如其他节点新建），不在候选中但仍然返回
+        assertEquals(2, hostMapper.countHosts(query, new HostSearchCandidates(Arrays.asList(1L), null, watermark)));
+        assertEquals(1, hostMapper.countHosts(query, new HostSearchCandidates(new ArrayList<>(), null, watermark)));
+
+        HostQueryDto responsible = new HostQueryDto();
+        responsible.setResponsiblePerson("李四");
+        assertEquals(1, hostMapper.countHosts(responsible, new HostSearchCandidates(null, new ArrayList<>(), watermark)));
+    }
+
+    private void setUpdatedAt(long id, LocalDateTime updatedAt) {
+        database.jdbc().update("UPDATE hosts SET updated_at = ? WHERE id = ?", Timestamp.valueOf(updatedAt), id);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.mapper;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OrgPolicyMappingMapper.xml 的方言语句在 H2 和 H2 的 MySQL 兼容模式上的行为
+ */
+class OrgPolicyMappingMapperTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"h2", "mysql"})
+    void upsertOrgPolicy_ShouldKeepOneBindingPerOrganization(String dialect) throws Exception {
+        TestDatabase database = "mysql".equals(dialect) ? TestDatabase.mysqlMode() : TestDatabase.h2();
+        OrgPolicyMappingMapper mapper = database.mapper(OrgPolicyMappingMapper.class);
+        for (long policyId = 1; policyId <= 2; policyId++) {
+            database.jdbc().update("INSERT INTO policies (id, name, status, version, is_default, priority) "
+                    + "VALUES (?, ?, 'enabled', '1.0', FALSE, 0)", policyId, "policy-" + policyId);
+        }
+
+        mapper.upsertOrgPolicy("ORG001", 1L, T0);
+        mapper.upsertOrgPolicy("ORG002", 1L, T0);
+        // 重新绑定时替换原来的策略
+        mapper.upsertOrgPolicy("ORG001", 2L, T0.plusHours(1));
+
+        assertEquals(2, database.jdbc().queryForObject("SELECT COUNT(*) FROM org_policy_mappings", Integer.class));
+        Map<String, Object> org1 = database.jdbc().queryForMap(
+                "SELECT policy_id, assigned_at FROM org_policy_mappings WHERE org_id = 'ORG001'");
+        assertEquals(2L, ((Number) org1.get("POLICY_ID")).longValue());
+        assertEquals(Timestamp.valueOf(T0.plusHours(1)), org1.get("ASSIGNED_AT"));
+        assertEquals(1L, database.jdbc().queryForObject(
+                "SELECT policy_id FROM org_policy_mappings WHERE org_id = 'ORG002'", Long.class));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的 H2 内存数据库
+ * 执行 schema.sql 建表并加载全部 XML 映射文件，返回真实的 Mapper，用于验证 SQL 语句本身的行为。
+ * 没有 Spring 事务时每次 Mapper 调用自动提交，TransactionCallbacks 的回调立即执行
+ */
+public final class TestDatabase {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final DataSourceTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlSessionTemplate sqlSession;
+
+    private TestDatabase(String databaseId, String urlOptions) throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:test" + SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1" + urlOptions, "sa", "");
+        dataSource.setDriverClassName("org.h2.Driver");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        MybatisSqlSessionFactoryBean factoryBean = new MybatisSqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setConfiguration(configuration);
+        factoryBean.setDatabaseIdProvider((ds) -> databaseId);
+        factoryBean.setMapperLocations(new PathMatchingResourcePatternResolver().getResources("classpath*:/mapper/**/*.xml"));
+
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.sqlSession = new SqlSessionTemplate(factoryBean.getObject());
+    }
+
+    /**
+     * H2 数据库，执行 databaseId="h2" 的方言语句
+     */
+    public static TestDatabase h2() throws Exception {
+        return new TestDatabase("h2", "");
+    }
+
+    /**
+     * H2 的 MySQL 兼容模式，执行 databaseId="mysql" 的方言语句（ON DUPLICATE KEY UPDATE 等）
+     */
+    public static TestDatabase mysqlMode() throws Exception {
+        return new TestDatabase("mysql", ";MODE=MySQL");
+    }
+
+    public <T> T mapper(Class<T> type) {
+        return sqlSession.getMapper(type);
+    }
+
+    /**
+     * 同一数据源上的事务管理器，Mapper 调用会加入它开启的事务
+     */
+    public DataSourceTransactionManager transactionManager() {
+        return transactionManager;
+    }
+
+    public JdbcTemplate jdbc() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * 插入一个必填字段齐全的主机，主机名、IP和MAC地址由ID生成
+     */
+    public void insertHost(long id, String onlineStatus, LocalDateTime lastOnlineTime) {
+        jdbcTemplate.update("INSERT INTO hosts (id, host_name, ip_address, mac_address, online_status, "
+                        + "responsible_person, version, operating_system, organization_id, last_online_time) "
+                        + "VALUES (?, ?, ?, ?, ?, '张三', '1.0', 'Linux', 'ORG001', ?)",
+                id, "host-" + id, "10.0.0." + id, String.format("AA:00:00:00:00:%02d", id), onlineStatus,
+                lastOnlineTime != null ? Timestamp.valueOf(lastOnlineTime) : null);
+    }
+
+    public String onlineStatus(long id) {
+        return jdbcTemplate.queryForObject("SELECT online_status FROM hosts WHERE id = ?", String.class, id);
+    }
+
+    public Timestamp lastOnlineTime(long id) {
+        return jdbcTemplate.queryForObject("SELECT last_online_time FROM hosts WHERE id = ?", Timestamp.class, id);
+    }
+}
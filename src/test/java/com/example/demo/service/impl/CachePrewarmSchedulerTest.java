@@ -0,0 +1,79 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.util.TokenBucket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachePrewarmSchedulerTest {
+
+    @Mock
+    private HeartbeatService heartbeatService;
+
+    @InjectMocks
+    private CachePrewarmScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // 不调用 init()，由测试线程通过 runNext 逐个执行任务
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 3);
+        ReflectionTestUtils.setField(scheduler, "tokenBucket", new TokenBucket(0, 1));
+    }
+
+    @Test
+    void schedule_ShouldDeduplicatePendingClients() throws InterruptedException {
+        assertTrue(scheduler.schedule("client-1", CachePrewarmScheduler.Priority.LOW));
+        assertFalse(scheduler.schedule("client-1", CachePrewarmScheduler.Priority.LOW));
+        assertEquals(1, scheduler.getQueueDepth());
+
+        assertTrue(scheduler.runNext(0, TimeUnit.MILLISECONDS));
+        assertFalse(scheduler.runNext(0, TimeUnit.MILLISECONDS));
+        verify(heartbeatService, times(1)).preWarmClientPolicyCache("client-1");
+
+        // 执行完成后再次提交会重新入队
+        assertTrue(scheduler.schedule("client-1", CachePrewarmScheduler.Priority.LOW));
+        assertEquals(1L, scheduler.getStatistics().get("deduplicated"));
+    }
+
+    @Test
+    void runNext_ShouldRunHighPriorityFirstAndSkipPromotedTasks() throws InterruptedException {
+        scheduler.scheduleAll(Arrays.asList("bulk-1", "bulk-2"), CachePrewarmScheduler.Priority.LOW);
+        scheduler.schedule("single", CachePrewarmScheduler.Priority.HIGH);
+        // 等待中的批量客户端被提升为高优先级
+        assertTrue(scheduler.schedule("bulk-2", CachePrewarmScheduler.Priority.HIGH));
+
+        // 3 个客户端 + 1 个被提升后遗留的旧任务
+        for (int i = 0; i < 4; i++) {
+            scheduler.runNext(0, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, scheduler.getQueueDepth());
+
+        InOrder inOrder = inOrder(heartbeatService);
+        inOrder.verify(heartbeatService).preWarmClientPolicyCache("single");
+        inOrder.verify(heartbeatService).preWarmClientPolicyCache("bulk-2");
+        inOrder.verify(heartbeatService).preWarmClientPolicyCache("bulk-1");
+        verify(heartbeatService, times(1)).preWarmClientPolicyCache("bulk-2");
+        assertEquals(3L, scheduler.getStatistics().get("warmed"));
+    }
+
+    @Test
+    void schedule_ShouldDropWhenQueueIsFull() {
+        assertEquals(3, scheduler.scheduleAll(Arrays.asList("a", "b", "c", "d"), CachePrewarmScheduler.Priority.LOW));
+        assertFalse(scheduler.schedule("e", CachePrewarmScheduler.Priority.HIGH));
+        assertEquals(2L, scheduler.getStatistics().get("dropped"));
+        assertEquals(3, scheduler.getQueueDepth());
+    }
+}
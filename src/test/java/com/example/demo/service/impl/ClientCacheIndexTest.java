@@ -0,0 +1,121 @@
+package com.example.demo.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.model.entity.ClientPolicyMapping;
+import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.service.DynamicCacheService;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClientCacheIndexTest {
+
+    @Mock
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @Mock
+    private CacheAvailabilityService cacheAvailabilityService;
+
+    @Mock
+    private DynamicCacheService dynamicCacheService;
+
+    @InjectMocks
+    private ClientCacheIndex clientCacheIndex;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_ShouldIndexClientsByPolicyAndTrackMutations() {
+        doAnswer(invocation -> {
+            ResultHandler<ClientPolicyMapping> handler = invocation.getArgument(0);
+            handler.handleResult(context(mapping("client-1", 1L)));
+            handler.handleResult(context(mapping("client-2", 1L)));
+            handler.handleResult(context(mapping("client-1", 2L)));
+            return null;
+        }).when(clientPolicyMappingMapper).streamAllMappings(any(ResultHandler.class));
+
+        clientCacheIndex.reload();
+        assertEquals(new HashSet<>(Arrays.asList("client-1", "client-2")), new HashSet<>(clientCacheIndex.getClients(1L)));
+        assertEquals(Collections.singletonList("client-1"), clientCacheIndex.getClients(2L));
+
+        // 没有活动事务时立即生效
+        clientCacheIndex.addMappingsAfterCommit(2L, Collections.singletonList("client-3"));
+        clientCacheIndex.removeMappingsAfterCommit(1L, Collections.singletonList("client-2"));
+        clientCacheIndex.removePolicyAfterCommit(3L);
+        assertEquals(new HashSet<>(Arrays.asList("client-1", "client-3")), new HashSet<>(clientCacheIndex.getClients(2L)));
+        assertEquals(Collections.singletonList("client-1"), clientCacheIndex.getClients(1L));
+        assertTrue(clientCacheIndex.getClients(99L).isEmpty());
+        verify(clientPolicyMappingMapper, never()).selectList(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_ShouldReplayMappingsChangedWhileLoading() {
+        doAnswer(invocation -> {
+            ResultHandler<ClientPolicyMapping> handler = invocation.getArgument(0);
+            handler.handleResult(context(mapping("client-1", 1L)));
+            // 游标读取期间本节点给 client-2 分配策略1、取消 client-1 的策略2，游标随后仍读到旧的关联
+            clientCacheIndex.addMappingsAfterCommit(1L, Collections.singletonList("client-2"));
+            clientCacheIndex.removeMappingsAfterCommit(2L, Collections.singletonList("client-1"));
+            handler.handleResult(context(mapping("client-1", 2L)));
+            return null;
+        }).when(clientPolicyMappingMapper).streamAllMappings(any(ResultHandler.class));
+        when(clientPolicyMappingMapper.selectList(any())).thenAnswer(invocation -> {
+            QueryWrapper<ClientPolicyMapping> query = invocation.getArgument(0);
+            // 生成 SQL 片段时才会填充参数
+            query.getSqlSegment();
+            return query.getParamNameValuePairs().containsValue(1L)
+                    ? Collections.singletonList(mapping("client-2", 1L))
+                    : Collections.emptyList();
+        });
+
+        clientCacheIndex.reload();
+
+        assertEquals(new HashSet<>(Arrays.asList("client-1", "client-2")), new HashSet<>(clientCacheIndex.getClients(1L)));
+        assertTrue(clientCacheIndex.getClients(2L).isEmpty());
+        verify(clientPolicyMappingMapper, times(2)).selectList(any());
+
+        // 加载结束后的修改直接作用于索引，不再重新查询
+        clientCacheIndex.addMappingsAfterCommit(2L, Collections.singletonList("client-3"));
+        assertEquals(Collections.singletonList("client-3"), clientCacheIndex.getClients(2L));
+        verify(clientPolicyMappingMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void evictClientsAfterCommit_ShouldEvictOnlyAffectedClientKeysWhenRedisUnavailable() {
+        clientCacheIndex.evictClientsAfterCommit(Arrays.asList("client-1", "client-1", "client-2"));
+
+        verify(dynamicCacheService).evict("heartbeat:policy:client-1");
+        verify(dynamicCacheService).evict("heartbeat:hash:client-1");
+        verify(dynamicCacheService).evict("heartbeat:policy:client-2");
+        verify(dynamicCacheService).evict("heartbeat:hash:client-2");
+        verifyNoMoreInteractions(dynamicCacheService);
+    }
+
+    private ClientPolicyMapping mapping(String clientId, Long policyId) {
+        ClientPolicyMapping mapping = new ClientPolicyMapping();
+        mapping.setClientId(clientId);
+        mapping.setPolicyId(policyId);
+        return mapping;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultContext<ClientPolicyMapping> context(ClientPolicyMapping mapping) {
+        ResultContext<ClientPolicyMapping> context = mock(ResultContext.class);
+        when(context.getResultObject()).thenReturn(mapping);
+        return context;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.mapper.TestDatabase;
+import com.example.demo.model.entity.ClientPolicyMapping;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 内存生效策略表与 H2 中真实数据的加载和对账
+ */
+class EffectivePolicyTableTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+
+    private TestDatabase database;
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+    private PolicyEpochTracker policyEpochTracker;
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        clientPolicyMappingMapper = database.mapper(ClientPolicyMappingMapper.class);
+        PolicyCatalog policyCatalog = new PolicyCatalog();
+        ReflectionTestUtils.setField(policyCatalog, "policyMapper", database.mapper(PolicyMapper.class));
+        policyEpochTracker = new PolicyEpochTracker();
+
+        effectivePolicyTable = new EffectivePolicyTable();
+        ReflectionTestUtils.setField(effectivePolicyTable, "clientPolicyMappingMapper", clientPolicyMappingMapper);
+        ReflectionTestUtils.setField(effectivePolicyTable, "policyCatalog", policyCatalog);
+        ReflectionTestUtils.setField(effectivePolicyTable, "orgPolicyResolver", new OrgPolicyResolver());
+        ReflectionTestUtils.setField(effectivePolicyTable, "policyEpochTracker", policyEpochTracker);
+        ReflectionTestUtils.setField(effectivePolicyTable, "expectedClients", 16);
+
+        insertPolicy(1L, true, "enabled");
+        insertPolicy(2L, false, "enabled");
+        insertPolicy(3L, false, "enabled");
+        insertPolicy(4L, false, "disabled");
+    }
+
+    @Test
+    void reload_ShouldResolveLatestActiveMappingAndFallBackToDefault() {
+        insertMapping("client-1", 2L, T0, false);
+        insertMapping("client-1", 3L, T0.plusMinutes(1), true);
+        insertMapping("client-2", 4L, T0, true);
+
+        assertFalse(effectivePolicyTable.isReady());
+        effectivePolicyTable.reload();
+
+        assertTrue(effectivePolicyTable.isReady());
+        assertEquals(3L, effectivePolicyTable.resolve("client-1").getId());
+        // 激活的策略被禁用、或没有激活映射时使用默认策略
+        assertEquals(1L, effectivePolicyTable.resolve("client-2").getId());
+        assertEquals(1L, effectivePolicyTable.resolve("client-3").getId());
+        assertEquals(2, effectivePolicyTable.getStatistics().get("clients"));
+    }
+
+    @Test
+    void reload_ShouldReplayChangesCommittedWhileStreaming() {
+        insertMapping("client-0", 2L, T0, true);
+        insertMapping("client-1", 2L, T0.plusMinutes(1), true);
+        ClientPolicyMappingMapper streamingMapper = mock(ClientPolicyMappingMapper.class, delegatesTo(clientPolicyMappingMapper));
+        AtomicBoolean committed = new AtomicBoolean();
+        doAnswer(invocation -> {
+            ResultHandler<ClientPolicyMapping> handler = invocation.getArgument(0);
+            clientPolicyMappingMapper.streamActiveMappings(context -> {
+                if (committed.compareAndSet(false, true)) {
+                    // 游标已经读出旧数据后，另一个请求把 client-1 切换到策略3并提交
+                    clientPolicyMappingMapper.upsertActiveMapping("client-1", 3L, T0.plusMinutes(2));
+                    clientPolicyMappingMapper.activateExclusive("client-1", 3L, T0.plusMinutes(2));
+                    effectivePolicyTable.setActivePolicyAfterCommit("client-1", 3L);
+                }
+                handler.handleResult(context);
+            });
+            return null;
+        }).when(streamingMapper).streamActiveMappings(any());
+        ReflectionTestUtils.setField(effectivePolicyTable, "clientPolicyMappingMapper", streamingMapper);
+
+        effectivePolicyTable.reload();
+
+        assertTrue(committed.get());
+        assertEquals(3L, effectivePolicyTable.resolve("client-1").getId());
+        assertEquals(2L, effectivePolicyTable.resolve("client-0").getId());
+    }
+
+    @Test
+    void reload_ShouldBumpGlobalEpochOnlyWhenDataChanged() {
+        insertMapping("client-1", 2L, T0, true);
+        effectivePolicyTable.reload();
+        long epoch = policyEpochTracker.currentEpoch("client-1");
+
+        effectivePolicyTable.reload();
+        assertEquals(epoch, policyEpochTracker.currentEpoch("client-1"));
+
+        // 其他实例修改了映射
+        database.jdbc().update("UPDATE client_policy_mappings SET policy_id = 3 WHERE client_id = 'client-1'");
+        effectivePolicyTable.reload();
+        assertTrue(policyEpochTracker.currentEpoch("client-1") > epoch);
+        assertEquals(3L, effectivePolicyTable.resolve("client-1").getId());
+    }
+
+    private void insertPolicy(long id, boolean isDefault, String status) {
+        database.jdbc().update("INSERT INTO policies (id, name, status, version, is_default, priority, fingerprint) "
+                + "VALUES (?, ?, ?, '1.0', ?, 0, ?)", id, "policy-" + id, status, isDefault, "fp-" + id);
+    }
+
+    private void insertMapping(String clientId, long policyId, LocalDateTime activatedAt, boolean active) {
+        database.jdbc().update("INSERT INTO client_policy_mappings (client_id, policy_id, assigned_at, activated_at, is_active) "
+                + "VALUES (?, ?, ?, ?, ?)", clientId, policyId, Timestamp.valueOf(activatedAt), Timestamp.valueOf(activatedAt), active);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HeartbeatLoadControllerTest {
+
+    @Mock
+    private DatabaseConnectionPoolMonitorService databaseConnectionPoolMonitorService;
+
+    @InjectMocks
+    private HeartbeatLoadController loadController;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(loadController, "baseIntervalMs", 60000L);
+        ReflectionTestUtils.setField(loadController, "maxIntervalMs", 600000L);
+        ReflectionTestUtils.setField(loadController, "jitterRatio", 0.2);
+        ReflectionTestUtils.setField(loadController, "targetRate", 1000.0);
+        ReflectionTestUtils.setField(loadController, "queueThreshold", 100);
+        ReflectionTestUtils.setField(loadController, "poolThreshold", 0.7);
+        loadController.init();
+    }
+
+    @Test
+    void nextHeartbeatMs_ShouldBeDeterministicAndWithinJitterRange() {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            String clientId = String.format("00:1A:2B:3C:%02X:%02X", i / 256, i % 256);
+            long interval = loadController.nextHeartbeatMs(clientId);
+            assertEquals(interval, loadController.nextHeartbeatMs(clientId));
+            assertTrue(interval >= 48000 && interval <= 72000, "interval out of range: " + interval);
+            min = Math.min(min, interval);
+            max = Math.max(max, interval);
+        }
+        // 连续的MAC地址也应分散到整个抖动区间
+        assertTrue(min < 50000);
+        assertTrue(max > 70000);
+    }
+
+    @Test
+    void sample_ShouldStretchIntervalUnderLoadAndRecoverGradually() {
+        LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+        loadController.watchQueue(queue);
+        for (int i = 0; i < 300; i++) {
+            queue.add(() -> { });
+        }
+        when(databaseConnectionPoolMonitorService.getPoolPressure()).thenReturn(0.1);
+
+        loadController.sample();
+        long stretched = (long) loadController.getStatistics().get("intervalMs");
+        assertEquals(180000, stretched);
+
+        queue.clear();
+        loadController.sample();
+        long recovering = (long) loadController.getStatistics().get("intervalMs");
+        assertTrue(recovering < stretched && recovering > 60000, "interval should shrink gradually: " + recovering);
+
+        for (int i = 0; i < 100; i++) {
+            loadController.sample();
+        }
+        assertEquals(60000L, loadController.getStatistics().get("intervalMs"));
+    }
+
+    @Test
+    void getMaxHeartbeatMs_ShouldIncludeJitter() {
+        assertEquals(720000, loadController.getMaxHeartbeatMs());
+    }
+
+    @Test
+    void getMaxIssuedHeartbeatMs_ShouldFollowIntervalsActuallyIssued() {
+        // 启动后第一个窗口按配置上限处理（重启前可能下发过更长的间隔）
+        assertEquals(720000, loadController.getMaxIssuedHeartbeatMs());
+
+        long issued = 0;
+        for (int i = 0; i < 100; i++) {
+            issued = Math.max(issued, loadController.nextHeartbeatMs("client-" + i));
+        }
+        when(databaseConnectionPoolMonitorService.getPoolPressure()).thenReturn(0.1);
+        expireIssuedWindow();
+        loadController.sample();
+
+        // 上一个窗口内下发的间隔仍然有效
+        assertEquals(issued, loadController.getMaxIssuedHeartbeatMs());
+        assertEquals(issued, loadController.getStatistics().get("maxIssuedIntervalMs"));
+
+        expireIssuedWindow();
+        loadController.sample();
+        assertEquals(0, loadController.getMaxIssuedHeartbeatMs());
+    }
+
+    private void expireIssuedWindow() {
+        ReflectionTestUtils.setField(loadController, "issuedWindowStartedAt",
+                System.currentTimeMillis() - loadController.getMaxHeartbeatMs());
+    }
+}
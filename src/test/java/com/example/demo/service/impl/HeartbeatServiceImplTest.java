@@ -0,0 +1,157 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.model.entity.Policy;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeartbeatServiceImplTest {
+
+    private static final String CLIENT_ID = "AA:BB:CC:DD:EE:01";
+
+    @Mock
+    private HostPresenceBuffer hostPresenceBuffer;
+
+    @Mock
+    private HostOnlineStatusMonitorService hostOnlineStatusMonitorService;
+
+    @Mock
+    private HeartbeatLoadController heartbeatLoadController;
+
+    @Mock
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @Mock
+    private PolicyRolloutManager policyRolloutManager;
+
+    @Mock
+    private PolicyResponseCache policyResponseCache;
+
+    @Mock
+    private PolicyRevisionStore policyRevisionStore;
+
+    @Spy
+    private PolicyEpochTracker policyEpochTracker = new PolicyEpochTracker();
+
+    @InjectMocks
+    private HeartbeatServiceImpl heartbeatService;
+
+    private final Policy policy = policy("fp-1");
+
+    @BeforeEach
+    void setUp() {
+        // 主机已确认在线，心跳只写入缓冲
+        when(heartbeatLoadController.nextHeartbeatMs(CLIENT_ID)).thenReturn(30000L);
+        when(hostPresenceBuffer.resolveHostId(CLIENT_ID)).thenReturn(1L);
+        when(hostPresenceBuffer.touch(1L)).thenReturn(true);
+    }
+
+    @Test
+    void checkPolicies_ShouldSkipLookupOnlyWhenEpochAndIssuedFingerprintMatch() {
+        stubFullCheck();
+
+        HeartbeatResponse first = heartbeatService.checkPolicies(CLIENT_ID, null, null);
+        assertTrue(first.isNeedsPolicyUpdate());
+        assertEquals("fp-1", first.getLatestPoliciesHash());
+        long epoch = first.getPolicyEpoch();
+
+        // 客户端带着下发的纪元和指纹回来：快速路径，不解析策略
+        HeartbeatResponse second = heartbeatService.checkPolicies(CLIENT_ID, "fp-1", epoch);
+        assertFalse(second.isNeedsPolicyUpdate());
+        assertEquals("UP_TO_DATE", second.getUpdateType());
+        assertEquals(epoch, second.getPolicyEpoch());
+        verify(effectivePolicyTable, times(1)).resolve(CLIENT_ID);
+
+        // 纪元相同但指纹不是下发的指纹（例如客户端没有应用更新）：走完整检查并重新下发
+        HeartbeatResponse third = heartbeatService.checkPolicies(CLIENT_ID, "fp-stale", epoch);
+        assertTrue(third.isNeedsPolicyUpdate());
+        assertEquals("fp-1", third.getLatestPoliciesHash());
+        verify(effectivePolicyTable, times(2)).resolve(CLIENT_ID);
+    }
+
+    @Test
+    void checkPolicies_ShouldRunFullCheckAfterGlobalBump() {
+        stubFullCheck();
+        long epoch = heartbeatService.checkPolicies(CLIENT_ID, null, null).getPolicyEpoch();
+
+        policyEpochTracker.bumpGlobal();
+        HeartbeatResponse response = heartbeatService.checkPolicies(CLIENT_ID, "fp-1", epoch);
+
+        assertFalse(response.isNeedsPolicyUpdate());
+        assertTrue(response.getPolicyEpoch() > epoch);
+        verify(effectivePolicyTable, times(2)).resolve(CLIENT_ID);
+        // 完整检查后记录了新纪元下发的指纹，下一次心跳回到快速路径
+        heartbeatService.checkPolicies(CLIENT_ID, "fp-1", response.getPolicyEpoch());
+        verify(effectivePolicyTable, times(2)).resolve(CLIENT_ID);
+    }
+
+    @Test
+    void checkPolicies_ShouldNotJoinLookupStartedBeforeEpochBump() throws Exception {
+        Policy updated = policy("fp-2");
+        CountDownLatch lookupStarted = new CountDownLatch(1);
+        CountDownLatch releaseLookup = new CountDownLatch(1);
+        when(effectivePolicyTable.isReady()).thenReturn(true);
+        when(effectivePolicyTable.resolve(CLIENT_ID))
+                .thenAnswer(invocation -> {
+                    lookupStarted.countDown();
+                    releaseLookup.await(2, TimeUnit.SECONDS);
+                    return policy;
+                })
+                .thenReturn(updated);
+        when(policyRolloutManager.resolve(CLIENT_ID, policy)).thenReturn(policy);
+        when(policyRolloutManager.resolve(CLIENT_ID, updated)).thenReturn(updated);
+        when(policyResponseCache.getEffectivePolicyJson(any(), any())).thenReturn(new RawValue("{}"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<HeartbeatResponse> before = executor.submit(() -> heartbeatService.checkPolicies(CLIENT_ID, null, null));
+            assertTrue(lookupStarted.await(2, TimeUnit.SECONDS));
+
+            // 查询进行中策略更新提交，读到新纪元的心跳重新查询而不是共享旧结果
+            policyEpochTracker.bumpGlobal();
+            HeartbeatResponse after = heartbeatService.checkPolicies(CLIENT_ID, null, null);
+            releaseLookup.countDown();
+
+            assertEquals("fp-2", after.getLatestPoliciesHash());
+            assertEquals("fp-1", before.get(2, TimeUnit.SECONDS).getLatestPoliciesHash());
+            assertTrue(after.getPolicyEpoch() > before.get().getPolicyEpoch());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void stubFullCheck() {
+        when(effectivePolicyTable.isReady()).thenReturn(true);
+        when(effectivePolicyTable.resolve(CLIENT_ID)).thenReturn(policy);
+        when(policyRolloutManager.resolve(CLIENT_ID, policy)).thenReturn(policy);
+        when(policyResponseCache.getEffectivePolicyJson(eq(policy), any())).thenReturn(new RawValue("{}"));
+    }
+
+    private static Policy policy(String fingerprint) {
+        Policy policy = new Policy();
+        policy.setId(1L);
+        policy.setName("测试策略");
+        policy.setStatus("enabled");
+        policy.setVersion("1.0");
+        policy.setFingerprint(fingerprint);
+        return policy;
+    }
+}
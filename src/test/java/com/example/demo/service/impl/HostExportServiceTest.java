@@ -0,0 +1,156 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.TerminalType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HostExportServiceTest {
+
+    @Mock
+    private HostMapper hostMapper;
+
+    @Mock
+    private HostSearchIndex hostSearchIndex;
+
+    @InjectMocks
+    private HostExportService hostExportService;
+
+    private final HostQueryDto query = new HostQueryDto();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(hostExportService, "objectMapper", new ObjectMapper().registerModule(new JavaTimeModule()));
+    }
+
+    @Test
+    void exportHosts_ShouldWriteCsvHeaderAndQuotedRows() throws Exception {
+        Host quoted = host(2L, "pc-\"02\"", "AA:00:00:00:00:02");
+        quoted.setResponsiblePerson("张三, 运维");
+        quoted.setRemarks("多行\n备注");
+        givenHosts(host(1L, "pc-01", "AA:00:00:00:00:01"), quoted);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = hostExportService.exportHosts(query, "csv", out);
+
+        assertEquals(2, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\r\n");
+        assertEquals("id,host_name,ip_address,mac_address,terminal_type,host_status,online_status,auth_status,"
+                + "responsible_person,user_id,version,operating_system,organization_id,last_online_time,auth_time,"
+                + "remarks,created_at,updated_at", lines[0]);
+        assertEquals("1,pc-01,10.0.0.1,AA:00:00:00:00:01,PC,,,,,,,,ORG001,,,,,", lines[1]);
+        assertEquals("2,\"pc-\"\"02\"\"\",10.0.0.1,AA:00:00:00:00:02,PC,,,,\"张三, 运维\",,,,ORG001,,,\"多行\n备注\",,", lines[2]);
+    }
+
+    @Test
+    void exportHosts_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        givenHosts(host(1L, "pc-01", "AA:00:00:00:00:01"), host(2L, "pc-02", "AA:00:00:00:00:02"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = hostExportService.exportHosts(query, "ndjson", out);
+
+        assertEquals(2, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode second = new ObjectMapper().readTree(lines[1]);
+        assertEquals("pc-02", second.get("hostName").asText());
+        assertEquals("PC", second.get("terminalType").asText());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportHosts_ShouldQueryRecentlyUpdatedHostsWhenSearchIndexHasNoCandidates() throws Exception {
+        query.setHostName("nothing-matches");
+        HostSearchCandidates search = new HostSearchCandidates(Collections.emptyList(), null, LocalDateTime.now().minusMinutes(1));
+        when(hostSearchIndex.search(query)).thenReturn(search);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = hostExportService.exportHosts(query, "csv", out);
+
+        // 其他节点在水位线之后新建的主机不在本节点索引中，仍然交给数据库查询
+        assertEquals(0, rows);
+        assertTrue(out.toString(StandardCharsets.UTF_8.name()).startsWith("id,host_name,"));
+        verify(hostMapper).streamHosts(eq(query), eq(search), any(ResultHandler.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportHosts_ShouldStopReadingWhenClientDisconnects() {
+        ResultContext<Host> context = context(host(1L, "pc-01", "AA:00:00:00:00:01"));
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(2);
+            // 第1000行后按行数刷新，此时客户端已断开
+            for (int i = 0; i < 1000; i++) {
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(hostMapper).streamHosts(eq(query), isNull(), any(ResultHandler.class));
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> hostExportService.exportHosts(query, "csv", disconnected));
+
+        assertEquals("Broken pipe", e.getMessage());
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenHosts(Host... hosts) {
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(2);
+            for (Host host : hosts) {
+                handler.handleResult(context(host));
+            }
+            return null;
+        }).when(hostMapper).streamHosts(eq(query), isNull(), any(ResultHandler.class));
+    }
+
+    private Host host(Long id, String hostName, String macAddress) {
+        Host host = new Host();
+        host.setId(id);
+        host.setHostName(hostName);
+        host.setIpAddress("10.0.0.1");
+        host.setMacAddress(macAddress);
+        host.setTerminalType(TerminalType.PC);
+        host.setOrganizationId("ORG001");
+        return host;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultContext<Host> context(Host host) {
+        ResultContext<Host> context = mock(ResultContext.class);
+        when(context.getResultObject()).thenReturn(host);
+        return context;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostImportResult;
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.AuthStatus;
+import com.example.demo.model.enums.HostStatus;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.model.enums.TerminalType;
+import com.example.demo.service.CacheAvailabilityService;
+import com.example.demo.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HostImportServiceTest {
+
+    @Mock
+    private HostMapper hostMapper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private HostSearchIndex hostSearchIndex;
+
+    @Mock
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Mock
+    private OrgPolicyResolver orgPolicyResolver;
+
+    @Mock
+    private CacheAvailabilityService cacheAvailabilityService;
+
+    @InjectMocks
+    private HostImportService hostImportService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(hostImportService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(hostImportService, "snowflakeIdGenerator", new SnowflakeIdGenerator());
+        ReflectionTestUtils.setField(hostImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(hostImportService, "maxErrors", 10);
+        hostImportService.init();
+    }
+
+    @Test
+    void importHosts_ShouldParseCsvAndReportRowErrors() throws Exception {
+        givenExistingHosts();
+        Host existing = host(1L, "00:1B:44:11:3A:B7", "192.168.1.10", "ORG001");
+        existing.setHostName("old-name");
+        when(hostMapper.selectBatchIds(anyList())).thenReturn(Collections.singletonList(existing));
+
+        String csv = "Host Name,ip_address,macAddress,terminal_type,responsible_person,version,operating_system,organization_id,remarks\r\n"
+                + "new-01,10.0.0.1,AA:00:00:00:00:01,server,\"张三, 运维\",1.0,Linux,ORG001,\"多行\n备注\"\r\n"
+                + "renamed,192.168.1.10,00:1B:44:11:3A:B7,,李四,1.0,Windows,ORG001,\n"
+                + "\n"
+                + "dup,10.0.0.2,AA:00:00:00:00:01,PC,王五,1.0,Linux,ORG001,\n"
+                + "taken,192.168.1.20,AA:00:00:00:00:02,PC,王五,1.0,Linux,ORG001,\n"
+                + "bad-type,10.0.0.3,AA:00:00:00:00:03,PHONE,王五,1.0,Linux,ORG001,\n"
+                + "missing,10.0.0.4,AA:00:00:00:00:04,PC,,1.0,Linux,ORG001,\n"
+                + "short,10.0.0.5\n"
+                + "new-02,192.168.1.20,AA:00:00:00:00:05,PC,王五,1.0,Linux,ORG002,\n";
+
+        HostImportResult result = hostImportService.importHosts(stream(csv), "text/csv; charset=UTF-8");
+
+        assertEquals("csv", result.getFormat());
+        assertEquals(8, result.getTotal());
+        assertEquals(2, result.getInserted());
+        assertEquals(1, result.getUpdated());
+        assertEquals(5, result.getFailed());
+        assertEquals(Arrays.asList(6L, 7L, 8L, 9L, 10L),
+                result.getErrors().stream().map(HostImportResult.RowError::getLine).collect(Collectors.toList()));
+        assertEquals("MAC地址在导入文件中重复", result.getErrors().get(0).getMessage());
+        assertEquals("IP地址在该组织内已存在", result.getErrors().get(1).getMessage());
+        assertEquals("未知的终端类型: PHONE", result.getErrors().get(2).getMessage());
+        assertEquals("责任人不能为空", result.getErrors().get(3).getMessage());
+
+        // 新主机按批预留ID并以多行INSERT写入，已存在的主机保留原ID
+        ArgumentCaptor<List<Host>> inserted = hostListCaptor();
+        verify(hostMapper, times(2)).batchInsertHosts(inserted.capture());
+        Host created = inserted.getAllValues().get(0).get(0);
+        assertNotNull(created.getId());
+        assertEquals(TerminalType.SERVER, created.getTerminalType());
+        assertEquals("张三, 运维", created.getResponsiblePerson());
+        assertEquals("多行\n备注", created.getRemarks());
+        assertEquals(HostStatus.ACTIVE, created.getHostStatus());
+        assertEquals(OnlineStatus.OFFLINE, created.getOnlineStatus());
+        assertEquals(AuthStatus.UNAUTHORIZED, created.getAuthStatus());
+        assertEquals("new-02", inserted.getAllValues().get(1).get(0).getHostName());
+
+        ArgumentCaptor<List<Host>> updated = hostListCaptor();
+        verify(hostMapper).batchUpdateImportedHosts(updated.capture(), any());
+        assertEquals(Long.valueOf(1L), updated.getValue().get(0).getId());
+        assertNull(updated.getValue().get(0).getTerminalType());
+
+        verify(hostSearchIndex, times(3)).indexHostAfterCommit(any(Host.class));
+        verify(orgPolicyResolver).updateClientOrganizationAfterCommit("AA:00:00:00:00:01", "ORG001");
+        verify(hostStatisticsCounters).recordAfterCommit(eq(existing), any(Host.class));
+    }
+
+    @Test
+    void importHosts_ShouldSkipUnchangedHostsAndAttributeWriteFailures() throws Exception {
+        givenExistingHosts();
+        Host existing = host(2L, "00:1B:44:11:3A:B8", "192.168.1.20", "ORG001");
+        existing.setHostName("server-01");
+        existing.setTerminalType(TerminalType.SERVER);
+        existing.setResponsiblePerson("李四");
+        existing.setVersion("2.0");
+        existing.setOperatingSystem("Linux");
+        when(hostMapper.selectBatchIds(anyList())).thenReturn(Collections.singletonList(existing));
+        // 整批写入失败后逐行重试，只有真正冲突的行失败
+        when(hostMapper.batchInsertHosts(anyList()))
+                .thenThrow(new IllegalStateException("Duplicate entry"))
+                .thenThrow(new IllegalStateException("Duplicate entry"))
+                .thenReturn(1);
+
+        String ndjson = "{\"hostName\":\"server-01\",\"ipAddress\":\"192.168.1.20\",\"macAddress\":\"00:1B:44:11:3A:B8\","
+                + "\"responsiblePerson\":\"李四\",\"version\":\"2.0\",\"operatingSystem\":\"Linux\",\"organizationId\":\"ORG001\"}\n"
+                + "{\"hostName\":\"pc-01\",\"ipAddress\":\"10.0.0.1\",\"macAddress\":\"AA:00:00:00:00:01\","
+                + "\"responsiblePerson\":\"王五\",\"version\":\"1.0\",\"operatingSystem\":\"Windows\",\"organizationId\":\"ORG002\"}\n"
+                + "{not json}\n"
+                + "{\"hostName\":\"pc-02\",\"ipAddress\":\"10.0.0.2\",\"macAddress\":\"AA:00:00:00:00:02\","
+                + "\"responsiblePerson\":\"王五\",\"version\":\"1.0\",\"operatingSystem\":\"Windows\",\"organizationId\":\"ORG002\"}\n";
+
+        HostImportResult result = hostImportService.importHosts(stream(ndjson), "ndjson");
+
+        assertEquals(4, result.getTotal());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getUpdated());
+        assertEquals(1, result.getInserted());
+        assertEquals(2, result.getFailed());
+        assertEquals(2L, result.getErrors().get(0).getLine());
+        assertEquals("AA:00:00:00:00:01", result.getErrors().get(0).getMacAddress());
+        assertEquals("写入失败: Duplicate entry", result.getErrors().get(0).getMessage());
+        assertEquals(3L, result.getErrors().get(1).getLine());
+        assertTrue(result.getErrors().get(1).getMessage().startsWith("JSON格式错误"));
+
+        verify(hostMapper, never()).batchUpdateImportedHosts(anyList(), any());
+        verify(hostSearchIndex, times(1)).indexHostAfterCommit(any(Host.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importHosts_ShouldTreatReimportedExportWithFormulaLikeValuesAsUnchanged() throws Exception {
+        givenExistingHosts();
+        Host existing = host(1L, "00:1B:44:11:3A:B7", "192.168.1.10", "ORG001");
+        existing.setHostName("-srv01");
+        existing.setTerminalType(TerminalType.SERVER);
+        existing.setResponsiblePerson("+86 13800000000");
+        existing.setVersion("1.0");
+        existing.setOperatingSystem("Linux");
+        existing.setRemarks("@运维 =备用");
+        when(hostMapper.selectBatchIds(anyList())).thenReturn(Collections.singletonList(existing));
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(2);
+            handler.handleResult(context(existing));
+            return null;
+        }).when(hostMapper).streamHosts(any(), isNull(), any(ResultHandler.class));
+        HostExportService hostExportService = new HostExportService();
+        ReflectionTestUtils.setField(hostExportService, "hostMapper", hostMapper);
+        ReflectionTestUtils.setField(hostExportService, "hostSearchIndex", hostSearchIndex);
+        ByteArrayOutputStream exported = new ByteArrayOutputStream();
+        hostExportService.exportHosts(new HostQueryDto(), "csv", exported);
+        // 导出的文件中公式字符前带单引号
+        assertTrue(exported.toString(StandardCharsets.UTF_8.name()).contains("'-srv01"));
+
+        HostImportResult result = hostImportService.importHosts(new ByteArrayInputStream(exported.toByteArray()), "csv");
+
+        assertEquals(1, result.getTotal());
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, result.getUpdated());
+        verify(hostMapper, never()).batchUpdateImportedHosts(anyList(), any());
+    }
+
+    @Test
+    void importHosts_ShouldRejectUnknownFormatAndIncompleteHeader() {
+        assertThrows(IllegalArgumentException.class, () -> hostImportService.importHosts(stream("{}"), "application/xml"));
+        assertThrows(IllegalArgumentException.class, () -> hostImportService.importHosts(stream("{}"), null));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> hostImportService.importHosts(stream("host_name,ip_address\nh,1.1.1.1\n"), "csv"));
+        assertTrue(e.getMessage().contains("macaddress"));
+        verify(hostMapper, never()).streamUniqueKeys(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenExistingHosts() {
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(0);
+            handler.handleResult(context(host(1L, "00:1B:44:11:3A:B7", "192.168.1.10", "ORG001")));
+            handler.handleResult(context(host(2L, "00:1B:44:11:3A:B8", "192.168.1.20", "ORG001")));
+            return null;
+        }).when(hostMapper).streamUniqueKeys(any(ResultHandler.class));
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Host host(Long id, String macAddress, String ipAddress, String organizationId) {
+        Host host = new Host();
+        host.setId(id);
+        host.setMacAddress(macAddress);
+        host.setIpAddress(ipAddress);
+        host.setOrganizationId(organizationId);
+        return host;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ArgumentCaptor<List<Host>> hostListCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultContext<Host> context(Host host) {
+        ResultContext<Host> context = mock(ResultContext.class);
+        when(context.getResultObject()).thenReturn(host);
+        return context;
+    }
+}
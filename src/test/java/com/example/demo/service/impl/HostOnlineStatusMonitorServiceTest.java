@@ -0,0 +1,134 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.mapper.TestDatabase;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.service.CacheAvailabilityService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 离线对账与心跳写回缓冲的交互（H2）
+ */
+@ExtendWith(MockitoExtension.class)
+class HostOnlineStatusMonitorServiceTest {
+
+    @Mock
+    private CacheAvailabilityService cacheAvailabilityService;
+
+    @Mock
+    private HeartbeatLoadController heartbeatLoadController;
+
+    @Mock
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @InjectMocks
+    private HostOnlineStatusMonitorService monitorService;
+
+    private TestDatabase database;
+    private HostPresenceBuffer hostPresenceBuffer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        HostMapper hostMapper = database.mapper(HostMapper.class);
+        hostPresenceBuffer = new HostPresenceBuffer();
+        ReflectionTestUtils.setField(hostPresenceBuffer, "hostMapper", hostMapper);
+        ReflectionTestUtils.setField(hostPresenceBuffer, "flushChunkSize", 500);
+        ReflectionTestUtils.setField(monitorService, "hostMapper", hostMapper);
+        ReflectionTestUtils.setField(monitorService, "hostPresenceBuffer", hostPresenceBuffer);
+        ReflectionTestUtils.setField(monitorService, "heartbeatTimeoutMinutes", 5);
+        ReflectionTestUtils.setField(monitorService, "missedHeartbeats", 3);
+        ReflectionTestUtils.setField(monitorService, "wheelTickMs", 1000L);
+        ReflectionTestUtils.setField(monitorService, "wheelSize", 64);
+        ReflectionTestUtils.setField(monitorService, "offlineBatchSize", 500);
+        monitorService.init();
+    }
+
+    @Test
+    void checkOfflineHosts_ShouldFlushBufferedHeartbeatsBeforeMarkingOffline() {
+        when(heartbeatLoadController.getMaxIssuedHeartbeatMs()).thenReturn(60_000L);
+        when(cacheAvailabilityService.isCacheAvailable()).thenReturn(false);
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        database.insertHost(1L, "ONLINE", longAgo);
+        database.insertHost(2L, "ONLINE", longAgo);
+        hostPresenceBuffer.markOnline(1L);
+        hostPresenceBuffer.markOnline(2L);
+        // 主机1的心跳还在缓冲中，数据库里的最后在线时间已经过期
+        hostPresenceBuffer.touch(1L);
+
+        monitorService.checkOfflineHosts();
+
+        assertEquals("ONLINE", database.onlineStatus(1L));
+        assertEquals("OFFLINE", database.onlineStatus(2L));
+        assertTrue(hostPresenceBuffer.touch(1L));
+        // 被标记为离线的主机不再走快速路径
+        assertFalse(hostPresenceBuffer.touch(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void checkOfflineHosts_ShouldCountOnlyHostsActuallyMarkedOffline() {
+        when(heartbeatLoadController.getMaxIssuedHeartbeatMs()).thenReturn(60_000L);
+        when(cacheAvailabilityService.isCacheAvailable()).thenReturn(false);
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(1);
+        database.insertHost(1L, "ONLINE", longAgo);
+        database.insertHost(2L, "ONLINE", longAgo);
+        HostMapper hostMapper = (HostMapper) ReflectionTestUtils.getField(monitorService, "hostMapper");
+        HostMapper racingMapper = mock(HostMapper.class, delegatesTo(hostMapper));
+        // 查询之后、更新之前其他节点写回了主机1的心跳
+        doAnswer(invocation -> {
+            database.jdbc().update("UPDATE hosts SET last_online_time = ? WHERE id = 1", Timestamp.valueOf(LocalDateTime.now()));
+            return hostMapper.batchMarkOffline(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+        }).when(racingMapper).batchMarkOffline(any(), any(), any());
+        ReflectionTestUtils.setField(monitorService, "hostMapper", racingMapper);
+
+        monitorService.checkOfflineHosts();
+
+        assertEquals("ONLINE", database.onlineStatus(1L));
+        assertEquals("OFFLINE", database.onlineStatus(2L));
+        ArgumentCaptor<Collection<Host>> changed = ArgumentCaptor.forClass(Collection.class);
+        verify(hostStatisticsCounters).onlineStatusChangedAfterCommit(changed.capture(), eq(OnlineStatus.OFFLINE));
+        assertEquals(Collections.singletonList(2L),
+                changed.getValue().stream().map(Host::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void armOnlineHosts_ShouldAllowLongestIssuedInterval() {
+        when(heartbeatLoadController.getMaxIssuedHeartbeatMs()).thenReturn(600_000L);
+        database.insertHost(1L, "ONLINE", LocalDateTime.now());
+        database.insertHost(2L, "OFFLINE", LocalDateTime.now());
+        long before = System.currentTimeMillis();
+
+        monitorService.armOnlineHosts();
+
+        Map<Long, Long> deadlines = (Map<Long, Long>) ReflectionTestUtils.getField(monitorService, "deadlines");
+        assertEquals(Collections.singleton(1L), deadlines.keySet());
+        // 间隔 × 允许错过的次数，大于默认的5分钟超时
+        assertTrue(deadlines.get(1L) >= before + 1_800_000L);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.mapper.TestDatabase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 心跳写回缓冲与 H2 中真实 SQL 的交互
+ */
+class HostPresenceBufferTest {
+
+    private TestDatabase database;
+    private HostMapper hostMapper;
+    private HostPresenceBuffer hostPresenceBuffer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        hostMapper = database.mapper(HostMapper.class);
+        hostPresenceBuffer = new HostPresenceBuffer();
+        ReflectionTestUtils.setField(hostPresenceBuffer, "hostMapper", hostMapper);
+        ReflectionTestUtils.setField(hostPresenceBuffer, "flushChunkSize", 2);
+    }
+
+    @Test
+    void touch_ShouldRequireConfirmedOnline() {
+        assertFalse(hostPresenceBuffer.touch(1L));
+        assertFalse(hostPresenceBuffer.touch(null));
+
+        hostPresenceBuffer.markOnline(1L);
+
+        assertTrue(hostPresenceBuffer.touch(1L));
+        assertEquals(1, hostPresenceBuffer.getStatistics().get("pendingHosts"));
+    }
+
+    @Test
+    void flush_ShouldWriteLastSeenInChunks() {
+        for (long id = 1; id <= 5; id++) {
+            database.insertHost(id, "ONLINE", null);
+            hostPresenceBuffer.markOnline(id);
+            hostPresenceBuffer.touch(id);
+        }
+
+        hostPresenceBuffer.flush();
+
+        for (long id = 1; id <= 5; id++) {
+            assertNotNull(database.lastOnlineTime(id));
+        }
+        Map<String, Object> statistics = hostPresenceBuffer.getStatistics();
+        assertEquals(0, statistics.get("pendingHosts"));
+        assertEquals(5L, statistics.get("flushedRows"));
+        // 块大小为2：2 + 2 + 1
+        assertEquals(3L, statistics.get("flushBatches"));
+        assertEquals(0L, statistics.get("reconfirmedHosts"));
+    }
+
+    @Test
+    void markOffline_ShouldDiscardPendingLastSeen() {
+        database.insertHost(1L, "ONLINE", null);
+        hostPresenceBuffer.markOnline(1L);
+        hostPresenceBuffer.touch(1L);
+
+        hostPresenceBuffer.markOffline(1L);
+        hostPresenceBuffer.flush();
+
+        assertNull(database.lastOnlineTime(1L));
+        assertFalse(hostPresenceBuffer.touch(1L));
+        assertEquals(0L, hostPresenceBuffer.getStatistics().get("flushBatches"));
+    }
+
+    @Test
+    void flush_ShouldRequeueChunkWhenWriteFails() {
+        database.insertHost(1L, "ONLINE", null);
+        hostPresenceBuffer.markOnline(1L);
+        hostPresenceBuffer.touch(1L);
+        HostMapper failingMapper = mock(HostMapper.class);
+        when(failingMapper.batchUpdateLastOnlineTime(any(), any())).thenThrow(new IllegalStateException("db down"));
+        ReflectionTestUtils.setField(hostPresenceBuffer, "hostMapper", failingMapper);
+
+        hostPresenceBuffer.flush();
+
+        assertEquals(1L, hostPresenceBuffer.getStatistics().get("flushFailures"));
+        assertEquals(1, hostPresenceBuffer.getStatistics().get("pendingHosts"));
+
+        // 数据库恢复后下一次写回成功
+        ReflectionTestUtils.setField(hostPresenceBuffer, "hostMapper", hostMapper);
+        hostPresenceBuffer.flush();
+
+        assertNotNull(database.lastOnlineTime(1L));
+        assertEquals(0, hostPresenceBuffer.getStatistics().get("pendingHosts"));
+    }
+
+    @Test
+    void evictHost_ShouldForgetClientAndConfirmation() {
+        hostPresenceBuffer.rememberClient("client-1", 1L);
+        hostPresenceBuffer.markOnline(1L);
+        hostPresenceBuffer.touch(1L);
+
+        hostPresenceBuffer.evictHost(1L);
+
+        assertNull(hostPresenceBuffer.resolveHostId("client-1"));
+        assertFalse(hostPresenceBuffer.touch(1L));
+        assertEquals(0, hostPresenceBuffer.getStatistics().get("pendingHosts"));
+    }
+
+    @Test
+    void flush_ShouldDropConfirmationOfHostsMarkedOfflineElsewhere() {
+        database.insertHost(1L, "ONLINE", null);
+        database.insertHost(2L, "ONLINE", null);
+        hostPresenceBuffer.markOnline(1L);
+        hostPresenceBuffer.markOnline(2L);
+        assertTrue(hostPresenceBuffer.touch(1L));
+        assertTrue(hostPresenceBuffer.touch(2L));
+        // 其他节点的离线检测把主机2标记为离线
+        database.jdbc().update("UPDATE hosts SET online_status = 'OFFLINE' WHERE id = 2");
+
+        hostPresenceBuffer.flush();
+
+        assertNotNull(database.lastOnlineTime(1L));
+        // 离线的主机不写回，下一次心跳重新走离线->在线切换流程
+        assertNull(database.lastOnlineTime(2L));
+        assertTrue(hostPresenceBuffer.touch(1L));
+        assertFalse(hostPresenceBuffer.touch(2L));
+        assertEquals(1L, hostPresenceBuffer.getStatistics().get("reconfirmedHosts"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HostSearchIndexTest {
+
+    @Mock
+    private HostMapper hostMapper;
+
+    @InjectMocks
+    private HostSearchIndex hostSearchIndex;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(hostSearchIndex, "enabled", true);
+        ReflectionTestUtils.setField(hostSearchIndex, "maxCandidates", 2);
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(0);
+            handler.handleResult(context(host(1L, "Finance-PC-01", "192.168.1.10", "00:1B:44:11:3A:B7", "张三丰")));
+            handler.handleResult(context(host(2L, "finance-server", "192.168.1.20", "00:1B:44:11:3A:B8", "李四")));
+            handler.handleResult(context(host(3L, "HR-PC-01", "10.0.0.5", "00:1B:44:11:3A:C1", "王五")));
+            return null;
+        }).when(hostMapper).streamSearchFields(any(ResultHandler.class));
+        hostSearchIndex.reload();
+    }
+
+    @Test
+    void search_ShouldResolveSubstringFiltersToCandidates() {
+        // 主机名称不区分大小写
+        assertEquals(Arrays.asList(1L, 2L), hostSearchIndex.search(query("NANCE", null, null)).getHostIds());
+
+        // IP 或 MAC 地址取并集，再与主机名称取交集
+        assertEquals(Collections.singletonList(3L), hostSearchIndex.search(query(null, "3A:C", null)).getHostIds());
+        assertEquals(Collections.singletonList(2L), hostSearchIndex.search(query("finance", "1.20", null)).getHostIds());
+
+        // 责任人单独给出候选主机
+        HostSearchCandidates responsible = hostSearchIndex.search(query(null, null, "张三丰"));
+        assertNull(responsible.getHostIds());
+        assertEquals(Collections.singletonList(1L), responsible.getResponsibleIds());
+
+        // 没有主机包含全部三元组
+        assertTrue(hostSearchIndex.search(query("payroll", null, null)).getHostIds().isEmpty());
+    }
+
+    @Test
+    void search_ShouldFallBackToLikeWhenIndexCannotNarrow() {
+        // 查询词太短、包含通配符、或候选主机超过上限
+        assertNull(hostSearchIndex.search(query("PC", null, null)));
+        assertNull(hostSearchIndex.search(query("PC_01", null, null)));
+        assertNull(hostSearchIndex.search(query(null, "00:1B:44", null)));
+    }
+
+    @Test
+    void afterCommitMutations_ShouldKeepIndexInSync() {
+        // 没有活动事务时立即生效
+        hostSearchIndex.indexHostAfterCommit(host(3L, "Finance-Laptop", "10.0.0.5", "00:1B:44:11:3A:C1", "王五"));
+        hostSearchIndex.removeHostsAfterCommit(Collections.singletonList(2L));
+
+        assertEquals(Arrays.asList(1L, 3L), hostSearchIndex.search(query("finance", null, null)).getHostIds());
+        assertTrue(hostSearchIndex.search(query("HR-PC", null, null)).getHostIds().isEmpty());
+        verify(hostMapper, never()).selectById(any());
+    }
+
+    @Test
+    void search_ShouldReportWatermarkBeforeReloadStarted() {
+        LocalDateTime beforeReload = LocalDateTime.now();
+        hostSearchIndex.reload();
+
+        // 水位线早于加载开始时间，覆盖其他节点加载时尚未提交的修改
+        LocalDateTime watermark = hostSearchIndex.search(query("finance", null, null)).getIndexWatermark();
+        assertNotNull(watermark);
+        assertTrue(watermark.isBefore(beforeReload));
+        assertTrue(watermark.isAfter(beforeReload.minusMinutes(5)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_ShouldReplayChangesCommittedWhileLoading() {
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(0);
+            handler.handleResult(context(host(1L, "Finance-PC-01", "192.168.1.10", "00:1B:44:11:3A:B7", "张三丰")));
+            // 游标读取期间本节点新建主机4、删除主机1，游标随后仍读到主机1的旧数据
+            hostSearchIndex.indexHostAfterCommit(host(4L, "Finance-Tablet", "10.0.0.8", "00:1B:44:11:3A:D1", "赵六"));
+            hostSearchIndex.removeHostsAfterCommit(Collections.singletonList(1L));
+            handler.handleResult(context(host(2L, "finance-server", "192.168.1.20", "00:1B:44:11:3A:B8", "李四")));
+            return null;
+        }).when(hostMapper).streamSearchFields(any(ResultHandler.class));
+        when(hostMapper.selectBatchIds(any())).thenReturn(
+                Collections.singletonList(host(4L, "Finance-Tablet", "10.0.0.8", "00:1B:44:11:3A:D1", "赵六")));
+
+        hostSearchIndex.reload();
+
+        assertEquals(Arrays.asList(2L, 4L), hostSearchIndex.search(query("finance", null, null)).getHostIds());
+        verify(hostMapper, times(1)).selectBatchIds(any());
+
+        // 加载结束后的修改直接作用于索引，不再重新读取
+        hostSearchIndex.removeHostsAfterCommit(Collections.singletonList(4L));
+        assertEquals(Collections.singletonList(2L), hostSearchIndex.search(query("finance", null, null)).getHostIds());
+        verify(hostMapper, times(1)).selectBatchIds(any());
+    }
+
+    private HostQueryDto query(String hostName, String ipOrMacAddress, String responsiblePerson) {
+        HostQueryDto query = new HostQueryDto();
+        query.setHostName(hostName);
+        query.setIpOrMacAddress(ipOrMacAddress);
+        query.setResponsiblePerson(responsiblePerson);
+        return query;
+    }
+
+    private Host host(Long id, String hostName, String ipAddress, String macAddress, String responsiblePerson) {
+        Host host = new Host();
+        host.setId(id);
+        host.setHostName(hostName);
+        host.setIpAddress(ipAddress);
+        host.setMacAddress(macAddress);
+        host.setResponsiblePerson(responsiblePerson);
+        return host;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultContext<Host> context(Host host) {
+        ResultContext<Host> context = mock(ResultContext.class);
+        when(context.getResultObject()).thenReturn(host);
+        return context;
+    }
+}
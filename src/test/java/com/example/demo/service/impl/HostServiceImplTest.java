@@ -3,13 +3,18 @@ package com.example.demo.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.example.demo.dto.HostCursorPage;
+import com.example.demo.dto.HostDto;
 import com.example.demo.dto.HostQueryDto;
+import com.example.demo.dto.HostSearchCandidates;
 import com.example.demo.mapper.HostMapper;
+import com.example.demo.service.CacheAvailabilityService;
 import com.example.demo.model.entity.Host;
 import com.example.demo.model.enums.AuthStatus;
 import com.example.demo.model.enums.HostStatus;
 import com.example.demo.model.enums.OnlineStatus;
 import com.example.demo.model.enums.TerminalType;
+import com.example.demo.util.KeysetCursor;
 import com.example.demo.util.SnowflakeIdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,14 +22,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +44,24 @@ class HostServiceImplTest {
     @Mock
     private SnowflakeIdGenerator snowflakeIdGenerator;
 
+    @Mock
+    private HostSearchIndex hostSearchIndex;
+
+    @Mock
+    private OrgPolicyResolver orgPolicyResolver;
+
+    @Mock
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Mock
+    private HostPresenceBuffer hostPresenceBuffer;
+
+    @Mock
+    private HostOnlineStatusMonitorService hostOnlineStatusMonitorService;
+
+    @Mock
+    private CacheAvailabilityService cacheAvailabilityService;
+
     @InjectMocks
     private HostServiceImpl hostService;
 
@@ -75,6 +101,38 @@ class HostServiceImplTest {
         sampleHost2.setCreatedAt(LocalDateTime.now());
     }
 
+    @Test
+    void testCreateOrUpdateHost_ChangedMacRemovesPreviousClient() {
+        wireHostCollaborators();
+        Host renamed = new Host();
+        renamed.setId(1L);
+        renamed.setMacAddress("00:1B:44:11:3A:C9");
+        renamed.setOrganizationId("1001");
+        when(hostMapper.selectCount(any())).thenReturn(0);
+        when(hostMapper.selectById(1L)).thenReturn(sampleHost1, renamed);
+
+        HostDto dto = new HostDto();
+        dto.setId("1");
+        dto.setMacAddress("00:1B:44:11:3A:C9");
+        hostService.createOrUpdateHost(dto);
+
+        verify(orgPolicyResolver).removeClientsAfterCommit(Collections.singletonList("00:1B:44:11:3A:B7"));
+        verify(orgPolicyResolver).updateClientOrganizationAfterCommit("00:1B:44:11:3A:C9", "1001");
+    }
+
+    @Test
+    void testDeleteHosts_RemoveClientsFromOrgPolicyResolver() {
+        wireHostCollaborators();
+        when(hostMapper.selectById(1L)).thenReturn(sampleHost1);
+        when(hostMapper.selectBatchIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(sampleHost1, sampleHost2));
+
+        hostService.deleteHost(1L);
+        hostService.batchDeleteHosts(Arrays.asList(1L, 2L));
+
+        verify(orgPolicyResolver).removeClientsAfterCommit(Collections.singletonList("00:1B:44:11:3A:B7"));
+        verify(orgPolicyResolver).removeClientsAfterCommit(Arrays.asList("00:1B:44:11:3A:B7", "00:1B:44:11:3A:B8"));
+    }
+
     @Test
     void testGetHostsByPage_WithIpOrMacAddress_SearchByIp() {
         // Given
@@ -291,4 +349,104 @@ class HostServiceImplTest {
                    sqlSegment.contains("OR");
         }));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetHostsByCursor_ContinuesFromLastRow() {
+        // Given - 第一页，每页1条，映射器多返回一行表示还有下一页
+        HostQueryDto queryDto = new HostQueryDto();
+        queryDto.setCursor("");
+        queryDto.setSize(1);
+
+        when(hostMapper.selectHostsByCursor(any(HostQueryDto.class), eq("createdAt"), eq(true), isNull(), isNull(), eq(2), isNull()))
+                .thenReturn(Arrays.asList(sampleHost1, sampleHost2));
+
+        // When
+        HostCursorPage firstPage = hostService.getHostsByCursor(queryDto);
+
+        // Then
+        assertEquals(1, firstPage.getRecords().size());
+        assertTrue(firstPage.getHasMore());
+        assertNotNull(firstPage.getNextCursor());
+        assertNull(firstPage.getTotal());
+
+        // When - 使用返回的游标查询下一页
+        queryDto.setCursor(firstPage.getNextCursor());
+        when(hostMapper.selectHostsByCursor(any(HostQueryDto.class), eq("createdAt"), eq(true),
+                eq(sampleHost1.getCreatedAt()), eq(1L), eq(2), isNull()))
+                .thenReturn(Arrays.asList(sampleHost2));
+        HostCursorPage secondPage = hostService.getHostsByCursor(queryDto);
+
+        // Then - 从第一页最后一行之后继续，没有下一页，也不执行COUNT
+        assertEquals(Arrays.asList(sampleHost2), secondPage.getRecords());
+        assertFalse(secondPage.getHasMore());
+        assertNull(secondPage.getNextCursor());
+        verify(hostMapper, never()).countHosts(any(), any());
+    }
+
+    @Test
+    void testGetHostsByCursor_RejectsCursorFromDifferentSort() {
+        // Given - 按创建时间排序得到的游标用于按主机名排序的查询
+        HostQueryDto queryDto = new HostQueryDto();
+        queryDto.setSortBy("hostName");
+        queryDto.setCursor(new KeysetCursor("createdAt", true, "2024-01-01T00:00", 1L).encode());
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> hostService.getHostsByCursor(queryDto));
+        verifyNoInteractions(hostMapper);
+    }
+
+    @Test
+    void testGetHostsByPage_NarrowsSubstringSearchWithIndexCandidates() {
+        // Given - 搜索索引把主机名称子串解析为候选主机
+        HostQueryDto queryDto = new HostQueryDto();
+        queryDto.setHostName("Server");
+
+        when(hostSearchIndex.search(queryDto))
+                .thenReturn(new HostSearchCandidates(Arrays.asList(2L), null, LocalDateTime.now().minusMinutes(1)));
+        when(hostMapper.selectPage(any(Page.class), any(QueryWrapper.class)))
+                .thenReturn(new Page<Host>(1, 10).setRecords(Arrays.asList(sampleHost2)));
+
+        // When
+        IPage<Host> result = hostService.getHostsByPage(queryDto);
+
+        // Then - 数据库只在候选主机和水位线之后修改的主机中做 LIKE 过滤
+        assertEquals(1, result.getRecords().size());
+        verify(hostMapper).selectPage(any(Page.class), argThat(queryWrapper -> {
+            String sqlSegment = queryWrapper.getSqlSegment();
+            return sqlSegment.contains("updated_at >=") && sqlSegment.contains("OR id IN") && sqlSegment.contains("LIKE");
+        }));
+    }
+
+    @Test
+    void testGetHostsByPage_EmptyIndexCandidatesStillReadsRecentlyUpdatedHosts() {
+        // Given - 本节点索引中没有主机包含查询词的全部三元组，但其他节点可能刚刚新建了匹配的主机
+        HostQueryDto queryDto = new HostQueryDto();
+        queryDto.setIpOrMacAddress("10.9.9.9");
+
+        when(hostSearchIndex.search(queryDto))
+                .thenReturn(new HostSearchCandidates(Collections.emptyList(), null, LocalDateTime.now().minusMinutes(1)));
+        when(hostMapper.selectPage(any(Page.class), any(QueryWrapper.class)))
+                .thenReturn(new Page<Host>(1, 10).setRecords(Arrays.asList(sampleHost2)));
+
+        // When
+        IPage<Host> result = hostService.getHostsByPage(queryDto);
+
+        // Then - 只按更新时间读取，不再使用空的候选列表
+        assertEquals(1, result.getRecords().size());
+        verify(hostMapper).selectPage(any(Page.class), argThat(queryWrapper -> {
+            String sqlSegment = queryWrapper.getSqlSegment();
+            return sqlSegment.contains("updated_at >=") && !sqlSegment.contains("id IN");
+        }));
+    }
+
+    /**
+     * HostServiceImpl 使用构造器注入，其余依赖需要单独设置
+     */
+    private void wireHostCollaborators() {
+        ReflectionTestUtils.setField(hostService, "orgPolicyResolver", orgPolicyResolver);
+        ReflectionTestUtils.setField(hostService, "hostStatisticsCounters", hostStatisticsCounters);
+        ReflectionTestUtils.setField(hostService, "hostPresenceBuffer", hostPresenceBuffer);
+        ReflectionTestUtils.setField(hostService, "hostOnlineStatusMonitorService", hostOnlineStatusMonitorService);
+        ReflectionTestUtils.setField(hostService, "cacheAvailabilityService", cacheAvailabilityService);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HostStatusCount;
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.enums.AuthStatus;
+import com.example.demo.model.enums.HostStatus;
+import com.example.demo.model.enums.OnlineStatus;
+import com.example.demo.model.enums.TerminalType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HostStatisticsCountersTest {
+
+    @Mock
+    private HostMapper hostMapper;
+
+    @InjectMocks
+    private HostStatisticsCounters hostStatisticsCounters;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mutations_ShouldAdjustCountersWithoutQueryingDatabase() {
+        when(hostMapper.countByStatus(null)).thenReturn(Arrays.asList(
+                count("1001", TerminalType.PC, OnlineStatus.ONLINE, AuthStatus.AUTHORIZED, 3),
+                count("1002", TerminalType.SERVER, OnlineStatus.OFFLINE, AuthStatus.UNAUTHORIZED, 2)));
+        hostStatisticsCounters.reconcile();
+
+        // 没有活动事务时立即生效
+        Host pc = host("1001", TerminalType.PC, OnlineStatus.ONLINE, AuthStatus.AUTHORIZED);
+        Host server = host("1002", TerminalType.SERVER, OnlineStatus.OFFLINE, AuthStatus.UNAUTHORIZED);
+        hostStatisticsCounters.onlineStatusChangedAfterCommit(Collections.singletonList(pc), OnlineStatus.OFFLINE);
+        hostStatisticsCounters.authStatusChangedAfterCommit(Collections.singletonList(server), AuthStatus.AUTHORIZED);
+        hostStatisticsCounters.recordAfterCommit(null, host("1002", TerminalType.MOBILE, OnlineStatus.OFFLINE, AuthStatus.UNAUTHORIZED));
+        hostStatisticsCounters.recordAfterCommit(server, null);
+
+        Map<String, Object> org1002 = hostStatisticsCounters.getHostStatistics("1002");
+        assertEquals(2L, org1002.get("totalCount"));
+        assertEquals(1L, ((Map<String, Long>) org1002.get("terminalTypeStats")).get("服务器"));
+        assertEquals(1L, ((Map<String, Long>) org1002.get("terminalTypeStats")).get("移动设备"));
+        assertEquals(1L, ((Map<String, Long>) org1002.get("authStatusStats")).get("已授权"));
+
+        HostOnlineStatusMonitorService.HostOnlineStatistics online = hostStatisticsCounters.getOnlineStatistics();
+        assertEquals(2, online.getOnlineCount());
+        assertEquals(3, online.getOfflineCount());
+        assertEquals(5, online.getTotalCount());
+        verify(hostMapper, times(1)).countByStatus(any());
+    }
+
+    @Test
+    void reconcile_ShouldReplaceCountersAndRecordDrift() {
+        when(hostMapper.countByStatus(null))
+                .thenReturn(Collections.singletonList(count("1001", TerminalType.PC, OnlineStatus.ONLINE, AuthStatus.AUTHORIZED, 3)))
+                .thenReturn(Collections.singletonList(count("1001", TerminalType.PC, OnlineStatus.OFFLINE, AuthStatus.AUTHORIZED, 3)));
+        hostStatisticsCounters.reconcile();
+        hostStatisticsCounters.reconcile();
+
+        // 3 台主机的在线状态不一致：在线 -3、离线 +3
+        assertEquals(6L, hostStatisticsCounters.getStatistics().get("lastDrift"));
+        assertEquals(0, hostStatisticsCounters.getOnlineStatistics().getOnlineCount());
+        assertEquals(3, hostStatisticsCounters.getOnlineStatistics().getOfflineCount());
+    }
+
+    @Test
+    void getHostStatistics_ShouldQueryGroupByBeforeFirstReconcile() {
+        when(hostMapper.countByStatus("1001"))
+                .thenReturn(Collections.singletonList(count("1001", TerminalType.PC, OnlineStatus.ONLINE, AuthStatus.AUTHORIZED, 4)));
+
+        assertEquals(4L, hostStatisticsCounters.getHostStatistics("1001").get("totalCount"));
+    }
+
+    private HostStatusCount count(String organizationId, TerminalType terminalType, OnlineStatus onlineStatus,
+                                  AuthStatus authStatus, long hostCount) {
+        HostStatusCount count = new HostStatusCount();
+        count.setOrganizationId(organizationId);
+        count.setTerminalType(terminalType);
+        count.setHostStatus(HostStatus.ACTIVE);
+        count.setOnlineStatus(onlineStatus);
+        count.setAuthStatus(authStatus);
+        count.setHostCount(hostCount);
+        return count;
+    }
+
+    private Host host(String organizationId, TerminalType terminalType, OnlineStatus onlineStatus, AuthStatus authStatus) {
+        Host host = new Host();
+        host.setOrganizationId(organizationId);
+        host.setTerminalType(terminalType);
+        host.setHostStatus(HostStatus.ACTIVE);
+        host.setOnlineStatus(onlineStatus);
+        host.setAuthStatus(authStatus);
+        return host;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.HostMapper;
+import com.example.demo.mapper.OrgPolicyMappingMapper;
+import com.example.demo.mapper.OrganizationMapper;
+import com.example.demo.model.entity.Host;
+import com.example.demo.model.entity.OrgPolicyMapping;
+import com.example.demo.model.entity.Organization;
+import com.example.demo.model.entity.Policy;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrgPolicyResolverTest {
+
+    @Mock
+    private OrganizationMapper organizationMapper;
+
+    @Mock
+    private OrgPolicyMappingMapper orgPolicyMappingMapper;
+
+    @Mock
+    private HostMapper hostMapper;
+
+    @Mock
+    private PolicyCatalog policyCatalog;
+
+    @Mock
+    private PolicyEpochTracker policyEpochTracker;
+
+    @InjectMocks
+    private OrgPolicyResolver orgPolicyResolver;
+
+    private final Policy companyPolicy = policy(1L, "enabled");
+    private final Policy rdPolicy = policy(2L, "enabled");
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        // 公司(1) -> 研发部(11) -> 后端组(111)；公司(1) -> 市场部(12)
+        when(organizationMapper.selectList(any())).thenReturn(Arrays.asList(
+                organization("1", "0"), organization("11", "1"), organization("111", "11"), organization("12", "1")));
+        when(orgPolicyMappingMapper.selectList(any())).thenReturn(Arrays.asList(
+                orgPolicy("1", 1L), orgPolicy("11", 2L)));
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(0);
+            handler.handleResult(context(host("mac-backend", "111")));
+            handler.handleResult(context(host("mac-rd", "11")));
+            handler.handleResult(context(host("mac-market", "12")));
+            handler.handleResult(context(host("mac-unknown", "999")));
+            return null;
+        }).when(hostMapper).streamClientOrganizations(any(ResultHandler.class));
+
+        orgPolicyResolver.reload();
+    }
+
+    @Test
+    void resolve_ShouldUseNearestAncestorWithEnabledPolicy() {
+        stubPolicyCatalog();
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-backend"));
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-rd"));
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-market"));
+        assertNull(orgPolicyResolver.resolve("mac-unknown"));
+        assertNull(orgPolicyResolver.resolve("not-a-host"));
+
+        // 研发部的策略被禁用后，子树回退到上级组织的策略
+        rdPolicy.setStatus("disabled");
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-backend"));
+    }
+
+    @Test
+    void orgPolicyMutations_ShouldApplyImmediatelyWithoutTransaction() {
+        stubPolicyCatalog();
+        orgPolicyResolver.removeOrgPolicyAfterCommit("11");
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-backend"));
+
+        orgPolicyResolver.setOrgPolicyAfterCommit("111", 2L);
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-backend"));
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-rd"));
+
+        orgPolicyResolver.updateClientOrganizationAfterCommit("mac-market", "111");
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-market"));
+        verify(policyEpochTracker).bumpClientAfterCommit("mac-market");
+    }
+
+    @Test
+    void removeClientsAfterCommit_ShouldForgetDeletedOrRenamedClients() {
+        stubPolicyCatalog();
+        orgPolicyResolver.removeClientsAfterCommit(Arrays.asList("mac-backend", "", null));
+
+        assertNull(orgPolicyResolver.resolve("mac-backend"));
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-rd"));
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-market"));
+        assertEquals(Collections.singletonList("mac-rd"), orgPolicyResolver.getClientsInSubtree("11"));
+        verify(policyEpochTracker).bumpClientsAfterCommit(Collections.singletonList("mac-backend"));
+    }
+
+    @Test
+    void reload_ShouldBumpGlobalEpochOnlyWhenSomethingChanged() {
+        orgPolicyResolver.reload();
+        verify(policyEpochTracker, never()).bumpGlobal();
+
+        // 其他实例把市场部绑定到研发策略
+        when(orgPolicyMappingMapper.selectList(any())).thenReturn(Arrays.asList(
+                orgPolicy("1", 1L), orgPolicy("11", 2L), orgPolicy("12", 2L)));
+        orgPolicyResolver.reload();
+        verify(policyEpochTracker, times(1)).bumpGlobal();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_ShouldReplayChangesCommittedWhileLoading() {
+        stubPolicyCatalog();
+        doAnswer(invocation -> {
+            ResultHandler<Host> handler = invocation.getArgument(0);
+            handler.handleResult(context(host("mac-backend", "111")));
+            // 加载期间本节点把市场部绑定到研发策略，并新建了后端组的主机
+            orgPolicyResolver.setOrgPolicyAfterCommit("12", 2L);
+            orgPolicyResolver.updateClientOrganizationAfterCommit("mac-new", "111");
+            handler.handleResult(context(host("mac-rd", "11")));
+            handler.handleResult(context(host("mac-market", "12")));
+            handler.handleResult(context(host("mac-unknown", "999")));
+            return null;
+        }).when(hostMapper).streamClientOrganizations(any(ResultHandler.class));
+        when(orgPolicyMappingMapper.selectOne(any())).thenReturn(orgPolicy("12", 2L));
+        when(hostMapper.selectOne(any())).thenReturn(host("mac-new", "111"));
+
+        orgPolicyResolver.reload();
+
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-market"));
+        assertSame(rdPolicy, orgPolicyResolver.resolve("mac-new"));
+        // 本节点的修改不视为其他实例的变化，不推进全局纪元
+        verify(policyEpochTracker, never()).bumpGlobal();
+
+        // 加载结束后的修改直接生效，不再重新查询
+        orgPolicyResolver.removeOrgPolicyAfterCommit("12");
+        assertSame(companyPolicy, orgPolicyResolver.resolve("mac-market"));
+        verify(orgPolicyMappingMapper, times(1)).selectOne(any());
+        verify(hostMapper, times(1)).selectOne(any());
+    }
+
+    @Test
+    void getClientsInSubtree_ShouldIncludeDescendantOrganizations() {
+        assertEquals(new HashSet<>(Arrays.asList("mac-backend", "mac-rd")),
+                new HashSet<>(orgPolicyResolver.getClientsInSubtree("11")));
+        assertEquals(new HashSet<>(Arrays.asList("mac-backend", "mac-rd", "mac-market")),
+                new HashSet<>(orgPolicyResolver.getClientsByPolicy(1L)));
+        assertEquals(Collections.singletonList("mac-unknown"), orgPolicyResolver.getClientsInSubtree("999"));
+    }
+
+    private void stubPolicyCatalog() {
+        when(policyCatalog.get(1L)).thenReturn(companyPolicy);
+        when(policyCatalog.get(2L)).thenReturn(rdPolicy);
+    }
+
+    private Organization organization(String id, String parentId) {
+        Organization organization = new Organization();
+        organization.setId(id);
+        organization.setParentId(parentId);
+        return organization;
+    }
+
+    private OrgPolicyMapping orgPolicy(String orgId, Long policyId) {
+        OrgPolicyMapping mapping = new OrgPolicyMapping();
+        mapping.setOrgId(orgId);
+        mapping.setPolicyId(policyId);
+        return mapping;
+    }
+
+    private Host host(String macAddress, String organizationId) {
+        Host host = new Host();
+        host.setMacAddress(macAddress);
+        host.setOrganizationId(organizationId);
+        return host;
+    }
+
+    private Policy policy(Long id, String status) {
+        Policy policy = new Policy();
+        policy.setId(id);
+        policy.setStatus(status);
+        policy.setIsDefault(false);
+        return policy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultContext<Host> context(Host host) {
+        ResultContext<Host> context = mock(ResultContext.class);
+        when(context.getResultObject()).thenReturn(host);
+        return context;
+    }
+}
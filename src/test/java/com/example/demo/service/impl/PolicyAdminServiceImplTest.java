@@ -0,0 +1,57 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.mapper.TestDatabase;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.util.PolicyFingerprint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PolicyAdminServiceImplTest {
+
+    @Mock
+    private PolicyCatalog policyCatalog;
+
+    @InjectMocks
+    private PolicyAdminServiceImpl policyAdminService;
+
+    private TestDatabase database;
+    private PolicyMapper policyMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        policyMapper = database.mapper(PolicyMapper.class);
+        ReflectionTestUtils.setField(policyAdminService, "policyMapper", policyMapper);
+    }
+
+    @Test
+    void backfillPolicyFingerprints_ShouldMatchFingerprintComputedBeforeUpgrade() {
+        // 秒为0的更新时间：LocalDateTime.toString() 省略秒，SQL 的 DATE_FORMAT 无法复现
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 5, 1, 10, 0);
+        database.jdbc().update("INSERT INTO policies (id, name, description, status, version, is_default, priority, "
+                + "created_at, updated_at) VALUES (1, '办公策略', NULL, 'enabled', '1.0', FALSE, 10, ?, ?)",
+                updatedAt, updatedAt);
+        // 升级前心跳为没有指纹的策略临时计算的结果
+        String issuedBeforeUpgrade = PolicyFingerprint.compute(policyMapper.selectById(1L));
+
+        policyAdminService.backfillPolicyFingerprints();
+
+        Policy backfilled = policyMapper.selectById(1L);
+        assertEquals(issuedBeforeUpgrade, backfilled.getFingerprint());
+        assertEquals(PolicyFingerprint.compute(backfilled), backfilled.getFingerprint());
+        assertEquals(updatedAt, backfilled.getUpdatedAt());
+        verify(policyCatalog).rebuild();
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.PolicyAssignmentProgress;
+import com.example.demo.mapper.ClientPolicyMappingMapper;
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.mapper.TestDatabase;
+import com.example.demo.util.SnowflakeIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 批量分配引擎：暂存、差异计算、分块写入和进度，使用 H2 中的真实SQL
+ */
+@ExtendWith(MockitoExtension.class)
+class PolicyAssignmentEngineTest {
+
+    @Mock
+    private EffectivePolicyTable effectivePolicyTable;
+
+    @Mock
+    private PolicyEpochTracker policyEpochTracker;
+
+    @Mock
+    private PolicyPushService policyPushService;
+
+    @Mock
+    private ClientCacheIndex clientCacheIndex;
+
+    @InjectMocks
+    private PolicyAssignmentEngine policyAssignmentEngine;
+
+    private TestDatabase database;
+    private ClientPolicyMappingMapper clientPolicyMappingMapper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        database = TestDatabase.h2();
+        clientPolicyMappingMapper = database.mapper(ClientPolicyMappingMapper.class);
+        ReflectionTestUtils.setField(policyAssignmentEngine, "policyMapper", database.mapper(PolicyMapper.class));
+        ReflectionTestUtils.setField(policyAssignmentEngine, "clientPolicyMappingMapper", clientPolicyMappingMapper);
+        ReflectionTestUtils.setField(policyAssignmentEngine, "transactionManager", database.transactionManager());
+        ReflectionTestUtils.setField(policyAssignmentEngine, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(policyAssignmentEngine, "snowflakeIdGenerator", new SnowflakeIdGenerator());
+        ReflectionTestUtils.setField(policyAssignmentEngine, "chunkSize", 2);
+        ReflectionTestUtils.setField(policyAssignmentEngine, "maxClients", 100);
+        policyAssignmentEngine.init();
+
+        database.jdbc().update("INSERT INTO policies (id, name, status, version, is_default, priority) "
+                + "VALUES (1, '办公策略', 'enabled', '1.0', FALSE, 10)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        policyAssignmentEngine.shutdown();
+    }
+
+    @Test
+    void assign_ShouldApplyOnlyDifferenceInChunksOnAssignmentThread() {
+        insertMapping("c1", true);
+        insertMapping("c2", true);
+        insertMapping("c3", false);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> threads.add(Thread.currentThread().getName()))
+                .when(clientCacheIndex).addMappingsAfterCommit(eq(1L), any());
+
+        PolicyAssignmentProgress progress = policyAssignmentEngine.assign(1L,
+                Arrays.asList("c2", "c3", "c4", "c5", "c5", " ", "c6"));
+
+        assertEquals("COMPLETED", progress.getStatus());
+        assertEquals(5, progress.getRequestedClients());
+        assertEquals(2, progress.getRetained());
+        assertEquals(3, progress.getToInsert());
+        assertEquals(1, progress.getToDelete());
+        assertEquals(3, progress.getInserted());
+        assertEquals(1, progress.getDeleted());
+        assertEquals(Arrays.asList("c2", "c3", "c4", "c5", "c6"), mappedClients());
+        // 保持不变的关联不改写激活状态
+        assertEquals(Boolean.TRUE, database.jdbc().queryForObject(
+                "SELECT is_active FROM client_policy_mappings WHERE client_id = 'c2'", Boolean.class));
+        verify(effectivePolicyTable).removeActivePolicyAfterCommit(Collections.singletonList("c1"), 1L);
+        verify(policyEpochTracker).bumpClientsAfterCommit(Collections.singletonList("c1"));
+        // 块大小为2：新增的3个客户端分两个事务写入
+        verify(clientCacheIndex, times(2)).addMappingsAfterCommit(eq(1L), any());
+        // 同步调用与异步任务在同一个线程中串行执行
+        assertEquals(Collections.singleton("policy-assignment"), threads);
+        assertEquals(0, stagedRows());
+    }
+
+    @Test
+    void submit_ShouldStreamBodyAndReportProgress() throws Exception {
+        PolicyAssignmentProgress submitted = policyAssignmentEngine.submit(1L, json("[\"c1\", null, \"c2\", \"c3\"]"));
+
+        assertEquals(3, submitted.getRequestedClients());
+        PolicyAssignmentProgress progress = awaitFinished(submitted.getJobId());
+        assertEquals("COMPLETED", progress.getStatus());
+        assertEquals(3, progress.getInserted());
+        assertNotNull(progress.getStartedAt());
+        assertEquals(Arrays.asList("c1", "c2", "c3"), mappedClients());
+        assertEquals(0, stagedRows());
+        assertNull(policyAssignmentEngine.getProgress("unknown"));
+    }
+
+    @Test
+    void submit_ShouldRecordFailureAndKeepCommittedChunks() throws Exception {
+        ClientPolicyMappingMapper failingMapper = mock(ClientPolicyMappingMapper.class, delegatesTo(clientPolicyMappingMapper));
+        doAnswer(delegatesTo(clientPolicyMappingMapper))
+                .doThrow(new IllegalStateException("db down"))
+                .when(failingMapper).batchInsertMappings(eq(1L), any(), any());
+        ReflectionTestUtils.setField(policyAssignmentEngine, "clientPolicyMappingMapper", failingMapper);
+
+        PolicyAssignmentProgress submitted = policyAssignmentEngine.submit(1L, json("[\"c1\", \"c2\", \"c3\", \"c4\", \"c5\"]"));
+        PolicyAssignmentProgress progress = awaitFinished(submitted.getJobId());
+
+        assertEquals("FAILED", progress.getStatus());
+        assertEquals("db down", progress.getMessage());
+        assertEquals(5, progress.getToInsert());
+        assertEquals(2, progress.getInserted());
+        assertEquals(Arrays.asList("c1", "c2"), mappedClients());
+        assertEquals(0, stagedRows());
+
+        // 执行线程没有被异常终止，重新提交同一请求从当前状态继续
+        ReflectionTestUtils.setField(policyAssignmentEngine, "clientPolicyMappingMapper", clientPolicyMappingMapper);
+        PolicyAssignmentProgress retried = policyAssignmentEngine.assign(1L, Arrays.asList("c1", "c2", "c3", "c4", "c5"));
+
+        assertEquals(2, retried.getRetained());
+        assertEquals(3, retried.getInserted());
+        assertEquals(Arrays.asList("c1", "c2", "c3", "c4", "c5"), mappedClients());
+    }
+
+    @Test
+    void assign_ShouldThrowFailureToCaller() {
+        ClientPolicyMappingMapper failingMapper = mock(ClientPolicyMappingMapper.class, delegatesTo(clientPolicyMappingMapper));
+        doAnswer(delegatesTo(clientPolicyMappingMapper))
+                .doThrow(new IllegalStateException("db down"))
+                .when(failingMapper).batchInsertMappings(eq(1L), any(), any());
+        ReflectionTestUtils.setField(policyAssignmentEngine, "clientPolicyMappingMapper", failingMapper);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> policyAssignmentEngine.assign(1L, Arrays.asList("c1", "c2", "c3")));
+
+        assertEquals("db down", e.getMessage());
+        assertEquals(Arrays.asList("c1", "c2"), mappedClients());
+        assertEquals(0, stagedRows());
+    }
+
+    @Test
+    void submit_ShouldRejectTooManyClientsAndDiscardStagedChunks() {
+        ReflectionTestUtils.setField(policyAssignmentEngine, "maxClients", 2);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> policyAssignmentEngine.submit(1L, json("[\"c1\", \"c2\", \"c3\"]")));
+        assertThrows(IllegalArgumentException.class,
+                () -> policyAssignmentEngine.submit(2L, json("[\"c1\"]")));
+
+        assertEquals(0, stagedRows());
+        assertTrue(mappedClients().isEmpty());
+    }
+
+    private PolicyAssignmentProgress awaitFinished(String jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            PolicyAssignmentProgress progress = policyAssignmentEngine.getProgress(jobId);
+            if (progress.getFinishedAt() != null) {
+                return progress;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("批量分配任务未结束: " + jobId);
+    }
+
+    private void insertMapping(String clientId, boolean active) {
+        database.jdbc().update("INSERT INTO client_policy_mappings (client_id, policy_id, is_active) VALUES (?, 1, ?)",
+                clientId, active);
+    }
+
+    private List<String> mappedClients() {
+        return database.jdbc().queryForList(
+                "SELECT client_id FROM client_policy_mappings WHERE policy_id = 1 ORDER BY client_id", String.class);
+    }
+
+    private int stagedRows() {
+        return database.jdbc().queryForObject("SELECT COUNT(*) FROM policy_assignment_staging", Integer.class);
+    }
+
+    private static ByteArrayInputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.mapper.PolicyMapper;
+import com.example.demo.model.entity.Policy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PolicyCatalogTest {
+
+    @Mock
+    private PolicyMapper policyMapper;
+
+    @InjectMocks
+    private PolicyCatalog policyCatalog;
+
+    @Test
+    void get_ShouldLoadLazilyAndResolveEnabledDefault() {
+        Policy disabledDefault = createPolicy(1L, true, "disabled");
+        Policy enabledDefault = createPolicy(2L, true, "enabled");
+        Policy normal = createPolicy(3L, false, "enabled");
+        when(policyMapper.selectList(any())).thenReturn(Arrays.asList(disabledDefault, enabledDefault, normal));
+
+        assertSame(normal, policyCatalog.get(3L));
+        assertSame(enabledDefault, policyCatalog.getDefaultPolicy());
+        assertNull(policyCatalog.get(99L));
+        assertNull(policyCatalog.get(null));
+        assertEquals(3, policyCatalog.size());
+
+        // 快照只加载一次
+        verify(policyMapper, times(1)).selectList(any());
+    }
+
+    @Test
+    void rebuildAfterCommit_ShouldSwapSnapshotWithoutTransaction() {
+        Policy original = createPolicy(3L, false, "enabled");
+        Policy updated = createPolicy(3L, false, "disabled");
+        when(policyMapper.selectList(any()))
+                .thenReturn(Collections.singletonList(original))
+                .thenReturn(Collections.singletonList(updated));
+
+        assertSame(original, policyCatalog.get(3L));
+        assertNull(policyCatalog.getDefaultPolicy());
+
+        policyCatalog.rebuildAfterCommit();
+        assertSame(updated, policyCatalog.get(3L));
+    }
+
+    @Test
+    void rebuild_ShouldReportWhetherContentChanged() {
+        Policy original = createPolicy(3L, false, "enabled");
+        original.setFingerprint("fp-1");
+        Policy reloaded = createPolicy(3L, false, "enabled");
+        reloaded.setFingerprint("fp-1");
+        Policy updated = createPolicy(3L, false, "enabled");
+        updated.setFingerprint("fp-2");
+        when(policyMapper.selectList(any()))
+                .thenReturn(Collections.singletonList(original))
+                .thenReturn(Collections.singletonList(reloaded))
+                .thenReturn(Collections.singletonList(updated))
+                .thenReturn(Arrays.asList(updated, createPolicy(4L, true, "enabled")));
+
+        assertTrue(policyCatalog.rebuild());
+        assertFalse(policyCatalog.rebuild());
+        assertTrue(policyCatalog.rebuild());
+        assertTrue(policyCatalog.rebuild());
+    }
+
+    private Policy createPolicy(Long id, boolean isDefault, String status) {
+        Policy policy = new Policy();
+        policy.setId(id);
+        policy.setIsDefault(isDefault);
+        policy.setStatus(status);
+        return policy;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyEpochTrackerTest {
+
+    private final PolicyEpochTracker tracker = new PolicyEpochTracker();
+
+    @Test
+    void isUpToDate_ShouldRequireFingerprintIssuedForEpoch() {
+        long epoch = tracker.currentEpoch("client-1");
+        // 本节点没有下发过，纪元相同也要走完整检查
+        assertFalse(tracker.isUpToDate("client-1", epoch, "fp-1"));
+
+        tracker.recordIssued("client-1", epoch, "fp-1");
+
+        assertTrue(tracker.isUpToDate("client-1", epoch, "fp-1"));
+        // 客户端没有应用下发的策略
+        assertFalse(tracker.isUpToDate("client-1", epoch, "fp-old"));
+        assertFalse(tracker.isUpToDate("client-1", epoch, null));
+        assertFalse(tracker.isUpToDate("client-1", null, "fp-1"));
+        assertFalse(tracker.isUpToDate("client-2", epoch, "fp-1"));
+    }
+
+    @Test
+    void recordIssued_ShouldIgnoreEpochAdvancedDuringLookup() {
+        long epoch = tracker.currentEpoch("client-1");
+        tracker.bumpClientAfterCommit("client-1");
+
+        tracker.recordIssued("client-1", epoch, "fp-1");
+
+        assertFalse(tracker.isUpToDate("client-1", epoch, "fp-1"));
+        assertEquals(0, tracker.getStatistics().get("issuedClients"));
+    }
+
+    @Test
+    void bumpGlobal_ShouldInvalidateIssuedFingerprints() {
+        long epoch = tracker.currentEpoch("client-1");
+        tracker.recordIssued("client-1", epoch, "fp-1");
+        tracker.bumpClientAfterCommit("client-2");
+
+        tracker.bumpGlobal();
+
+        long current = tracker.currentEpoch("client-1");
+        assertTrue(current > epoch);
+        assertFalse(tracker.isUpToDate("client-1", epoch, "fp-1"));
+        assertFalse(tracker.isUpToDate("client-1", current, "fp-1"));
+        // 全局纪元已超过客户端纪元，两者都被清除
+        assertEquals(current, tracker.currentEpoch("client-2"));
+        assertEquals(0, tracker.getStatistics().get("trackedClients"));
+        assertEquals(0, tracker.getStatistics().get("issuedClients"));
+    }
+
+    @Test
+    void bumpClientAfterCommit_ShouldOnlyAffectThatClient() {
+        long epoch = tracker.currentEpoch("client-1");
+        tracker.recordIssued("client-1", epoch, "fp-1");
+        tracker.recordIssued("client-2", epoch, "fp-2");
+
+        tracker.bumpClientsAfterCommit(Arrays.asList("client-1"));
+
+        assertTrue(tracker.currentEpoch("client-1") > epoch);
+        assertFalse(tracker.isUpToDate("client-1", epoch, "fp-1"));
+        assertTrue(tracker.isUpToDate("client-2", epoch, "fp-2"));
+    }
+
+    @Test
+    void bumpGlobal_ShouldNeverMoveEpochBackwards() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    long last = 0;
+                    for (int j = 0; j < 1000; j++) {
+                        tracker.bumpGlobal();
+                        long current = tracker.currentEpoch(null);
+                        assertTrue(current >= last);
+                        last = current;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long finalEpoch = tracker.currentEpoch(null);
+        tracker.bumpClientAfterCommit("client-1");
+        // 最后一次推进的纪元是序列的最大值
+        assertEquals(finalEpoch + 1, tracker.currentEpoch("client-1"));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.model.entity.Policy;
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.service.PolicyAdminService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PolicyPushServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    @Mock
+    private HeartbeatService heartbeatService;
+
+    @Mock
+    private PolicyAdminService policyAdminService;
+
+    @InjectMocks
+    private PolicyPushService policyPushService;
+
+    private final Policy policy = new Policy();
+
+    @BeforeEach
+    void setUp() {
+        policy.setId(1L);
+        ReflectionTestUtils.setField(policyPushService, "streamMaxLifetimeMs", 1800000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        policyPushService.shutdown();
+    }
+
+    @Test
+    void openStream_ShouldRegisterAndPushCurrentPolicy() {
+        when(heartbeatService.getClientEffectivePolicy("client-1")).thenReturn(policy);
+        when(heartbeatService.buildPolicyUpdate("client-1", policy)).thenReturn(response("fp-1"));
+
+        StepVerifier.create(policyPushService.openStream("client-1"))
+                .assertNext(event -> {
+                    assertEquals("policy", event.event());
+                    assertEquals("fp-1", event.data().getLatestPoliciesHash());
+                    assertEquals(1, policyPushService.getStatistics().get("connectedClients"));
+                })
+                .thenCancel()
+                .verify(TIMEOUT);
+
+        // 连接断开后从注册表移除
+        Map<String, Object> statistics = policyPushService.getStatistics();
+        assertEquals(0, statistics.get("connectedClients"));
+        assertEquals(1L, statistics.get("openedStreams"));
+        assertEquals(1L, statistics.get("pushedEvents"));
+    }
+
+    @Test
+    void openStream_ShouldKeepStreamOpenWhenInitialLookupFails() {
+        when(heartbeatService.getClientEffectivePolicy("client-1")).thenThrow(new IllegalStateException("db down"));
+        when(policyAdminService.getEffectivePolicies(anyList())).thenReturn(Collections.singletonMap("client-1", policy));
+        when(heartbeatService.buildPolicyUpdate("client-1", policy)).thenReturn(response("fp-1"));
+
+        StepVerifier.create(policyPushService.openStream("client-1"))
+                .then(() -> awaitStatistic("failedPushes", 1L))
+                // 初次推送失败不影响之后的策略变更推送
+                .then(() -> policyPushService.publishAfterCommit("client-1"))
+                .assertNext(event -> assertEquals("fp-1", event.data().getLatestPoliciesHash()))
+                .thenCancel()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void openStream_ShouldKeepOnlyLatestEventForSlowClient() {
+        when(heartbeatService.getClientEffectivePolicy("client-1")).thenReturn(policy);
+        when(heartbeatService.buildPolicyUpdate(eq("client-1"), any())).thenReturn(response("fp-1"));
+
+        // 客户端暂不读取：期间的初次推送和多次保活只保留最新的一条
+        StepVerifier.create(policyPushService.openStream("client-1"), 0)
+                .then(() -> awaitStatistic("pushedEvents", 1L))
+                .then(policyPushService::keepAlive)
+                .then(policyPushService::keepAlive)
+                .thenRequest(1)
+                .assertNext(event -> assertEquals("keepalive", event.comment()))
+                .thenRequest(1)
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(TIMEOUT);
+    }
+
+    @Test
+    void keepAlive_ShouldSendCommentAndCloseExpiredStreams() {
+        when(heartbeatService.getClientEffectivePolicy("client-1")).thenReturn(policy);
+        when(heartbeatService.buildPolicyUpdate("client-1", policy)).thenReturn(response("fp-1"));
+
+        StepVerifier.create(policyPushService.openStream("client-1"))
+                .expectNextCount(1)
+                .then(policyPushService::keepAlive)
+                .assertNext(event -> {
+                    assertEquals("keepalive", event.comment());
+                    assertNull(event.data());
+                })
+                .then(() -> {
+                    ReflectionTestUtils.setField(policyPushService, "streamMaxLifetimeMs", -1L);
+                    policyPushService.keepAlive();
+                })
+                // 超过最长存活时间的连接由服务端关闭，客户端重连
+                .verifyComplete();
+        assertEquals(0, policyPushService.getStatistics().get("connectedClients"));
+    }
+
+    private void awaitStatistic(String name, long expected) {
+        long deadline = System.currentTimeMillis() + TIMEOUT.toMillis();
+        while (!Long.valueOf(expected).equals(policyPushService.getStatistics().get(name))) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(name + " 未达到 " + expected);
+            }
+            Thread.yield();
+        }
+    }
+
+    private static HeartbeatResponse response(String fingerprint) {
+        HeartbeatResponse response = new HeartbeatResponse(true, "POLICY_UPDATED", null, "策略已推送");
+        response.setLatestPoliciesHash(fingerprint);
+        return response;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.model.entity.Policy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger encodings = new AtomicInteger();
+    private final Function<Policy, Map<String, Object>> encoder = policy -> {
+        encodings.incrementAndGet();
+        Map<String, Object> policyMap = new LinkedHashMap<>();
+        policyMap.put("id", policy.getId());
+        policyMap.put("name", policy.getName());
+        policyMap.put("version", policy.getVersion());
+        return policyMap;
+    };
+
+    private PolicyResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PolicyResponseCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void getEffectivePolicyJson_ShouldEncodeOncePerFingerprint() {
+        Policy policy = createPolicy("v1", "fp-1");
+
+        RawValue first = cache.getEffectivePolicyJson(policy, encoder);
+        RawValue second = cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder);
+        assertSame(first, second);
+        assertEquals(1, encodings.get());
+
+        RawValue updated = cache.getEffectivePolicyJson(createPolicy("v2", "fp-2"), encoder);
+        assertNotSame(first, updated);
+        assertEquals(2, encodings.get());
+        assertEquals(1, cache.getStatistics().get("entries"));
+    }
+
+    @Test
+    void getEffectivePolicyJson_ShouldKeepPreviousVersionDuringRollout() {
+        RawValue oldJson = cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder);
+        RawValue newJson = cache.getEffectivePolicyJson(createPolicy("v2", "fp-2"), encoder);
+
+        // 新旧版本交替下发时都命中缓存
+        assertSame(oldJson, cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder));
+        assertSame(newJson, cache.getEffectivePolicyJson(createPolicy("v2", "fp-2"), encoder));
+        assertEquals(2, encodings.get());
+
+        // 第三个版本淘汰最旧的版本
+        cache.getEffectivePolicyJson(createPolicy("v3", "fp-3"), encoder);
+        cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder);
+        assertEquals(4, encodings.get());
+    }
+
+    @Test
+    void evictAfterCommit_ShouldRemoveEntryWithoutTransaction() {
+        cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder);
+        cache.evictAfterCommit(1L);
+        cache.getEffectivePolicyJson(createPolicy("v1", "fp-1"), encoder);
+        assertEquals(2, encodings.get());
+    }
+
+    @Test
+    void rawValue_ShouldBeWrittenAsNestedJsonObject() throws Exception {
+        Policy policy = createPolicy("v1", "fp-1");
+        policy.setName("安全策略");
+        HeartbeatResponse response = new HeartbeatResponse(true, "POLICY_UPDATED",
+                cache.getEffectivePolicyJson(policy, encoder), "策略需要更新");
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(response));
+        assertEquals(1L, json.get("effectivePolicy").get("id").asLong());
+        assertEquals("安全策略", json.get("effectivePolicy").get("name").asText());
+        assertEquals("v1", json.get("effectivePolicy").get("version").asText());
+    }
+
+    private Policy createPolicy(String version, String fingerprint) {
+        Policy policy = new Policy();
+        policy.setId(1L);
+        policy.setName("策略");
+        policy.setVersion(version);
+        policy.setFingerprint(fingerprint);
+        return policy;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.model.entity.Policy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyRevisionStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Function<Policy, Map<String, Object>> encoder = policy -> {
+        Map<String, Object> policyMap = new LinkedHashMap<>();
+        policyMap.put("id", policy.getId());
+        policyMap.put("name", policy.getName());
+        policyMap.put("description", policy.getDescription());
+        policyMap.put("version", policy.getVersion());
+        policyMap.put("priority", policy.getPriority());
+        policyMap.put("fingerprint", policy.getFingerprint());
+        return policyMap;
+    };
+
+    private PolicyRevisionStore store;
+    private PolicyResponseCache responseCache;
+
+    @BeforeEach
+    void setUp() {
+        store = new PolicyRevisionStore();
+        ReflectionTestUtils.setField(store, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "maxRevisions", 4);
+        responseCache = new PolicyResponseCache();
+        ReflectionTestUtils.setField(responseCache, "objectMapper", objectMapper);
+    }
+
+    @Test
+    void getDelta_ShouldReturnChangedFieldsOnly() throws Exception {
+        Policy v1 = createPolicy("v1", "fp-1", 10);
+        Policy v2 = createPolicy("v2", "fp-2", 20);
+        store.record(v1, encoder);
+
+        RawValue delta = store.getDelta(v2, "fp-1", "v1", encoder, responseCache.getEffectivePolicyJson(v2, encoder));
+        assertNotNull(delta);
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(delta));
+        assertEquals("fp-1", json.get("baseFingerprint").asText());
+        assertEquals("fp-2", json.get("fingerprint").asText());
+        assertEquals(20, json.get("changed").get("priority").asInt());
+        assertEquals("v2", json.get("changed").get("version").asText());
+        assertFalse(json.get("changed").has("description"));
+
+        Map<String, Object> statistics = store.getStatistics();
+        assertEquals(1L, statistics.get("hits"));
+        assertTrue((Long) statistics.get("bytesSaved") > 0);
+    }
+
+    @Test
+    void record_ShouldEncodeEachRevisionOnceAndKeepLatestRevisions() {
+        ReflectionTestUtils.setField(store, "maxRevisions", 2);
+        AtomicInteger encoded = new AtomicInteger();
+        Function<Policy, Map<String, Object>> countingEncoder = policy -> {
+            encoded.incrementAndGet();
+            return encoder.apply(policy);
+        };
+        Policy v1 = createPolicy("v1", "fp-1", 10);
+        Policy v2 = createPolicy("v2", "fp-2", 20);
+        Policy v3 = createPolicy("v3", "fp-3", 30);
+
+        for (int i = 0; i < 3; i++) {
+            store.record(v1, countingEncoder);
+        }
+        assertEquals(1, encoded.get());
+
+        // 容量为2：记录v3后淘汰最早记录的v1，即使v1刚刚又被确认过
+        store.record(v2, countingEncoder);
+        store.record(v1, countingEncoder);
+        store.record(v3, countingEncoder);
+        assertEquals(3, encoded.get());
+        RawValue full = responseCache.getEffectivePolicyJson(v3, encoder);
+        assertNull(store.getDelta(v3, "fp-1", "v1", encoder, full));
+        assertNotNull(store.getDelta(v3, "fp-2", "v2", encoder, full));
+    }
+
+    @Test
+    void removeAfterCommit_ShouldDropRevisionsOfDeletedPolicy() {
+        Policy v1 = createPolicy("v1", "fp-1", 10);
+        Policy v2 = createPolicy("v2", "fp-2", 20);
+        store.record(v1, encoder);
+        assertEquals(1, store.getStatistics().get("policies"));
+
+        store.removeAfterCommit(v1.getId());
+
+        assertEquals(0, store.getStatistics().get("policies"));
+        assertNull(store.getDelta(v2, "fp-1", "v1", encoder, responseCache.getEffectivePolicyJson(v2, encoder)));
+    }
+
+    @Test
+    void getDelta_ShouldFallBackWhenBaseUnknownOrVersionMismatch() {
+        Policy v1 = createPolicy("v1", "fp-1", 10);
+        Policy v2 = createPolicy("v2", "fp-2", 20);
+        RawValue full = responseCache.getEffectivePolicyJson(v2, encoder);
+
+        assertNull(store.getDelta(v2, "fp-1", "v1", encoder, full));
+
+        store.record(v1, encoder);
+        assertNull(store.getDelta(v2, "fp-1", "v0", encoder, full));
+        assertNotNull(store.getDelta(v2, "fp-1", "v1", encoder, full));
+
+        Map<String, Object> statistics = store.getStatistics();
+        assertEquals(3L, statistics.get("requests"));
+        assertEquals(2L, statistics.get("unknownBase"));
+    }
+
+    private Policy createPolicy(String version, String fingerprint, int priority) {
+        Policy policy = new Policy();
+        policy.setId(1L);
+        policy.setName("安全策略");
+        policy.setDescription("禁止访问外部存储设备，所有出站连接必须经过代理服务器，仅允许白名单中的软件运行");
+        policy.setVersion(version);
+        policy.setPriority(priority);
+        policy.setFingerprint(fingerprint);
+        return policy;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.model.entity.Policy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyRolloutManagerTest {
+
+    private PolicyRolloutManager rolloutManager;
+
+    @BeforeEach
+    void setUp() {
+        rolloutManager = new PolicyRolloutManager();
+        ReflectionTestUtils.setField(rolloutManager, "policyEpochTracker", new PolicyEpochTracker());
+        ReflectionTestUtils.setField(rolloutManager, "wavesConfig", "10,100");
+        ReflectionTestUtils.setField(rolloutManager, "waveIntervalMs", 3600000L);
+        rolloutManager.init();
+    }
+
+    @Test
+    void resolve_ShouldExposeNewVersionOnlyToFirstWave() {
+        Policy previous = createPolicy("v1");
+        Policy current = createPolicy("v2");
+        rolloutManager.startAfterCommit(previous);
+
+        int exposed = 0;
+        for (int i = 0; i < 10000; i++) {
+            String clientId = "client-" + i;
+            Policy served = rolloutManager.resolve(clientId, current);
+            // 同一客户端在同一次发布中始终拿到同一个版本
+            assertSame(served, rolloutManager.resolve(clientId, current));
+            if (served == current) {
+                exposed++;
+            } else {
+                assertSame(previous, served);
+            }
+        }
+        assertTrue(exposed > 800 && exposed < 1200, "第一波约暴露10%的客户端，实际: " + exposed);
+    }
+
+    @Test
+    void cancelAfterCommit_ShouldExposeNewVersionToAllClients() {
+        Policy current = createPolicy("v2");
+        rolloutManager.startAfterCommit(createPolicy("v1"));
+        rolloutManager.cancelAfterCommit(1L);
+
+        for (int i = 0; i < 100; i++) {
+            assertSame(current, rolloutManager.resolve("client-" + i, current));
+        }
+    }
+
+    private Policy createPolicy(String version) {
+        Policy policy = new Policy();
+        policy.setId(1L);
+        policy.setName("策略");
+        policy.setVersion(version);
+        policy.setStatus("enabled");
+        policy.setFingerprint("fp-" + version);
+        return policy;
+    }
+}
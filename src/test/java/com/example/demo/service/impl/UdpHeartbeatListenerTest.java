@@ -0,0 +1,111 @@
+package com.example.demo.service.impl;
+
+import com.example.demo.dto.HeartbeatResponse;
+import com.example.demo.service.HeartbeatService;
+import com.example.demo.util.HeartbeatFrameCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UdpHeartbeatListenerTest {
+
+    @Mock
+    private HeartbeatService heartbeatService;
+
+    private UdpHeartbeatListener listener;
+    private DatagramChannel client;
+    private Selector selector;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        listener = new UdpHeartbeatListener(heartbeatService, "127.0.0.1", 0);
+        listener.start();
+
+        client = DatagramChannel.open();
+        client.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        client.connect(new InetSocketAddress("127.0.0.1", listener.getLocalPort()));
+        client.configureBlocking(false);
+        selector = Selector.open();
+        client.register(selector, SelectionKey.OP_READ);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        selector.close();
+        client.close();
+        listener.stop();
+    }
+
+    @Test
+    void heartbeat_ShouldReplyChanged_WhenPolicyNeedsUpdate() throws Exception {
+        HeartbeatResponse response = new HeartbeatResponse(true, "POLICY_UPDATED", null, "策略需要更新");
+        response.setPolicyEpoch(42L);
+        when(heartbeatService.checkPolicies(eq("EMB-001"), eq("abc123"), isNull())).thenReturn(response);
+
+        ByteBuffer reply = sendHeartbeat(7, 0L, "EMB-001", "abc123", "fw-1.2");
+
+        assertEquals(HeartbeatFrameCodec.REPLY_SIZE, reply.remaining());
+        assertEquals(HeartbeatFrameCodec.MAGIC, reply.getShort());
+        assertEquals(HeartbeatFrameCodec.VERSION, reply.get());
+        assertEquals(HeartbeatFrameCodec.TYPE_HEARTBEAT_REPLY, reply.get());
+        assertEquals(7, reply.getInt());
+        assertEquals(HeartbeatFrameCodec.STATUS_CHANGED, reply.get());
+        assertEquals(42L, reply.getLong());
+    }
+
+    @Test
+    void heartbeat_ShouldReplyUpToDate_AndPassClientEpoch() throws Exception {
+        HeartbeatResponse response = new HeartbeatResponse(false, "UP_TO_DATE", null, "策略已是最新");
+        response.setPolicyEpoch(99L);
+        when(heartbeatService.checkPolicies("EMB-002", "def456", 99L)).thenReturn(response);
+
+        // 连续发送多帧，验证复用的缓冲区不会串数据
+        for (int sequence = 1; sequence <= 3; sequence++) {
+            ByteBuffer reply = sendHeartbeat(sequence, 99L, "EMB-002", "def456", "");
+            reply.position(4);
+            assertEquals(sequence, reply.getInt());
+            assertEquals(HeartbeatFrameCodec.STATUS_UP_TO_DATE, reply.get());
+            assertEquals(99L, reply.getLong());
+        }
+        verify(heartbeatService, times(3)).checkPolicies("EMB-002", "def456", 99L);
+    }
+
+    @Test
+    void invalidFrame_ShouldBeDroppedWithoutReply() throws Exception {
+        client.write(ByteBuffer.wrap(new byte[]{0x01, 0x02, 0x03}));
+
+        assertEquals(0, selector.select(300));
+        verify(heartbeatService, never()).checkPolicies(any(), any(), any());
+    }
+
+    private ByteBuffer sendHeartbeat(int sequence, long epoch, String clientId, String fingerprint,
+                                     String clientVersion) throws Exception {
+        ByteBuffer request = ByteBuffer.allocate(HeartbeatFrameCodec.MAX_REQUEST_SIZE);
+        HeartbeatFrameCodec.encodeRequest(request, sequence, epoch, clientId, fingerprint, clientVersion);
+        client.write(request);
+
+        assertTrue(selector.select(2000) > 0, "未在超时时间内收到UDP回复");
+        selector.selectedKeys().clear();
+        ByteBuffer reply = ByteBuffer.allocate(64);
+        client.read(reply);
+        reply.flip();
+        return reply;
+    }
+}
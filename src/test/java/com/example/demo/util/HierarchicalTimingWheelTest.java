@@ -0,0 +1,69 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void advance_ShouldFireEntryOnlyAfterItsDeadline() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(100, 8, 0);
+        wheel.schedule(1L, 350);
+
+        assertTrue(wheel.advance(300).isEmpty());
+        assertEquals(Collections.singletonList(1L), wheel.advance(400));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_ShouldCascadeEntriesFromHigherLevels() {
+        // 第0层只覆盖800ms，第1层覆盖6400ms，第2层覆盖51200ms
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(100, 8, 0);
+        wheel.schedule(1L, 5_050);
+        wheel.schedule(2L, 30_000);
+        wheel.schedule(3L, 650);
+
+        List<Long> fired = new ArrayList<>();
+        long firedFirstAt = -1;
+        long firedSecondAt = -1;
+        for (long now = 100; now <= 40_000; now += 100) {
+            List<Long> expired = wheel.advance(now);
+            if (expired.contains(1L)) {
+                firedFirstAt = now;
+            }
+            if (expired.contains(2L)) {
+                firedSecondAt = now;
+            }
+            fired.addAll(expired);
+        }
+
+        assertEquals(Arrays.asList(3L, 1L, 2L), fired);
+        assertEquals(5_100, firedFirstAt);
+        assertEquals(30_100, firedSecondAt);
+    }
+
+    @Test
+    void advance_ShouldReturnOverdueEntriesImmediately() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(100, 8, 1_000);
+        wheel.schedule(7L, 500);
+
+        assertEquals(Collections.singletonList(7L), wheel.advance(1_000));
+    }
+
+    @Test
+    void advance_ShouldHandleLargeTimeJumps() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(100, 8, 0);
+        wheel.schedule(1L, 1_000);
+        wheel.schedule(2L, 90_000);
+
+        assertEquals(Collections.singletonList(1L), wheel.advance(60_000));
+        assertEquals(Collections.singletonList(2L), wheel.advance(120_000));
+        assertTrue(wheel.advance(500_000).isEmpty());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_ShouldShareOneComputationAcrossConcurrentCallers() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("client-1", () -> {
+                started.countDown();
+                awaitQuietly(release);
+                return computations.incrementAndGet();
+            })));
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("client-1", computations::incrementAndGet)));
+            }
+            // 等待其余调用方进入等待状态
+            while (singleFlight.getCoalesced() < 3) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(1, result.get(2, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertEquals(1, singleFlight.getExecutions());
+        assertEquals(3, singleFlight.getCoalesced());
+        assertEquals(0.75, singleFlight.getCoalesceRate(), 0.0001);
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void execute_ShouldRecomputeAfterPreviousCallCompleted() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("client-1", computations::incrementAndGet));
+        assertEquals(2, singleFlight.execute("client-1", computations::incrementAndGet));
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void execute_ShouldPropagateExceptionAndReleaseKey() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("client-1", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertEquals(0, singleFlight.getInFlight());
+        assertEquals(5, singleFlight.execute("client-1", () -> 5));
+    }
+
+    @Test
+    void execute_ShouldReleaseWaitersWhenComputationThrowsError() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = executor.submit(() -> singleFlight.execute("client-1", () -> {
+                started.countDown();
+                awaitQuietly(release);
+                throw new OutOfMemoryError("boom");
+            }));
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            Future<Integer> waiter = executor.submit(() -> singleFlight.execute("client-1", () -> 5));
+            while (singleFlight.getCoalesced() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(2, TimeUnit.SECONDS));
+            assertTrue(leaderFailure.getCause() instanceof OutOfMemoryError);
+            // 等待者拿到同一个错误，而不是永久阻塞
+            ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(2, TimeUnit.SECONDS));
+            assertTrue(waiterFailure.getCause() instanceof OutOfMemoryError);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    void executeAsync_ShouldReturnInFlightTaskForSameKey() {
+        SingleFlight<String, Void> singleFlight = new SingleFlight<>();
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        AtomicInteger submissions = new AtomicInteger();
+
+        CompletableFuture<Void> first = singleFlight.executeAsync("client-1", () -> {
+            submissions.incrementAndGet();
+            return task;
+        });
+        CompletableFuture<Void> second = singleFlight.executeAsync("client-1", () -> {
+            submissions.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertSame(first, second);
+        assertEquals(1, submissions.get());
+
+        task.complete(null);
+        assertTrue(first.isDone());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}